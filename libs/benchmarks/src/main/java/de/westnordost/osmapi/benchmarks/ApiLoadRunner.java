@@ -0,0 +1,97 @@
+package de.westnordost.osmapi.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.westnordost.osmapi.LoadDriver;
+import de.westnordost.osmapi.OsmConnection;
+import de.westnordost.osmapi.ReplayServer;
+import de.westnordost.osmapi.changesets.ChangesetsApi;
+import de.westnordost.osmapi.changesets.QueryChangesetsFilters;
+import de.westnordost.osmapi.map.MapDataApi;
+import de.westnordost.osmapi.map.data.BoundingBox;
+import de.westnordost.osmapi.map.handler.DefaultMapDataHandler;
+import de.westnordost.osmapi.notes.NotesApi;
+import de.westnordost.osmapi.traces.GpsTracesApi;
+
+/** Load test of the API classes end to end, through OsmConnection, against a local
+ *  {@link ReplayServer} instead of the real API. Prints throughput and latency percentiles for
+ *  each API call.
+ *  <br><br>
+ *  Options are passed as key=value arguments, e.g. "threads=8 latency=50 gzip=false":
+ *  <ul>
+ *    <li>threads: number of threads calling the API at the same time (default 4)</li>
+ *    <li>calls: number of measured calls per API call (default 1000)</li>
+ *    <li>warmup: number of calls before measuring (default 200)</li>
+ *    <li>size: number of elements, notes, changesets or trackpoints per response (default 1000)</li>
+ *    <li>latency: milliseconds the server waits before answering (default 0)</li>
+ *    <li>bandwidth: bytes per second the server sends per response, 0 for unlimited (default 0)</li>
+ *    <li>tooManyRequests: share of requests answered with 429 (default 0)</li>
+ *    <li>bandwidthExceeded: share of requests answered with 509 (default 0)</li>
+ *    <li>gzip: whether responses are compressed (default true)</li>
+ *    <li>recordings: directory with recorded responses that replace the synthetic ones, see
+ *        {@link ReplayServer#loadRecordings(File)} (default none)</li>
+ *  </ul> */
+public class ApiLoadRunner
+{
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args)
+		{
+			String[] option = arg.split("=", 2);
+			if(option.length != 2) throw new IllegalArgumentException("Expected key=value, got " + arg);
+			options.put(option[0], option[1]);
+		}
+		int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+		int calls = Integer.parseInt(options.getOrDefault("calls", "1000"));
+		int warmup = Integer.parseInt(options.getOrDefault("warmup", "200"));
+		int size = Integer.parseInt(options.getOrDefault("size", "1000"));
+		boolean gzip = Boolean.parseBoolean(options.getOrDefault("gzip", "true"));
+
+		try(ReplayServer server = new ReplayServer(threads))
+		{
+			server.setLatency(Long.parseLong(options.getOrDefault("latency", "0")));
+			server.setBandwidth(Long.parseLong(options.getOrDefault("bandwidth", "0")));
+			server.setTooManyRequestsRate(Double.parseDouble(options.getOrDefault("tooManyRequests", "0")));
+			server.setBandwidthExceededRate(Double.parseDouble(options.getOrDefault("bandwidthExceeded", "0")));
+			server.setCompressionEnabled(gzip);
+
+			server.record("map", Fixtures.createMapData(size));
+			server.record("notes", Fixtures.createNotes(size));
+			server.record("changesets", Fixtures.createChangesets(size));
+			server.record("gpx/1/data", Fixtures.createGpx(size));
+			if(options.containsKey("recordings"))
+			{
+				server.loadRecordings(new File(options.get("recordings")));
+			}
+
+			OsmConnection osm = new OsmConnection(server.getApiUrl(), "osmapi load test", "token");
+			osm.setResponseCompressionEnabled(gzip);
+			BoundingBox bounds = new BoundingBox(52.5, 13.3, 52.52, 13.32);
+			MapDataApi mapDataApi = new MapDataApi(osm);
+			NotesApi notesApi = new NotesApi(osm);
+			ChangesetsApi changesetsApi = new ChangesetsApi(osm);
+			GpsTracesApi tracesApi = new GpsTracesApi(osm);
+
+			Map<String, Runnable> operations = new LinkedHashMap<>();
+			operations.put("MapDataApi.getMap", () -> mapDataApi.getMap(bounds, new DefaultMapDataHandler()));
+			operations.put("NotesApi.getAll", () -> notesApi.getAll(bounds, note -> {}, 10000, -1));
+			operations.put("ChangesetsApi.find", () -> changesetsApi.find(changeset -> {},
+					new QueryChangesetsFilters().byBounds(bounds)));
+			operations.put("GpsTracesApi.getData", () -> tracesApi.getData(1, trackpoint -> {}));
+
+			LoadDriver driver = new LoadDriver(threads, warmup);
+			for (Map.Entry<String, Runnable> operation : operations.entrySet())
+			{
+				LoadDriver.Result result = driver.run(calls, operation.getValue());
+				System.out.println(operation.getKey() + ": " + result);
+			}
+			System.out.println(String.format("%d requests, %d bytes received, %d bytes decompressed",
+					server.getRequestCount(), osm.getCompressedBytesReceived(), osm.getUncompressedBytesReceived()));
+		}
+	}
+}
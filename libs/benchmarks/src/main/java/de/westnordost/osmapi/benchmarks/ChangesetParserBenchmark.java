@@ -0,0 +1,22 @@
+package de.westnordost.osmapi.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.westnordost.osmapi.changesets.ChangesetParser;
+
+/** Parsing of changesets, like from changesets? */
+public class ChangesetParserBenchmark extends ParserBenchmark
+{
+	@Override protected byte[] createResponse(int size)
+	{
+		return Fixtures.createChangesets(size);
+	}
+
+	@Override protected void read(InputStream in, Blackhole blackhole) throws IOException
+	{
+		new ChangesetParser(blackhole::consume).parse(in);
+	}
+}
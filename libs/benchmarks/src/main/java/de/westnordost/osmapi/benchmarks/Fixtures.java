@@ -0,0 +1,238 @@
+package de.westnordost.osmapi.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.OsmElement;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+import de.westnordost.osmapi.map.data.OsmNode;
+import de.westnordost.osmapi.map.data.OsmWay;
+import de.westnordost.osmapi.traces.GpsTrackpoint;
+
+/** Creates the data the benchmarks work on: Synthetic responses that resemble those of the API or
+ *  recorded responses read from a file. The synthetic data is always the same for the same size,
+ *  so that results of different runs can be compared. */
+final class Fixtures
+{
+	private static final long SEED = 42;
+
+	private Fixtures() {}
+
+	/** @return the content of the given file if the path is not empty, otherwise null */
+	static byte[] load(String path)
+	{
+		if(path == null || path.isEmpty()) return null;
+		try
+		{
+			return Files.readAllBytes(Paths.get(path));
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/** @return a map data response with the given number of elements, like from map?bbox=: Mostly
+	 *          untagged nodes that are vertices of tagged ways, eight nodes per way */
+	static byte[] createMapData(int elements)
+	{
+		Random random = new Random(SEED);
+		int nodes = elements * 8 / 9;
+		StringBuilder xml = new StringBuilder("<osm version=\"0.6\">\n");
+		xml.append("<bounds minlat=\"52.5\" minlon=\"13.3\" maxlat=\"52.52\" maxlon=\"13.32\"/>\n");
+		for (int id = 1; id <= nodes; id++)
+		{
+			appendElementStart(xml, "node", id, random);
+			xml.append(String.format(Locale.US, " lat=\"%.7f\" lon=\"%.7f\"",
+					52.5 + random.nextDouble() * 0.02, 13.3 + random.nextDouble() * 0.02));
+			if(random.nextInt(20) == 0)
+			{
+				xml.append(">\n");
+				appendTag(xml, "amenity", "bench");
+				appendTag(xml, "backrest", "yes");
+				xml.append("</node>\n");
+			}
+			else
+			{
+				xml.append("/>\n");
+			}
+		}
+		for (int id = 1; id <= elements - nodes; id++)
+		{
+			appendElementStart(xml, "way", id, random);
+			xml.append(">\n");
+			for (int i = 0; i < 8; i++)
+			{
+				xml.append("<nd ref=\"").append(1 + random.nextInt(Math.max(1, nodes))).append("\"/>\n");
+			}
+			appendTag(xml, "building", "yes");
+			appendTag(xml, "addr:housenumber", String.valueOf(id % 200));
+			appendTag(xml, "addr:street", "Street " + id % 500);
+			xml.append("</way>\n");
+		}
+		xml.append("</osm>\n");
+		return bytes(xml);
+	}
+
+	/** @return a changesets response with the given number of changesets, like from changesets? */
+	static byte[] createChangesets(int changesets)
+	{
+		Random random = new Random(SEED);
+		StringBuilder xml = new StringBuilder("<osm version=\"0.6\">\n");
+		for (int id = 1; id <= changesets; id++)
+		{
+			double lat = random.nextDouble() * 170 - 85, lon = random.nextDouble() * 360 - 180;
+			xml.append("<changeset id=\"").append(id).append("\" created_at=\"2020-01-01T12:00:00Z\"")
+					.append(" open=\"false\" comments_count=\"0\" changes_count=\"").append(random.nextInt(500)).append('"')
+					.append(" closed_at=\"2020-01-01T13:00:00Z\"")
+					.append(String.format(Locale.US, " min_lat=\"%.7f\" min_lon=\"%.7f\" max_lat=\"%.7f\" max_lon=\"%.7f\"",
+							lat, lon, lat + 0.01, lon + 0.01))
+					.append(" uid=\"").append(id % 100).append("\" user=\"user").append(id % 100).append("\">\n");
+			appendTag(xml, "comment", "Add some buildings");
+			appendTag(xml, "created_by", "osmapi benchmark");
+			appendTag(xml, "source", "survey");
+			xml.append("</changeset>\n");
+		}
+		xml.append("</osm>\n");
+		return bytes(xml);
+	}
+
+	/** @return a notes response with the given number of notes with two comments each, like from
+	 *          notes?bbox= */
+	static byte[] createNotes(int notes)
+	{
+		Random random = new Random(SEED);
+		StringBuilder xml = new StringBuilder("<osm version=\"0.6\">\n");
+		for (int id = 1; id <= notes; id++)
+		{
+			xml.append(String.format(Locale.US, "<note lon=\"%.7f\" lat=\"%.7f\">\n",
+					random.nextDouble() * 360 - 180, random.nextDouble() * 170 - 85));
+			xml.append("<id>").append(id).append("</id>\n");
+			xml.append("<status>open</status>\n");
+			xml.append("<date_created>2020-01-01 12:00:00 UTC</date_created>\n");
+			xml.append("<comments>\n");
+			appendNoteComment(xml, "opened", "There is a bench here", id);
+			appendNoteComment(xml, "commented", "Is it still there?", id + 1);
+			xml.append("</comments>\n");
+			xml.append("</note>\n");
+		}
+		xml.append("</osm>\n");
+		return bytes(xml);
+	}
+
+	/** @return a GPX track with the given number of trackpoints */
+	static byte[] createGpx(int trackpoints)
+	{
+		StringBuilder xml = new StringBuilder("<gpx version=\"1.0\">\n<trk>\n<trkseg>\n");
+		for (GpsTrackpoint trackpoint : createTrackpoints(trackpoints))
+		{
+			xml.append(String.format(Locale.US, "<trkpt lat=\"%.7f\" lon=\"%.7f\">",
+					trackpoint.position.getLatitude(), trackpoint.position.getLongitude()));
+			xml.append("<ele>").append(trackpoint.elevation).append("</ele>");
+			xml.append("<time>").append(trackpoint.time).append("</time>");
+			xml.append("</trkpt>\n");
+		}
+		xml.append("</trkseg>\n</trk>\n</gpx>\n");
+		return bytes(xml);
+	}
+
+	/** @return the given number of trackpoints of a track of one point per second */
+	static List<GpsTrackpoint> createTrackpoints(int trackpoints)
+	{
+		Random random = new Random(SEED);
+		List<GpsTrackpoint> result = new ArrayList<>(trackpoints);
+		double lat = 52.5, lon = 13.3;
+		for (int i = 0; i < trackpoints; i++)
+		{
+			lat += (random.nextDouble() - 0.5) * 0.0001;
+			lon += (random.nextDouble() - 0.5) * 0.0001;
+			result.add(new GpsTrackpoint(new OsmLatLon(lat, lon), Instant.ofEpochSecond(1577880000L + i),
+					i == 0, 5f, 30f + random.nextFloat()));
+		}
+		return result;
+	}
+
+	/** @return the given number of changed elements, like from an editing session: New, modified
+	 *          and deleted nodes and ways */
+	static List<Element> createChanges(int elements)
+	{
+		Random random = new Random(SEED);
+		List<Element> result = new ArrayList<>(elements);
+		for (int i = 1; i <= elements; i++)
+		{
+			Map<String, String> tags = new HashMap<>();
+			tags.put("building", "yes");
+			int kind = random.nextInt(3);
+			long id = kind == 0 ? -i : i;
+			OsmElement element;
+			if(i % 9 == 0)
+			{
+				List<Long> nodeIds = new ArrayList<>();
+				for (int j = 0; j < 8; j++) nodeIds.add((long) 1 + random.nextInt(elements));
+				element = new OsmWay(id, 1, nodeIds, tags);
+			}
+			else
+			{
+				element = new OsmNode(id, 1, new OsmLatLon(52.5 + random.nextDouble() * 0.02,
+						13.3 + random.nextDouble() * 0.02), tags);
+			}
+			if(kind == 1) element.getTags().put("name", "Modified " + i);
+			if(kind == 2) element.setDeleted(true);
+			result.add(element);
+		}
+		return result;
+	}
+
+	/** @return an output stream that discards what is written to it */
+	static OutputStream discardingOutputStream()
+	{
+		return new OutputStream()
+		{
+			@Override public void write(int b) { }
+			@Override public void write(byte[] b, int off, int len) { }
+		};
+	}
+
+	private static void appendElementStart(StringBuilder xml, String type, long id, Random random)
+	{
+		long changeset = 1000 + random.nextInt(200);
+		xml.append('<').append(type).append(" id=\"").append(id)
+				.append("\" visible=\"true\" version=\"").append(1 + random.nextInt(5))
+				.append("\" changeset=\"").append(changeset)
+				.append("\" timestamp=\"2020-01-0").append(1 + random.nextInt(9)).append("T12:00:00Z\"")
+				.append(" user=\"user").append(changeset % 50).append("\" uid=\"").append(changeset % 50).append('"');
+	}
+
+	private static void appendTag(StringBuilder xml, String key, String value)
+	{
+		xml.append("<tag k=\"").append(key).append("\" v=\"").append(value).append("\"/>\n");
+	}
+
+	private static void appendNoteComment(StringBuilder xml, String action, String text, long uid)
+	{
+		xml.append("<comment>\n")
+				.append("<date>2020-01-01 12:00:00 UTC</date>\n")
+				.append("<uid>").append(uid).append("</uid>\n")
+				.append("<user>user").append(uid).append("</user>\n")
+				.append("<action>").append(action).append("</action>\n")
+				.append("<text>").append(text).append("</text>\n")
+				.append("</comment>\n");
+	}
+
+	private static byte[] bytes(StringBuilder xml)
+	{
+		return xml.toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,22 @@
+package de.westnordost.osmapi.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.westnordost.osmapi.traces.GpxTrackParser;
+
+/** Parsing of the trackpoints of a GPX track */
+public class GpxTrackParserBenchmark extends ParserBenchmark
+{
+	@Override protected byte[] createResponse(int size)
+	{
+		return Fixtures.createGpx(size);
+	}
+
+	@Override protected void read(InputStream in, Blackhole blackhole) throws IOException
+	{
+		new GpxTrackParser(blackhole::consume).parse(in);
+	}
+}
@@ -0,0 +1,48 @@
+package de.westnordost.osmapi.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.westnordost.osmapi.traces.GpsTrackpoint;
+import de.westnordost.osmapi.traces.GpxTrackWriter;
+
+/** Serialisation of trackpoints to GPX. One operation is writing a track of the given number of
+ *  trackpoints */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GpxTrackWriterBenchmark
+{
+	@Param({"100", "10000", "100000"})
+	public int size;
+
+	private List<GpsTrackpoint> trackpoints;
+	private final OutputStream out = Fixtures.discardingOutputStream();
+
+	@Setup public void setUp()
+	{
+		trackpoints = Fixtures.createTrackpoints(size);
+	}
+
+	@Benchmark public void write() throws IOException
+	{
+		new GpxTrackWriter("osmapi benchmark", trackpoints).write(out);
+	}
+}
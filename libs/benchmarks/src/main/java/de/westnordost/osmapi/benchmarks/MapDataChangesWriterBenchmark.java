@@ -0,0 +1,77 @@
+package de.westnordost.osmapi.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.westnordost.osmapi.map.changes.MapDataChangesWriter;
+import de.westnordost.osmapi.map.changes.StreamingMapDataChangesWriter;
+import de.westnordost.osmapi.map.data.Element;
+
+/** Serialisation of changes to osmChange. One operation is writing the given number of changed
+ *  elements, either sorted into creations, modifications and deletions by the writer or already
+ *  sorted by the caller (streaming). */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapDataChangesWriterBenchmark
+{
+	@Param({"100", "10000"})
+	public int size;
+
+	private List<Element> elements;
+	private final List<Element> creations = new ArrayList<>();
+	private final List<Element> modifications = new ArrayList<>();
+	private final List<Element> deletions = new ArrayList<>();
+	private final OutputStream out = Fixtures.discardingOutputStream();
+
+	@Setup public void setUp()
+	{
+		elements = Fixtures.createChanges(size);
+		// creations are ordered nodes, ways, relations, the other sections the reverse
+		Element.Type[] types = Element.Type.values();
+		for (int i = 0; i < types.length; i++)
+		{
+			Element.Type ascending = types[i], descending = types[types.length - 1 - i];
+			for (Element element : elements)
+			{
+				if(element.isNew())
+				{
+					if(element.getType() == ascending) creations.add(element);
+				}
+				else if(element.getType() == descending)
+				{
+					if(element.isDeleted()) deletions.add(element);
+					else modifications.add(element);
+				}
+			}
+		}
+	}
+
+	@Benchmark public void write() throws IOException
+	{
+		new MapDataChangesWriter(1, elements).write(out);
+	}
+
+	@Benchmark public void writeStreaming() throws IOException
+	{
+		new StreamingMapDataChangesWriter(1, creations, modifications, deletions).write(out);
+	}
+}
@@ -0,0 +1,85 @@
+package de.westnordost.osmapi.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.westnordost.osmapi.map.MapDataParser;
+import de.westnordost.osmapi.map.data.BoundingBox;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.Node;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.Way;
+import de.westnordost.osmapi.map.handler.MapDataHandler;
+
+/** Compares the retained heap of map data parsed into the different element models. Unlike
+ *  {@link MapDataParserBenchmark}, which reports what is allocated while parsing, this keeps all
+ *  parsed elements of a map?bbox= like response in a list and measures the used heap after a GC.
+ *  <br><br>
+ *  Run it with a fixed heap size, e.g. -Xms1g -Xmx1g, so that the heap does not grow or shrink
+ *  between the measurements. Options are passed as key=value arguments, e.g. "size=500000":
+ *  <ul>
+ *    <li>size: number of elements in the response (default 200000)</li>
+ *    <li>rounds: how often each model is measured (default 3)</li>
+ *  </ul> */
+public class MapDataFootprintRunner
+{
+	private static final String[] FACTORIES = {"osm", "compact", "immutable"};
+
+	public static void main(String[] args) throws Exception
+	{
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args)
+		{
+			String[] option = arg.split("=", 2);
+			if(option.length != 2) throw new IllegalArgumentException("Expected key=value, got " + arg);
+			options.put(option[0], option[1]);
+		}
+		int size = Integer.parseInt(options.getOrDefault("size", "200000"));
+		int rounds = Integer.parseInt(options.getOrDefault("rounds", "3"));
+
+		byte[] xml = Fixtures.createMapData(size);
+		System.out.println(String.format("%d elements, %d KiB XML, max heap %d MiB",
+				size, xml.length / 1024, Runtime.getRuntime().maxMemory() / 1024 / 1024));
+
+		for (int round = 0; round < rounds; round++)
+		{
+			for (String factory : FACTORIES)
+			{
+				measure(factory, xml);
+			}
+		}
+	}
+
+	private static void measure(String factory, byte[] xml) throws Exception
+	{
+		long before = usedMemory();
+		List<Element> elements = new ArrayList<>();
+		new MapDataParser(new MapDataHandler()
+		{
+			@Override public void handle(BoundingBox bounds) { }
+			@Override public void handle(Node node) { elements.add(node); }
+			@Override public void handle(Way way) { elements.add(way); }
+			@Override public void handle(Relation relation) { elements.add(relation); }
+		}, MapDataParserBenchmark.createFactory(factory)).parse(new ByteArrayInputStream(xml));
+		long after = usedMemory();
+
+		System.out.println(String.format("%-10s %7d KiB retained, %5.1f bytes per element",
+				factory, (after - before) / 1024, (double) (after - before) / elements.size()));
+		// keeps the elements reachable until after the measurement
+		if(elements.isEmpty()) throw new IllegalStateException("Nothing parsed");
+	}
+
+	private static long usedMemory() throws InterruptedException
+	{
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++)
+		{
+			System.gc();
+			Thread.sleep(50);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,60 @@
+package de.westnordost.osmapi.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.westnordost.osmapi.map.CompactMapDataFactory;
+import de.westnordost.osmapi.map.ImmutableMapDataFactory;
+import de.westnordost.osmapi.map.MapDataFactory;
+import de.westnordost.osmapi.map.MapDataParser;
+import de.westnordost.osmapi.map.OsmMapDataFactory;
+import de.westnordost.osmapi.map.data.BoundingBox;
+import de.westnordost.osmapi.map.data.Node;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.Way;
+import de.westnordost.osmapi.map.handler.MapDataHandler;
+
+/** Parsing of map data, like from map?bbox=, into the different element models */
+public class MapDataParserBenchmark extends ParserBenchmark
+{
+	@Param({"osm", "compact", "immutable"})
+	public String factory;
+
+	private MapDataFactory mapDataFactory;
+
+	@Setup public void setUpFactory()
+	{
+		mapDataFactory = createFactory(factory);
+	}
+
+	@Override protected byte[] createResponse(int size)
+	{
+		return Fixtures.createMapData(size);
+	}
+
+	@Override protected void read(InputStream in, Blackhole blackhole) throws IOException
+	{
+		new MapDataParser(new MapDataHandler()
+		{
+			@Override public void handle(BoundingBox bounds) { blackhole.consume(bounds); }
+			@Override public void handle(Node node) { blackhole.consume(node); }
+			@Override public void handle(Way way) { blackhole.consume(way); }
+			@Override public void handle(Relation relation) { blackhole.consume(relation); }
+		}, mapDataFactory).parse(in);
+	}
+
+	static MapDataFactory createFactory(String name)
+	{
+		switch(name)
+		{
+			case "osm":       return new OsmMapDataFactory();
+			case "compact":   return new CompactMapDataFactory();
+			case "immutable": return new ImmutableMapDataFactory();
+			default: throw new IllegalArgumentException("Unknown factory " + name);
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package de.westnordost.osmapi.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.westnordost.osmapi.notes.NotesParser;
+
+/** Parsing of notes with two comments each, like from notes?bbox= */
+public class NotesParserBenchmark extends ParserBenchmark
+{
+	@Override protected byte[] createResponse(int size)
+	{
+		return Fixtures.createNotes(size);
+	}
+
+	@Override protected void read(InputStream in, Blackhole blackhole) throws IOException
+	{
+		new NotesParser(blackhole::consume).parse(in);
+	}
+}
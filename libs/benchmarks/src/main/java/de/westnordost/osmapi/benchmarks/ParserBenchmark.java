@@ -0,0 +1,53 @@
+package de.westnordost.osmapi.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/** Parsing of a synthetic response. One operation is parsing one response of the given number of
+ *  items, so the memory allocated per item is gc.alloc.rate.norm / size.
+ *  <br><br>
+ *  See {@link RecordedResponseParserBenchmark} to parse a recorded response instead. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class ParserBenchmark
+{
+	@Param({"100", "10000", "100000"})
+	public int size;
+
+	private byte[] xml;
+
+	@Setup public void setUp()
+	{
+		xml = createResponse(size);
+	}
+
+	@Benchmark public void parse(Blackhole blackhole) throws IOException
+	{
+		read(new ByteArrayInputStream(xml), blackhole);
+	}
+
+	/** @return a response with the given number of items */
+	protected abstract byte[] createResponse(int size);
+
+	/** Parse the given response, passing everything parsed to the blackhole */
+	protected abstract void read(InputStream in, Blackhole blackhole) throws IOException;
+}
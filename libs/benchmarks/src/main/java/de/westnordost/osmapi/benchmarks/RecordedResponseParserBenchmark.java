@@ -0,0 +1,67 @@
+package de.westnordost.osmapi.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** Parsing of a recorded response. One operation is parsing the whole file. Not run by default,
+ *  run it e.g. with -Pjmh="RecordedResponseParser -p file=path/to/map.osm -p parser=map" */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordedResponseParserBenchmark
+{
+	@Param({""})
+	public String file;
+
+	/** one of map, changesets, notes or gpx */
+	@Param({"map"})
+	public String parser;
+
+	/** the element model for map data, see {@link MapDataParserBenchmark} */
+	@Param({"osm"})
+	public String factory;
+
+	private byte[] xml;
+	private ParserBenchmark benchmark;
+
+	@Setup public void setUp()
+	{
+		xml = Fixtures.load(file);
+		if(xml == null) throw new IllegalArgumentException("Set the file to parse with -p file=...");
+		switch(parser)
+		{
+			case "map":
+				MapDataParserBenchmark mapDataBenchmark = new MapDataParserBenchmark();
+				mapDataBenchmark.factory = factory;
+				mapDataBenchmark.setUpFactory();
+				benchmark = mapDataBenchmark;
+				break;
+			case "changesets": benchmark = new ChangesetParserBenchmark(); break;
+			case "notes":      benchmark = new NotesParserBenchmark();     break;
+			case "gpx":        benchmark = new GpxTrackParserBenchmark();  break;
+			default: throw new IllegalArgumentException("Unknown parser " + parser);
+		}
+	}
+
+	@Benchmark public void parse(Blackhole blackhole) throws IOException
+	{
+		benchmark.read(new ByteArrayInputStream(xml), blackhole);
+	}
+}
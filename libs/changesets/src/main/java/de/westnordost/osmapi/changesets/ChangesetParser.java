@@ -22,11 +22,28 @@ import de.westnordost.osmapi.user.User;
  */
 public class ChangesetParser extends XmlParser implements ApiResponseReader<Void>
 {
-	private static final String
-		TAG = "tag",
-		CHANGESET = "changeset",
-		COMMENT = "comment",
-		TEXT = "text";
+	private final int
+		TAG = symbol("tag"),
+		CHANGESET = symbol("changeset"),
+		COMMENT = symbol("comment"),
+		TEXT = symbol("text");
+
+	private final int
+		K = symbol("k"),
+		V = symbol("v"),
+		ID = symbol("id"),
+		UID = symbol("uid"),
+		USER = symbol("user"),
+		DATE = symbol("date"),
+		CREATED_AT = symbol("created_at"),
+		CLOSED_AT = symbol("closed_at"),
+		OPEN = symbol("open"),
+		COMMENTS_COUNT = symbol("comments_count"),
+		CHANGES_COUNT = symbol("changes_count"),
+		MIN_LAT = symbol("min_lat"),
+		MIN_LON = symbol("min_lon"),
+		MAX_LAT = symbol("max_lat"),
+		MAX_LON = symbol("max_lon");
 
 	private Map<Long, User> users;
 
@@ -54,21 +71,21 @@ public class ChangesetParser extends XmlParser implements ApiResponseReader<Void
 	@Override
 	protected void onStartElement() throws ParseException
 	{
-		String name = getName();
+		int name = getSymbol();
 
-		if(CHANGESET.equals(name))
+		if(name == CHANGESET)
 		{
 			currentChangesetInfo = parseChangeset();
 		}
-		else if(TAG.equals(name))
+		else if(name == TAG)
 		{
 			if(tags == null)
 			{
 				tags = new HashMap<>();
 			}
-			tags.put(getAttribute("k"), getAttribute("v"));
+			tags.put(getAttribute(K), getAttribute(V));
 		}
-		else if(COMMENT.equals(name))
+		else if(name == COMMENT)
 		{
 			currentComment = parseChangesetComment();
 		}
@@ -77,14 +94,14 @@ public class ChangesetParser extends XmlParser implements ApiResponseReader<Void
 	private ChangesetInfo parseChangeset() throws ParseException
 	{
 		BoundingBox bounds = null;
-		if(getAttribute("min_lat") != null)
+		if(getAttribute(MIN_LAT) != null)
 		{
-			bounds = new BoundingBox(OsmLatLon.parseLatLon(getAttribute("min_lat"),
-					getAttribute("min_lon")), OsmLatLon.parseLatLon(getAttribute("max_lat"),
-					getAttribute("max_lon")));
+			bounds = new BoundingBox(OsmLatLon.parseLatLon(getAttribute(MIN_LAT),
+					getAttribute(MIN_LON)), OsmLatLon.parseLatLon(getAttribute(MAX_LAT),
+					getAttribute(MAX_LON)));
 		}
 
-		String closedAtStr = getAttribute("closed_at");
+		String closedAtStr = getAttribute(CLOSED_AT);
 		Instant closedAt = null;
 		if(closedAtStr != null)
 		{
@@ -97,14 +114,14 @@ public class ChangesetParser extends XmlParser implements ApiResponseReader<Void
 			throw new NullPointerException();
 
 		ChangesetInfo result = new ChangesetInfo();
-		result.id = getLongAttribute("id");
-		result.createdAt = Instant.parse(getAttribute("created_at"));
+		result.id = Long.parseLong(getAttribute(ID));
+		result.createdAt = Instant.parse(getAttribute(CREATED_AT));
 		result.closedAt = closedAt;
 		result.user = user;
 		result.boundingBox = bounds;
-		result.isOpen = getBooleanAttribute("open");
-		result.notesCount = getIntAttribute("comments_count");
-		result.changesCount = getIntAttribute("changes_count");
+		result.isOpen = Boolean.parseBoolean(getAttribute(OPEN));
+		result.notesCount = Integer.parseInt(getAttribute(COMMENTS_COUNT));
+		result.changesCount = Integer.parseInt(getAttribute(CHANGES_COUNT));
 		return result;
 	}
 
@@ -112,19 +129,20 @@ public class ChangesetParser extends XmlParser implements ApiResponseReader<Void
 	{
 		ChangesetNote comment = new ChangesetNote();
 		comment.user = parseUser();
-		comment.createdAt = Instant.parse(getAttribute("date"));
+		comment.createdAt = Instant.parse(getAttribute(DATE));
 		return comment;
 	}
 
 	private User parseUser()
 	{
-		Long userId = getLongAttribute("uid");
-		if(userId == null)
+		String uid = getAttribute(UID);
+		if(uid == null)
 			return null;
+		Long userId = Long.parseLong(uid);
 
 		if(!users.containsKey(userId))
 		{
-			User user = new User(userId, getAttribute("user"));
+			User user = new User(userId, getAttribute(USER));
 			users.put(userId, user);
 			return user;
 		}
@@ -134,13 +152,13 @@ public class ChangesetParser extends XmlParser implements ApiResponseReader<Void
 	@Override
 	protected void onEndElement()
 	{
-		String name = getName();
+		int name = getSymbol();
 
-		if(TEXT.equals(name))
+		if(name == TEXT)
 		{
 			currentComment.text = getText();
 		}
-		if(COMMENT.equals(name))
+		if(name == COMMENT)
 		{
 			if(comments == null)
 			{
@@ -149,7 +167,7 @@ public class ChangesetParser extends XmlParser implements ApiResponseReader<Void
 			comments.add(currentComment);
 			currentComment = null;
 		}
-		else if(CHANGESET.equals(name))
+		else if(name == CHANGESET)
 		{
 			currentChangesetInfo.tags = tags;
 			currentChangesetInfo.discussion = comments;
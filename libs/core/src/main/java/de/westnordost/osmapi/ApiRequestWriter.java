@@ -11,4 +11,12 @@ public interface ApiRequestWriter
 	String getContentType();
 
 	void write(OutputStream out) throws IOException;
+
+	/** @return whether the payload should be sent to the server while it is written, in chunked
+	 *          transfer encoding, instead of only after it has been written completely. Only
+	 *          worthwhile for large payloads that are produced while being written */
+	default boolean isStreaming()
+	{
+		return false;
+	}
 }
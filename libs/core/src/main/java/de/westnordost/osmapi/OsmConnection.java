@@ -2,17 +2,38 @@ package de.westnordost.osmapi;
 
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
+import java.io.SequenceInputStream;
 import java.net.URL;
 import java.util.Locale;
-
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import de.westnordost.osmapi.common.Sha256;
 import de.westnordost.osmapi.common.errors.OsmApiReadResponseException;
 import de.westnordost.osmapi.common.errors.OsmConnectionException;
 import de.westnordost.osmapi.common.errors.RedirectedException;
+import de.westnordost.osmapi.http.CachedResponse;
+import de.westnordost.osmapi.http.ContentEncoding;
+import de.westnordost.osmapi.http.CountingInputStream;
+import de.westnordost.osmapi.http.HttpCache;
+import de.westnordost.osmapi.http.HttpCall;
+import de.westnordost.osmapi.http.HttpTransport;
+import de.westnordost.osmapi.http.HttpUrlConnectionTransport;
+import de.westnordost.osmapi.metrics.RequestListener;
 
 /** Talks with the <a href="http://wiki.openstreetmap.org/wiki/API_v0.6">OpenStreetMap API 0.6</a>,
  * acts as a basis for data access objects for openstreetmap data accessible through the API.
@@ -37,6 +58,31 @@ import de.westnordost.osmapi.common.errors.RedirectedException;
  * So, if there were checked exceptions in this library, then OsmConnectionException would be the
  * checked one because it is a fault in the environment.
  * <br><br>
+ * How the requests are sent over the wire is up to the {@link HttpTransport}. By default, a new
+ * HttpURLConnection is opened for each request. Set a PooledHttpTransport to keep connections
+ * alive between requests.
+ * <br><br>
+ * Each request can also be made asynchronously, see
+ * {@link #makeRequestAsync(String, String, boolean, ApiRequestWriter, ApiResponseReader)}. The
+ * request is then made on an executor and the calling thread is not blocked. As each request still
+ * occupies a thread of that executor while it is in flight, the number of threads limits how many
+ * requests are in flight at the same time, see {@link #setParallelism(int)}.
+ * <br><br>
+ * Responses are requested gzip or deflate compressed and are decoded while they are read. See
+ * {@link #setResponseCompressionEnabled(boolean)}. Request payloads can optionally be sent gzip
+ * compressed, see {@link #setRequestCompressionEnabled(boolean)}.
+ * <br><br>
+ * Optionally, responses to GET requests can be cached, see {@link #setResponseCache(HttpCache)}.
+ * <br><br>
+ * The timings, sizes and outcomes of the requests can be observed with a listener, see
+ * {@link #setRequestListener(RequestListener)}.
+ * <br><br>
+ * To stay within the rate limits of the server and to retry GET requests that failed because of
+ * them, set a {@link RequestScheduler}, see {@link #setRequestScheduler(RequestScheduler)}.
+ * <br><br>
+ * Large downloads can be made resilient against broken connections, see
+ * {@link #setResumableDownloads(int, File)}.
+ * <br><br>
  * A OsmConnection is reusable and thread safe.
  */
 public class OsmConnection
@@ -45,11 +91,29 @@ public class OsmConnection
 	public static final String CHARSET = "UTF-8";
 
 	private static final int DEFAULT_TIMEOUT = 45 * 1000;
+	private static final int DEFAULT_ASYNC_THREADS = 4;
+	private static final int COMPRESSION_BUFFER_SIZE = 8192;
 
 	private int timeout;
 	private String apiUrl;
 	private String userAgent;
 	private String oauthAccessToken;
+	/* identifies the user without revealing the access token. Null if there is none */
+	private String oauthAccessTokenHash;
+	private HttpTransport transport = new HttpUrlConnectionTransport();
+	private Executor executor;
+	private boolean isDefaultExecutor;
+	private int parallelism = DEFAULT_ASYNC_THREADS;
+	private boolean responseCompressionEnabled = true;
+	private boolean requestCompressionEnabled;
+	private HttpCache responseCache;
+	private RequestListener requestListener;
+	private RequestScheduler requestScheduler;
+	private int resumableDownloadRetries;
+	private File spoolDirectory;
+
+	private final AtomicLong compressedBytesReceived = new AtomicLong();
+	private final AtomicLong uncompressedBytesReceived = new AtomicLong();
 
 	private final Object oauthLock = new Object();
 
@@ -66,6 +130,7 @@ public class OsmConnection
 		this.apiUrl = apiUrl;
 		this.userAgent = userAgent;
 		this.oauthAccessToken = oauthAccessToken;
+		this.oauthAccessTokenHash = hash(oauthAccessToken);
 		this.timeout = timeout != null ? timeout : DEFAULT_TIMEOUT;
 	}
 
@@ -92,9 +157,12 @@ public class OsmConnection
 
 	public void setOAuthAccessToken(String oauthAccessToken)
 	{
+		// hashed once here instead of for each request
+		String hash = hash(oauthAccessToken);
 		synchronized(oauthLock)
 		{
 			this.oauthAccessToken = oauthAccessToken;
+			this.oauthAccessTokenHash = hash;
 		}
 	}
 
@@ -131,6 +199,203 @@ public class OsmConnection
 		return timeout;
 	}
 
+	/** Set the transport over which the requests are sent. Defaults to a
+	 *  HttpUrlConnectionTransport */
+	public synchronized void setTransport(HttpTransport transport)
+	{
+		this.transport = transport;
+	}
+
+	public synchronized HttpTransport getTransport()
+	{
+		return transport;
+	}
+
+	/** Set the executor on which asynchronous requests are made. Each request blocks a thread of
+	 *  the executor until it is finished, so the number of its threads is the number of requests
+	 *  that can be in flight at the same time. */
+	public synchronized void setExecutor(Executor executor)
+	{
+		shutdownDefaultExecutor();
+		this.executor = executor;
+	}
+
+	/** @return the executor on which asynchronous requests are made. Unless one has been set, this
+	 *          is a fixed pool of daemon threads that is created on first use. It makes at most as
+	 *          many requests at the same time as set with {@link #setParallelism(int)}, further
+	 *          requests wait in its queue until a thread is free. */
+	public synchronized Executor getExecutor()
+	{
+		if(executor == null)
+		{
+			isDefaultExecutor = true;
+			executor = Executors.newFixedThreadPool(parallelism, runnable ->
+			{
+				Thread thread = new Thread(runnable, "osmapi");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return executor;
+	}
+
+	/** Set how many asynchronous requests are in flight at most on the default executor. Further
+	 *  asynchronous requests are queued until one of them is finished. Has no effect if an executor
+	 *  has been set with {@link #setExecutor(Executor)}. Default is 4.
+	 *  <br><br>
+	 *  Mind that the server may throttle clients that make too many requests at the same time. */
+	public synchronized void setParallelism(int parallelism)
+	{
+		if(parallelism <= 0) throw new IllegalArgumentException("parallelism must be positive");
+		this.parallelism = parallelism;
+		// the requests already queued are still made on the old executor
+		if(shutdownDefaultExecutor()) executor = null;
+	}
+
+	public synchronized int getParallelism()
+	{
+		return parallelism;
+	}
+
+	private boolean shutdownDefaultExecutor()
+	{
+		if(!isDefaultExecutor) return false;
+		((ExecutorService) executor).shutdown();
+		isDefaultExecutor = false;
+		return true;
+	}
+
+	/** Set whether the server should be asked to compress its responses. Defaults to true */
+	public synchronized void setResponseCompressionEnabled(boolean enabled)
+	{
+		this.responseCompressionEnabled = enabled;
+	}
+
+	public synchronized boolean isResponseCompressionEnabled()
+	{
+		return responseCompressionEnabled;
+	}
+
+	/** Set whether request payloads should be sent gzip compressed. The payload is then
+	 *  compressed while it is written and streamed to the server with chunked transfer encoding,
+	 *  so it is never held in memory completely. Only enable this if the server is known to
+	 *  accept compressed requests. Defaults to false */
+	public synchronized void setRequestCompressionEnabled(boolean enabled)
+	{
+		this.requestCompressionEnabled = enabled;
+	}
+
+	public synchronized boolean isRequestCompressionEnabled()
+	{
+		return requestCompressionEnabled;
+	}
+
+	/** Set the cache in which responses to GET requests are stored, so that they need not be
+	 *  transferred again. Responses are stored per URL and user, if the server sent a validator
+	 *  (ETag or Last-Modified) or allowed to cache it for a while (Cache-Control: max-age) and did
+	 *  not forbid it (no-store).<br>
+	 *  A stored response is used without asking the server until it expires according to its
+	 *  max-age. After that, the server is asked whether it changed (If-None-Match,
+	 *  If-Modified-Since) and, if not, the stored response is used without transferring it again.
+	 *  <br><br>
+	 *  Responses that are transferred are downloaded resumably if enabled, see
+	 *  {@link #setResumableDownloads(int, File)}.
+	 *  <br><br>
+	 *  Defaults to null, i.e. no caching */
+	public synchronized void setResponseCache(HttpCache cache)
+	{
+		this.responseCache = cache;
+	}
+
+	public synchronized HttpCache getResponseCache()
+	{
+		return responseCache;
+	}
+
+	/** Set the listener that is notified of each finished request with where the time went
+	 *  (connecting, waiting for the response, transferring and parsing it), how much was
+	 *  transferred and how it ended. See
+	 *  {@link de.westnordost.osmapi.metrics.RequestMetricsAggregator} for one that aggregates
+	 *  these per endpoint.
+	 *  <br><br>
+	 *  Defaults to null, i.e. nothing is measured */
+	public synchronized void setRequestListener(RequestListener listener)
+	{
+		this.requestListener = listener;
+	}
+
+	public synchronized RequestListener getRequestListener()
+	{
+		return requestListener;
+	}
+
+	/** Set the scheduler that paces the requests to stay within the rate limits of the server,
+	 *  makes requests wait while the server throttles the user and retries GET requests that
+	 *  failed because of that or because of a server or connection error. See
+	 *  {@link RequestScheduler}.
+	 *  <br><br>
+	 *  Defaults to null, i.e. all requests are sent immediately and never retried */
+	public synchronized void setRequestScheduler(RequestScheduler scheduler)
+	{
+		this.requestScheduler = scheduler;
+	}
+
+	public synchronized RequestScheduler getRequestScheduler()
+	{
+		return requestScheduler;
+	}
+
+	/** Set whether and how often the download of a response to a GET request is resumed or
+	 *  repeated if the connection breaks off while it is transferred.
+	 *  <br><br>
+	 *  If enabled, the response body is first written to a temporary file and only passed to the
+	 *  response reader once it has been received completely. If the server supports it (it sends
+	 *  Accept-Ranges and an ETag or Last-Modified), the download is resumed where it broke off
+	 *  with a Range request, otherwise it is requested anew. So, what has been transferred already
+	 *  is not wasted and the reader never receives a partial response.
+	 *  <br><br>
+	 *  As every response is written to disk first, this is only worthwhile for large downloads,
+	 *  such as map?bbox= or changeset/#id/download. Consider using a separate OsmConnection for
+	 *  those. If a response cache is set, responses that are not already cached are downloaded
+	 *  like this too, no matter whether they are small enough to be cached afterwards.
+	 *  <br><br>
+	 *  Defaults to 0, i.e. responses are passed to the reader while they are received.
+	 *
+	 * @param maxRetries how often a download is resumed or repeated at most. 0 to disable
+	 * @param spoolDirectory directory for the temporary files. Null for the default temporary
+	 *                       directory
+	 */
+	public synchronized void setResumableDownloads(int maxRetries, File spoolDirectory)
+	{
+		if(maxRetries < 0) throw new IllegalArgumentException("maxRetries must not be negative");
+		this.resumableDownloadRetries = maxRetries;
+		this.spoolDirectory = spoolDirectory;
+	}
+
+	public synchronized int getResumableDownloadRetries()
+	{
+		return resumableDownloadRetries;
+	}
+
+	public synchronized File getSpoolDirectory()
+	{
+		return spoolDirectory;
+	}
+
+	/** @return number of bytes of response bodies received so far, as sent over the wire, i.e.
+	 *          before decompression */
+	public long getCompressedBytesReceived()
+	{
+		return compressedBytesReceived.get();
+	}
+
+	/** @return number of bytes of response bodies received so far after decompression, i.e. as
+	 *          passed to the response readers */
+	public long getUncompressedBytesReceived()
+	{
+		return uncompressedBytesReceived.get();
+	}
+
 	/** @see #makeRequest(String, String, boolean, ApiRequestWriter, ApiResponseReader)*/
 	public <T> T makeRequest(String call, ApiResponseReader<T> reader)
 	{
@@ -183,13 +448,65 @@ public class OsmConnection
 	public <T> T makeRequest(String call, String method, boolean authenticate,
 							  ApiRequestWriter writer, ApiResponseReader<T> reader)
 	{
-		HttpURLConnection connection = null;
+		RequestListener listener = getRequestListener();
+		RequestScheduler scheduler = getRequestScheduler();
+		if(scheduler != null)
+		{
+			boolean idempotent = writer == null && (method == null || method.equals("GET"));
+			String user = authenticate ? getOAuthAccessTokenHash() : null;
+			return scheduler.execute(user, idempotent, call, method,
+					trace -> makeTracedRequest(call, method, authenticate, writer, reader, trace, listener));
+		}
+		if(listener != null)
+		{
+			RequestTrace trace = new RequestTrace(call, method);
+			return makeTracedRequest(call, method, authenticate, writer, reader, trace, listener);
+		}
+		return makeRequest(call, method, authenticate, writer, reader, null);
+	}
+
+	private <T> T makeTracedRequest(String call, String method, boolean authenticate,
+									ApiRequestWriter writer, ApiResponseReader<T> reader,
+									RequestTrace trace, RequestListener listener)
+	{
+		Throwable error = null;
+		try
+		{
+			return makeRequest(call, method, authenticate, writer, reader, trace);
+		}
+		catch(RuntimeException | Error e)
+		{
+			error = e;
+			throw e;
+		}
+		finally
+		{
+			trace.finish(error);
+			if(listener != null) listener.onRequestFinished(trace);
+		}
+	}
+
+	private <T> T makeRequest(String call, String method, boolean authenticate,
+							  ApiRequestWriter writer, ApiResponseReader<T> reader, RequestTrace trace)
+	{
+		HttpCache cache = getResponseCache();
+		if(cache != null && reader != null && writer == null && (method == null || method.equals("GET")))
+		{
+			return makeCachedRequest(cache, call, authenticate, reader, trace);
+		}
+		int resumableDownloadRetries = getResumableDownloadRetries();
+		if(resumableDownloadRetries > 0 && reader != null && writer == null && (method == null || method.equals("GET")))
+		{
+			return makeResumableRequest(call, authenticate, reader, resumableDownloadRetries, trace);
+		}
+
+		HttpCall connection = null;
 		try
 		{
-			connection = sendRequest(call, method, authenticate, writer);
-			handleResponseCode(connection);
+			connection = sendRequest(call, method, authenticate, writer, trace);
+			handleResponseCode(connection, trace);
 
-			if(reader != null) return handleResponse(connection, reader);
+			if(reader != null) return handleResponse(connection, reader, trace);
 			else return null;
 		}
 		catch(IOException e)
@@ -198,71 +515,389 @@ public class OsmConnection
 		}
 		finally
 		{
-			if(connection != null) connection.disconnect();
+			if(connection != null) connection.close();
+		}
+	}
+
+	/** @see #makeRequestAsync(String, String, boolean, ApiRequestWriter, ApiResponseReader)*/
+	public <T> CompletableFuture<T> makeRequestAsync(String call, ApiResponseReader<T> reader)
+	{
+		return makeRequestAsync(call, null, false, null, reader);
+	}
+
+	/** @see #makeRequestAsync(String, String, boolean, ApiRequestWriter, ApiResponseReader)*/
+	public <T> CompletableFuture<T> makeRequestAsync(String call, boolean authenticate,
+													 ApiResponseReader<T> reader)
+	{
+		return makeRequestAsync(call, null, authenticate, null, reader);
+	}
+
+	/**
+	 * Make a request to the Http Osm Api asynchronously on the {@link #getExecutor() executor}.
+	 * The writer and the reader are called on a thread of that executor.
+	 * <br><br>
+	 * The request blocks that thread while it is in flight. So if more requests are made than the
+	 * executor has threads, the rest waits in its queue, see {@link #setParallelism(int)}.
+	 * <br><br>
+	 * Any exception that would have been thrown by
+	 * {@link #makeRequest(String, String, boolean, ApiRequestWriter, ApiResponseReader)}
+	 * completes the returned future exceptionally.
+	 *
+	 * @see #makeRequest(String, String, boolean, ApiRequestWriter, ApiResponseReader)
+	 * @return a future that is completed with the instance of T
+	 */
+	public <T> CompletableFuture<T> makeRequestAsync(String call, String method, boolean authenticate,
+													 ApiRequestWriter writer, ApiResponseReader<T> reader)
+	{
+		return CompletableFuture.supplyAsync(
+				() -> makeRequest(call, method, authenticate, writer, reader), getExecutor());
+	}
+
+	private <T> T makeCachedRequest(HttpCache cache, String call, boolean authenticate,
+									ApiResponseReader<T> reader, RequestTrace trace)
+	{
+		HttpCall connection = null;
+		try
+		{
+			String key = getCacheKey(call, authenticate);
+			CachedResponse cached = cache.get(key);
+			long now = System.currentTimeMillis();
+			if(cached != null && cached.isFresh(now))
+			{
+				if(trace != null) trace.fromCache();
+				return parse(new ByteArrayInputStream(cached.getBody()), reader, trace);
+			}
+
+			connection = sendRequest(call, null, authenticate, null, trace);
+			if(cached != null && cached.getETag() != null)
+			{
+				connection.setRequestProperty("If-None-Match", cached.getETag());
+			}
+			if(cached != null && cached.getLastModified() != null)
+			{
+				connection.setRequestProperty("If-Modified-Since", cached.getLastModified());
+			}
+
+			long expiresAt = CachedResponse.getExpiresAt(connection.getHeaderField("Cache-Control"), now);
+			if(cached != null && getResponseCode(connection, trace) == 304)
+			{
+				if(expiresAt == -1) cache.remove(key);
+				else cache.put(key, cached.withExpiresAt(expiresAt));
+				if(trace != null) trace.fromCache();
+				return parse(new ByteArrayInputStream(cached.getBody()), reader, trace);
+			}
+			handleResponseCode(connection, trace);
+
+			String eTag = connection.getHeaderField("ETag");
+			String lastModified = connection.getHeaderField("Last-Modified");
+			boolean revalidatable = eTag != null || lastModified != null;
+			boolean cacheable = expiresAt != -1 && (revalidatable || expiresAt > now);
+			if(!cacheable) cache.remove(key);
+
+			// the body may turn out to be too large to be cached, so it is downloaded resumably too
+			int resumableDownloadRetries = getResumableDownloadRetries();
+			if(resumableDownloadRetries > 0)
+			{
+				return readResumable(connection, call, authenticate, resumableDownloadRetries, trace, in ->
+						cacheable
+								? cacheAndParse(cache, key, in, eTag, lastModified, expiresAt, reader, trace)
+								: parse(in, reader, trace));
+			}
+			if(!cacheable) return handleResponse(connection, reader, trace);
+
+			InputStream in = decode(connection, connection.getInputStream(), trace);
+			return cacheAndParse(cache, key, in, eTag, lastModified, expiresAt, reader, trace);
+		}
+		catch(IOException e)
+		{
+			throw new OsmConnectionException(e);
+		}
+		finally
+		{
+			if(connection != null) connection.close();
 		}
 	}
 
-	private HttpURLConnection sendRequest(String call, String method, boolean authenticate, ApiRequestWriter writer)
+	/* the decoded body of a response that has been received completely and, if it is small
+	   enough, stored in the cache before it is parsed */
+	private <T> T cacheAndParse(HttpCache cache, String key, InputStream in, String eTag,
+			String lastModified, long expiresAt, ApiResponseReader<T> reader, RequestTrace trace)
 			throws IOException
 	{
-		HttpURLConnection connection = openConnection(call);
-		if(method != null)
+		// one byte more than fits into the cache to know whether it is too large
+		byte[] body = readAtMost(in, (long) cache.getMaxEntrySize() + 1);
+		if(body.length > cache.getMaxEntrySize())
 		{
-			connection.setRequestMethod(method);
+			// too large to be cached: parse what has been read so far plus the rest
+			cache.remove(key);
+			return parse(new BufferedInputStream(new SequenceInputStream(new ByteArrayInputStream(body), in)), reader, trace);
 		}
+		in.close();
+		cache.put(key, new CachedResponse(body, eTag, lastModified, expiresAt));
+		return parse(new ByteArrayInputStream(body), reader, trace);
+	}
 
-		if(writer != null && writer.getContentType() != null)
+	private <T> T makeResumableRequest(String call, boolean authenticate, ApiResponseReader<T> reader,
+									   int maxRetries, RequestTrace trace)
+	{
+		try
 		{
-			connection.setRequestProperty("Content-Type", writer.getContentType());
-			connection.setRequestProperty("charset", CHARSET.toLowerCase(Locale.UK));
+			return readResumable(null, call, authenticate, maxRetries, trace, in -> parse(in, reader, trace));
 		}
+		catch(IOException e)
+		{
+			throw new OsmConnectionException(e);
+		}
+	}
 
-		if(authenticate)
+	/* download the response body into a temporary file, see download(), and pass it decoded to
+	   the given reader. The first connection may already have been made, it is not closed */
+	private <T> T readResumable(HttpCall firstConnection, String call, boolean authenticate,
+								int maxRetries, RequestTrace trace, BodyReader<T> reader)
+			throws IOException
+	{
+		File file = null;
+		try
 		{
-			connection.setRequestProperty("Authorization", "Bearer " + oauthAccessToken);
+			File directory = getSpoolDirectory();
+			file = directory != null
+					? File.createTempFile("osmapi", ".download", directory)
+					: File.createTempFile("osmapi", ".download");
+			String contentEncoding = download(firstConnection, call, authenticate, file, maxRetries, trace);
+
+			InputStream in = new CountingInputStream(
+					ContentEncoding.decode(new FileInputStream(file), contentEncoding), uncompressedBytesReceived);
+			if(trace != null) in = trace.decoded(in);
+			try(InputStream buffered = new BufferedInputStream(in))
+			{
+				return reader.read(buffered);
+			}
 		}
+		finally
+		{
+			if(file != null) file.delete();
+		}
+	}
 
-		if(writer != null)
+	/* write the response body as received into the given file, resuming or repeating the download
+	   if it breaks off. The first connection is made here if it is null. Returns the content
+	   encoding of the body */
+	private String download(HttpCall firstConnection, String call, boolean authenticate, File file,
+							int maxRetries, RequestTrace trace) throws IOException
+	{
+		long received = 0;
+		String contentEncoding = null;
+		// ETag or Last-Modified of the response, null if its download cannot be resumed
+		String validator = null;
+		for (int attempt = 0; ; attempt++)
 		{
-			sendRequestPayload(connection, writer);
+			HttpCall connection = attempt == 0 ? firstConnection : null;
+			try
+			{
+				if(connection == null) connection = sendRequest(call, null, authenticate, null, trace);
+				boolean resuming = received > 0 && validator != null;
+				if(resuming)
+				{
+					connection.setRequestProperty("Range", "bytes=" + received + "-");
+					connection.setRequestProperty("If-Range", validator);
+				}
+
+				long length;
+				if(resuming && getResponseCode(connection, trace) == 206)
+				{
+					String contentRange = connection.getHeaderField("Content-Range");
+					if(getRangeStart(contentRange) != received
+							|| !Objects.equals(contentEncoding, connection.getHeaderField("Content-Encoding")))
+					{
+						validator = null;
+						throw new IOException("Unexpected Content-Range " + contentRange);
+					}
+					length = getRangeTotal(contentRange);
+				}
+				else
+				{
+					// a complete response, also if the resource changed in the meantime
+					handleResponseCode(connection, trace);
+					received = 0;
+					contentEncoding = connection.getHeaderField("Content-Encoding");
+					validator = getRangeValidator(connection);
+					length = parseLong(connection.getHeaderField("Content-Length"));
+				}
+
+				try(OutputStream out = new FileOutputStream(file, received > 0))
+				{
+					InputStream in = new CountingInputStream(connection.getInputStream(), compressedBytesReceived);
+					if(trace != null) in = trace.receiving(in);
+					byte[] buffer = new byte[COMPRESSION_BUFFER_SIZE];
+					int read;
+					while((read = in.read(buffer)) != -1)
+					{
+						out.write(buffer, 0, read);
+						received += read;
+					}
+				}
+				if(length != -1 && received < length)
+				{
+					throw new EOFException("Unexpected end of stream, " + (length - received) + " bytes missing");
+				}
+				return contentEncoding;
+			}
+			catch(IOException e)
+			{
+				if(attempt >= maxRetries) throw e;
+				if(validator == null) received = 0;
+			}
+			finally
+			{
+				if(connection != null && connection != firstConnection) connection.close();
+			}
 		}
+	}
 
-		return connection;
+	/* the validator to send with If-Range to resume the download of the given response or null
+	   if it cannot be resumed */
+	private static String getRangeValidator(HttpCall connection) throws IOException
+	{
+		String acceptRanges = connection.getHeaderField("Accept-Ranges");
+		if(acceptRanges == null || !acceptRanges.toLowerCase(Locale.UK).contains("bytes")) return null;
+		String eTag = connection.getHeaderField("ETag");
+		// weak ETags may not be used for ranges
+		if(eTag != null && !eTag.startsWith("W/")) return eTag;
+		return connection.getHeaderField("Last-Modified");
 	}
 
-	private void sendRequestPayload(HttpURLConnection connection, ApiRequestWriter writer)
-			throws IOException
+	/* e.g. 100 for "bytes 100-999/1000". -1 if it cannot be parsed */
+	private static long getRangeStart(String contentRange)
 	{
-		connection.setDoOutput(true);
+		if(contentRange == null || !contentRange.startsWith("bytes ")) return -1;
+		int dash = contentRange.indexOf('-');
+		if(dash == -1) return -1;
+		return parseLong(contentRange.substring("bytes ".length(), dash));
+	}
+
+	/* e.g. 1000 for "bytes 100-999/1000". -1 if it is unknown or cannot be parsed */
+	private static long getRangeTotal(String contentRange)
+	{
+		int slash = contentRange.indexOf('/');
+		return slash != -1 ? parseLong(contentRange.substring(slash + 1)) : -1;
+	}
 
-		OutputStream out = null;
+	private static long parseLong(String value)
+	{
+		if(value == null) return -1;
 		try
 		{
-			out = connection.getOutputStream();
-			writer.write(out);
+			return Long.parseLong(value.trim());
 		}
-		catch(IOException e)
+		catch(NumberFormatException e)
 		{
-			connection.disconnect();
-			throw e;
+			return -1;
 		}
-		finally
+	}
+
+	/* the URL of the request plus a hash of the access token, so that users do not see each
+	   others' responses and the access token is not stored in the cache */
+	private String getCacheKey(String call, boolean authenticate) throws IOException
+	{
+		String url = new URL(new URL(getApiUrl()), call).toString();
+		String token = authenticate ? getOAuthAccessTokenHash() : null;
+		return token != null ? url + " " + token : url;
+	}
+
+	private String getOAuthAccessTokenHash()
+	{
+		synchronized(oauthLock)
+		{
+			return oauthAccessTokenHash;
+		}
+	}
+
+	private static String hash(String token)
+	{
+		return token != null ? Sha256.hex(token) : null;
+	}
+
+	private static byte[] readAtMost(InputStream in, long maxLength) throws IOException
+	{
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int length;
+		while(result.size() < maxLength
+				&& (length = in.read(buffer, 0, (int) Math.min(buffer.length, maxLength - result.size()))) != -1)
+		{
+			result.write(buffer, 0, length);
+		}
+		return result.toByteArray();
+	}
+
+	private HttpCall sendRequest(String call, String method, boolean authenticate, ApiRequestWriter writer,
+			RequestTrace trace) throws IOException
+	{
+		HttpCall connection = openConnection(call);
+		if(method != null)
+		{
+			connection.setRequestMethod(method);
+		}
+
+		if(writer != null && writer.getContentType() != null)
+		{
+			connection.setRequestProperty("Content-Type", writer.getContentType());
+			connection.setRequestProperty("charset", CHARSET.toLowerCase(Locale.UK));
+		}
+
+		if(authenticate)
+		{
+			connection.setRequestProperty("Authorization", "Bearer " + oauthAccessToken);
+		}
+
+		if(writer != null)
 		{
-			if (out != null)
+			boolean compress = isRequestCompressionEnabled();
+			if(compress)
+			{
+				connection.setRequestProperty("Content-Encoding", "gzip");
+			}
+			if(compress || writer.isStreaming())
 			{
-				out.close();
+				connection.setChunkedStreamingMode();
+			}
+			try
+			{
+				sendRequestPayload(connection, writer, compress, trace);
+			}
+			catch(IOException | RuntimeException e)
+			{
+				// aborts the request, the payload written so far is never completed
+				connection.close();
+				throw e;
 			}
 		}
+		if(trace != null) trace.sent();
+
+		return connection;
 	}
 
-	private synchronized HttpURLConnection openConnection(String call) throws IOException
+	private void sendRequestPayload(HttpCall connection, ApiRequestWriter writer, boolean compress,
+			RequestTrace trace) throws IOException
+	{
+		OutputStream out = connection.getOutputStream();
+		if(trace != null) out = trace.sending(out);
+		if(compress) out = new GZIPOutputStream(out, COMPRESSION_BUFFER_SIZE);
+		writer.write(out);
+		/* only closed if the writer succeeded: closing writes the gzip trailer and the last chunk,
+		   so the server would receive a truncated payload that looks complete */
+		out.close();
+	}
+
+	private synchronized HttpCall openConnection(String call) throws IOException
 	{
 		URL url = new URL(new URL(apiUrl), call);
-		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		HttpCall connection = transport.open(url, timeout);
 
 		// hotel wifi with signon
 		if (!url.getHost().equals(connection.getURL().getHost()))
 		{
+			connection.close();
 			throw new RedirectedException();
 		}
 
@@ -270,21 +905,26 @@ public class OsmConnection
 		{
 			connection.setRequestProperty("User-Agent", userAgent);
 		}
-		connection.setConnectTimeout(timeout);
-		connection.setReadTimeout(timeout);
 
-		// default is method=GET, doInput=true, doOutput=false
+		if(responseCompressionEnabled)
+		{
+			connection.setRequestProperty("Accept-Encoding", ContentEncoding.ACCEPTED);
+		}
 
 		return connection;
 	}
 
-	private <T> T handleResponse(HttpURLConnection connection, ApiResponseReader<T> reader)
+	private <T> T handleResponse(HttpCall connection, ApiResponseReader<T> reader, RequestTrace trace)
 			throws IOException
 	{
-		InputStream in = null;
+		return parse(new BufferedInputStream(decode(connection, connection.getInputStream(), trace)), reader, trace);
+	}
+
+	private <T> T parse(InputStream in, ApiResponseReader<T> reader, RequestTrace trace) throws IOException
+	{
+		if(trace != null) trace.parsing();
 		try
 		{
-			in = new BufferedInputStream(connection.getInputStream());
 			return reader.parse(in);
 		}
 		catch (IOException e)
@@ -304,13 +944,33 @@ public class OsmConnection
 		}
 	}
 
-	private void handleResponseCode(HttpURLConnection connection) throws IOException
+	private InputStream decode(HttpCall connection, InputStream in, RequestTrace trace) throws IOException
 	{
-		int httpResponseCode = connection.getResponseCode();
+		String contentEncoding = connection.getHeaderField("Content-Encoding");
+		if(trace != null) in = trace.receiving(in);
+		InputStream compressed = new CountingInputStream(in, compressedBytesReceived);
+		InputStream decoded = new CountingInputStream(
+				ContentEncoding.decode(compressed, contentEncoding), uncompressedBytesReceived);
+		return trace != null ? trace.decoded(decoded) : decoded;
+	}
+
+	private static int getResponseCode(HttpCall connection, RequestTrace trace) throws IOException
+	{
+		int responseCode = connection.getResponseCode();
+		if(trace != null) trace.responded(responseCode, connection);
+		return responseCode;
+	}
+
+	private void handleResponseCode(HttpCall connection, RequestTrace trace) throws IOException
+	{
+		int httpResponseCode = getResponseCode(connection, trace);
 		if(httpResponseCode < 200 || httpResponseCode > 299)
 		{
 			String responseMessage = connection.getResponseMessage();
-			String errorDescription = getErrorDescription(connection.getErrorStream());
+			InputStream errorStream = connection.getErrorStream();
+			String errorDescription = errorStream != null
+					? getErrorDescription(decode(connection, errorStream, trace))
+					: null;
 			
 			throw OsmApiErrorFactory.createError(httpResponseCode, responseMessage, errorDescription);
 		}
@@ -328,4 +988,10 @@ public class OsmConnection
 		}
 		return result.toString(CHARSET);
 	}
+
+	/* reads the decoded body of a response that has been downloaded resumably */
+	private interface BodyReader<T>
+	{
+		T read(InputStream in) throws IOException;
+	}
 }
@@ -0,0 +1,353 @@
+package de.westnordost.osmapi;
+
+import java.io.InterruptedIOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import de.westnordost.osmapi.common.errors.OsmConnectionException;
+import de.westnordost.osmapi.common.errors.OsmTooManyRequestsException;
+
+/** Paces the requests of an OsmConnection so that they stay within the rate limits of the server,
+ *  see {@link OsmConnection#setRequestScheduler(RequestScheduler)}.
+ *  <br><br>
+ *  Requests are limited by a token bucket for all requests and one per user. A request that would
+ *  exceed the limit waits until it is within the limit again instead of being sent.
+ *  <br><br>
+ *  When the server responds that a user made too many requests (429) or downloaded too much
+ *  (509), further requests of that user wait until the time the server named in its Retry-After
+ *  header, or else for a backoff time, instead of being sent and failing as well. Requests that
+ *  would need to wait longer than the maximum wait time fail immediately with an
+ *  OsmTooManyRequestsException.
+ *  <br><br>
+ *  GET requests that failed because of this or because of a server or connection error are
+ *  retried after an exponentially growing, randomized backoff time, so that parallel requests do
+ *  not all retry at the same time. They are only retried if the response reader has not been
+ *  called yet, so the reader never receives a response twice.
+ *  <br><br>
+ *  One scheduler can be shared by several connections to limit their requests together. The state
+ *  kept for each user is dropped again once the user has been idle for a while. */
+public class RequestScheduler
+{
+	private static final String ANONYMOUS = "";
+	/* how often the state of idle users is dropped, in milliseconds */
+	private static final long EVICTION_INTERVAL = 60 * 1000;
+
+	private final TokenBucket bucket;
+	private final double requestsPerSecondPerUser;
+	private final int burstPerUser;
+	private final ConcurrentMap<String, UserState> users = new ConcurrentHashMap<>();
+	/* monotonic time in milliseconds */
+	private final LongSupplier clock;
+	private final Sleeper sleeper;
+	private final AtomicLong nextEviction;
+
+	private volatile int maxRetries = 3;
+	private volatile long initialBackoff = 1000;
+	private volatile long maxBackoff = 60 * 1000;
+	private volatile long maxWait = 5 * 60 * 1000;
+
+	private final AtomicLong retryCount = new AtomicLong();
+	private final AtomicLong throttledCount = new AtomicLong();
+
+	/**
+	 * @param requestsPerSecond maximum number of requests per second on average. 0 for no limit
+	 * @param burst maximum number of requests that may be made at once after a pause
+	 * @param requestsPerSecondPerUser maximum number of requests per second on average for one
+	 *                                 user. Requests without authentication count as one user.
+	 *                                 0 for no limit
+	 * @param burstPerUser maximum number of requests of one user that may be made at once after
+	 *                     a pause
+	 */
+	public RequestScheduler(double requestsPerSecond, int burst, double requestsPerSecondPerUser,
+							int burstPerUser)
+	{
+		this(requestsPerSecond, burst, requestsPerSecondPerUser, burstPerUser,
+				() -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()), Thread::sleep);
+	}
+
+	RequestScheduler(double requestsPerSecond, int burst, double requestsPerSecondPerUser,
+					 int burstPerUser, LongSupplier clock, Sleeper sleeper)
+	{
+		if(requestsPerSecond < 0 || requestsPerSecondPerUser < 0)
+		{
+			throw new IllegalArgumentException("Rates must not be negative");
+		}
+		if(burst <= 0 || burstPerUser <= 0) throw new IllegalArgumentException("Bursts must be positive");
+		this.clock = clock;
+		this.sleeper = sleeper;
+		this.bucket = new TokenBucket(requestsPerSecond, burst, clock.getAsLong());
+		this.nextEviction = new AtomicLong(clock.getAsLong() + EVICTION_INTERVAL);
+		this.requestsPerSecondPerUser = requestsPerSecondPerUser;
+		this.burstPerUser = burstPerUser;
+	}
+
+	/** Set how often a failed GET request is retried. Default is 3 */
+	public void setMaxRetries(int maxRetries)
+	{
+		if(maxRetries < 0) throw new IllegalArgumentException("maxRetries must not be negative");
+		this.maxRetries = maxRetries;
+	}
+
+	/** Set the backoff time in milliseconds before the first retry, which doubles with each
+	 *  further retry up to the given maximum. The actual backoff time is a random time up to that.
+	 *  Defaults are 1 second and 1 minute */
+	public void setBackoff(long initialBackoff, long maxBackoff)
+	{
+		if(initialBackoff <= 0 || maxBackoff < initialBackoff)
+		{
+			throw new IllegalArgumentException("Backoff times must be positive and initial <= max");
+		}
+		this.initialBackoff = initialBackoff;
+		this.maxBackoff = maxBackoff;
+	}
+
+	/** Set the maximum time in milliseconds a request waits because the user is throttled by the
+	 *  server. Default is 5 minutes */
+	public void setMaxWait(long maxWait)
+	{
+		if(maxWait < 0) throw new IllegalArgumentException("maxWait must not be negative");
+		this.maxWait = maxWait;
+	}
+
+	/** @return number of requests that have been retried so far */
+	public long getRetryCount()
+	{
+		return retryCount.get();
+	}
+
+	/** @return number of responses so far with which the server throttled a user (429 or 509) */
+	public long getThrottledCount()
+	{
+		return throttledCount.get();
+	}
+
+	/** Make the given request when allowed, retrying it if it is idempotent and failed in a way
+	 *  that it can be retried
+	 *
+	 * @param user identity of the user the request is made as, null if anonymous
+	 * @param idempotent whether the request may be retried
+	 * @param call the call, for the trace
+	 * @param method the method, for the trace
+	 * @param request makes the request, recording it in the given trace
+	 */
+	<T> T execute(String user, boolean idempotent, String call, String method,
+				  Function<RequestTrace, T> request)
+	{
+		UserState state = getUserState(user != null ? user : ANONYMOUS);
+		for (int attempt = 0; ; attempt++)
+		{
+			awaitPermit(state);
+			RequestTrace trace = new RequestTrace(call, method);
+			try
+			{
+				return request.apply(trace);
+			}
+			catch(RuntimeException e)
+			{
+				long now = clock.getAsLong();
+				int status = trace.getStatusCode();
+				// a HTTP date in the Retry-After header refers to the wall clock
+				long retryAfter = parseRetryAfter(trace.getRetryAfter(), System.currentTimeMillis());
+				long backoff = getBackoff(attempt);
+				if(status == 429 || status == 509)
+				{
+					throttledCount.incrementAndGet();
+					state.block(now + (retryAfter != -1 ? retryAfter : backoff));
+				}
+
+				boolean retryable = idempotent && !trace.hasStartedParsing() && (status == 429 || status >= 500
+						|| (status == -1 && e instanceof OsmConnectionException));
+				if(!retryable || attempt >= maxRetries) throw e;
+				if(state.getBlockedUntil() - now > maxWait) throw e;
+
+				retryCount.incrementAndGet();
+				// a throttled request waits for the block in awaitPermit
+				if(status != 429 && status != 509) sleep(Math.max(retryAfter, backoff));
+			}
+		}
+	}
+
+	/* wait until the user is not blocked anymore and there is a token for the request in both
+	   buckets */
+	private void awaitPermit(UserState state)
+	{
+		while(true)
+		{
+			long blockedFor = state.getBlockedUntil() - clock.getAsLong();
+			if(blockedFor <= 0) break;
+			if(blockedFor > maxWait)
+			{
+				throw new OsmTooManyRequestsException(429, "Too Many Requests",
+						"Throttled by the server for another " + (blockedFor / 1000) + " seconds");
+			}
+			// so that the waiting requests do not all hit the server at the same moment
+			sleep(blockedFor + ThreadLocalRandom.current().nextLong(initialBackoff));
+		}
+		long now = clock.getAsLong();
+		long wait = Math.max(bucket.reserve(now), state.bucket.reserve(now));
+		if(wait > 0) sleep(wait);
+	}
+
+	private long getBackoff(int attempt)
+	{
+		long ceiling = initialBackoff << Math.min(attempt, 30);
+		if(ceiling <= 0 || ceiling > maxBackoff) ceiling = maxBackoff;
+		return 1 + ThreadLocalRandom.current().nextLong(ceiling);
+	}
+
+	private void sleep(long millis)
+	{
+		try
+		{
+			sleeper.sleep(millis);
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new OsmConnectionException(new InterruptedIOException());
+		}
+	}
+
+	private UserState getUserState(String user)
+	{
+		evictIdleUsers();
+		UserState state = users.get(user);
+		if(state == null)
+		{
+			state = users.computeIfAbsent(user,
+					u -> new UserState(new TokenBucket(requestsPerSecondPerUser, burstPerUser, clock.getAsLong())));
+		}
+		return state;
+	}
+
+	/* a user whose bucket is full and who is not blocked is in the same state as a new one, so it
+	   can be dropped. Requests of that user that are just starting then take their token from the
+	   dropped state, so they do not count against the new one */
+	private void evictIdleUsers()
+	{
+		long now = clock.getAsLong();
+		long next = nextEviction.get();
+		if(now < next || !nextEviction.compareAndSet(next, now + EVICTION_INTERVAL)) return;
+		users.values().removeIf(state -> state.isIdle(now));
+	}
+
+	/** @return number of users the scheduler currently keeps a state for */
+	int getUserCount()
+	{
+		return users.size();
+	}
+
+	/** @param value value of the Retry-After header: seconds or a HTTP date. May be null
+	 *  @param now the current time in milliseconds since epoch
+	 *  @return milliseconds to wait or -1 if the value is null or invalid */
+	static long parseRetryAfter(String value, long now)
+	{
+		if(value == null) return -1;
+		value = value.trim();
+		try
+		{
+			long seconds = Long.parseLong(value);
+			return seconds >= 0 ? seconds * 1000 : -1;
+		}
+		catch(NumberFormatException ignore) { }
+		try
+		{
+			long time = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+			return Math.max(0, time - now);
+		}
+		catch(DateTimeParseException e)
+		{
+			return -1;
+		}
+	}
+
+	interface Sleeper
+	{
+		void sleep(long millis) throws InterruptedException;
+	}
+
+	private static class UserState
+	{
+		final TokenBucket bucket;
+		private long blockedUntil;
+
+		UserState(TokenBucket bucket)
+		{
+			this.bucket = bucket;
+		}
+
+		synchronized long getBlockedUntil()
+		{
+			return blockedUntil;
+		}
+
+		synchronized void block(long until)
+		{
+			if(until > blockedUntil) blockedUntil = until;
+			// no burst of requests once the block is over
+			bucket.empty();
+		}
+
+		synchronized boolean isIdle(long now)
+		{
+			return blockedUntil <= now && bucket.isFull(now);
+		}
+	}
+
+	/** Hands out tokens at a constant rate, holding up to a maximum number. Tokens can be reserved
+	 *  ahead, so that waiting requests are spaced out evenly instead of all trying at once */
+	private static class TokenBucket
+	{
+		private final double tokensPerMilli;
+		private final int capacity;
+		private double tokens;
+		private long lastRefill;
+
+		TokenBucket(double tokensPerSecond, int capacity, long now)
+		{
+			this.tokensPerMilli = tokensPerSecond / 1000;
+			this.capacity = capacity;
+			this.tokens = capacity;
+			this.lastRefill = now;
+		}
+
+		/** Take a token
+		 *  @return milliseconds to wait until the token is available */
+		synchronized long reserve(long now)
+		{
+			if(tokensPerMilli == 0) return 0;
+			refill(now);
+			tokens -= 1;
+			return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerMilli);
+		}
+
+		synchronized void empty()
+		{
+			if(tokens > 0) tokens = 0;
+		}
+
+		synchronized boolean isFull(long now)
+		{
+			if(tokensPerMilli == 0) return true;
+			refill(now);
+			return tokens >= capacity;
+		}
+
+		private void refill(long now)
+		{
+			if(now > lastRefill)
+			{
+				tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerMilli);
+				lastRefill = now;
+			}
+		}
+	}
+}
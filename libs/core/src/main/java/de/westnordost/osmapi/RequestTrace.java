@@ -0,0 +1,230 @@
+package de.westnordost.osmapi;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.westnordost.osmapi.http.CountingInputStream;
+import de.westnordost.osmapi.http.HttpCall;
+import de.westnordost.osmapi.metrics.RequestMetrics;
+
+/** Records the metrics of one request while it is made by the OsmConnection. Not thread safe, it
+ *  is only used by the thread making the request until it is passed to the listener. */
+class RequestTrace implements RequestMetrics
+{
+	private final String endpoint;
+	private final String method;
+	private final long startTime = System.currentTimeMillis();
+	private final long start = System.nanoTime();
+
+	private long sentAt = -1;
+	private long respondedAt = -1;
+	private long parsingAt = -1;
+	private long transferTimeAtParsing;
+	private String retryAfter;
+
+	private int statusCode = -1;
+	private boolean fromCache;
+	private Throwable error;
+	private long connectTime = -1;
+	private long handshakeTime = -1;
+	private long sendTime;
+	private long waitTime = -1;
+	private long transferTime;
+	private long parseTime = -1;
+	private long totalTime;
+	private long bytesSent;
+	private long bytesReceived;
+	private final AtomicLong bytesDecoded = new AtomicLong();
+
+	RequestTrace(String call, String method)
+	{
+		this.endpoint = getEndpoint(call);
+		this.method = method != null ? method : "GET";
+	}
+
+	/** @return the stream to write the payload into, counting what is written */
+	OutputStream sending(OutputStream out)
+	{
+		return new FilterOutputStream(out)
+		{
+			@Override public void write(int b) throws IOException
+			{
+				out.write(b);
+				bytesSent++;
+			}
+
+			@Override public void write(byte[] b, int off, int len) throws IOException
+			{
+				out.write(b, off, len);
+				bytesSent += len;
+			}
+		};
+	}
+
+	/** The request has been sent */
+	void sent()
+	{
+		if(sentAt != -1) return;
+		sentAt = System.nanoTime();
+		sendTime = sentAt - start;
+	}
+
+	/** The status of the response has been received */
+	void responded(int statusCode, HttpCall connection) throws IOException
+	{
+		if(respondedAt != -1) return;
+		sent();
+		respondedAt = System.nanoTime();
+		waitTime = respondedAt - sentAt;
+		this.statusCode = statusCode;
+		connectTime = connection.getConnectTime();
+		handshakeTime = connection.getHandshakeTime();
+		if(statusCode == 429 || statusCode == 503 || statusCode == 509)
+		{
+			retryAfter = connection.getHeaderField("Retry-After");
+		}
+	}
+
+	/** The response was taken from the cache */
+	void fromCache()
+	{
+		fromCache = true;
+	}
+
+	/** @return the stream to read the response body from as received, measuring the time spent
+	 *          waiting for it */
+	InputStream receiving(InputStream in)
+	{
+		return new FilterInputStream(in)
+		{
+			@Override public int read() throws IOException
+			{
+				long start = System.nanoTime();
+				int result = in.read();
+				transferTime += System.nanoTime() - start;
+				if(result != -1) bytesReceived++;
+				return result;
+			}
+
+			@Override public int read(byte[] b, int off, int len) throws IOException
+			{
+				long start = System.nanoTime();
+				int result = in.read(b, off, len);
+				transferTime += System.nanoTime() - start;
+				if(result > 0) bytesReceived += result;
+				return result;
+			}
+
+			@Override public long skip(long n) throws IOException
+			{
+				long start = System.nanoTime();
+				long result = in.skip(n);
+				transferTime += System.nanoTime() - start;
+				if(result > 0) bytesReceived += result;
+				return result;
+			}
+		};
+	}
+
+	/** @return the stream to read the decompressed response body from, counting what is read */
+	InputStream decoded(InputStream in)
+	{
+		return new CountingInputStream(in, bytesDecoded);
+	}
+
+	/** The response reader is about to be called */
+	void parsing()
+	{
+		parsingAt = System.nanoTime();
+		transferTimeAtParsing = transferTime;
+	}
+
+	/** @return whether the response reader has been called */
+	boolean hasStartedParsing()
+	{
+		return parsingAt != -1;
+	}
+
+	/** @return value of the Retry-After header of a 429, 503 or 509 response or null */
+	String getRetryAfter()
+	{
+		return retryAfter;
+	}
+
+	/** The request is finished, with the given error or successfully if it is null */
+	void finish(Throwable error)
+	{
+		long end = System.nanoTime();
+		this.error = error;
+		totalTime = end - start;
+		sent();
+		if(parsingAt != -1)
+		{
+			parseTime = end - parsingAt - (transferTime - transferTimeAtParsing);
+		}
+	}
+
+	@Override public String getEndpoint() { return endpoint; }
+	@Override public String getMethod() { return method; }
+	@Override public long getStartTime() { return startTime; }
+	@Override public int getStatusCode() { return statusCode; }
+	@Override public boolean isFromCache() { return fromCache; }
+	@Override public Throwable getError() { return error; }
+	@Override public long getConnectTime() { return connectTime; }
+	@Override public long getHandshakeTime() { return handshakeTime; }
+	@Override public long getSendTime() { return sendTime; }
+	@Override public long getWaitTime() { return waitTime; }
+	@Override public long getTransferTime() { return transferTime; }
+	@Override public long getParseTime() { return parseTime; }
+	@Override public long getTotalTime() { return totalTime; }
+	@Override public long getBytesSent() { return bytesSent; }
+	@Override public long getBytesReceived() { return bytesReceived; }
+	@Override public long getBytesDecoded() { return bytesDecoded.get(); }
+
+	/** @return the given call with the ids replaced by placeholders and the parameters without
+	 *          their values, e.g. "node/{id}/history" for "node/123/history" or "map?bbox" for
+	 *          "map?bbox=1,2,3,4" */
+	static String getEndpoint(String call)
+	{
+		int queryStart = call.indexOf('?');
+		String path = queryStart != -1 ? call.substring(0, queryStart) : call;
+		StringBuilder result = new StringBuilder();
+		boolean previousWasId = false;
+		String[] segments = path.split("/", -1);
+		for (int i = 0; i < segments.length; i++)
+		{
+			String segment = segments[i];
+			if(i > 0) result.append('/');
+			boolean isId = !segment.isEmpty() && isNumber(segment);
+			// node/123/2 is version 2 of node 123
+			if(isId) result.append(previousWasId ? "{version}" : "{id}");
+			else result.append(segment);
+			previousWasId = isId;
+		}
+		if(queryStart != -1)
+		{
+			String separator = "?";
+			for (String parameter : call.substring(queryStart + 1).split("&"))
+			{
+				if(parameter.isEmpty()) continue;
+				int equals = parameter.indexOf('=');
+				result.append(separator).append(equals != -1 ? parameter.substring(0, equals) : parameter);
+				separator = "&";
+			}
+		}
+		return result.toString();
+	}
+
+	private static boolean isNumber(String segment)
+	{
+		for (int i = 0; i < segment.length(); i++)
+		{
+			if(!Character.isDigit(segment.charAt(i))) return false;
+		}
+		return true;
+	}
+}
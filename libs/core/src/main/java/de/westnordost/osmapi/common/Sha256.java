@@ -0,0 +1,36 @@
+package de.westnordost.osmapi.common;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** Hashes text with SHA-256, e.g. to identify an access token without revealing it or to derive a
+ *  file name from a URL */
+public final class Sha256
+{
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private Sha256() {}
+
+	/** @return the SHA-256 hash of the UTF-8 bytes of the given text as 64 lowercase hex digits */
+	public static String hex(String text)
+	{
+		byte[] hash;
+		try
+		{
+			hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			// every Java platform supports SHA-256
+			throw new RuntimeException(e);
+		}
+		char[] result = new char[hash.length * 2];
+		for (int i = 0; i < hash.length; i++)
+		{
+			result[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+			result[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xF];
+		}
+		return new String(result);
+	}
+}
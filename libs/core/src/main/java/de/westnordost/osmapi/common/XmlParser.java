@@ -4,24 +4,71 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserFactory;
 
 import de.westnordost.osmapi.common.errors.XmlParserException;
+import de.westnordost.osmapi.map.data.Fixed1E7;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /** A simple XML parser that can be used quite similarly to the SAX parser but is based on the pull
  *  parser. It has two convenience methods. You can get the parent element via getParentName and you
  *  can get the text in the current node (in onEndElement) via getText.
+ *  <br><br>
+ *  Instead of comparing element and attribute names as strings, subclasses can register the names
+ *  they are interested in as symbols (see {@link #symbol(String)}) and then switch over the int
+ *  returned by {@link #getSymbol()} and look up attributes by symbol. Each element name is then
+ *  only looked up once and the attributes of an element are only scanned once.
  *
  *  It is not very generic but generic enough for the purpose of this project */
 public abstract class XmlParser
 {
+	/** symbol of any element or attribute name that has not been registered */
+	protected static final int NO_SYMBOL = -1;
+
 	private static final String CHARSET = "UTF-8";
-	
-	private Stack<String> parentElements = new Stack<>();
+	private static final int INITIAL_DEPTH = 16;
+
+	private final Map<String, Integer> symbols = new HashMap<>();
+
+	/* stack of the names (and their symbols) of the parent elements */
+	private String[] parentNames = new String[INITIAL_DEPTH];
+	private int[] parentSymbols = new int[INITIAL_DEPTH];
+	private int depth;
+
+	private int symbol = NO_SYMBOL;
+
+	/* index of the attribute of the current element for each symbol, valid only if the
+	   attribute's generation is the current one */
+	private int[] attributeIndices = new int[0];
+	private int[] attributeGenerations = new int[0];
+	private int generation;
+	private boolean attributesIndexed;
+	private boolean inStartElement;
+
 	private String text;
 	private XmlPullParser xpp;
 
+	/** Register the given element or attribute name as a symbol. Should be called on
+	 *  construction of the parser.
+	 *
+	 *  @param name element or attribute name
+	 *  @return the symbol for the given name. Registering the same name twice returns the same
+	 *          symbol */
+	protected final int symbol(String name)
+	{
+		Integer result = symbols.get(name);
+		if(result == null)
+		{
+			result = symbols.size();
+			symbols.put(name, result);
+			attributeIndices = Arrays.copyOf(attributeIndices, result + 1);
+			attributeGenerations = Arrays.copyOf(attributeGenerations, result + 1);
+		}
+		return result;
+	}
+
 	protected final void doParse(InputStream in) throws XmlParserException, IOException
 	{
 		try
@@ -31,6 +78,8 @@ public abstract class XmlParser
 				xpp = XmlPullParserFactory.newInstance().newPullParser();
 			}
 			xpp.setInput(in, CHARSET);
+			depth = 0;
+			inStartElement = false;
 			int eventType = xpp.getEventType();
 			while (eventType != XmlPullParser.END_DOCUMENT)
 			{
@@ -38,14 +87,26 @@ public abstract class XmlParser
 				{
 					case XmlPullParser.START_TAG:
 						text = null;
+						String name = xpp.getName();
+						Integer s = symbols.get(name);
+						symbol = s != null ? s : NO_SYMBOL;
+						generation++;
+						attributesIndexed = false;
+						inStartElement = true;
 						onStartElement();
-						parentElements.push(xpp.getName());
+						inStartElement = false;
+						push(name, symbol);
 						break;
 					case XmlPullParser.TEXT:
 						onTextNode(xpp.getText());
 						break;
 					case XmlPullParser.END_TAG:
-						parentElements.pop();
+						depth--;
+						symbol = parentSymbols[depth];
+						parentNames[depth] = null;
+						// end tags have no attributes
+						generation++;
+						attributesIndexed = true;
 						onEndElement();
 						text = null;
 						break;
@@ -70,6 +131,18 @@ public abstract class XmlParser
 		}
 	}
 
+	private void push(String name, int symbol)
+	{
+		if(depth == parentNames.length)
+		{
+			parentNames = Arrays.copyOf(parentNames, depth * 2);
+			parentSymbols = Arrays.copyOf(parentSymbols, depth * 2);
+		}
+		parentNames[depth] = name;
+		parentSymbols[depth] = symbol;
+		depth++;
+	}
+
 	/**
 	 * @return the name of the current element
 	 */
@@ -78,6 +151,42 @@ public abstract class XmlParser
 		return xpp.getName();
 	}
 
+	/**
+	 * @return the symbol of the current element or NO_SYMBOL if its name has not been registered
+	 */
+	protected int getSymbol()
+	{
+		return symbol;
+	}
+
+	/**
+	 * @param symbol symbol of the attribute
+	 * @return the value of the attribute of the current element or null if it does not exist. Only
+	 *         non-null within onStartElement
+	 */
+	protected String getAttribute(int symbol)
+	{
+		if(!attributesIndexed) indexAttributes();
+		if(attributeGenerations[symbol] != generation) return null;
+		return xpp.getAttributeValue(attributeIndices[symbol]);
+	}
+
+	private void indexAttributes()
+	{
+		attributesIndexed = true;
+		if(!inStartElement) return;
+		int count = xpp.getAttributeCount();
+		for (int i = 0; i < count; i++)
+		{
+			Integer s = symbols.get(xpp.getAttributeName(i));
+			if(s != null)
+			{
+				attributeIndices[s] = i;
+				attributeGenerations[s] = generation;
+			}
+		}
+	}
+
 	/**
 	 * @param name of the attribute
 	 * @return the value of the attribute of the current element or null if it does not exist. Only non-null within
@@ -112,6 +221,64 @@ public abstract class XmlParser
 		return attr != null ? Long.parseLong(attr) : null;
 	}
 
+	/**
+	 * @param name of the attribute
+	 * @param defaultValue value to return if the attribute does not exist
+	 * @return the value of the attribute of the current element
+	 */
+	protected long getLongAttribute(String name, long defaultValue)
+	{
+		String attr = getAttribute(name);
+		return attr != null ? Long.parseLong(attr) : defaultValue;
+	}
+
+	/** @see #getLongAttribute(String, long) */
+	protected long getLongAttribute(int symbol, long defaultValue)
+	{
+		String attr = getAttribute(symbol);
+		return attr != null ? Long.parseLong(attr) : defaultValue;
+	}
+
+	/** @see #getLongAttribute(String, long) */
+	protected int getIntAttribute(String name, int defaultValue)
+	{
+		String attr = getAttribute(name);
+		return attr != null ? Integer.parseInt(attr) : defaultValue;
+	}
+
+	/** @see #getLongAttribute(String, long) */
+	protected int getIntAttribute(int symbol, int defaultValue)
+	{
+		String attr = getAttribute(symbol);
+		return attr != null ? Integer.parseInt(attr) : defaultValue;
+	}
+
+	/** @see #getLongAttribute(String, long) */
+	protected double getDoubleAttribute(String name, double defaultValue)
+	{
+		String attr = getAttribute(name);
+		return attr != null ? Double.parseDouble(attr) : defaultValue;
+	}
+
+	/** @see #getLongAttribute(String, long) */
+	protected double getDoubleAttribute(int symbol, double defaultValue)
+	{
+		String attr = getAttribute(symbol);
+		return attr != null ? Double.parseDouble(attr) : defaultValue;
+	}
+
+	/**
+	 * @param symbol symbol of the attribute
+	 * @param defaultValue value to return if the attribute does not exist
+	 * @return the value of the attribute of the current element, a decimal number, as a fixed 1E7
+	 *         int. See {@link Fixed1E7#parseFixed(String)}
+	 */
+	protected int getFixed1E7Attribute(int symbol, int defaultValue)
+	{
+		String attr = getAttribute(symbol);
+		return attr != null ? Fixed1E7.parseFixed(attr) : defaultValue;
+	}
+
 	protected Boolean getBooleanAttribute(String name)
 	{
 		String attr = getAttribute(name);
@@ -129,8 +296,18 @@ public abstract class XmlParser
 	 */
 	protected String getParentName()
 	{
-		if(parentElements.empty()) return null;
-		return parentElements.peek();
+		if(depth == 0) return null;
+		return parentNames[depth - 1];
+	}
+
+	/**
+	 * @return the symbol of the element parent to the current one or NO_SYMBOL if there is none
+	 *         or its name has not been registered
+	 */
+	protected int getParentSymbol()
+	{
+		if(depth == 0) return NO_SYMBOL;
+		return parentSymbols[depth - 1];
 	}
 
 	/**
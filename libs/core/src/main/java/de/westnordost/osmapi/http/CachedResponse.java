@@ -0,0 +1,93 @@
+package de.westnordost.osmapi.http;
+
+import java.util.Locale;
+
+/** The body of a response stored in a {@link HttpCache}, together with what is needed to decide
+ *  whether it can still be used: The validators (ETag and Last-Modified) to ask the server
+ *  whether it has changed and the time until which it may be used without asking. */
+public final class CachedResponse
+{
+	private final byte[] body;
+	private final String eTag;
+	private final String lastModified;
+	private final long expiresAt;
+
+	/**
+	 * @param body the decoded response body
+	 * @param eTag value of the ETag header. May be null
+	 * @param lastModified value of the Last-Modified header. May be null
+	 * @param expiresAt time in milliseconds since epoch until which the response may be used
+	 *                  without revalidating it with the server
+	 */
+	public CachedResponse(byte[] body, String eTag, String lastModified, long expiresAt)
+	{
+		this.body = body;
+		this.eTag = eTag;
+		this.lastModified = lastModified;
+		this.expiresAt = expiresAt;
+	}
+
+	/** @return the decoded response body. Must not be modified */
+	public byte[] getBody()
+	{
+		return body;
+	}
+
+	/** @return value of the ETag header or null */
+	public String getETag()
+	{
+		return eTag;
+	}
+
+	/** @return value of the Last-Modified header or null */
+	public String getLastModified()
+	{
+		return lastModified;
+	}
+
+	/** @return time in milliseconds since epoch until which the response may be used without
+	 *          revalidating it */
+	public long getExpiresAt()
+	{
+		return expiresAt;
+	}
+
+	/** @return whether the response may be used at the given time without revalidating it */
+	public boolean isFresh(long now)
+	{
+		return now < expiresAt;
+	}
+
+	/** @return a copy of this response with the given expiry time */
+	public CachedResponse withExpiresAt(long expiresAt)
+	{
+		return new CachedResponse(body, eTag, lastModified, expiresAt);
+	}
+
+	/**
+	 * @param cacheControl value of the Cache-Control header. May be null
+	 * @param now the current time in milliseconds since epoch
+	 * @return time until which a response with the given Cache-Control may be used without
+	 *         revalidating it, or -1 if it must not be stored at all
+	 */
+	public static long getExpiresAt(String cacheControl, long now)
+	{
+		if(cacheControl == null) return now;
+		long maxAge = 0;
+		for (String directive : cacheControl.toLowerCase(Locale.UK).split(","))
+		{
+			directive = directive.trim();
+			if(directive.equals("no-store")) return -1;
+			if(directive.equals("no-cache")) return now;
+			if(directive.startsWith("max-age="))
+			{
+				try
+				{
+					maxAge = Long.parseLong(directive.substring("max-age=".length()).trim());
+				}
+				catch(NumberFormatException ignore) { }
+			}
+		}
+		return now + Math.max(0, maxAge) * 1000;
+	}
+}
@@ -0,0 +1,81 @@
+package de.westnordost.osmapi.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+
+/** Decodes a HTTP/1.1 response body sent with chunked transfer encoding. Does not close the
+ *  underlying stream. */
+class ChunkedInputStream extends InputStream
+{
+	private final InputStream in;
+	private long remaining;
+	private boolean afterChunk;
+	private boolean eof;
+
+	ChunkedInputStream(InputStream in)
+	{
+		this.in = in;
+	}
+
+	@Override public int read() throws IOException
+	{
+		byte[] b = new byte[1];
+		int result = read(b, 0, 1);
+		return result == -1 ? -1 : b[0] & 0xff;
+	}
+
+	@Override public int read(byte[] b, int off, int len) throws IOException
+	{
+		if(eof) return -1;
+		if(len == 0) return 0;
+		if(remaining == 0)
+		{
+			nextChunk();
+			if(eof) return -1;
+		}
+		int result = in.read(b, off, (int) Math.min(len, remaining));
+		if(result == -1) throw new EOFException("Unexpected end of chunked stream");
+		remaining -= result;
+		return result;
+	}
+
+	private void nextChunk() throws IOException
+	{
+		if(afterChunk)
+		{
+			// CRLF that terminates the previous chunk's data
+			PooledHttpCall.readLine(in);
+		}
+		String line = PooledHttpCall.readLine(in);
+		int extensionStart = line.indexOf(';');
+		if(extensionStart != -1) line = line.substring(0, extensionStart);
+		try
+		{
+			remaining = Long.parseLong(line.trim(), 16);
+		}
+		catch(NumberFormatException e)
+		{
+			throw new ProtocolException("Invalid chunk size: " + line);
+		}
+		afterChunk = true;
+		if(remaining == 0)
+		{
+			// skip trailers
+			while(!PooledHttpCall.readLine(in).isEmpty()) { }
+			eof = true;
+		}
+	}
+
+	@Override public int available() throws IOException
+	{
+		if(eof) return 0;
+		return (int) Math.min(in.available(), remaining);
+	}
+
+	@Override public void close()
+	{
+		// the underlying stream belongs to the connection
+	}
+}
@@ -0,0 +1,77 @@
+package de.westnordost.osmapi.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/** Writes a HTTP message body with chunked transfer encoding. Data is collected into chunks of a
+ *  fixed size before it is written. Closing this stream writes the last chunk but does not close
+ *  the underlying stream. */
+class ChunkedOutputStream extends OutputStream
+{
+	private static final int CHUNK_SIZE = 8192;
+	private static final byte[] CRLF = {'\r', '\n'};
+	private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+
+	private final OutputStream out;
+	private final byte[] buffer = new byte[CHUNK_SIZE];
+	private int count;
+	private boolean closed;
+
+	ChunkedOutputStream(OutputStream out)
+	{
+		this.out = out;
+	}
+
+	@Override public void write(int b) throws IOException
+	{
+		ensureOpen();
+		if(count == buffer.length) writeChunk();
+		buffer[count++] = (byte) b;
+	}
+
+	@Override public void write(byte[] b, int off, int len) throws IOException
+	{
+		ensureOpen();
+		while(len > 0)
+		{
+			if(count == buffer.length) writeChunk();
+			int length = Math.min(len, buffer.length - count);
+			System.arraycopy(b, off, buffer, count, length);
+			count += length;
+			off += length;
+			len -= length;
+		}
+	}
+
+	@Override public void flush() throws IOException
+	{
+		ensureOpen();
+		writeChunk();
+		out.flush();
+	}
+
+	@Override public void close() throws IOException
+	{
+		if(closed) return;
+		closed = true;
+		writeChunk();
+		out.write(LAST_CHUNK);
+		out.flush();
+	}
+
+	private void writeChunk() throws IOException
+	{
+		if(count == 0) return;
+		out.write(Integer.toHexString(count).getBytes(StandardCharsets.ISO_8859_1));
+		out.write(CRLF);
+		out.write(buffer, 0, count);
+		out.write(CRLF);
+		count = 0;
+	}
+
+	private void ensureOpen() throws IOException
+	{
+		if(closed) throw new IOException("Stream closed");
+	}
+}
@@ -0,0 +1,77 @@
+package de.westnordost.osmapi.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** Decoding of compressed HTTP message bodies */
+public final class ContentEncoding
+{
+	/** value for the Accept-Encoding header: all content encodings that can be decoded */
+	public static final String ACCEPTED = "gzip, deflate";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private ContentEncoding() {}
+
+	/**
+	 * @param in the (compressed) HTTP message body
+	 * @param contentEncoding value of the Content-Encoding header. May be null
+	 * @return a stream that decodes the given stream while it is being read
+	 * @throws IOException if the content encoding is not supported or the stream is not encoded
+	 *                     as announced
+	 */
+	public static InputStream decode(InputStream in, String contentEncoding) throws IOException
+	{
+		if(contentEncoding == null) return in;
+		String encoding = contentEncoding.trim().toLowerCase(Locale.UK);
+		switch (encoding)
+		{
+			case "":
+			case "identity":
+				return in;
+			case "gzip":
+			case "x-gzip":
+				return new GZIPInputStream(in, BUFFER_SIZE);
+			case "deflate":
+				return inflate(in);
+			default:
+				throw new IOException("Unsupported content encoding: " + contentEncoding);
+		}
+	}
+
+	/* "deflate" should be zlib wrapped, but some servers send the raw deflate stream instead */
+	private static InputStream inflate(InputStream in) throws IOException
+	{
+		PushbackInputStream pushback = new PushbackInputStream(in, 2);
+		int cmf = pushback.read();
+		int flg = cmf != -1 ? pushback.read() : -1;
+		if(flg != -1) pushback.unread(flg);
+		if(cmf != -1) pushback.unread(cmf);
+
+		boolean zlibWrapped = flg != -1 && (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+		return new InflaterInputStream(pushback, new Inflater(!zlibWrapped), BUFFER_SIZE)
+		{
+			private boolean closed;
+
+			@Override public void close() throws IOException
+			{
+				if(closed) return;
+				closed = true;
+				try
+				{
+					super.close();
+				}
+				finally
+				{
+					// an inflater passed to the constructor is not released on close automatically
+					inf.end();
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,44 @@
+package de.westnordost.osmapi.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Adds the number of bytes read through it to a counter */
+public class CountingInputStream extends FilterInputStream
+{
+	private final AtomicLong counter;
+
+	public CountingInputStream(InputStream in, AtomicLong counter)
+	{
+		super(in);
+		this.counter = counter;
+	}
+
+	@Override public int read() throws IOException
+	{
+		int b = in.read();
+		if(b != -1) counter.incrementAndGet();
+		return b;
+	}
+
+	@Override public int read(byte[] b, int off, int len) throws IOException
+	{
+		int read = in.read(b, off, len);
+		if(read > 0) counter.addAndGet(read);
+		return read;
+	}
+
+	@Override public long skip(long n) throws IOException
+	{
+		long skipped = in.skip(n);
+		if(skipped > 0) counter.addAndGet(skipped);
+		return skipped;
+	}
+
+	@Override public boolean markSupported()
+	{
+		return false;
+	}
+}
@@ -0,0 +1,157 @@
+package de.westnordost.osmapi.http;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import de.westnordost.osmapi.common.Sha256;
+
+/** Keeps responses in files in a directory, one file per response, so that they survive a restart
+ *  of the application. When the files take more than the given size, the least recently used are
+ *  deleted.
+ *  <br><br>
+ *  Errors reading or writing the files are not reported, the response is then simply not taken
+ *  from or not stored in the cache. */
+public class DiskHttpCache implements HttpCache
+{
+	private static final int FORMAT_VERSION = 1;
+	private static final String SUFFIX = ".response";
+
+	private final File directory;
+	private final long maxSize;
+	private final int maxEntrySize;
+
+	private long size;
+
+	/**
+	 * @param directory directory to store the responses in. Is created if it does not exist
+	 * @param maxSize maximum size in bytes of all files together
+	 * @param maxEntrySize maximum size in bytes of the body of one stored response
+	 * @throws IOException if the directory could not be created
+	 */
+	public DiskHttpCache(File directory, long maxSize, int maxEntrySize) throws IOException
+	{
+		if(maxSize <= 0 || maxEntrySize <= 0) throw new IllegalArgumentException("Sizes must be positive");
+		if(!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Could not create directory " + directory);
+		}
+		this.directory = directory;
+		this.maxSize = maxSize;
+		this.maxEntrySize = maxEntrySize;
+		for (File file : listFiles())
+		{
+			size += file.length();
+		}
+	}
+
+	@Override public synchronized CachedResponse get(String key)
+	{
+		File file = getFile(key);
+		if(!file.exists()) return null;
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+		{
+			if(in.readInt() != FORMAT_VERSION) return null;
+			// different keys may have the same hash
+			if(!in.readUTF().equals(key)) return null;
+			String eTag = in.readBoolean() ? in.readUTF() : null;
+			String lastModified = in.readBoolean() ? in.readUTF() : null;
+			long expiresAt = in.readLong();
+			byte[] body = new byte[in.readInt()];
+			in.readFully(body);
+			// the modification time is the time of last use
+			file.setLastModified(System.currentTimeMillis());
+			return new CachedResponse(body, eTag, lastModified, expiresAt);
+		}
+		catch(IOException e)
+		{
+			return null;
+		}
+	}
+
+	@Override public synchronized void put(String key, CachedResponse response)
+	{
+		remove(key);
+		if(response.getBody().length > maxEntrySize) return;
+
+		File file = getFile(key);
+		File temp = new File(directory, file.getName() + ".tmp");
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+		{
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(key);
+			writeNullableUTF(out, response.getETag());
+			writeNullableUTF(out, response.getLastModified());
+			out.writeLong(response.getExpiresAt());
+			out.writeInt(response.getBody().length);
+			out.write(response.getBody());
+		}
+		catch(IOException e)
+		{
+			temp.delete();
+			return;
+		}
+		if(!temp.renameTo(file))
+		{
+			temp.delete();
+			return;
+		}
+		size += file.length();
+		if(size > maxSize) trim();
+	}
+
+	@Override public synchronized void remove(String key)
+	{
+		File file = getFile(key);
+		long length = file.length();
+		if(file.delete()) size -= length;
+	}
+
+	@Override public int getMaxEntrySize()
+	{
+		return maxEntrySize;
+	}
+
+	/** @return size in bytes of all files together */
+	public synchronized long getSize()
+	{
+		return size;
+	}
+
+	/* delete the least recently used files until the size is within bounds again */
+	private void trim()
+	{
+		File[] files = listFiles();
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (File file : files)
+		{
+			if(size <= maxSize) break;
+			long length = file.length();
+			if(file.delete()) size -= length;
+		}
+	}
+
+	private File[] listFiles()
+	{
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		return files != null ? files : new File[0];
+	}
+
+	private File getFile(String key)
+	{
+		return new File(directory, Sha256.hex(key) + SUFFIX);
+	}
+
+	private static void writeNullableUTF(DataOutputStream out, String value) throws IOException
+	{
+		out.writeBoolean(value != null);
+		if(value != null) out.writeUTF(value);
+	}
+}
@@ -0,0 +1,48 @@
+package de.westnordost.osmapi.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Reads exactly the given number of bytes from the underlying stream, as given by the
+ *  Content-Length of a HTTP response. Does not close the underlying stream. */
+class FixedLengthInputStream extends InputStream
+{
+	private final InputStream in;
+	private long remaining;
+
+	FixedLengthInputStream(InputStream in, long length)
+	{
+		this.in = in;
+		this.remaining = length;
+	}
+
+	@Override public int read() throws IOException
+	{
+		if(remaining == 0) return -1;
+		int result = in.read();
+		if(result == -1) throw new EOFException("Unexpected end of stream, " + remaining + " bytes missing");
+		remaining--;
+		return result;
+	}
+
+	@Override public int read(byte[] b, int off, int len) throws IOException
+	{
+		if(remaining == 0) return -1;
+		if(len == 0) return 0;
+		int result = in.read(b, off, (int) Math.min(len, remaining));
+		if(result == -1) throw new EOFException("Unexpected end of stream, " + remaining + " bytes missing");
+		remaining -= result;
+		return result;
+	}
+
+	@Override public int available() throws IOException
+	{
+		return (int) Math.min(in.available(), remaining);
+	}
+
+	@Override public void close()
+	{
+		// the underlying stream belongs to the connection
+	}
+}
@@ -0,0 +1,22 @@
+package de.westnordost.osmapi.http;
+
+/** Stores responses of the server so that they need not be transferred again, see
+ *  {@link de.westnordost.osmapi.OsmConnection#setResponseCache(HttpCache)}. The keys identify the
+ *  request, i.e. the URL plus the identity of the user the request was made as.
+ *  <br><br>
+ *  Implementations must be thread safe. */
+public interface HttpCache
+{
+	/** @return the response stored for the given key or null if there is none */
+	CachedResponse get(String key);
+
+	/** Store the given response for the given key, replacing any response stored before */
+	void put(String key, CachedResponse response);
+
+	/** Remove the response stored for the given key, if any */
+	void remove(String key);
+
+	/** @return maximum size in bytes of a response body to store. Larger responses are not
+	 *          stored */
+	int getMaxEntrySize();
+}
@@ -0,0 +1,69 @@
+package de.westnordost.osmapi.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+
+/** A single HTTP request and its response, opened by a {@link HttpTransport}. The methods are
+ *  named like those of HttpURLConnection and behave the same: The request (method, properties and
+ *  payload) must be set up completely before any of the response methods is called.
+ *  <br><br>
+ *  A call is not thread safe and must always be closed after use. */
+public interface HttpCall
+{
+	/** @return the URL this call is made to */
+	URL getURL();
+
+	/** Set the HTTP method. Defaults to "GET" */
+	void setRequestMethod(String method) throws IOException;
+
+	/** Set a request header */
+	void setRequestProperty(String key, String value);
+
+	/** Stream the request payload with chunked transfer encoding while it is written instead of
+	 *  buffering it completely in order to send its length first. Must be called before
+	 *  {@link #getOutputStream()} */
+	void setChunkedStreamingMode();
+
+	/** @return the stream to write the request payload into */
+	OutputStream getOutputStream() throws IOException;
+
+	/** @return the HTTP status code of the response */
+	int getResponseCode() throws IOException;
+
+	/** @return the HTTP status message of the response or null if there is none */
+	String getResponseMessage() throws IOException;
+
+	/** @param name name of the header field, case insensitive
+	 *  @return the value of the given response header field or null if it was not sent */
+	String getHeaderField(String name) throws IOException;
+
+	/** @return the body of a successful response
+	 *  @throws IOException if the server responded with an error */
+	InputStream getInputStream() throws IOException;
+
+	/** @return the body of an error response or null if the server did not respond with an error
+	 *          or did not send any body */
+	InputStream getErrorStream() throws IOException;
+
+	/** @return nanoseconds it took to establish the connection for this call, 0 if an existing
+	 *          connection was reused or -1 if not known. Only valid once the call has been
+	 *          executed */
+	default long getConnectTime()
+	{
+		return -1;
+	}
+
+	/** @return nanoseconds the TLS handshake for this call took, 0 if there was none or -1 if not
+	 *          known. Only valid once the call has been executed */
+	default long getHandshakeTime()
+	{
+		return -1;
+	}
+
+	/** Release any resources held by this call. Depending on the transport, the underlying
+	 *  connection is closed or kept for reuse. If the request has not been completed yet, i.e. the
+	 *  output stream has not been closed, it is aborted without completing the payload. */
+	void close();
+}
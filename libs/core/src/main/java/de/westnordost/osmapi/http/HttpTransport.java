@@ -0,0 +1,21 @@
+package de.westnordost.osmapi.http;
+
+import java.io.IOException;
+import java.net.URL;
+
+/** Opens the HTTP calls through which the OsmConnection talks to the server.<br>
+ *  The default is {@link HttpUrlConnectionTransport}, which behaves like a plain
+ *  HttpURLConnection. Use {@link PooledHttpTransport} to keep connections alive between calls.
+ *  <br><br>
+ *  Implementations must be thread safe. */
+public interface HttpTransport
+{
+	/** Open a new call to the given URL. No data is sent to the server before the response of the
+	 *  returned call is queried.
+	 *
+	 * @param url the URL to make the call to
+	 * @param timeout connect and read timeout in milliseconds
+	 * @return a new, not yet executed call
+	 */
+	HttpCall open(URL url, int timeout) throws IOException;
+}
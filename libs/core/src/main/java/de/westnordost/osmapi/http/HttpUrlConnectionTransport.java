@@ -0,0 +1,88 @@
+package de.westnordost.osmapi.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/** Transport based on a plain HttpURLConnection. Every call opens a new connection which is
+ *  disconnected again once the call is closed. This is the default transport. */
+public class HttpUrlConnectionTransport implements HttpTransport
+{
+	@Override
+	public HttpCall open(URL url, int timeout) throws IOException
+	{
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setConnectTimeout(timeout);
+		connection.setReadTimeout(timeout);
+
+		// default is method=GET, doInput=true, doOutput=false
+
+		return new Call(connection);
+	}
+
+	private static class Call implements HttpCall
+	{
+		private final HttpURLConnection connection;
+
+		Call(HttpURLConnection connection)
+		{
+			this.connection = connection;
+		}
+
+		@Override public URL getURL() { return connection.getURL(); }
+
+		@Override public void setRequestMethod(String method) throws IOException
+		{
+			connection.setRequestMethod(method);
+		}
+
+		@Override public void setRequestProperty(String key, String value)
+		{
+			connection.setRequestProperty(key, value);
+		}
+
+		@Override public void setChunkedStreamingMode()
+		{
+			// 0 = default chunk length
+			connection.setChunkedStreamingMode(0);
+		}
+
+		@Override public OutputStream getOutputStream() throws IOException
+		{
+			connection.setDoOutput(true);
+			return connection.getOutputStream();
+		}
+
+		@Override public int getResponseCode() throws IOException
+		{
+			return connection.getResponseCode();
+		}
+
+		@Override public String getResponseMessage() throws IOException
+		{
+			return connection.getResponseMessage();
+		}
+
+		@Override public String getHeaderField(String name)
+		{
+			return connection.getHeaderField(name);
+		}
+
+		@Override public InputStream getInputStream() throws IOException
+		{
+			return connection.getInputStream();
+		}
+
+		@Override public InputStream getErrorStream()
+		{
+			return connection.getErrorStream();
+		}
+
+		@Override public void close()
+		{
+			connection.disconnect();
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package de.westnordost.osmapi.http;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Keeps responses in memory. When the bodies of all stored responses take more than the given
+ *  size, the least recently used are removed. */
+public class MemoryHttpCache implements HttpCache
+{
+	private final long maxSize;
+	private final int maxEntrySize;
+
+	/* in order of access, least recently used first */
+	private final LinkedHashMap<String, CachedResponse> responses = new LinkedHashMap<>(16, 0.75f, true);
+	private long size;
+
+	/**
+	 * @param maxSize maximum size in bytes of the bodies of all stored responses together
+	 * @param maxEntrySize maximum size in bytes of the body of one stored response
+	 */
+	public MemoryHttpCache(long maxSize, int maxEntrySize)
+	{
+		if(maxSize <= 0 || maxEntrySize <= 0) throw new IllegalArgumentException("Sizes must be positive");
+		this.maxSize = maxSize;
+		this.maxEntrySize = maxEntrySize;
+	}
+
+	/** @param maxSize maximum size in bytes of the bodies of all stored responses together. One
+	 *                 response may take at most a tenth of it */
+	public MemoryHttpCache(long maxSize)
+	{
+		this(maxSize, (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxSize / 10)));
+	}
+
+	@Override public synchronized CachedResponse get(String key)
+	{
+		return responses.get(key);
+	}
+
+	@Override public synchronized void put(String key, CachedResponse response)
+	{
+		remove(key);
+		if(response.getBody().length > maxEntrySize) return;
+		responses.put(key, response);
+		size += response.getBody().length;
+
+		Iterator<Map.Entry<String, CachedResponse>> it = responses.entrySet().iterator();
+		while(size > maxSize && it.hasNext())
+		{
+			size -= it.next().getValue().getBody().length;
+			it.remove();
+		}
+	}
+
+	@Override public synchronized void remove(String key)
+	{
+		CachedResponse response = responses.remove(key);
+		if(response != null) size -= response.getBody().length;
+	}
+
+	@Override public int getMaxEntrySize()
+	{
+		return maxEntrySize;
+	}
+
+	/** @return size in bytes of the bodies of all stored responses together */
+	public synchronized long getSize()
+	{
+		return size;
+	}
+}
@@ -0,0 +1,451 @@
+package de.westnordost.osmapi.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** A HTTP/1.1 call on a connection of the {@link PooledHttpTransport} */
+class PooledHttpCall implements HttpCall
+{
+	private static final int MAX_LINE_LENGTH = 64 * 1024;
+	/** a response body that has not been read until the end is read and discarded up to this many
+	 *  bytes on close in order to be able to reuse the connection */
+	private static final int MAX_DRAIN_LENGTH = 64 * 1024;
+
+	private final PooledHttpTransport transport;
+	private final URL url;
+	private final int timeout;
+
+	private String method = "GET";
+	private final Map<String, String> requestProperties = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	private ByteArrayOutputStream payload;
+	private boolean chunkedStreaming;
+	private ChunkedOutputStream streamingPayload;
+
+	private PooledHttpTransport.Connection connection;
+	private boolean executed;
+	private boolean responseStarted;
+	private int responseCode = -1;
+	private String responseMessage;
+	private final Map<String, String> responseHeaders = new HashMap<>();
+	private InputStream body;
+	private boolean bodyComplete;
+	private boolean keepAlive;
+	private boolean released;
+	private long connectTime = -1;
+	private long handshakeTime = -1;
+
+	PooledHttpCall(PooledHttpTransport transport, URL url, int timeout)
+	{
+		this.transport = transport;
+		this.url = url;
+		this.timeout = timeout;
+	}
+
+	@Override public URL getURL()
+	{
+		return url;
+	}
+
+	@Override public void setRequestMethod(String method) throws IOException
+	{
+		if(connection != null) throw new ProtocolException("Already connected");
+		this.method = method;
+	}
+
+	@Override public void setRequestProperty(String key, String value)
+	{
+		if(connection != null) throw new IllegalStateException("Already connected");
+		requestProperties.put(key, value);
+	}
+
+	@Override public void setChunkedStreamingMode()
+	{
+		if(connection != null) throw new IllegalStateException("Already connected");
+		chunkedStreaming = true;
+	}
+
+	@Override public OutputStream getOutputStream() throws IOException
+	{
+		if(executed) throw new ProtocolException("Cannot write output after reading input");
+		if(chunkedStreaming)
+		{
+			if(streamingPayload == null) startStreaming();
+			return streamingPayload;
+		}
+		if(payload == null) payload = new ByteArrayOutputStream();
+		return payload;
+	}
+
+	@Override public int getResponseCode() throws IOException
+	{
+		execute();
+		return responseCode;
+	}
+
+	@Override public String getResponseMessage() throws IOException
+	{
+		execute();
+		return responseMessage;
+	}
+
+	@Override public String getHeaderField(String name) throws IOException
+	{
+		execute();
+		return responseHeaders.get(name.toLowerCase(Locale.UK));
+	}
+
+	@Override public InputStream getInputStream() throws IOException
+	{
+		execute();
+		if(responseCode >= 400)
+		{
+			throw new IOException("Server returned HTTP response code: " + responseCode + " for URL: " + url);
+		}
+		return body;
+	}
+
+	@Override public InputStream getErrorStream()
+	{
+		if(responseCode < 400) return null;
+		return body;
+	}
+
+	@Override public long getConnectTime()
+	{
+		return connectTime;
+	}
+
+	@Override public long getHandshakeTime()
+	{
+		return handshakeTime;
+	}
+
+	@Override public void close()
+	{
+		if(connection == null || released) return;
+
+		if(!bodyComplete && keepAlive)
+		{
+			drainBody();
+		}
+		release(keepAlive && bodyComplete);
+	}
+
+	private void startStreaming() throws IOException
+	{
+		setConnection(transport.acquire(url, timeout));
+		try
+		{
+			/* there is no retry if the connection turns out to be closed by the server once the
+			   payload is streamed, so check that before */
+			if(connection.reused && connection.isStale())
+			{
+				setConnection(transport.reconnect(connection, url, timeout));
+			}
+			writeHead(connection.out);
+			streamingPayload = new ChunkedOutputStream(connection.out);
+		}
+		catch(IOException | RuntimeException e)
+		{
+			release(false);
+			throw e;
+		}
+	}
+
+	private void execute() throws IOException
+	{
+		if(executed) return;
+		executed = true;
+
+		if(chunkedStreaming)
+		{
+			try
+			{
+				if(streamingPayload == null) startStreaming();
+				streamingPayload.close();
+				readResponseHead();
+			}
+			catch(IOException | RuntimeException e)
+			{
+				release(false);
+				throw e;
+			}
+			return;
+		}
+
+		setConnection(transport.acquire(url, timeout));
+		try
+		{
+			try
+			{
+				exchange();
+			}
+			catch(IOException e)
+			{
+				/* a connection that has been kept alive may have been closed by the server in the
+				   meantime. Only safe to retry if the server did not receive the request */
+				if(!connection.reused || responseStarted || !isIdempotent()) throw e;
+
+				setConnection(transport.reconnect(connection, url, timeout));
+				exchange();
+			}
+		}
+		catch(IOException | RuntimeException e)
+		{
+			release(false);
+			throw e;
+		}
+	}
+
+	private boolean isIdempotent()
+	{
+		return method.equals("GET") || method.equals("HEAD");
+	}
+
+	private void exchange() throws IOException
+	{
+		OutputStream out = connection.out;
+		writeHead(out);
+		if(payload != null) payload.writeTo(out);
+		out.flush();
+
+		readResponseHead();
+	}
+
+	private void writeHead(OutputStream out) throws IOException
+	{
+		StringBuilder head = new StringBuilder();
+		head.append(method).append(' ').append(getRequestTarget()).append(" HTTP/1.1\r\n");
+		appendHeader(head, "Host", getHostHeader());
+		for (Map.Entry<String, String> property : requestProperties.entrySet())
+		{
+			appendHeader(head, property.getKey(), property.getValue());
+		}
+		if(chunkedStreaming)
+		{
+			appendHeader(head, "Transfer-Encoding", "chunked");
+		}
+		else if(payload != null || method.equals("POST") || method.equals("PUT"))
+		{
+			appendHeader(head, "Content-Length", String.valueOf(payload != null ? payload.size() : 0));
+		}
+		head.append("\r\n");
+
+		out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	private void readResponseHead() throws IOException
+	{
+		InputStream in = connection.in;
+		String version;
+		// skip any informational 1xx responses
+		do
+		{
+			String statusLine = readLine(in);
+			responseStarted = true;
+			int firstSpace = statusLine.indexOf(' ');
+			if(!statusLine.startsWith("HTTP/") || firstSpace == -1 || statusLine.length() < firstSpace + 4)
+			{
+				throw new ProtocolException("Invalid status line: " + statusLine);
+			}
+			version = statusLine.substring(0, firstSpace);
+			try
+			{
+				responseCode = Integer.parseInt(statusLine.substring(firstSpace + 1, firstSpace + 4));
+			}
+			catch(NumberFormatException e)
+			{
+				throw new ProtocolException("Invalid status line: " + statusLine);
+			}
+			String message = statusLine.substring(firstSpace + 4).trim();
+			responseMessage = message.isEmpty() ? null : message;
+
+			responseHeaders.clear();
+			readHeaders(in);
+		}
+		while(responseCode >= 100 && responseCode < 200);
+
+		String connectionHeader = responseHeaders.get("connection");
+		if(version.equals("HTTP/1.0"))
+		{
+			keepAlive = connectionHeader != null && connectionHeader.equalsIgnoreCase("keep-alive");
+		}
+		else
+		{
+			keepAlive = connectionHeader == null || !connectionHeader.equalsIgnoreCase("close");
+		}
+
+		String transferEncoding = responseHeaders.get("transfer-encoding");
+		String contentLength = responseHeaders.get("content-length");
+		InputStream framedBody;
+		if(method.equals("HEAD") || responseCode == 204 || responseCode == 304)
+		{
+			framedBody = new ByteArrayInputStream(new byte[0]);
+		}
+		else if(transferEncoding != null && transferEncoding.toLowerCase(Locale.UK).contains("chunked"))
+		{
+			framedBody = new ChunkedInputStream(in);
+		}
+		else if(contentLength != null)
+		{
+			try
+			{
+				framedBody = new FixedLengthInputStream(in, Long.parseLong(contentLength.trim()));
+			}
+			catch(NumberFormatException e)
+			{
+				throw new ProtocolException("Invalid Content-Length: " + contentLength);
+			}
+		}
+		else
+		{
+			// body is delimited by the server closing the connection
+			framedBody = in;
+			keepAlive = false;
+		}
+		body = new ResponseBodyInputStream(framedBody);
+	}
+
+	private void readHeaders(InputStream in) throws IOException
+	{
+		while(true)
+		{
+			String line = readLine(in);
+			if(line.isEmpty()) break;
+			int colon = line.indexOf(':');
+			if(colon == -1) continue;
+
+			String name = line.substring(0, colon).trim().toLowerCase(Locale.UK);
+			String value = line.substring(colon + 1).trim();
+			String previous = responseHeaders.get(name);
+			responseHeaders.put(name, previous != null ? previous + ", " + value : value);
+		}
+	}
+
+	private String getRequestTarget()
+	{
+		String file = url.getFile();
+		return file.isEmpty() ? "/" : file;
+	}
+
+	private String getHostHeader()
+	{
+		int port = url.getPort();
+		if(port == -1 || port == url.getDefaultPort()) return url.getHost();
+		return url.getHost() + ":" + port;
+	}
+
+	private static void appendHeader(StringBuilder head, String key, String value)
+	{
+		head.append(key).append(": ").append(value).append("\r\n");
+	}
+
+	private void drainBody()
+	{
+		try
+		{
+			byte[] buffer = new byte[4096];
+			int drained = 0;
+			while(drained <= MAX_DRAIN_LENGTH)
+			{
+				int length = body.read(buffer);
+				if(length == -1) return;
+				drained += length;
+			}
+		}
+		catch(IOException ignore) { }
+	}
+
+	private void setConnection(PooledHttpTransport.Connection connection)
+	{
+		this.connection = connection;
+		// a reused connection did not need to be established for this call
+		connectTime = connection.reused ? 0 : connection.connectTime;
+		handshakeTime = connection.reused ? 0 : connection.handshakeTime;
+	}
+
+	private void release(boolean reusable)
+	{
+		if(released) return;
+		released = true;
+		transport.release(connection, reusable);
+	}
+
+	/** @return the next line (without the line break) from the given stream
+	 *  @throws EOFException if the stream ended before a line break */
+	static String readLine(InputStream in) throws IOException
+	{
+		StringBuilder line = new StringBuilder();
+		while(true)
+		{
+			int c = in.read();
+			if(c == -1) throw new EOFException("Connection closed by server");
+			if(c == '\n') break;
+			if(line.length() >= MAX_LINE_LENGTH) throw new ProtocolException("Line too long");
+			line.append((char) c);
+		}
+		int length = line.length();
+		if(length > 0 && line.charAt(length - 1) == '\r') line.setLength(length - 1);
+		return line.toString();
+	}
+
+	/** Notices when the response body has been read completely and releases the connection once
+	 *  it is closed. Never closes the underlying stream itself. */
+	private class ResponseBodyInputStream extends FilterInputStream
+	{
+		ResponseBodyInputStream(InputStream in)
+		{
+			super(in);
+		}
+
+		@Override public int read() throws IOException
+		{
+			if(released) return -1;
+			int result = in.read();
+			if(result == -1) bodyComplete = true;
+			return result;
+		}
+
+		@Override public int read(byte[] b, int off, int len) throws IOException
+		{
+			if(released) return -1;
+			int result = in.read(b, off, len);
+			if(result == -1) bodyComplete = true;
+			return result;
+		}
+
+		@Override public long skip(long n) throws IOException
+		{
+			if(released) return 0;
+			return in.skip(n);
+		}
+
+		@Override public int available() throws IOException
+		{
+			if(released) return 0;
+			return in.available();
+		}
+
+		@Override public boolean markSupported()
+		{
+			return false;
+		}
+
+		@Override public void close()
+		{
+			PooledHttpCall.this.close();
+		}
+	}
+}
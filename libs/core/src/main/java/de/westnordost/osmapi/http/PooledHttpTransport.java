@@ -0,0 +1,366 @@
+package de.westnordost.osmapi.http;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/** Transport that keeps connections alive after a call has been completed, so that subsequent
+ *  calls to the same host neither need to establish a new TCP connection nor do the TLS handshake
+ *  again.
+ *  <br><br>
+ *  It speaks HTTP/1.1 directly over sockets. Redirects are not followed and proxies are not
+ *  supported. Request payloads are buffered in memory before they are sent, same as
+ *  HttpURLConnection does by default, unless chunked streaming mode is set.
+ *  <br><br>
+ *  The number of connections to one host is limited, calls that would exceed this limit wait
+ *  (at most for the timeout) until another call to that host is closed. Connections that have
+ *  been idle for longer than the idle timeout are closed.
+ *  <br><br>
+ *  A connection can only be reused if the response body has been read until the end, so always
+ *  consume and close the response. */
+public class PooledHttpTransport implements HttpTransport
+{
+	private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+	private static final long DEFAULT_IDLE_TIMEOUT = 30 * 1000;
+
+	private final int maxConnectionsPerHost;
+	private final long idleTimeout;
+	private final SSLSocketFactory sslSocketFactory;
+
+	private final Map<String, HostPool> pools = new HashMap<>();
+	private final AtomicLong openedConnectionsCount = new AtomicLong();
+
+	/**
+	 * @param maxConnectionsPerHost maximum number of connections that are open to one host at the
+	 *                              same time. Defaults to 4.
+	 * @param idleTimeout time in milliseconds after which a connection that has not been used is
+	 *                    closed. Defaults to 30 seconds.
+	 */
+	public PooledHttpTransport(int maxConnectionsPerHost, long idleTimeout)
+	{
+		if(maxConnectionsPerHost < 1)
+		{
+			throw new IllegalArgumentException("maxConnectionsPerHost must be at least 1");
+		}
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+		this.idleTimeout = idleTimeout;
+		this.sslSocketFactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+	}
+
+	/** @see #PooledHttpTransport(int, long) */
+	public PooledHttpTransport()
+	{
+		this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_IDLE_TIMEOUT);
+	}
+
+	@Override
+	public HttpCall open(URL url, int timeout) throws IOException
+	{
+		String protocol = url.getProtocol();
+		if(!protocol.equals("http") && !protocol.equals("https"))
+		{
+			throw new MalformedURLException("Unsupported protocol: " + protocol);
+		}
+		return new PooledHttpCall(this, url, timeout);
+	}
+
+	public int getMaxConnectionsPerHost()
+	{
+		return maxConnectionsPerHost;
+	}
+
+	public long getIdleTimeout()
+	{
+		return idleTimeout;
+	}
+
+	/** @return number of connections that have been established so far */
+	public long getOpenedConnectionsCount()
+	{
+		return openedConnectionsCount.get();
+	}
+
+	/** @return number of connections that are currently idle and kept alive for reuse */
+	public synchronized int getIdleConnectionsCount()
+	{
+		int result = 0;
+		for (HostPool pool : pools.values())
+		{
+			result += pool.idle.size();
+		}
+		return result;
+	}
+
+	/** Close all idle connections. Connections currently in use are not affected. */
+	public void evictAll()
+	{
+		List<Connection> evicted = new ArrayList<>();
+		synchronized(this)
+		{
+			for (HostPool pool : pools.values())
+			{
+				evicted.addAll(pool.idle);
+				pool.idle.clear();
+			}
+		}
+		closeAll(evicted);
+	}
+
+	Connection acquire(URL url, int timeout) throws IOException
+	{
+		String key = getKey(url);
+		HostPool pool;
+		synchronized(this)
+		{
+			pool = pools.get(key);
+			if(pool == null)
+			{
+				pool = new HostPool(maxConnectionsPerHost);
+				pools.put(key, pool);
+			}
+		}
+
+		acquirePermit(pool, key, timeout);
+		try
+		{
+			Connection connection = takeIdle(pool);
+			if(connection == null)
+			{
+				connection = connect(key, url, timeout);
+			}
+			connection.socket.setSoTimeout(timeout);
+			return connection;
+		}
+		catch(IOException | RuntimeException e)
+		{
+			pool.permits.release();
+			throw e;
+		}
+	}
+
+	/** Replace a connection that turned out to be closed by the server by a new one */
+	Connection reconnect(Connection stale, URL url, int timeout) throws IOException
+	{
+		stale.close();
+		return connect(stale.key, url, timeout);
+	}
+
+	void release(Connection connection, boolean reusable)
+	{
+		HostPool pool;
+		List<Connection> evicted;
+		synchronized(this)
+		{
+			pool = pools.get(connection.key);
+			if(reusable)
+			{
+				connection.idleSince = System.currentTimeMillis();
+				pool.idle.addLast(connection);
+			}
+			evicted = removeExpired();
+		}
+		if(!reusable) connection.close();
+		pool.permits.release();
+		closeAll(evicted);
+	}
+
+	private static void acquirePermit(HostPool pool, String key, int timeout) throws IOException
+	{
+		try
+		{
+			if(timeout == 0)
+			{
+				pool.permits.acquire();
+			}
+			else if(!pool.permits.tryAcquire(timeout, TimeUnit.MILLISECONDS))
+			{
+				throw new SocketTimeoutException("Timed out waiting for a free connection to " + key);
+			}
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	private Connection takeIdle(HostPool pool)
+	{
+		Connection result;
+		List<Connection> evicted;
+		synchronized(this)
+		{
+			evicted = removeExpired();
+			result = pool.idle.pollLast();
+		}
+		closeAll(evicted);
+		if(result != null) result.reused = true;
+		return result;
+	}
+
+	private List<Connection> removeExpired()
+	{
+		List<Connection> result = new ArrayList<>();
+		long now = System.currentTimeMillis();
+		for (HostPool pool : pools.values())
+		{
+			Iterator<Connection> it = pool.idle.iterator();
+			while(it.hasNext())
+			{
+				Connection connection = it.next();
+				if(now - connection.idleSince > idleTimeout)
+				{
+					it.remove();
+					result.add(connection);
+				}
+			}
+		}
+		return result;
+	}
+
+	private Connection connect(String key, URL url, int timeout) throws IOException
+	{
+		String host = url.getHost();
+		int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+
+		Socket socket = new Socket();
+		long connectTime, handshakeTime = 0;
+		try
+		{
+			long start = System.nanoTime();
+			socket.connect(new InetSocketAddress(host, port), timeout);
+			connectTime = System.nanoTime() - start;
+			socket.setTcpNoDelay(true);
+			if(url.getProtocol().equals("https"))
+			{
+				start = System.nanoTime();
+				SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket(socket, host, port, true);
+				SSLParameters params = sslSocket.getSSLParameters();
+				params.setEndpointIdentificationAlgorithm("HTTPS");
+				sslSocket.setSSLParameters(params);
+				sslSocket.startHandshake();
+				handshakeTime = System.nanoTime() - start;
+				socket = sslSocket;
+			}
+		}
+		catch(IOException e)
+		{
+			socket.close();
+			throw e;
+		}
+		openedConnectionsCount.incrementAndGet();
+		Connection connection = new Connection(key, socket);
+		connection.connectTime = connectTime;
+		connection.handshakeTime = handshakeTime;
+		return connection;
+	}
+
+	private static String getKey(URL url)
+	{
+		int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+		return url.getProtocol() + "://" + url.getHost().toLowerCase(Locale.UK) + ":" + port;
+	}
+
+	private static void closeAll(List<Connection> connections)
+	{
+		for (Connection connection : connections)
+		{
+			connection.close();
+		}
+	}
+
+	private static class HostPool
+	{
+		final Semaphore permits;
+		final ArrayDeque<Connection> idle = new ArrayDeque<>();
+
+		HostPool(int maxConnections)
+		{
+			permits = new Semaphore(maxConnections, true);
+		}
+	}
+
+	static class Connection
+	{
+		final String key;
+		final Socket socket;
+		final InputStream in;
+		final OutputStream out;
+
+		long idleSince;
+		boolean reused;
+		/** nanoseconds it took to establish the TCP connection and to do the TLS handshake */
+		long connectTime;
+		long handshakeTime;
+
+		Connection(String key, Socket socket) throws IOException
+		{
+			this.key = key;
+			this.socket = socket;
+			this.in = new BufferedInputStream(socket.getInputStream());
+			this.out = new BufferedOutputStream(socket.getOutputStream());
+		}
+
+		/** @return whether the server has closed this connection in the meantime. Must only be
+		 *  called on a connection that is not in use */
+		boolean isStale()
+		{
+			try
+			{
+				int timeout = socket.getSoTimeout();
+				try
+				{
+					socket.setSoTimeout(1);
+					in.mark(1);
+					if(in.read() == -1) return true;
+					// the server should not send anything unsolicited
+					in.reset();
+					return true;
+				}
+				finally
+				{
+					socket.setSoTimeout(timeout);
+				}
+			}
+			catch(SocketTimeoutException e)
+			{
+				return false;
+			}
+			catch(IOException e)
+			{
+				return true;
+			}
+		}
+
+		void close()
+		{
+			try
+			{
+				socket.close();
+			}
+			catch(IOException ignore) { }
+		}
+	}
+}
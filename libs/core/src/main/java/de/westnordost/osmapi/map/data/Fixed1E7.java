@@ -7,10 +7,90 @@ public class Fixed1E7
 {
 	private static final int DECIMAL_PLACES = 7;
 	private static final int FIXED = (int) Math.pow(10, DECIMAL_PLACES);
+	/* the largest absolute value of a coordinate. A fixed 1E7 int could hold up to ~214.7 */
+	private static final int MAX_COORDINATE = 180;
+	private static final int MAX_FIXED_COORDINATE = MAX_COORDINATE * FIXED;
 
+	/** Parses a decimal number like "-12.3456789" directly into a fixed 1E7 int. Decimal places
+	 *  beyond the seventh are rounded like doubleToFixed does. Anything else than a plain decimal
+	 *  number (exponents etc.) is parsed via Double.parseDouble.
+	 *
+	 *  @throws NumberFormatException if the string is not a number or is not within -180 and 180,
+	 *                                i.e. not a coordinate */
 	public static int parseFixed(String str)
 	{
-		return doubleToFixed(Double.parseDouble(str));
+		int length = str.length();
+		int i = 0;
+		boolean negative = false;
+		if(length > 0)
+		{
+			char first = str.charAt(0);
+			if(first == '-' || first == '+')
+			{
+				negative = first == '-';
+				i++;
+			}
+		}
+
+		int result = 0;
+		int integerDigits = 0;
+		for (; i < length; i++)
+		{
+			char c = str.charAt(i);
+			if(c == '.') break;
+			if(c < '0' || c > '9') return parseFixedSlow(str);
+			integerDigits++;
+			result = result * 10 + (c - '0');
+			// also guards the following multiplications against overflow
+			if(result > MAX_COORDINATE) throw outOfRange(str);
+		}
+
+		int decimalDigits = 0;
+		if(i < length) i++; // skip '.'
+		for (; i < length && decimalDigits < DECIMAL_PLACES; i++, decimalDigits++)
+		{
+			char c = str.charAt(i);
+			if(c < '0' || c > '9') return parseFixedSlow(str);
+			result = result * 10 + (c - '0');
+		}
+		if(integerDigits == 0 && decimalDigits == 0) return parseFixedSlow(str);
+		for (; decimalDigits < DECIMAL_PLACES; decimalDigits++)
+		{
+			result *= 10;
+		}
+
+		// round the remaining decimal places half up, like Math.round
+		if(i < length)
+		{
+			char c = str.charAt(i++);
+			if(c < '0' || c > '9') return parseFixedSlow(str);
+			boolean moreThanHalf = c > '5';
+			boolean half = c == '5';
+			for (; i < length; i++)
+			{
+				char d = str.charAt(i);
+				if(d < '0' || d > '9') return parseFixedSlow(str);
+				if(d != '0') moreThanHalf |= half;
+			}
+			if(moreThanHalf || (half && !negative)) result++;
+		}
+		if(result > MAX_FIXED_COORDINATE) throw outOfRange(str);
+		return negative ? -result : result;
+	}
+
+	private static int parseFixedSlow(String str)
+	{
+		double value = Double.parseDouble(str);
+		// also catches NaN and infinity
+		if(!(Math.abs(value) <= MAX_COORDINATE)) throw outOfRange(str);
+		int result = doubleToFixed(value);
+		if(Math.abs(result) > MAX_FIXED_COORDINATE) throw outOfRange(str);
+		return result;
+	}
+
+	private static NumberFormatException outOfRange(String str)
+	{
+		return new NumberFormatException("Not a coordinate: \"" + str + "\"");
 	}
 
 	public static int intToFixed(int n)
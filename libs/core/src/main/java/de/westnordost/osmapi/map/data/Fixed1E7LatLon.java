@@ -29,6 +29,22 @@ public class Fixed1E7LatLon implements LatLon, Serializable
 		this.longitude = Fixed1E7.doubleToFixed(longitude);
 	}
 
+	private Fixed1E7LatLon(int latitude, int longitude)
+	{
+		this.latitude = latitude;
+		this.longitude = longitude;
+	}
+
+	/** @param latitude latitude in fixed 1E7
+	 *  @param longitude longitude in fixed 1E7
+	 *  @throws IllegalArgumentException if the given latitude and longitude do not make up a valid
+	 *          position*/
+	public static Fixed1E7LatLon fromFixed1E7(int latitude, int longitude)
+	{
+		LatLons.checkValidity(Fixed1E7.toDouble(latitude), Fixed1E7.toDouble(longitude));
+		return new Fixed1E7LatLon(latitude, longitude);
+	}
+
 	@Override
 	public double getLatitude()
 	{
@@ -0,0 +1,129 @@
+package de.westnordost.osmapi.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counts how often values within certain ranges were recorded, e.g. durations in nanoseconds, so
+ *  that percentiles can be read without keeping all the values.
+ *  <br><br>
+ *  The ranges (buckets) grow with the values: Each power of two is divided into 16 buckets, so the
+ *  value reported for a percentile is at most 1/16th (6.25%) larger than the actual value.
+ *  Values from 0 up to Long.MAX_VALUE can be recorded, negative values are recorded as 0.
+ *  <br><br>
+ *  Recording is lock-free and can be done from any number of threads at once. Reading while
+ *  values are recorded gives a result that may not include the values recorded at the same time,
+ *  or include them only partly, e.g. in the count but not yet in the buckets. */
+public class Histogram
+{
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** values below 16 get one bucket each, then 16 buckets per power of two up to 2^63 */
+	public static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/** Record the given value */
+	public void record(long value)
+	{
+		if(value < 0) value = 0;
+		buckets.incrementAndGet(getBucketIndex(value));
+		count.increment();
+		sum.add(value);
+		long currentMax;
+		while(value > (currentMax = max.get()))
+		{
+			if(max.compareAndSet(currentMax, value)) break;
+		}
+	}
+
+	/** @return number of values recorded */
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	/** @return sum of all values recorded */
+	public long getSum()
+	{
+		return sum.sum();
+	}
+
+	/** @return largest value recorded or 0 if none was recorded */
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	/** @return average of all values recorded or 0 if none was recorded */
+	public double getMean()
+	{
+		long count = getCount();
+		return count > 0 ? (double) getSum() / count : 0;
+	}
+
+	/** @param percentile share (0..1) of values, e.g. 0.99 for the 99th percentile
+	 *  @return value that the given share of recorded values does not exceed, or 0 if none was
+	 *          recorded */
+	public long getValueAtPercentile(double percentile)
+	{
+		if(percentile < 0 || percentile > 1) throw new IllegalArgumentException("percentile must be within 0..1");
+		long[] counts = getBucketCounts();
+		long total = 0;
+		for (long c : counts)
+		{
+			total += c;
+		}
+		if(total == 0) return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(percentile * total));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++)
+		{
+			seen += counts[i];
+			if(seen >= rank) return Math.min(getBucketUpperBound(i), getMax());
+		}
+		return getMax();
+	}
+
+	/** @return a copy of the number of values recorded in each bucket, for export. The range of
+	 *          each bucket is given by {@link #getBucketLowerBound(int)} and
+	 *          {@link #getBucketUpperBound(int)} */
+	public long[] getBucketCounts()
+	{
+		long[] result = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++)
+		{
+			result[i] = buckets.get(i);
+		}
+		return result;
+	}
+
+	/** @return the smallest value that is recorded in the bucket with the given index */
+	public static long getBucketLowerBound(int index)
+	{
+		if(index < SUB_BUCKETS) return index;
+		int shift = index / SUB_BUCKETS - 1;
+		return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+	}
+
+	/** @return the largest value that is recorded in the bucket with the given index */
+	public static long getBucketUpperBound(int index)
+	{
+		if(index < SUB_BUCKETS) return index;
+		int shift = index / SUB_BUCKETS - 1;
+		return getBucketLowerBound(index) + (1L << shift) - 1;
+	}
+
+	static int getBucketIndex(long value)
+	{
+		if(value < SUB_BUCKETS) return (int) value;
+		// position of the highest bit, at least SUB_BUCKET_BITS
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+}
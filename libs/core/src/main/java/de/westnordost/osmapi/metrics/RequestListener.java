@@ -0,0 +1,12 @@
+package de.westnordost.osmapi.metrics;
+
+/** Is notified of each request made through an OsmConnection once it is finished, see
+ *  {@link de.westnordost.osmapi.OsmConnection#setRequestListener(RequestListener)}.
+ *  <br><br>
+ *  It is called on the thread that made the request, so implementations must be thread safe and
+ *  should return quickly. They must not throw. */
+public interface RequestListener
+{
+	/** Called after the given request has finished, successfully or not */
+	void onRequestFinished(RequestMetrics request);
+}
@@ -0,0 +1,68 @@
+package de.westnordost.osmapi.metrics;
+
+/** Where the time went in one request made through an OsmConnection, how much was transferred and
+ *  how it ended.
+ *  <br><br>
+ *  All times are in nanoseconds. The phases of a request are: sending the request (including the
+ *  payload), waiting for the response (including establishing the connection), transferring the
+ *  response body and parsing it. Transferring and parsing overlap because the body is parsed while
+ *  it is read, so the transfer time is the time spent waiting for data from the server and the
+ *  parse time is the rest. */
+public interface RequestMetrics
+{
+	/** @return the call with ids replaced by placeholders and without the values of the
+	 *          parameters, e.g. "node/{id}", "map?bbox" or "changeset/{id}/upload" */
+	String getEndpoint();
+
+	/** @return the HTTP method, e.g. "GET" */
+	String getMethod();
+
+	/** @return time in milliseconds since epoch when the request was started */
+	long getStartTime();
+
+	/** @return the HTTP status code of the response or -1 if there was no response, i.e. the
+	 *          request failed before or it was answered from the response cache */
+	int getStatusCode();
+
+	/** @return whether the response was taken from the response cache, either without asking
+	 *          the server or after the server confirmed it was unchanged (304) */
+	boolean isFromCache();
+
+	/** @return the exception the request failed with or null if it was successful */
+	Throwable getError();
+
+	/** @return time it took to establish the connection, 0 if an existing connection was reused
+	 *          or -1 if not known. Part of the wait time */
+	long getConnectTime();
+
+	/** @return time the TLS handshake took, 0 if there was none or -1 if not known. Part of the
+	 *          wait time */
+	long getHandshakeTime();
+
+	/** @return time it took to send the request, including writing the payload, if any */
+	long getSendTime();
+
+	/** @return time from after sending the request until the status of the response was
+	 *          received, or -1 if there was no response. Also called time to first byte */
+	long getWaitTime();
+
+	/** @return time spent waiting for the response body to arrive */
+	long getTransferTime();
+
+	/** @return time spent in the response reader, not counting the time spent waiting for the
+	 *          response body to arrive, or -1 if it was not called */
+	long getParseTime();
+
+	/** @return time from start to end of the request */
+	long getTotalTime();
+
+	/** @return number of bytes of request payload sent, as sent over the wire */
+	long getBytesSent();
+
+	/** @return number of bytes of response body received, as sent over the wire, i.e. before
+	 *          decompression */
+	long getBytesReceived();
+
+	/** @return number of bytes of response body after decompression */
+	long getBytesDecoded();
+}
@@ -0,0 +1,173 @@
+package de.westnordost.osmapi.metrics;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Sums up the requests per method and endpoint, e.g. "GET map?bbox", into histograms of their
+ *  timings and counters of their outcomes and sizes, to be polled and exported periodically.
+ *  <br><br>
+ *  Aggregating is lock-free, so it adds little overhead even with many parallel requests. */
+public class RequestMetricsAggregator implements RequestListener
+{
+	private final ConcurrentMap<String, EndpointStatistics> statistics = new ConcurrentHashMap<>();
+
+	@Override public void onRequestFinished(RequestMetrics request)
+	{
+		String key = request.getMethod() + " " + request.getEndpoint();
+		EndpointStatistics endpoint = statistics.get(key);
+		if(endpoint == null)
+		{
+			endpoint = statistics.computeIfAbsent(key, k -> new EndpointStatistics());
+		}
+		endpoint.add(request);
+	}
+
+	/** @return the statistics by method and endpoint, e.g. "GET map?bbox". Sorted by key */
+	public Map<String, EndpointStatistics> getStatistics()
+	{
+		return Collections.unmodifiableMap(new TreeMap<>(statistics));
+	}
+
+	/** Forget everything aggregated so far */
+	public void clear()
+	{
+		statistics.clear();
+	}
+
+	@Override public String toString()
+	{
+		StringBuilder result = new StringBuilder();
+		for (Map.Entry<String, EndpointStatistics> entry : getStatistics().entrySet())
+		{
+			result.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+		}
+		return result.toString();
+	}
+
+	/** Aggregated metrics of the requests to one endpoint. Times are in nanoseconds */
+	public static class EndpointStatistics
+	{
+		private final LongAdder requests = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder cacheHits = new LongAdder();
+		private final LongAdder bytesSent = new LongAdder();
+		private final LongAdder bytesReceived = new LongAdder();
+		private final LongAdder bytesDecoded = new LongAdder();
+		private final ConcurrentMap<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+		private final ConcurrentMap<String, LongAdder> errorTypes = new ConcurrentHashMap<>();
+
+		private final Histogram totalTime = new Histogram();
+		private final Histogram connectTime = new Histogram();
+		private final Histogram waitTime = new Histogram();
+		private final Histogram transferTime = new Histogram();
+		private final Histogram parseTime = new Histogram();
+
+		void add(RequestMetrics request)
+		{
+			requests.increment();
+			if(request.isFromCache()) cacheHits.increment();
+			bytesSent.add(request.getBytesSent());
+			bytesReceived.add(request.getBytesReceived());
+			bytesDecoded.add(request.getBytesDecoded());
+			if(request.getStatusCode() != -1)
+			{
+				increment(statusCodes, request.getStatusCode());
+			}
+			if(request.getError() != null)
+			{
+				errors.increment();
+				increment(errorTypes, request.getError().getClass().getSimpleName());
+			}
+
+			totalTime.record(request.getTotalTime());
+			long connect = request.getConnectTime();
+			long handshake = request.getHandshakeTime();
+			if(connect != -1) connectTime.record(connect + Math.max(0, handshake));
+			if(request.getWaitTime() != -1) waitTime.record(request.getWaitTime());
+			if(request.getParseTime() != -1)
+			{
+				transferTime.record(request.getTransferTime());
+				parseTime.record(request.getParseTime());
+			}
+		}
+
+		private static <K> void increment(ConcurrentMap<K, LongAdder> counters, K key)
+		{
+			LongAdder counter = counters.get(key);
+			if(counter == null) counter = counters.computeIfAbsent(key, k -> new LongAdder());
+			counter.increment();
+		}
+
+		private static <K> Map<K, Long> sum(Map<K, LongAdder> counters)
+		{
+			Map<K, Long> result = new TreeMap<>();
+			for (Map.Entry<K, LongAdder> entry : counters.entrySet())
+			{
+				result.put(entry.getKey(), entry.getValue().sum());
+			}
+			return result;
+		}
+
+		/** @return number of requests */
+		public long getRequests() { return requests.sum(); }
+
+		/** @return number of requests that failed with an exception */
+		public long getErrors() { return errors.sum(); }
+
+		/** @return number of requests answered from the response cache */
+		public long getCacheHits() { return cacheHits.sum(); }
+
+		/** @return number of bytes of request payload sent */
+		public long getBytesSent() { return bytesSent.sum(); }
+
+		/** @return number of bytes of response bodies received, before decompression */
+		public long getBytesReceived() { return bytesReceived.sum(); }
+
+		/** @return number of bytes of response bodies after decompression */
+		public long getBytesDecoded() { return bytesDecoded.sum(); }
+
+		/** @return number of responses by HTTP status code */
+		public Map<Integer, Long> getStatusCodes() { return sum(statusCodes); }
+
+		/** @return number of failed requests by simple class name of the exception */
+		public Map<String, Long> getErrorTypes() { return sum(errorTypes); }
+
+		/** @return time from start to end of the requests */
+		public Histogram getTotalTime() { return totalTime; }
+
+		/** @return time to establish the connection including the TLS handshake, of those
+		 *          requests where it is known */
+		public Histogram getConnectTime() { return connectTime; }
+
+		/** @return time from sending the request until the status of the response was received */
+		public Histogram getWaitTime() { return waitTime; }
+
+		/** @return time spent waiting for the response body to arrive */
+		public Histogram getTransferTime() { return transferTime; }
+
+		/** @return time spent in the response reader apart from waiting for the response body */
+		public Histogram getParseTime() { return parseTime; }
+
+		@Override public String toString()
+		{
+			return getRequests() + " requests, " + getErrors() + " errors, " + getCacheHits() + " from cache, "
+					+ "status " + getStatusCodes()
+					+ ", total p50 " + millis(totalTime.getValueAtPercentile(0.5))
+					+ " p99 " + millis(totalTime.getValueAtPercentile(0.99))
+					+ ", wait p50 " + millis(waitTime.getValueAtPercentile(0.5))
+					+ ", transfer p50 " + millis(transferTime.getValueAtPercentile(0.5))
+					+ ", parse p50 " + millis(parseTime.getValueAtPercentile(0.5))
+					+ ", " + getBytesReceived() + " bytes received";
+		}
+
+		private static String millis(long nanos)
+		{
+			return String.format(Locale.US, "%.2fms", nanos / 1e6);
+		}
+	}
+}
@@ -2,6 +2,15 @@ package de.westnordost.osmapi;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import de.westnordost.osmapi.ConnectionTestFactory.User;
 import de.westnordost.osmapi.common.errors.OsmApiReadResponseException;
 import de.westnordost.osmapi.common.errors.OsmAuthorizationException;
@@ -56,4 +65,51 @@ public class OsmConnectionTest
 				}
 		);
 	}
+
+	@Test public void asyncRequestIsMadeOnExecutor() throws Exception
+	{
+		try(ReplayServer server = new ReplayServer(1))
+		{
+			server.record("capabilities", "<osm/>");
+			OsmConnection osm = new OsmConnection(server.getApiUrl(), "test", null);
+			ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "test"));
+			osm.setExecutor(executor);
+			String threadName = osm.makeRequestAsync("capabilities",
+					(ApiResponseReader<String>) in -> Thread.currentThread().getName()).get();
+			assertEquals("test", threadName);
+			executor.shutdown();
+		}
+	}
+
+	@Test public void asyncRequestsAreInFlightInParallel() throws Exception
+	{
+		int parallelism = 8;
+		try(ReplayServer server = new ReplayServer(parallelism))
+		{
+			server.record("capabilities", "<osm/>");
+			OsmConnection osm = new OsmConnection(server.getApiUrl(), "test", null);
+			osm.setParallelism(parallelism);
+			// only passes if all requests are being read at the same time
+			CyclicBarrier barrier = new CyclicBarrier(parallelism);
+			List<CompletableFuture<Integer>> futures = new ArrayList<>();
+			for (int i = 0; i < parallelism; i++)
+			{
+				futures.add(osm.makeRequestAsync("capabilities",
+						(ApiResponseReader<Integer>) in -> barrier.await(5, TimeUnit.SECONDS)));
+			}
+			for (CompletableFuture<Integer> future : futures) future.get();
+		}
+	}
+
+	@Test public void asyncConnectionException()
+	{
+		ExecutionException e = assertThrows(
+				ExecutionException.class,
+				() -> {
+					OsmConnection osm = new OsmConnection("http://cant.connect.to.this.server.hm", "blub", null);
+					osm.makeRequestAsync("doesntMatter", null).get();
+				}
+		);
+		assertTrue(e.getCause() instanceof OsmConnectionException);
+	}
 }
@@ -0,0 +1,202 @@
+package de.westnordost.osmapi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.westnordost.osmapi.common.errors.OsmConnectionException;
+import de.westnordost.osmapi.common.errors.OsmNotFoundException;
+import de.westnordost.osmapi.common.errors.OsmTooManyRequestsException;
+
+import static org.junit.Assert.*;
+
+public class ReplayServerTest
+{
+	private ReplayServer server;
+	private OsmConnection osm;
+
+	@Before public void setUp() throws IOException
+	{
+		server = new ReplayServer(4);
+		osm = new OsmConnection(server.getApiUrl(), "test", null);
+	}
+
+	@After public void tearDown()
+	{
+		server.close();
+	}
+
+	@Test public void playsBackRecordedResponse()
+	{
+		server.record("map?bbox=1,2,3,4", "<osm/>");
+		assertEquals("<osm/>", get("map?bbox=1,2,3,4"));
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test public void prefersResponseRecordedWithQuery()
+	{
+		server.record("notes", "any");
+		server.record("notes?limit=1", "one");
+		assertEquals("one", get("notes?limit=1"));
+		assertEquals("any", get("notes?limit=2"));
+	}
+
+	@Test(expected = OsmNotFoundException.class)
+	public void notRecorded()
+	{
+		get("map?bbox=1,2,3,4");
+	}
+
+	@Test public void sendsCompressedResponse()
+	{
+		String xml = new String(new char[10000]).replace('\0', 'x');
+		server.record("map", xml);
+		assertEquals(xml, get("map"));
+		assertTrue(osm.getCompressedBytesReceived() < osm.getUncompressedBytesReceived());
+
+		osm.setResponseCompressionEnabled(false);
+		long compressed = osm.getCompressedBytesReceived();
+		assertEquals(xml, get("map"));
+		assertEquals(10000, osm.getCompressedBytesReceived() - compressed);
+	}
+
+	@Test(expected = OsmTooManyRequestsException.class)
+	public void tooManyRequests()
+	{
+		server.record("map", "<osm/>");
+		server.setTooManyRequestsRate(1);
+		get("map");
+	}
+
+	@Test public void bandwidthExceeded()
+	{
+		server.record("map", "<osm/>");
+		server.setBandwidthExceededRate(1);
+		try
+		{
+			get("map");
+			fail();
+		}
+		catch(OsmConnectionException e)
+		{
+			assertEquals(509, e.getErrorCode());
+		}
+	}
+
+	@Test public void limitsBandwidth()
+	{
+		server.setCompressionEnabled(false);
+		server.record("map", new byte[20000]);
+		server.setBandwidth(100000);
+		long start = System.nanoTime();
+		get("map");
+		assertTrue(System.nanoTime() - start >= 150_000_000);
+	}
+
+	@Test public void answersRangeRequests() throws IOException
+	{
+		server.setCompressionEnabled(false);
+		server.setRangesEnabled(true);
+		server.record("GET", "map", 200, Collections.singletonMap("ETag", "\"1\""),
+				"0123456789".getBytes(StandardCharsets.UTF_8));
+
+		HttpURLConnection connection = (HttpURLConnection) new URL(server.getApiUrl() + "map").openConnection();
+		connection.setRequestProperty("Range", "bytes=7-");
+		connection.setRequestProperty("If-Range", "\"1\"");
+		assertEquals(206, connection.getResponseCode());
+		assertEquals("bytes 7-9/10", connection.getHeaderField("Content-Range"));
+		try(InputStream in = connection.getInputStream())
+		{
+			assertEquals("789", read(in));
+		}
+	}
+
+	@Test public void breaksOffResponses()
+	{
+		server.setCompressionEnabled(false);
+		server.record("map", new byte[100000]);
+		server.setBrokenResponses(1);
+		try
+		{
+			assertNotEquals(100000, get("map").length());
+		}
+		catch(OsmConnectionException ignore) { }
+		assertEquals(100000, get("map").length());
+	}
+
+	@Test public void notifiesRequestListener()
+	{
+		List<String> calls = new ArrayList<>();
+		server.setRequestListener((method, call, headers) -> calls.add(method + " " + call));
+		server.record("map", "<osm/>");
+		get("map?bbox=1,2,3,4");
+		assertEquals(Collections.singletonList("GET map?bbox=1,2,3,4"), calls);
+	}
+
+	@Test public void loadsRecordings() throws IOException
+	{
+		File directory = Files.createTempDirectory("osmapi").toFile();
+		File file = new File(directory, "node.http");
+		try
+		{
+			Files.write(file.toPath(), ("GET node/1\n200\nContent-Type: text/xml\n\n<osm>\n</osm>")
+					.getBytes(StandardCharsets.UTF_8));
+			server.loadRecordings(directory);
+			assertEquals("<osm>\n</osm>", get("node/1"));
+		}
+		finally
+		{
+			file.delete();
+			directory.delete();
+		}
+	}
+
+	@Test public void loadDriverMeasuresCalls() throws InterruptedException
+	{
+		server.record("map", "<osm/>");
+		server.setLatency(5);
+		LoadDriver.Result result = new LoadDriver(4, 4).run(20, () -> get("map"));
+		assertEquals(20, result.getCalls());
+		assertEquals(0, result.getFailures());
+		assertEquals(24, server.getRequestCount());
+		assertTrue(result.getLatency(0.5) >= 5);
+		assertTrue(result.getLatency(0.5) <= result.getLatency(1));
+		assertTrue(result.getThroughput() > 0);
+	}
+
+	@Test public void loadDriverCountsFailures() throws InterruptedException
+	{
+		LoadDriver.Result result = new LoadDriver(2, 0).run(10, () -> get("map"));
+		assertEquals(10, result.getFailures());
+		assertEquals(10, (int) result.getFailuresByType().get("OsmNotFoundException"));
+	}
+
+	private String get(String call)
+	{
+		return osm.makeRequest(call, ReplayServerTest::read);
+	}
+
+	private static String read(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int length;
+		while((length = in.read(buffer)) != -1)
+		{
+			result.write(buffer, 0, length);
+		}
+		return result.toString("UTF-8");
+	}
+}
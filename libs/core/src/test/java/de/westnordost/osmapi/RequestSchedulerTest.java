@@ -0,0 +1,256 @@
+package de.westnordost.osmapi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.westnordost.osmapi.common.errors.OsmConnectionException;
+import de.westnordost.osmapi.common.errors.OsmNotFoundException;
+import de.westnordost.osmapi.common.errors.OsmTooManyRequestsException;
+
+import static org.junit.Assert.*;
+
+public class RequestSchedulerTest
+{
+	private static final long NOW = 1_600_000_000_000L;
+
+	private ReplayServer server;
+	private OsmConnection osm;
+
+	private final AtomicLong clock = new AtomicLong(NOW);
+	private final List<Long> sleeps = Collections.synchronizedList(new ArrayList<>());
+	private volatile Runnable onSleep;
+
+	@Before public void setUp() throws IOException
+	{
+		server = new ReplayServer(4);
+		server.record("node/1", "<osm/>");
+		server.record("PUT", "node/1", 200, Collections.emptyMap(), new byte[0]);
+		osm = new OsmConnection(server.getApiUrl(), "test", "token");
+	}
+
+	@After public void tearDown()
+	{
+		server.close();
+	}
+
+	@Test public void parseRetryAfter()
+	{
+		assertEquals(-1, RequestScheduler.parseRetryAfter(null, NOW));
+		assertEquals(-1, RequestScheduler.parseRetryAfter("soon", NOW));
+		assertEquals(-1, RequestScheduler.parseRetryAfter("-3", NOW));
+		assertEquals(120_000, RequestScheduler.parseRetryAfter(" 120 ", NOW));
+		// 2020-09-13T12:26:40Z
+		assertEquals(60_000, RequestScheduler.parseRetryAfter("Sun, 13 Sep 2020 12:27:40 GMT", NOW));
+		assertEquals(0, RequestScheduler.parseRetryAfter("Sun, 13 Sep 2020 12:00:00 GMT", NOW));
+	}
+
+	@Test public void retriesGetAfterRetryAfter()
+	{
+		RequestScheduler scheduler = createScheduler(0, 1, 0, 1);
+		server.setTooManyRequestsRate(1);
+		server.setRetryAfter(2);
+		onSleep = () -> server.setTooManyRequestsRate(0);
+
+		assertEquals("<osm/>", get());
+		assertEquals(2, server.getRequestCount());
+		assertEquals(1, scheduler.getRetryCount());
+		assertEquals(1, scheduler.getThrottledCount());
+		assertTrue(getSleepTotal() >= 2000);
+	}
+
+	@Test public void retriesGetAfterBandwidthExceeded()
+	{
+		RequestScheduler scheduler = createScheduler(0, 1, 0, 1);
+		server.setBandwidthExceededRate(1);
+		onSleep = () -> server.setBandwidthExceededRate(0);
+
+		assertEquals("<osm/>", get());
+		assertEquals(2, server.getRequestCount());
+		assertEquals(1, scheduler.getThrottledCount());
+	}
+
+	@Test public void givesUpAfterMaxRetries()
+	{
+		RequestScheduler scheduler = createScheduler(0, 1, 0, 1);
+		scheduler.setMaxRetries(2);
+		server.setBandwidthExceededRate(1);
+		try
+		{
+			get();
+			fail();
+		}
+		catch(OsmConnectionException e)
+		{
+			assertEquals(509, e.getErrorCode());
+		}
+		assertEquals(3, server.getRequestCount());
+		assertEquals(2, scheduler.getRetryCount());
+	}
+
+	@Test public void doesNotRetryOtherErrors()
+	{
+		RequestScheduler scheduler = createScheduler(0, 1, 0, 1);
+		try
+		{
+			osm.makeRequest("node/2", in -> null);
+			fail();
+		}
+		catch(OsmNotFoundException ignore) { }
+		assertEquals(1, server.getRequestCount());
+		assertEquals(0, scheduler.getRetryCount());
+	}
+
+	@Test public void doesNotRetryButQueuesAfterThrottledUpload()
+	{
+		RequestScheduler scheduler = createScheduler(0, 1, 0, 1);
+		server.setTooManyRequestsRate(1);
+		server.setRetryAfter(10);
+		try
+		{
+			put();
+			fail();
+		}
+		catch(OsmTooManyRequestsException ignore) { }
+		assertEquals(1, server.getRequestCount());
+		assertEquals(0, scheduler.getRetryCount());
+
+		// the next request waits until the server allows requests again
+		server.setTooManyRequestsRate(0);
+		assertEquals("<osm/>", get());
+		assertEquals(2, server.getRequestCount());
+		assertTrue(getSleepTotal() >= 10_000);
+	}
+
+	@Test public void failsIfThrottledLongerThanMaxWait()
+	{
+		RequestScheduler scheduler = createScheduler(0, 1, 0, 1);
+		scheduler.setMaxWait(60_000);
+		server.setTooManyRequestsRate(1);
+		server.setRetryAfter(600);
+		try
+		{
+			get();
+			fail();
+		}
+		catch(OsmTooManyRequestsException ignore) { }
+		try
+		{
+			get();
+			fail();
+		}
+		catch(OsmTooManyRequestsException ignore) { }
+		assertEquals(1, server.getRequestCount());
+		assertTrue(sleeps.isEmpty());
+	}
+
+	@Test public void throttlesOnlyTheUser() throws IOException
+	{
+		createScheduler(0, 1, 0, 1);
+		OsmConnection anonymous = new OsmConnection(server.getApiUrl(), "test", null);
+		anonymous.setRequestScheduler(osm.getRequestScheduler());
+		server.setTooManyRequestsRate(1);
+		server.setRetryAfter(600);
+		try
+		{
+			get();
+			fail();
+		}
+		catch(OsmTooManyRequestsException ignore) { }
+
+		server.setTooManyRequestsRate(0);
+		assertEquals("", anonymous.makeRequest("node/1", in -> ""));
+		assertTrue(sleeps.isEmpty());
+	}
+
+	@Test public void dropsStateOfIdleUsers()
+	{
+		RequestScheduler scheduler = createScheduler(0, 1, 5, 1);
+		OsmConnection anonymous = new OsmConnection(server.getApiUrl(), "test", null);
+		anonymous.setRequestScheduler(scheduler);
+		get();
+		assertEquals(1, scheduler.getUserCount());
+
+		clock.addAndGet(60_000);
+		anonymous.makeRequest("node/1", in -> "");
+		assertEquals(1, scheduler.getUserCount());
+	}
+
+	@Test public void keepsStateOfThrottledUsers()
+	{
+		RequestScheduler scheduler = createScheduler(0, 1, 0, 1);
+		OsmConnection anonymous = new OsmConnection(server.getApiUrl(), "test", null);
+		anonymous.setRequestScheduler(scheduler);
+		server.setTooManyRequestsRate(1);
+		server.setRetryAfter(600);
+		try
+		{
+			get();
+			fail();
+		}
+		catch(OsmTooManyRequestsException ignore) { }
+
+		server.setTooManyRequestsRate(0);
+		clock.addAndGet(60_000);
+		anonymous.makeRequest("node/1", in -> "");
+		assertEquals(2, scheduler.getUserCount());
+	}
+
+	@Test public void pacesRequests()
+	{
+		createScheduler(10, 2, 0, 1);
+		for (int i = 0; i < 5; i++) get();
+		assertEquals(3, sleeps.size());
+		assertEquals(300, getSleepTotal());
+	}
+
+	@Test public void pacesRequestsPerUser()
+	{
+		createScheduler(0, 1, 5, 1);
+		for (int i = 0; i < 3; i++) get();
+		assertEquals(400, getSleepTotal());
+	}
+
+	private RequestScheduler createScheduler(double rate, int burst, double ratePerUser, int burstPerUser)
+	{
+		RequestScheduler scheduler = new RequestScheduler(rate, burst, ratePerUser, burstPerUser, clock::get,
+				millis ->
+				{
+					sleeps.add(millis);
+					clock.addAndGet(millis);
+					Runnable onSleep = this.onSleep;
+					if(onSleep != null) onSleep.run();
+				});
+		scheduler.setBackoff(1, 10);
+		osm.setRequestScheduler(scheduler);
+		return scheduler;
+	}
+
+	private long getSleepTotal()
+	{
+		long result = 0;
+		for (long sleep : sleeps) result += sleep;
+		return result;
+	}
+
+	private String get()
+	{
+		return osm.makeRequest("node/1", true, in -> "<osm/>");
+	}
+
+	private void put()
+	{
+		osm.makeAuthenticatedRequest("node/1", "PUT", new ApiRequestWriter()
+		{
+			@Override public String getContentType() { return "text/xml"; }
+			@Override public void write(OutputStream out) throws IOException { out.write(1); }
+		});
+	}
+}
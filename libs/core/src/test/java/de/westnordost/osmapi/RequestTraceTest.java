@@ -0,0 +1,175 @@
+package de.westnordost.osmapi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.westnordost.osmapi.common.errors.OsmTooManyRequestsException;
+import de.westnordost.osmapi.http.MemoryHttpCache;
+import de.westnordost.osmapi.http.PooledHttpTransport;
+import de.westnordost.osmapi.metrics.RequestMetrics;
+import de.westnordost.osmapi.metrics.RequestMetricsAggregator;
+
+import static org.junit.Assert.*;
+
+public class RequestTraceTest
+{
+	private ReplayServer server;
+	private OsmConnection osm;
+	private final List<RequestMetrics> requests = Collections.synchronizedList(new ArrayList<>());
+
+	@Before public void setUp() throws IOException
+	{
+		server = new ReplayServer(4);
+		osm = new OsmConnection(server.getApiUrl(), "test", null);
+		osm.setRequestListener(requests::add);
+	}
+
+	@After public void tearDown()
+	{
+		server.close();
+	}
+
+	@Test public void endpoint()
+	{
+		assertEquals("node/{id}", RequestTrace.getEndpoint("node/123"));
+		assertEquals("node/{id}/{version}", RequestTrace.getEndpoint("node/123/2"));
+		assertEquals("changeset/{id}/upload", RequestTrace.getEndpoint("changeset/5/upload"));
+		assertEquals("map?bbox", RequestTrace.getEndpoint("map?bbox=1,2,3,4"));
+		assertEquals("notes?bbox&limit&closed", RequestTrace.getEndpoint("notes?bbox=1,2,3,4&limit=10&closed=-1"));
+		assertEquals("user/details", RequestTrace.getEndpoint("user/details"));
+		assertEquals("capabilities", RequestTrace.getEndpoint("capabilities"));
+	}
+
+	@Test public void reportsSuccessfulRequest()
+	{
+		String xml = new String(new char[5000]).replace('\0', 'x');
+		server.record("node/1", xml);
+		server.setLatency(20);
+		assertEquals(xml, get("node/1"));
+
+		assertEquals(1, requests.size());
+		RequestMetrics request = requests.get(0);
+		assertEquals("node/{id}", request.getEndpoint());
+		assertEquals("GET", request.getMethod());
+		assertEquals(200, request.getStatusCode());
+		assertNull(request.getError());
+		assertFalse(request.isFromCache());
+		assertEquals(-1, request.getConnectTime());
+		assertTrue(request.getWaitTime() >= 20_000_000);
+		assertTrue(request.getParseTime() >= 0);
+		assertTrue(request.getTotalTime() >= request.getWaitTime() + request.getTransferTime());
+		assertEquals(5000, request.getBytesDecoded());
+		assertTrue(request.getBytesReceived() > 0 && request.getBytesReceived() < 5000);
+		assertEquals(0, request.getBytesSent());
+	}
+
+	@Test public void reportsFailedRequest()
+	{
+		server.setTooManyRequestsRate(1);
+		try
+		{
+			get("map?bbox=1,2,3,4");
+			fail();
+		}
+		catch(OsmTooManyRequestsException ignore) { }
+
+		RequestMetrics request = requests.get(0);
+		assertEquals("map?bbox", request.getEndpoint());
+		assertEquals(429, request.getStatusCode());
+		assertTrue(request.getError() instanceof OsmTooManyRequestsException);
+		assertEquals(-1, request.getParseTime());
+	}
+
+	@Test public void reportsPayload()
+	{
+		server.record("PUT", "changeset/create", 200, Collections.emptyMap(), "1".getBytes(StandardCharsets.UTF_8));
+		osm.makeRequest("changeset/create", "PUT", false, new ApiRequestWriter()
+		{
+			@Override public String getContentType() { return "text/xml"; }
+			@Override public void write(OutputStream out) throws IOException { out.write(new byte[100]); }
+		}, null);
+
+		RequestMetrics request = requests.get(0);
+		assertEquals("PUT", request.getMethod());
+		assertEquals(100, request.getBytesSent());
+	}
+
+	@Test public void reportsCachedResponse()
+	{
+		server.record("GET", "capabilities", 200, Collections.singletonMap("Cache-Control", "max-age=60"),
+				"<osm/>".getBytes(StandardCharsets.UTF_8));
+		osm.setResponseCache(new MemoryHttpCache(10000));
+		get("capabilities");
+		get("capabilities");
+
+		assertFalse(requests.get(0).isFromCache());
+		assertTrue(requests.get(1).isFromCache());
+		assertEquals(-1, requests.get(1).getStatusCode());
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test public void reportsConnectTimeOfPooledTransport()
+	{
+		server.record("node/1", "<osm/>");
+		PooledHttpTransport transport = new PooledHttpTransport();
+		osm.setTransport(transport);
+		get("node/1");
+		get("node/1");
+		transport.evictAll();
+
+		assertTrue(requests.get(0).getConnectTime() > 0);
+		assertEquals(0, requests.get(0).getHandshakeTime());
+		assertEquals(0, requests.get(1).getConnectTime());
+	}
+
+	@Test public void aggregates()
+	{
+		server.record("node/1", "<osm/>");
+		server.record("node/2", "<osm/>");
+		RequestMetricsAggregator aggregator = new RequestMetricsAggregator();
+		osm.setRequestListener(aggregator);
+		get("node/1");
+		get("node/2");
+		try
+		{
+			get("node/3");
+		}
+		catch(RuntimeException ignore) { }
+
+		RequestMetricsAggregator.EndpointStatistics node = aggregator.getStatistics().get("GET node/{id}");
+		assertEquals(3, node.getRequests());
+		assertEquals(1, node.getErrors());
+		assertEquals(2, (long) node.getStatusCodes().get(200));
+		assertEquals(1, (long) node.getStatusCodes().get(404));
+		assertEquals(1, (long) node.getErrorTypes().get("OsmNotFoundException"));
+		assertEquals(3, node.getTotalTime().getCount());
+		assertEquals(2, node.getParseTime().getCount());
+	}
+
+	private String get(String call)
+	{
+		return osm.makeRequest(call, RequestTraceTest::read);
+	}
+
+	private static String read(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int length;
+		while((length = in.read(buffer)) != -1)
+		{
+			result.write(buffer, 0, length);
+		}
+		return result.toString("UTF-8");
+	}
+}
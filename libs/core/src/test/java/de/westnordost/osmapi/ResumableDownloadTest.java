@@ -0,0 +1,211 @@
+package de.westnordost.osmapi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPOutputStream;
+
+import de.westnordost.osmapi.common.errors.OsmConnectionException;
+import de.westnordost.osmapi.http.MemoryHttpCache;
+
+import static org.junit.Assert.*;
+
+public class ResumableDownloadTest
+{
+	private ReplayServer server;
+	private OsmConnection osm;
+	private File directory;
+
+	private String body;
+	/** body the response changes to after the first request. Null if it does not change */
+	private volatile String changedBody;
+	private final List<String> ranges = new CopyOnWriteArrayList<>();
+	private final List<String> ifRanges = new CopyOnWriteArrayList<>();
+
+	@Before public void setUp() throws IOException
+	{
+		server = new ReplayServer(4);
+		server.setCompressionEnabled(false);
+		server.setRangesEnabled(true);
+		body = createBody("a");
+		record(body, "\"1\"");
+		server.setRequestListener((method, call, headers) ->
+		{
+			ranges.add(headers.getFirst("Range"));
+			ifRanges.add(headers.getFirst("If-Range"));
+			if(ranges.size() == 2 && changedBody != null) record(changedBody, "\"2\"");
+		});
+		osm = new OsmConnection(server.getApiUrl(), "test", null);
+		directory = Files.createTempDirectory("osmapi").toFile();
+		osm.setResumableDownloads(2, directory);
+	}
+
+	@After public void tearDown()
+	{
+		server.close();
+		TestUtils.deleteDirectory(directory);
+	}
+
+	@Test public void downloadsWithoutBreak()
+	{
+		assertEquals(body, get());
+		assertEquals(Collections.singletonList((String) null), ranges);
+		assertEquals(0, directory.list().length);
+	}
+
+	@Test public void resumesWithRange()
+	{
+		server.setBrokenResponses(1);
+		assertEquals(body, get());
+		assertEquals(Arrays.asList(null, "bytes=" + getBytes(body).length / 2 + "-"), ranges);
+		assertEquals("\"1\"", ifRanges.get(1));
+		assertEquals(0, directory.list().length);
+	}
+
+	@Test public void resumesCompressedBody()
+	{
+		server.setCompressionEnabled(true);
+		server.setBrokenResponses(1);
+		assertEquals(body, get());
+		assertEquals("bytes=" + gzip(getBytes(body)).length / 2 + "-", ranges.get(1));
+	}
+
+	@Test public void repeatsWithoutRangeSupport()
+	{
+		server.setRangesEnabled(false);
+		server.setBrokenResponses(2);
+		assertEquals(body, get());
+		assertEquals(Arrays.asList(null, null, null), ranges);
+	}
+
+	@Test public void restartsIfChangedInBetween()
+	{
+		changedBody = createBody("b");
+		server.setBrokenResponses(1);
+		assertEquals(changedBody, get());
+		assertEquals("\"1\"", ifRanges.get(1));
+	}
+
+	@Test public void givesUpAfterMaxRetries()
+	{
+		server.setBrokenResponses(3);
+		try
+		{
+			get();
+			fail();
+		}
+		catch(OsmConnectionException ignore) { }
+		assertEquals(3, ranges.size());
+		assertEquals(0, directory.list().length);
+	}
+
+	@Test public void resumesIfTooLargeToBeCached()
+	{
+		MemoryHttpCache cache = new MemoryHttpCache(1024 * 1024, 1024);
+		osm.setResponseCache(cache);
+		server.setBrokenResponses(1);
+		assertEquals(body, get());
+		assertEquals(Arrays.asList(null, "bytes=" + getBytes(body).length / 2 + "-"), ranges);
+		assertEquals(0, cache.getSize());
+		assertEquals(0, directory.list().length);
+	}
+
+	@Test public void resumesAndCaches()
+	{
+		MemoryHttpCache cache = new MemoryHttpCache(1024 * 1024, 1024 * 1024);
+		osm.setResponseCache(cache);
+		server.setBrokenResponses(1);
+		assertEquals(body, get());
+		assertEquals(2, ranges.size());
+		assertEquals(getBytes(body).length, cache.getSize());
+	}
+
+	@Test public void passesBrokenResponseToReaderIfDisabled()
+	{
+		osm.setResumableDownloads(0, null);
+		server.setBrokenResponses(1);
+		String result;
+		try
+		{
+			result = get();
+		}
+		catch(OsmConnectionException e)
+		{
+			result = null;
+		}
+		// depending on the transport, the reader fails or even receives an incomplete body
+		assertNotEquals(body, result);
+		assertEquals(1, ranges.size());
+	}
+
+	private String get()
+	{
+		return osm.makeRequest("map?bbox=1,2,3,4", ResumableDownloadTest::readAll);
+	}
+
+	private void record(String body, String eTag)
+	{
+		Map<String, String> headers = new HashMap<>();
+		headers.put("Content-Type", "text/xml; charset=utf-8");
+		headers.put("ETag", eTag);
+		server.record("GET", "map", 200, headers, getBytes(body));
+	}
+
+	private static String createBody(String value)
+	{
+		StringBuilder result = new StringBuilder("<osm>\n");
+		for (int i = 0; i < 5000; i++)
+		{
+			result.append("<node id=\"").append(i).append("\" value=\"").append(value).append("\"/>\n");
+		}
+		return result.append("</osm>").toString();
+	}
+
+	private static byte[] getBytes(String text)
+	{
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] gzip(byte[] bytes)
+	{
+		try
+		{
+			ByteArrayOutputStream result = new ByteArrayOutputStream();
+			try(OutputStream out = new GZIPOutputStream(result))
+			{
+				out.write(bytes);
+			}
+			return result.toByteArray();
+		}
+		catch(IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String readAll(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int length;
+		while((length = in.read(buffer)) != -1)
+		{
+			result.write(buffer, 0, length);
+		}
+		return result.toString("UTF-8");
+	}
+}
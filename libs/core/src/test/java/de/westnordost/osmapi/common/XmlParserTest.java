@@ -142,6 +142,115 @@ public class XmlParserTest
 		parser.test(xml);
 	}
 
+	@Test public void symbols()
+	{
+		String xml = "<a><b><c/></b><d/></a>";
+
+		new TestXmlParser()
+		{
+			private final int A = symbol("a"), B = symbol("b"), C = symbol("c");
+			private final int[] symbols = {A, B, C, C, B, NO_SYMBOL, NO_SYMBOL, A};
+			private final int[] parents = {NO_SYMBOL, A, B, B, A, A, A, NO_SYMBOL};
+			private int counter = 0;
+
+			@Override
+			protected void onStartElement()
+			{
+				check();
+			}
+
+			@Override
+			protected void onEndElement()
+			{
+				check();
+			}
+
+			private void check()
+			{
+				assertEquals(symbols[counter], getSymbol());
+				assertEquals(parents[counter], getParentSymbol());
+				counter++;
+			}
+		}.test(xml);
+	}
+
+	@Test public void sameSymbolForSameName()
+	{
+		new TestXmlParser()
+		{
+			{
+				assertEquals(symbol("a"), symbol("a"));
+				assertNotEquals(symbol("a"), symbol("b"));
+			}
+		};
+	}
+
+	@Test public void getAttributeBySymbol()
+	{
+		String xml = "<a x='hi' y='ho' z='hu'><b y='ha'/></a><c/>";
+
+		new TestXmlParser()
+		{
+			private final int X = symbol("x"), Y = symbol("y"), W = symbol("w");
+
+			@Override
+			protected void onStartElement()
+			{
+				switch (getName())
+				{
+					case "a":
+						assertEquals("hi", getAttribute(X));
+						assertEquals("ho", getAttribute(Y));
+						assertNull(getAttribute(W));
+						break;
+					case "b":
+						assertNull(getAttribute(X));
+						assertEquals("ha", getAttribute(Y));
+						break;
+					case "c":
+						assertNull(getAttribute(X));
+						assertNull(getAttribute(Y));
+						break;
+				}
+			}
+
+			@Override
+			protected void onEndElement()
+			{
+				assertNull(getAttribute(X));
+			}
+		}.test(xml);
+	}
+
+	@Test public void parserIsReusableAfterException()
+	{
+		final String[] parents = {null, "a", "a", null};
+		TestXmlParser parser = new TestXmlParser()
+		{
+			private int counter = 0;
+			private boolean failed = false;
+
+			@Override
+			protected void onStartElement()
+			{
+				if(!failed && getName().equals("fail"))
+				{
+					failed = true;
+					throw new IllegalStateException();
+				}
+				if(failed) assertEquals(parents[counter++], getParentName());
+			}
+
+			@Override
+			protected void onEndElement()
+			{
+				if(failed) assertEquals(parents[counter++], getParentName());
+			}
+		};
+		assertThrows(XmlParserException.class, () -> parser.test("<x><y><fail/></y></x>"));
+		parser.test("<a><b/></a>");
+	}
+
 	@Test public void convenienceAttributeGetters()
 	{
 		String xml = "<a a_float='123.456' a_int='122' a_bool='true' />";
@@ -169,6 +278,38 @@ public class XmlParserTest
 		parser.test(xml);
 	}
 	
+	@Test public void primitiveAttributeGetters()
+	{
+		String xml = "<a a_double='123.456' a_int='122' a_long='12345678901' a_coord='-52.1234567' />";
+
+		new TestXmlParser()
+		{
+			private final int A_DOUBLE = symbol("a_double"), A_INT = symbol("a_int"),
+					A_LONG = symbol("a_long"), A_COORD = symbol("a_coord"),
+					MISSING = symbol("does_not_exist");
+
+			@Override
+			protected void onStartElement()
+			{
+				assertEquals(123.456d, getDoubleAttribute("a_double", 0), 0);
+				assertEquals(123.456d, getDoubleAttribute(A_DOUBLE, 0), 0);
+				assertEquals(122, getIntAttribute("a_int", 0));
+				assertEquals(122, getIntAttribute(A_INT, 0));
+				assertEquals(12345678901L, getLongAttribute("a_long", 0));
+				assertEquals(12345678901L, getLongAttribute(A_LONG, 0));
+				assertEquals(-521234567, getFixed1E7Attribute(A_COORD, 0));
+
+				assertEquals(-1d, getDoubleAttribute("does_not_exist", -1), 0);
+				assertEquals(-1d, getDoubleAttribute(MISSING, -1), 0);
+				assertEquals(-1, getIntAttribute("does_not_exist", -1));
+				assertEquals(-1, getIntAttribute(MISSING, -1));
+				assertEquals(-1L, getLongAttribute("does_not_exist", -1));
+				assertEquals(-1L, getLongAttribute(MISSING, -1));
+				assertEquals(-1, getFixed1E7Attribute(MISSING, -1));
+			}
+		}.test(xml);
+	}
+
 	@Test public void exception()
 	{
 		String xml = "<a x='hi'/>";
@@ -0,0 +1,286 @@
+package de.westnordost.osmapi.http;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import de.westnordost.osmapi.ApiRequestWriter;
+import de.westnordost.osmapi.OsmConnection;
+import de.westnordost.osmapi.common.PlainTextWriter;
+import de.westnordost.osmapi.common.errors.OsmBadUserInputException;
+
+import static org.junit.Assert.*;
+
+public class ContentEncodingTest
+{
+	private static final String CHARSET = "UTF-8";
+	private static final String TEXT = repeat("<node id=\"1\" lat=\"1.0\" lon=\"2.0\"/>", 200);
+
+	private HttpServer server;
+	private volatile String acceptEncoding;
+	private volatile String requestContentEncoding;
+	private volatile String requestTransferEncoding;
+	private final AtomicInteger completeRequests = new AtomicInteger();
+	private final Semaphore incompleteRequests = new Semaphore(0);
+
+	@Before public void setUp() throws IOException
+	{
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/api/0.6/text", exchange ->
+		{
+			acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+			byte[] bytes = gzip ? gzip(TEXT) : TEXT.getBytes(CHARSET);
+			if(gzip) exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			exchange.sendResponseHeaders(200, bytes.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(bytes);
+			out.close();
+		});
+		server.createContext("/api/0.6/error", exchange ->
+		{
+			byte[] bytes = gzip("something is wrong");
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			exchange.sendResponseHeaders(400, bytes.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(bytes);
+			out.close();
+		});
+		server.createContext("/api/0.6/echo", exchange ->
+		{
+			requestContentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+			requestTransferEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+			byte[] bytes;
+			try
+			{
+				InputStream in = exchange.getRequestBody();
+				if("gzip".equals(requestContentEncoding)) in = new GZIPInputStream(in);
+				bytes = readAll(in).getBytes(CHARSET);
+			}
+			catch(IOException e)
+			{
+				incompleteRequests.release();
+				throw e;
+			}
+			completeRequests.incrementAndGet();
+			exchange.sendResponseHeaders(200, bytes.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(bytes);
+			out.close();
+		});
+		server.start();
+	}
+
+	@After public void tearDown()
+	{
+		server.stop(0);
+	}
+
+	@Test public void identity() throws IOException
+	{
+		assertEquals(TEXT, readAll(ContentEncoding.decode(stream(TEXT.getBytes(CHARSET)), null)));
+		assertEquals(TEXT, readAll(ContentEncoding.decode(stream(TEXT.getBytes(CHARSET)), "identity")));
+	}
+
+	@Test public void gzip() throws IOException
+	{
+		assertEquals(TEXT, readAll(ContentEncoding.decode(stream(gzip(TEXT)), "gzip")));
+	}
+
+	@Test public void zlibWrappedDeflate() throws IOException
+	{
+		assertEquals(TEXT, readAll(ContentEncoding.decode(stream(deflate(TEXT, false)), "deflate")));
+	}
+
+	@Test public void rawDeflate() throws IOException
+	{
+		assertEquals(TEXT, readAll(ContentEncoding.decode(stream(deflate(TEXT, true)), "Deflate")));
+	}
+
+	@Test public void unsupportedEncoding()
+	{
+		assertThrows(IOException.class, () -> ContentEncoding.decode(stream(new byte[0]), "br"));
+	}
+
+	@Test public void decodesResponse()
+	{
+		for (HttpTransport transport : new HttpTransport[]{new HttpUrlConnectionTransport(), new PooledHttpTransport()})
+		{
+			OsmConnection osm = createConnection(transport);
+			assertEquals(TEXT, osm.makeRequest("text", ContentEncodingTest::readAll));
+			assertEquals(ContentEncoding.ACCEPTED, acceptEncoding);
+
+			assertEquals(TEXT.length(), osm.getUncompressedBytesReceived());
+			assertTrue(osm.getCompressedBytesReceived() > 0);
+			assertTrue(osm.getCompressedBytesReceived() < TEXT.length() / 10);
+		}
+	}
+
+	@Test public void decodesErrorResponse()
+	{
+		OsmConnection osm = createConnection(new PooledHttpTransport());
+		OsmBadUserInputException e = assertThrows(
+				OsmBadUserInputException.class,
+				() -> osm.makeRequest("error", ContentEncodingTest::readAll)
+		);
+		assertEquals("something is wrong", e.getDescription());
+	}
+
+	@Test public void compressionCanBeDisabled()
+	{
+		OsmConnection osm = createConnection(new PooledHttpTransport());
+		osm.setResponseCompressionEnabled(false);
+		assertEquals(TEXT, osm.makeRequest("text", ContentEncodingTest::readAll));
+		assertNull(acceptEncoding);
+
+		assertEquals(TEXT.length(), osm.getUncompressedBytesReceived());
+		assertEquals(TEXT.length(), osm.getCompressedBytesReceived());
+	}
+
+	@Test public void compressesRequest()
+	{
+		for (HttpTransport transport : new HttpTransport[]{new HttpUrlConnectionTransport(), new PooledHttpTransport()})
+		{
+			OsmConnection osm = createConnection(transport);
+			osm.setRequestCompressionEnabled(true);
+			for (int i = 0; i < 3; i++)
+			{
+				String result = osm.makeRequest("echo", "POST", false,
+						new PlainTextWriter(TEXT + i), ContentEncodingTest::readAll);
+				assertEquals(TEXT + i, result);
+				assertEquals("gzip", requestContentEncoding);
+				assertEquals("chunked", requestTransferEncoding);
+			}
+		}
+	}
+
+	@Test public void requestIsNotCompressedByDefault()
+	{
+		OsmConnection osm = createConnection(new PooledHttpTransport());
+		String result = osm.makeRequest("echo", "POST", false,
+				new PlainTextWriter(TEXT), ContentEncodingTest::readAll);
+		assertEquals(TEXT, result);
+		assertNull(requestContentEncoding);
+		assertNull(requestTransferEncoding);
+	}
+
+	@Test public void streamsRequestOfStreamingWriter()
+	{
+		OsmConnection osm = createConnection(new PooledHttpTransport());
+		ApiRequestWriter writer = new PlainTextWriter(TEXT)
+		{
+			@Override public boolean isStreaming()
+			{
+				return true;
+			}
+		};
+		String result = osm.makeRequest("echo", "POST", false, writer, ContentEncodingTest::readAll);
+		assertEquals(TEXT, result);
+		assertNull(requestContentEncoding);
+		assertEquals("chunked", requestTransferEncoding);
+	}
+
+	@Test public void abortsRequestIfWriterFails() throws InterruptedException
+	{
+		ApiRequestWriter failingWriter = new ApiRequestWriter()
+		{
+			@Override public String getContentType() { return "text/plain"; }
+
+			@Override public boolean isStreaming() { return true; }
+
+			@Override public void write(OutputStream out) throws IOException
+			{
+				// incompressible, so that something is sent also when the payload is compressed
+				byte[] bytes = new byte[100000];
+				new Random(1).nextBytes(bytes);
+				out.write(bytes);
+				throw new IllegalArgumentException();
+			}
+		};
+		int requests = 0;
+		for (HttpTransport transport : new HttpTransport[]{new HttpUrlConnectionTransport(), new PooledHttpTransport()})
+		{
+			for (boolean compress : new boolean[]{false, true})
+			{
+				OsmConnection osm = createConnection(transport);
+				osm.setRequestCompressionEnabled(compress);
+				assertThrows(IllegalArgumentException.class,
+						() -> osm.makeRequest("echo", "POST", false, failingWriter, ContentEncodingTest::readAll));
+				requests++;
+			}
+		}
+		// the server noticed for each request that it was cut off...
+		assertTrue(incompleteRequests.tryAcquire(requests, 5, TimeUnit.SECONDS));
+		// ...and never received one that looked complete
+		assertEquals(0, completeRequests.get());
+	}
+
+	private OsmConnection createConnection(HttpTransport transport)
+	{
+		String url = "http://localhost:" + server.getAddress().getPort() + "/api/0.6/";
+		OsmConnection osm = new OsmConnection(url, "test", null);
+		osm.setTransport(transport);
+		return osm;
+	}
+
+	private static InputStream stream(byte[] bytes)
+	{
+		return new ByteArrayInputStream(bytes);
+	}
+
+	private static byte[] gzip(String text) throws IOException
+	{
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		try (OutputStream out = new GZIPOutputStream(result))
+		{
+			out.write(text.getBytes(CHARSET));
+		}
+		return result.toByteArray();
+	}
+
+	private static byte[] deflate(String text, boolean raw) throws IOException
+	{
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		try (OutputStream out = new DeflaterOutputStream(result, new Deflater(Deflater.DEFAULT_COMPRESSION, raw)))
+		{
+			out.write(text.getBytes(CHARSET));
+		}
+		return result.toByteArray();
+	}
+
+	private static String repeat(String text, int times)
+	{
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < times; i++) result.append(text);
+		return result.toString();
+	}
+
+	private static String readAll(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int length;
+		while ((length = in.read(buffer)) != -1)
+		{
+			result.write(buffer, 0, length);
+		}
+		return result.toString(CHARSET);
+	}
+}
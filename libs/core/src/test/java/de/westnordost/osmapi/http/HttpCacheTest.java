@@ -0,0 +1,225 @@
+package de.westnordost.osmapi.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.westnordost.osmapi.ApiResponseReader;
+import de.westnordost.osmapi.OsmConnection;
+import de.westnordost.osmapi.TestUtils;
+
+import static org.junit.Assert.*;
+
+public class HttpCacheTest
+{
+	private static final String CHARSET = "UTF-8";
+
+	private HttpServer server;
+	private OsmConnection osm;
+	private File directory;
+
+	/* state of the stub server */
+	private volatile String body;
+	private volatile String cacheControl;
+	private volatile boolean sendETag;
+	private final List<String> ifNoneMatch = new ArrayList<>();
+	private final List<String> authorizations = new ArrayList<>();
+
+	@Before public void setUp() throws IOException
+	{
+		body = "first";
+		cacheControl = "max-age=0, private, must-revalidate";
+		sendETag = true;
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/api/0.6/text", this::respondText);
+		server.start();
+		osm = new OsmConnection("http://localhost:" + server.getAddress().getPort() + "/api/0.6/", "test", "token");
+		osm.setResponseCache(new MemoryHttpCache(10000));
+		directory = Files.createTempDirectory("osmapi").toFile();
+	}
+
+	@After public void tearDown()
+	{
+		server.stop(0);
+		TestUtils.deleteDirectory(directory);
+	}
+
+	@Test public void revalidatesWithETag()
+	{
+		assertEquals("first", get());
+		assertEquals("first", get());
+		assertEquals(2, ifNoneMatch.size());
+		assertNull(ifNoneMatch.get(0));
+		assertEquals("\"first\"", ifNoneMatch.get(1));
+
+		body = "second";
+		assertEquals("second", get());
+		assertEquals("\"first\"", ifNoneMatch.get(2));
+	}
+
+	@Test public void usesFreshResponseWithoutRequest()
+	{
+		cacheControl = "max-age=3600";
+		assertEquals("first", get());
+		body = "second";
+		assertEquals("first", get());
+		assertEquals(1, ifNoneMatch.size());
+	}
+
+	@Test public void doesNotStoreResponseIfForbidden()
+	{
+		cacheControl = "no-store";
+		get();
+		get();
+		assertNull(ifNoneMatch.get(1));
+	}
+
+	@Test public void doesNotStoreResponseWithoutValidatorOrMaxAge()
+	{
+		sendETag = false;
+		get();
+		assertEquals(0, ((MemoryHttpCache) osm.getResponseCache()).getSize());
+	}
+
+	@Test public void doesNotStoreTooLargeResponse()
+	{
+		osm.setResponseCache(new MemoryHttpCache(10000, 3));
+		assertEquals("first", get());
+		assertEquals(0, ((MemoryHttpCache) osm.getResponseCache()).getSize());
+	}
+
+	@Test public void storesResponseWithoutEntrySizeLimit()
+	{
+		osm.setResponseCache(new MemoryHttpCache(Long.MAX_VALUE, Integer.MAX_VALUE));
+		assertEquals("first", get());
+		assertEquals("first", get());
+		assertEquals(5, ((MemoryHttpCache) osm.getResponseCache()).getSize());
+	}
+
+	@Test public void cachesPerUser()
+	{
+		get(true);
+		osm.setOAuthAccessToken("other token");
+		get(true);
+		assertNull(ifNoneMatch.get(1));
+		get(false);
+		assertNull(ifNoneMatch.get(2));
+		assertEquals("Bearer other token", authorizations.get(1));
+	}
+
+	@Test public void diskCacheSurvivesReopening() throws IOException
+	{
+		osm.setResponseCache(new DiskHttpCache(directory, 10000, 1000));
+		get();
+		osm.setResponseCache(new DiskHttpCache(directory, 10000, 1000));
+		assertEquals("first", get());
+		assertEquals("\"first\"", ifNoneMatch.get(1));
+		String[] files = directory.list();
+		assertEquals(1, files.length);
+		assertFalse(new String(Files.readAllBytes(new File(directory, files[0]).toPath()), CHARSET).contains("token"));
+	}
+
+	@Test public void memoryCacheEvictsLeastRecentlyUsed()
+	{
+		MemoryHttpCache cache = new MemoryHttpCache(10, 10);
+		cache.put("a", response(4));
+		cache.put("b", response(4));
+		cache.get("a");
+		cache.put("c", response(4));
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+		assertEquals(8, cache.getSize());
+	}
+
+	@Test public void diskCacheEvictsLeastRecentlyUsed() throws IOException
+	{
+		DiskHttpCache cache = new DiskHttpCache(directory, 1, 10);
+		cache.put("a", response(4));
+		assertEquals(0, cache.getSize());
+		assertNull(cache.get("a"));
+
+		cache = new DiskHttpCache(directory, 1000, 10);
+		cache.put("a", response(4));
+		CachedResponse response = cache.get("a");
+		assertEquals(4, response.getBody().length);
+		assertEquals("\"a\"", response.getETag());
+		assertNull(response.getLastModified());
+		assertEquals(123, response.getExpiresAt());
+		cache.remove("a");
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.getSize());
+	}
+
+	@Test public void parsesCacheControl()
+	{
+		assertEquals(1000, CachedResponse.getExpiresAt(null, 1000));
+		assertEquals(1000, CachedResponse.getExpiresAt("max-age=0, private, must-revalidate", 1000));
+		assertEquals(61000, CachedResponse.getExpiresAt("public, max-age=60", 1000));
+		assertEquals(1000, CachedResponse.getExpiresAt("no-cache, max-age=60", 1000));
+		assertEquals(-1, CachedResponse.getExpiresAt("No-Store", 1000));
+	}
+
+	private static CachedResponse response(int size)
+	{
+		return new CachedResponse(new byte[size], "\"a\"", null, 123);
+	}
+
+	private String get()
+	{
+		return get(false);
+	}
+
+	private String get(boolean authenticate)
+	{
+		return osm.makeRequest("text", authenticate, (ApiResponseReader<String>) HttpCacheTest::readAll);
+	}
+
+	private void respondText(HttpExchange exchange) throws IOException
+	{
+		String eTag = "\"" + body + "\"";
+		synchronized(this)
+		{
+			ifNoneMatch.add(exchange.getRequestHeaders().getFirst("If-None-Match"));
+			authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+		}
+		exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+		if(sendETag) exchange.getResponseHeaders().set("ETag", eTag);
+		if(eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+		{
+			exchange.sendResponseHeaders(304, -1);
+			exchange.close();
+			return;
+		}
+		byte[] bytes = body.getBytes(CHARSET);
+		exchange.sendResponseHeaders(200, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	private static String readAll(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int length;
+		while((length = in.read(buffer)) != -1)
+		{
+			result.write(buffer, 0, length);
+		}
+		return result.toString(CHARSET);
+	}
+}
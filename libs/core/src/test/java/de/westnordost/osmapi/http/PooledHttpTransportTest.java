@@ -0,0 +1,290 @@
+package de.westnordost.osmapi.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.westnordost.osmapi.ApiResponseReader;
+import de.westnordost.osmapi.OsmConnection;
+import de.westnordost.osmapi.common.PlainTextWriter;
+import de.westnordost.osmapi.common.errors.OsmNotFoundException;
+
+import static org.junit.Assert.*;
+
+public class PooledHttpTransportTest
+{
+	private static final String CHARSET = "UTF-8";
+
+	private HttpServer server;
+	private Set<Integer> clientPorts;
+	private AtomicInteger concurrentRequests;
+	private AtomicInteger maxConcurrentRequests;
+
+	@Before public void setUp() throws IOException
+	{
+		clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+		concurrentRequests = new AtomicInteger();
+		maxConcurrentRequests = new AtomicInteger();
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/api/0.6/fixed", exchange ->
+		{
+			clientPorts.add(exchange.getRemoteAddress().getPort());
+			respond(exchange, 200, "fixed length", false);
+		});
+		server.createContext("/api/0.6/chunked", exchange ->
+		{
+			clientPorts.add(exchange.getRemoteAddress().getPort());
+			respond(exchange, 200, "chunked", true);
+		});
+		server.createContext("/api/0.6/echo", exchange ->
+		{
+			clientPorts.add(exchange.getRemoteAddress().getPort());
+			respond(exchange, 200, readAll(exchange.getRequestBody()), false);
+		});
+		server.createContext("/api/0.6/missing", exchange ->
+		{
+			clientPorts.add(exchange.getRemoteAddress().getPort());
+			respond(exchange, 404, "not here", false);
+		});
+		server.createContext("/api/0.6/slow", exchange ->
+		{
+			int concurrent = concurrentRequests.incrementAndGet();
+			maxConcurrentRequests.accumulateAndGet(concurrent, Math::max);
+			try
+			{
+				Thread.sleep(100);
+			}
+			catch(InterruptedException ignore) { }
+			concurrentRequests.decrementAndGet();
+			respond(exchange, 200, "slow", false);
+		});
+		server.start();
+	}
+
+	@After public void tearDown()
+	{
+		server.stop(0);
+	}
+
+	@Test public void reusesConnection()
+	{
+		PooledHttpTransport transport = new PooledHttpTransport();
+		OsmConnection osm = createConnection(transport);
+
+		for (int i = 0; i < 5; i++)
+		{
+			assertEquals("fixed length", osm.makeRequest("fixed", new StringReader()));
+			assertEquals("chunked", osm.makeRequest("chunked", new StringReader()));
+		}
+
+		assertEquals(1, transport.getOpenedConnectionsCount());
+		assertEquals(1, clientPorts.size());
+		assertEquals(1, transport.getIdleConnectionsCount());
+	}
+
+	@Test public void reusesConnectionAfterUnreadResponse()
+	{
+		PooledHttpTransport transport = new PooledHttpTransport();
+		OsmConnection osm = createConnection(transport);
+
+		osm.makeRequest("fixed", null);
+		osm.makeRequest("chunked", null);
+
+		assertEquals(1, transport.getOpenedConnectionsCount());
+	}
+
+	@Test public void reusesConnectionAfterErrorResponse()
+	{
+		PooledHttpTransport transport = new PooledHttpTransport();
+		OsmConnection osm = createConnection(transport);
+
+		try
+		{
+			osm.makeRequest("missing", new StringReader());
+			fail();
+		}
+		catch(OsmNotFoundException e)
+		{
+			assertEquals("not here", e.getDescription());
+		}
+		assertEquals("fixed length", osm.makeRequest("fixed", new StringReader()));
+
+		assertEquals(1, transport.getOpenedConnectionsCount());
+	}
+
+	@Test public void sendsPayload()
+	{
+		PooledHttpTransport transport = new PooledHttpTransport();
+		OsmConnection osm = createConnection(transport);
+
+		for (int i = 0; i < 3; i++)
+		{
+			String result = osm.makeRequest("echo", "POST", false,
+					new PlainTextWriter("hello " + i), new StringReader());
+			assertEquals("hello " + i, result);
+		}
+
+		assertEquals(1, transport.getOpenedConnectionsCount());
+	}
+
+	@Test public void streamsChunkedPayload() throws IOException
+	{
+		PooledHttpTransport transport = new PooledHttpTransport();
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 5000; i++) text.append(i).append(' ');
+
+		for (int i = 0; i < 3; i++)
+		{
+			HttpCall call = transport.open(new URL(getUrl() + "echo"), 1000);
+			call.setRequestMethod("POST");
+			call.setChunkedStreamingMode();
+			OutputStream out = call.getOutputStream();
+			out.write(text.toString().getBytes(CHARSET));
+			out.close();
+
+			assertEquals(200, call.getResponseCode());
+			assertEquals(text.toString(), readAll(call.getInputStream()));
+			call.close();
+		}
+
+		assertEquals(1, transport.getOpenedConnectionsCount());
+	}
+
+	@Test public void streamsOnNewConnectionIfIdleOneWasClosed() throws Exception
+	{
+		PooledHttpTransport transport = new PooledHttpTransport();
+		OsmConnection osm = createConnection(transport);
+		osm.makeRequest("fixed", new StringReader());
+		// server closes the idle connection
+		int port = server.getAddress().getPort();
+		server.stop(0);
+		server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+		server.createContext("/api/0.6/echo", exchange ->
+				respond(exchange, 200, readAll(exchange.getRequestBody()), false));
+		server.start();
+
+		HttpCall call = transport.open(new URL(getUrl() + "echo"), 1000);
+		call.setRequestMethod("POST");
+		call.setChunkedStreamingMode();
+		OutputStream out = call.getOutputStream();
+		assertEquals(2, transport.getOpenedConnectionsCount());
+		out.write("hello".getBytes(CHARSET));
+		out.close();
+		assertEquals("hello", readAll(call.getInputStream()));
+		call.close();
+	}
+
+	@Test public void evictsIdleConnections() throws InterruptedException
+	{
+		PooledHttpTransport transport = new PooledHttpTransport(4, 50);
+		OsmConnection osm = createConnection(transport);
+
+		osm.makeRequest("fixed", new StringReader());
+		Thread.sleep(150);
+		osm.makeRequest("fixed", new StringReader());
+
+		assertEquals(2, transport.getOpenedConnectionsCount());
+		assertEquals(2, clientPorts.size());
+	}
+
+	@Test public void evictAll()
+	{
+		PooledHttpTransport transport = new PooledHttpTransport();
+		OsmConnection osm = createConnection(transport);
+
+		osm.makeRequest("fixed", new StringReader());
+		assertEquals(1, transport.getIdleConnectionsCount());
+
+		transport.evictAll();
+		assertEquals(0, transport.getIdleConnectionsCount());
+
+		osm.makeRequest("fixed", new StringReader());
+		assertEquals(2, transport.getOpenedConnectionsCount());
+	}
+
+	@Test public void limitsConnectionsPerHost() throws Exception
+	{
+		PooledHttpTransport transport = new PooledHttpTransport(2, 30000);
+		final OsmConnection osm = createConnection(transport);
+
+		ExecutorService executor = Executors.newFixedThreadPool(6);
+		List<Future<String>> results = new ArrayList<>();
+		for (int i = 0; i < 6; i++)
+		{
+			results.add(executor.submit(() -> osm.makeRequest("slow", new StringReader())));
+		}
+		for (Future<String> result : results)
+		{
+			assertEquals("slow", result.get());
+		}
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.SECONDS);
+
+		assertTrue(maxConcurrentRequests.get() <= 2);
+		assertEquals(2, transport.getOpenedConnectionsCount());
+	}
+
+	private String getUrl()
+	{
+		return "http://localhost:" + server.getAddress().getPort() + "/api/0.6/";
+	}
+
+	private OsmConnection createConnection(HttpTransport transport)
+	{
+		OsmConnection osm = new OsmConnection(getUrl(), "test", null);
+		if(transport != null) osm.setTransport(transport);
+		return osm;
+	}
+
+	private static void respond(HttpExchange exchange, int code,
+								String body, boolean chunked) throws IOException
+	{
+		byte[] bytes = body.getBytes(CHARSET);
+		exchange.sendResponseHeaders(code, chunked ? 0 : bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	private static String readAll(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int length;
+		while ((length = in.read(buffer)) != -1)
+		{
+			result.write(buffer, 0, length);
+		}
+		return result.toString(CHARSET);
+	}
+
+	private static class StringReader implements ApiResponseReader<String>
+	{
+		@Override public String parse(InputStream in) throws Exception
+		{
+			return readAll(in);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package de.westnordost.osmapi.map.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class Fixed1E7Test
+{
+	@Test public void parseFixed()
+	{
+		assertEquals(0, Fixed1E7.parseFixed("0"));
+		assertEquals(10000000, Fixed1E7.parseFixed("1"));
+		assertEquals(10000000, Fixed1E7.parseFixed("+1.0"));
+		assertEquals(521234567, Fixed1E7.parseFixed("52.1234567"));
+		assertEquals(-521234567, Fixed1E7.parseFixed("-52.1234567"));
+		assertEquals(1800000000, Fixed1E7.parseFixed("180.0000000"));
+		assertEquals(-1800000000, Fixed1E7.parseFixed("-180"));
+		assertEquals(5000000, Fixed1E7.parseFixed(".5"));
+		assertEquals(-1, Fixed1E7.parseFixed("-0.0000001"));
+		assertEquals(1234500, Fixed1E7.parseFixed("0.12345"));
+	}
+
+	@Test public void parseFixedRoundsLikeDoubleToFixed()
+	{
+		String[] values = {
+				"0.00000005", "-0.00000005", "0.00000004999", "-0.00000005001",
+				"12.345678949", "12.34567895", "-12.34567895", "-12.345678951", "1.99999999"
+		};
+		for (String value : values)
+		{
+			assertEquals(value, Fixed1E7.doubleToFixed(Double.parseDouble(value)), Fixed1E7.parseFixed(value));
+		}
+	}
+
+	@Test public void parseFixedIsSameAsParseDouble()
+	{
+		for (int i = 0; i < 10000; i++)
+		{
+			double value = (Math.random() - 0.5) * 360;
+			String str = String.format(java.util.Locale.US, "%.7f", value);
+			assertEquals(Double.parseDouble(str), Fixed1E7.toDouble(Fixed1E7.parseFixed(str)), 0);
+		}
+	}
+
+	@Test public void parseFixedWithExponent()
+	{
+		assertEquals(1234567, Fixed1E7.parseFixed("1.234567E-1"));
+		assertEquals(1200000000, Fixed1E7.parseFixed("1.2e2"));
+	}
+
+	@Test public void parseFixedInvalid()
+	{
+		for (String value : new String[]{"", "-", ".", "1.2.3", "a", "1,5", "NaN1"})
+		{
+			assertThrows(value, NumberFormatException.class, () -> Fixed1E7.parseFixed(value));
+		}
+	}
+
+	@Test public void parseFixedOutOfRange()
+	{
+		assertEquals(1800000000, Fixed1E7.parseFixed("180.00000004"));
+		for (String value : new String[]{"300.0", "-300", "999.9999999", "180.0000001", "2147483648",
+				"181", "3e2", "Infinity"})
+		{
+			assertThrows(value, NumberFormatException.class, () -> Fixed1E7.parseFixed(value));
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package de.westnordost.osmapi.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest
+{
+	@Test public void empty()
+	{
+		Histogram histogram = new Histogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getValueAtPercentile(0.5));
+		assertEquals(0, histogram.getMean(), 0);
+	}
+
+	@Test public void smallValuesAreExact()
+	{
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 10; i++) histogram.record(i);
+		assertEquals(10, histogram.getCount());
+		assertEquals(55, histogram.getSum());
+		assertEquals(10, histogram.getMax());
+		assertEquals(5.5, histogram.getMean(), 0);
+		assertEquals(5, histogram.getValueAtPercentile(0.5));
+		assertEquals(9, histogram.getValueAtPercentile(0.9));
+		assertEquals(1, histogram.getValueAtPercentile(0));
+		assertEquals(10, histogram.getValueAtPercentile(1));
+	}
+
+	@Test public void largeValuesAreWithinPrecision()
+	{
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 1000; i++) histogram.record(i * 1000_000L);
+		assertEquals(1000_000_000L, histogram.getMax());
+		long p50 = histogram.getValueAtPercentile(0.5);
+		assertTrue(p50 >= 500_000_000L && p50 <= 500_000_000L * 17 / 16);
+		long p99 = histogram.getValueAtPercentile(0.99);
+		assertTrue(p99 >= 990_000_000L && p99 <= 990_000_000L * 17 / 16);
+		assertEquals(1000_000_000L, histogram.getValueAtPercentile(1));
+	}
+
+	@Test public void negativeValuesAreRecordedAsZero()
+	{
+		Histogram histogram = new Histogram();
+		histogram.record(-5);
+		assertEquals(1, histogram.getBucketCounts()[0]);
+		assertEquals(0, histogram.getSum());
+	}
+
+	@Test public void bucketsAreContiguous()
+	{
+		assertEquals(0, Histogram.getBucketLowerBound(0));
+		for (int i = 1; i < Histogram.BUCKET_COUNT; i++)
+		{
+			assertEquals(Histogram.getBucketUpperBound(i - 1) + 1, Histogram.getBucketLowerBound(i));
+			assertEquals(i, Histogram.getBucketIndex(Histogram.getBucketLowerBound(i)));
+			assertEquals(i, Histogram.getBucketIndex(Histogram.getBucketUpperBound(i)));
+		}
+		assertEquals(Long.MAX_VALUE, Histogram.getBucketUpperBound(Histogram.BUCKET_COUNT - 1));
+	}
+
+	@Test public void recordsFromSeveralThreads() throws InterruptedException
+	{
+		Histogram histogram = new Histogram();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++)
+		{
+			threads.add(new Thread(() ->
+			{
+				for (int i = 0; i < 10000; i++) histogram.record(i);
+			}));
+		}
+		for (Thread thread : threads) thread.start();
+		for (Thread thread : threads) thread.join();
+
+		assertEquals(40000, histogram.getCount());
+		long inBuckets = 0;
+		for (long count : histogram.getBucketCounts()) inBuckets += count;
+		assertEquals(40000, inBuckets);
+		assertEquals(9999, histogram.getMax());
+	}
+}
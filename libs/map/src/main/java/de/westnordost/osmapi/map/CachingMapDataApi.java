@@ -0,0 +1,442 @@
+package de.westnordost.osmapi.map;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import de.westnordost.osmapi.OsmConnection;
+import de.westnordost.osmapi.common.Handler;
+import de.westnordost.osmapi.common.errors.OsmNotFoundException;
+import de.westnordost.osmapi.map.changes.DiffElement;
+import de.westnordost.osmapi.map.changes.MapDataChangesHandler;
+import de.westnordost.osmapi.map.data.BoundingBox;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.Node;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.Way;
+import de.westnordost.osmapi.map.handler.MapDataHandler;
+
+/** A {@link MapDataApi} that caches the elements queried via {@link #getNode(long)}, getWay,
+ *  getRelation, getWayComplete and getRelationComplete (and their asynchronous variants), so that
+ *  querying the same elements again does not need to go to the network.<br>
+ *  The cache holds at most the given number of elements, the least recently used are evicted
+ *  first. Cached elements expire after the given time to live.
+ *  <br><br>
+ *  Cached elements become stale when they are changed on the server. Changes uploaded through this
+ *  api invalidate the cached elements automatically. Pass any other changes you know of through
+ *  the handlers returned by {@link #invalidating(Handler)} (for uploads via other apis) and
+ *  {@link #invalidating(MapDataChangesHandler)} (for the data of changesets), so that cached
+ *  elements older than those are removed from the cache. This includes complete ways and relations
+ *  that contain them.
+ *  <br><br>
+ *  The same element instances are returned to anyone querying them, so they must not be modified.
+ *  Use an {@link ImmutableMapDataFactory}, the default, to make sure of that.
+ *  <br><br>
+ *  This class is thread safe. */
+public class CachingMapDataApi extends MapDataApi
+{
+	private final int maxSize;
+	private final long timeToLive;
+	private final LongSupplier clock;
+
+	/* in order of access, least recently used first */
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	/* element -> complete ways and relations in the cache that contain it */
+	private final Map<Key, Set<Key>> containedIn = new HashMap<>();
+	/* number of elements in the cache */
+	private int size;
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	private long invalidationCount;
+
+	/**
+	 * @param osm the connection to query elements that are not in the cache with
+	 * @param maxSize maximum number of elements to cache
+	 * @param timeToLive time in milliseconds after which a cached element expires
+	 */
+	public CachingMapDataApi(OsmConnection osm, int maxSize, long timeToLive)
+	{
+		this(osm, new ImmutableMapDataFactory(), maxSize, timeToLive);
+	}
+
+	/**
+	 * @param osm the connection to query elements that are not in the cache with
+	 * @param factory the factory to create the elements with
+	 * @param maxSize maximum number of elements to cache
+	 * @param timeToLive time in milliseconds after which a cached element expires
+	 */
+	public CachingMapDataApi(OsmConnection osm, MapDataFactory factory, int maxSize, long timeToLive)
+	{
+		this(osm, factory, maxSize, timeToLive, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+	}
+
+	CachingMapDataApi(OsmConnection osm, MapDataFactory factory, int maxSize, long timeToLive,
+			LongSupplier clock)
+	{
+		super(osm, factory);
+		if(maxSize <= 0) throw new IllegalArgumentException("Max size must be positive");
+		if(timeToLive <= 0) throw new IllegalArgumentException("Time to live must be positive");
+		this.maxSize = maxSize;
+		this.timeToLive = timeToLive;
+		this.clock = clock;
+	}
+
+	@Override
+	public Node getNode(long id)
+	{
+		return getElement(new Key(Element.Type.NODE, id, false), () -> super.getNode(id));
+	}
+
+	@Override
+	public Way getWay(long id)
+	{
+		return getElement(new Key(Element.Type.WAY, id, false), () -> super.getWay(id));
+	}
+
+	@Override
+	public Relation getRelation(long id)
+	{
+		return getElement(new Key(Element.Type.RELATION, id, false), () -> super.getRelation(id));
+	}
+
+	@Override
+	public void getWayComplete(long id, MapDataHandler handler)
+	{
+		getComplete(new Key(Element.Type.WAY, id, true), handler, h -> super.getWayComplete(id, h));
+	}
+
+	@Override
+	public void getRelationComplete(long id, MapDataHandler handler)
+	{
+		getComplete(new Key(Element.Type.RELATION, id, true), handler, h -> super.getRelationComplete(id, h));
+	}
+
+	/** Also invalidates the cached elements the server reports a newer version for */
+	@Override
+	public void uploadChanges(long changesetId, Iterable<Element> elements, Handler<DiffElement> handler)
+	{
+		super.uploadChanges(changesetId, elements, invalidating(handler));
+	}
+
+	/** Also invalidates the cached elements the server reports a newer version for */
+	@Override
+	public void uploadChanges(long changesetId, Iterable<? extends Element> creations,
+			Iterable<? extends Element> modifications, Iterable<? extends Element> deletions,
+			Handler<DiffElement> handler)
+	{
+		super.uploadChanges(changesetId, creations, modifications, deletions, invalidating(handler));
+	}
+
+	/** Removes the given element from the cache if the cached one has an older version than the
+	 *  given one, together with any complete way or relation that contains it.
+	 *
+	 *  @param version the version the element now has. Integer.MAX_VALUE to remove it regardless
+	 *                 of its version */
+	public synchronized void invalidate(Element.Type type, long id, int version)
+	{
+		Key key = new Key(type, id, false);
+		Entry entry = entries.get(key);
+		if(entry != null && entry.elements.get(0).getVersion() < version)
+		{
+			remove(key);
+			invalidationCount++;
+		}
+		Key completeKey = new Key(type, id, true);
+		Entry completeEntry = entries.get(completeKey);
+		if(completeEntry != null && completeEntry.elements.get(0).getVersion() < version)
+		{
+			remove(completeKey);
+			invalidationCount++;
+		}
+		Set<Key> containers = containedIn.get(key);
+		if(containers == null) return;
+		for (Key container : new ArrayList<>(containers))
+		{
+			Element element = entries.get(container).getElement(key);
+			if(element.getVersion() < version)
+			{
+				remove(container);
+				invalidationCount++;
+			}
+		}
+	}
+
+	/** Removes all elements from the cache */
+	public synchronized void invalidateAll()
+	{
+		entries.clear();
+		containedIn.clear();
+		size = 0;
+	}
+
+	/** @return a handler that invalidates the cached elements the given upload response reports
+	 *          a newer version for (or that were deleted) and then passes the diff on to the
+	 *          given handler. To be passed to {@link MapDataApi#uploadChanges(long, Iterable, Handler)}
+	 *          of another api or similar. The given handler may be null. */
+	public Handler<DiffElement> invalidating(Handler<DiffElement> handler)
+	{
+		return diff ->
+		{
+			invalidate(diff.type, diff.clientId, diff.serverVersion != null ? diff.serverVersion : Integer.MAX_VALUE);
+			if(handler != null) handler.handle(diff);
+		};
+	}
+
+	/** @return a handler that invalidates the cached elements older than the elements it is fed
+	 *          and then passes these on to the given handler. To be passed to
+	 *          ChangesetsApi.getData. The given handler may be null. */
+	public MapDataChangesHandler invalidating(MapDataChangesHandler handler)
+	{
+		return new MapDataChangesHandler()
+		{
+			@Override public void onStartCreations() { if(handler != null) handler.onStartCreations(); }
+			@Override public void onStartModifications() { if(handler != null) handler.onStartModifications(); }
+			@Override public void onStartDeletions() { if(handler != null) handler.onStartDeletions(); }
+			@Override public void handle(BoundingBox bounds) { if(handler != null) handler.handle(bounds); }
+
+			@Override public void handle(Node node)
+			{
+				invalidate(node);
+				if(handler != null) handler.handle(node);
+			}
+
+			@Override public void handle(Way way)
+			{
+				invalidate(way);
+				if(handler != null) handler.handle(way);
+			}
+
+			@Override public void handle(Relation relation)
+			{
+				invalidate(relation);
+				if(handler != null) handler.handle(relation);
+			}
+
+			private void invalidate(Element element)
+			{
+				CachingMapDataApi.this.invalidate(element.getType(), element.getId(), element.getVersion());
+			}
+		};
+	}
+
+	/** @return number of elements in the cache */
+	public synchronized int getSize()
+	{
+		return size;
+	}
+
+	/** @return number of queries answered from the cache */
+	public synchronized long getHitCount()
+	{
+		return hitCount;
+	}
+
+	/** @return number of queries that went to the network */
+	public synchronized long getMissCount()
+	{
+		return missCount;
+	}
+
+	/** @return number of cache entries that were removed to make room for new ones */
+	public synchronized long getEvictionCount()
+	{
+		return evictionCount;
+	}
+
+	/** @return number of cache entries that were removed because a newer version was reported */
+	public synchronized long getInvalidationCount()
+	{
+		return invalidationCount;
+	}
+
+	private interface Query<T>
+	{
+		T get();
+	}
+
+	private interface CompleteQuery
+	{
+		void get(MapDataHandler handler);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends Element> T getElement(Key key, Query<T> query)
+	{
+		Entry entry = getCached(key);
+		if(entry != null) return (T) entry.elements.get(0);
+
+		// querying is done outside of the lock, so two threads may query the same element
+		T element = query.get();
+		if(element != null) put(key, Collections.singletonList(element));
+		return element;
+	}
+
+	private void getComplete(Key key, MapDataHandler handler, CompleteQuery query)
+	{
+		Entry entry = getCached(key);
+		if(entry == null)
+		{
+			List<Element> elements = new ArrayList<>();
+			query.get(new MapDataHandler()
+			{
+				@Override public void handle(BoundingBox bounds) { }
+				@Override public void handle(Node node) { elements.add(node); }
+				@Override public void handle(Way way) { elements.add(way); }
+				@Override public void handle(Relation relation) { elements.add(relation); }
+			});
+			entry = put(key, sortRootFirst(key, elements));
+		}
+		// the response is in the order nodes, ways, relations
+		for (Element.Type type : Element.Type.values())
+		{
+			for (Element element : entry.elements)
+			{
+				if(element.getType() != type) continue;
+				switch(type)
+				{
+					case NODE:     handler.handle((Node) element);     break;
+					case WAY:      handler.handle((Way) element);      break;
+					case RELATION: handler.handle((Relation) element); break;
+				}
+			}
+		}
+	}
+
+	/* the first element of an entry is the element it is cached for, the others stay in the order
+	   of the response */
+	private static List<Element> sortRootFirst(Key key, List<Element> elements)
+	{
+		for (int i = 0; i < elements.size(); i++)
+		{
+			Element element = elements.get(i);
+			if(element.getType() == key.type && element.getId() == key.id)
+			{
+				elements.add(0, elements.remove(i));
+				return elements;
+			}
+		}
+		throw new OsmNotFoundException(404, "Not found", key.type + " " + key.id + " not in response");
+	}
+
+	private synchronized Entry getCached(Key key)
+	{
+		Entry entry = entries.get(key);
+		if(entry != null && clock.getAsLong() - entry.createdAt >= timeToLive)
+		{
+			remove(key);
+			entry = null;
+		}
+		if(entry != null) hitCount++;
+		else missCount++;
+		return entry;
+	}
+
+	private synchronized Entry put(Key key, List<Element> elements)
+	{
+		remove(key);
+		Entry entry = new Entry(elements, clock.getAsLong());
+		entries.put(key, entry);
+		size += elements.size();
+		if(key.complete)
+		{
+			for (Element element : elements)
+			{
+				Key elementKey = new Key(element.getType(), element.getId(), false);
+				containedIn.computeIfAbsent(elementKey, k -> new HashSet<>()).add(key);
+			}
+		}
+		// a single entry larger than the cache is still cached, until the next put
+		Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+		while(size > maxSize && it.hasNext())
+		{
+			Map.Entry<Key, Entry> eldest = it.next();
+			if(eldest.getKey().equals(key)) continue;
+			it.remove();
+			removed(eldest.getKey(), eldest.getValue());
+			evictionCount++;
+		}
+		return entry;
+	}
+
+	private void remove(Key key)
+	{
+		Entry entry = entries.remove(key);
+		if(entry != null) removed(key, entry);
+	}
+
+	private void removed(Key key, Entry entry)
+	{
+		size -= entry.elements.size();
+		if(!key.complete) return;
+		for (Element element : entry.elements)
+		{
+			Key elementKey = new Key(element.getType(), element.getId(), false);
+			Set<Key> containers = containedIn.get(elementKey);
+			if(containers == null) continue;
+			containers.remove(key);
+			if(containers.isEmpty()) containedIn.remove(elementKey);
+		}
+	}
+
+	private static final class Key
+	{
+		final Element.Type type;
+		final long id;
+		/* whether this is the key for a complete way or relation */
+		final boolean complete;
+
+		Key(Element.Type type, long id, boolean complete)
+		{
+			this.type = type;
+			this.id = id;
+			this.complete = complete;
+		}
+
+		@Override public boolean equals(Object other)
+		{
+			if(other == this) return true;
+			if(!(other instanceof Key)) return false;
+			Key otherKey = (Key) other;
+			return type == otherKey.type && id == otherKey.id && complete == otherKey.complete;
+		}
+
+		@Override public int hashCode()
+		{
+			int result = type.ordinal();
+			result = 31 * result + (int) (id ^ (id >>> 32));
+			result = 2 * result + (complete ? 1 : 0);
+			return result;
+		}
+	}
+
+	private static final class Entry
+	{
+		final List<Element> elements;
+		final long createdAt;
+
+		Entry(List<Element> elements, long createdAt)
+		{
+			this.elements = elements;
+			this.createdAt = createdAt;
+		}
+
+		Element getElement(Key key)
+		{
+			for (Element element : elements)
+			{
+				if(element.getType() == key.type && element.getId() == key.id) return element;
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package de.westnordost.osmapi.map;
+
+import de.westnordost.osmapi.changesets.Changeset;
+import de.westnordost.osmapi.map.data.Element.Type;
+import de.westnordost.osmapi.map.data.*;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Creates map data that takes less memory than that created by the {@link OsmMapDataFactory}:
+ *  Nodes are {@link CompactNode}s, the node ids of ways are kept in a {@link LongArrayList}, small
+ *  sets of tags are kept in an {@link ArrayTagMap} and the tag keys and values are deduplicated
+ *  with a {@link StringDictionary}. Use this when holding a lot of map data in memory. */
+public class CompactMapDataFactory implements MapDataFactory
+{
+	private final StringDictionary dictionary;
+
+	/** Tag keys and values are deduplicated with a new dictionary for each parse */
+	public CompactMapDataFactory()
+	{
+		this.dictionary = null;
+	}
+
+	/** @param dictionary dictionary shared by all parses to deduplicate tag keys and values with */
+	public CompactMapDataFactory(StringDictionary dictionary)
+	{
+		this.dictionary = dictionary;
+	}
+
+	@Override
+	public Node createNode(long id, int version, Double lat, Double lon, Map<String, String> tags,
+			Changeset changeset, Instant editedAt)
+	{
+		LatLon pos = lat != null && lon != null ? new OsmLatLon(lat, lon) : null;
+		return new CompactNode(id, version, pos, tags, changeset, editedAt);
+	}
+
+	@Override
+	public Node createNode(long id, int version, int lat, int lon, Map<String, String> tags,
+			Changeset changeset, Instant editedAt)
+	{
+		return new CompactNode(id, version, lat, lon, tags, changeset, editedAt);
+	}
+
+	@Override
+	public Way createWay(long id, int version, List<Long> nodes, Map<String, String> tags,
+			Changeset changeset, Instant editedAt)
+	{
+		if(!(nodes instanceof LongArrayList))
+		{
+			nodes = new LongArrayList(nodes);
+		}
+		else
+		{
+			// the way keeps the list, so it should not be larger than necessary
+			((LongArrayList) nodes).trimToSize();
+		}
+		return new OsmWay(id, version, nodes, tags, changeset, editedAt);
+	}
+
+	@Override
+	public Relation createRelation(long id, int version, List<RelationMember> members,
+			Map<String, String> tags, Changeset changeset, Instant editedAt)
+	{
+		return new OsmRelation(id, version, members, tags, changeset, editedAt);
+	}
+
+	@Override
+	public RelationMember createRelationMember(long ref, String role, Type type)
+	{
+		return new OsmRelationMember( ref, role, type );
+	}
+
+	@Override
+	public Map<String, String> createTags(int size)
+	{
+		return size <= ArrayTagMap.MAX_RECOMMENDED_SIZE ? new ArrayTagMap(size) : new HashMap<>();
+	}
+
+	@Override
+	public StringDictionary createStringDictionary()
+	{
+		return dictionary != null ? dictionary : new StringDictionary();
+	}
+}
@@ -0,0 +1,256 @@
+package de.westnordost.osmapi.map;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import de.westnordost.osmapi.common.errors.OsmNotFoundException;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.Node;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.Way;
+
+/** Coalesces requests for single elements made at about the same time into one request.<br>
+ *  Requests for single nodes (ways, relations) are collected for a short time window and are then
+ *  fetched together like with {@link MapDataApi#getNodesAsync(Collection)}. Each caller's future
+ *  is completed from the combined response.
+ *  <br><br>
+ *  Like with {@link MapDataApi#getNode(long)}, a future is completed with null if the element
+ *  does not exist or has been deleted. Because the server responds with an error to the whole request if any one
+ *  of the requested elements does not exist, a batch containing unknown ids is split up and
+ *  requested again until the unknown ids are isolated.
+ *  <br><br>
+ *  This class is thread safe. Close it when it is not needed anymore. */
+public class ElementRequestCoalescer implements AutoCloseable
+{
+	/* 500 ids with 12 digits each still fit into one request without being split */
+	private static final int MAX_BATCH_SIZE = 500;
+
+	private final long window;
+	private final ScheduledExecutorService scheduler;
+	private final boolean ownsScheduler;
+	private final AtomicLong requestsCount = new AtomicLong();
+	private volatile boolean closed;
+
+	private final Coalescer<Node> nodes;
+	private final Coalescer<Way> ways;
+	private final Coalescer<Relation> relations;
+
+	/**
+	 * @param api the api to fetch the elements with
+	 * @param window time in milliseconds for which requests are collected before they are made
+	 */
+	public ElementRequestCoalescer(MapDataApi api, long window)
+	{
+		this(api, window, createScheduler(), true);
+	}
+
+	/**
+	 * @param api the api to fetch the elements with
+	 * @param window time in milliseconds for which requests are collected before they are made
+	 * @param scheduler the executor on which the requests are scheduled to be made at the end of
+	 *                  the time window. It is not shut down on {@link #close()}
+	 */
+	public ElementRequestCoalescer(MapDataApi api, long window, ScheduledExecutorService scheduler)
+	{
+		this(api, window, scheduler, false);
+	}
+
+	private ElementRequestCoalescer(MapDataApi api, long window, ScheduledExecutorService scheduler,
+									boolean ownsScheduler)
+	{
+		this.window = window;
+		this.scheduler = scheduler;
+		this.ownsScheduler = ownsScheduler;
+
+		// the combined response contains deleted elements, while e.g. getNode returns null for them
+		nodes = new Coalescer<>(api::getVisibleNodesAsync);
+		ways = new Coalescer<>(api::getVisibleWaysAsync);
+		relations = new Coalescer<>(api::getVisibleRelationsAsync);
+	}
+
+	/** @param id the node's id
+	 *  @return a future that is completed with the node or null if it does not exist or has been
+	 *          deleted */
+	public CompletableFuture<Node> getNode(long id)
+	{
+		return nodes.get(id);
+	}
+
+	/** @param id the way's id
+	 *  @return a future that is completed with the way or null if it does not exist or has been
+	 *          deleted */
+	public CompletableFuture<Way> getWay(long id)
+	{
+		return ways.get(id);
+	}
+
+	/** @param id the relation's id
+	 *  @return a future that is completed with the relation or null if it does not exist or has
+	 *          been deleted */
+	public CompletableFuture<Relation> getRelation(long id)
+	{
+		return relations.get(id);
+	}
+
+	/** Make the requests for all currently collected ids now instead of waiting for the end of
+	 *  the time window */
+	public void flush()
+	{
+		nodes.flush();
+		ways.flush();
+		relations.flush();
+	}
+
+	/** Make the requests for all currently collected ids now and stop accepting new ones. The
+	 *  thread on which the requests are scheduled is stopped, unless the scheduler has been passed
+	 *  in the constructor. */
+	@Override public void close()
+	{
+		closed = true;
+		flush();
+		if(ownsScheduler) scheduler.shutdown();
+	}
+
+	/** @return number of requests that have been made so far */
+	public long getRequestsCount()
+	{
+		return requestsCount.get();
+	}
+
+	private class Coalescer<T extends Element>
+	{
+		private final Function<Collection<Long>, CompletableFuture<List<T>>> fetcher;
+
+		private Map<Long, CompletableFuture<T>> pending = new HashMap<>();
+		private ScheduledFuture<?> scheduledFlush;
+
+		Coalescer(Function<Collection<Long>, CompletableFuture<List<T>>> fetcher)
+		{
+			this.fetcher = fetcher;
+		}
+
+		CompletableFuture<T> get(long id)
+		{
+			CompletableFuture<T> result;
+			boolean flushNow = false;
+			synchronized(this)
+			{
+				if(closed) throw new IllegalStateException("The coalescer has been closed");
+				result = pending.get(id);
+				if(result == null)
+				{
+					result = new CompletableFuture<>();
+					pending.put(id, result);
+				}
+				if(pending.size() >= MAX_BATCH_SIZE)
+				{
+					flushNow = true;
+				}
+				else if(scheduledFlush == null)
+				{
+					scheduledFlush = scheduler.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+				}
+			}
+			if(flushNow) flush();
+			return result;
+		}
+
+		void flush()
+		{
+			Map<Long, CompletableFuture<T>> batch;
+			synchronized(this)
+			{
+				if(scheduledFlush != null)
+				{
+					scheduledFlush.cancel(false);
+					scheduledFlush = null;
+				}
+				if(pending.isEmpty()) return;
+				batch = pending;
+				pending = new HashMap<>();
+			}
+			fetch(batch);
+		}
+
+		private void fetch(final Map<Long, CompletableFuture<T>> batch)
+		{
+			requestsCount.incrementAndGet();
+			fetcher.apply(new ArrayList<>(batch.keySet())).whenComplete((elements, e) ->
+			{
+				if(e == null)
+				{
+					for (T element : elements)
+					{
+						CompletableFuture<T> future = batch.get(element.getId());
+						if(future != null) future.complete(element);
+					}
+					// anything not contained in the response does not exist (anymore)
+					for (CompletableFuture<T> future : batch.values())
+					{
+						future.complete(null);
+					}
+				}
+				else if(unwrap(e) instanceof OsmNotFoundException)
+				{
+					if(batch.size() == 1)
+					{
+						batch.values().iterator().next().complete(null);
+					}
+					else
+					{
+						splitAndFetch(batch);
+					}
+				}
+				else
+				{
+					for (CompletableFuture<T> future : batch.values())
+					{
+						future.completeExceptionally(unwrap(e));
+					}
+				}
+			});
+		}
+
+		private void splitAndFetch(Map<Long, CompletableFuture<T>> batch)
+		{
+			Map<Long, CompletableFuture<T>> first = new HashMap<>();
+			Map<Long, CompletableFuture<T>> second = new HashMap<>();
+			for (Map.Entry<Long, CompletableFuture<T>> entry : batch.entrySet())
+			{
+				if(first.size() < batch.size() / 2) first.put(entry.getKey(), entry.getValue());
+				else second.put(entry.getKey(), entry.getValue());
+			}
+			fetch(first);
+			fetch(second);
+		}
+	}
+
+	private static ScheduledExecutorService createScheduler()
+	{
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable ->
+		{
+			Thread thread = new Thread(runnable, "osmapi-coalescer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.setRemoveOnCancelPolicy(true);
+		return scheduler;
+	}
+
+	private static Throwable unwrap(Throwable e)
+	{
+		if(e instanceof CompletionException && e.getCause() != null) return e.getCause();
+		return e;
+	}
+}
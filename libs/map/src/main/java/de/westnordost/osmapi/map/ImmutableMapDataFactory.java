@@ -0,0 +1,83 @@
+package de.westnordost.osmapi.map;
+
+import de.westnordost.osmapi.changesets.Changeset;
+import de.westnordost.osmapi.map.data.Element.Type;
+import de.westnordost.osmapi.map.data.*;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Creates immutable map data that does not track modifications: {@link ImmutableNode}s,
+ *  {@link ImmutableWay}s, {@link ImmutableRelation}s and {@link ImmutableRelationMember}s. Use this
+ *  for map data that is only read, e.g. for analysis, especially if it is shared between threads.
+ *  Like with the {@link CompactMapDataFactory}, the tag keys and values are deduplicated with a
+ *  {@link StringDictionary}.
+ *  <br><br>
+ *  Like the elements created by the other factories, the elements created here keep the tags,
+ *  node ids and members they are created with instead of copying them, see
+ *  {@link ImmutableElements}. So these must not be modified anymore afterwards. */
+public class ImmutableMapDataFactory implements MapDataFactory
+{
+	private final StringDictionary dictionary;
+
+	/** Tag keys and values are deduplicated with a new dictionary for each parse */
+	public ImmutableMapDataFactory()
+	{
+		this.dictionary = null;
+	}
+
+	/** @param dictionary dictionary shared by all parses to deduplicate tag keys and values with */
+	public ImmutableMapDataFactory(StringDictionary dictionary)
+	{
+		this.dictionary = dictionary;
+	}
+
+	@Override
+	public Node createNode(long id, int version, Double lat, Double lon, Map<String, String> tags,
+			Changeset changeset, Instant editedAt)
+	{
+		LatLon pos = lat != null && lon != null ? new OsmLatLon(lat, lon) : null;
+		return ImmutableElements.createNode(id, version, pos, tags, changeset, editedAt);
+	}
+
+	@Override
+	public Node createNode(long id, int version, int lat, int lon, Map<String, String> tags,
+			Changeset changeset, Instant editedAt)
+	{
+		return ImmutableElements.createNode(id, version, lat, lon, tags, changeset, editedAt);
+	}
+
+	@Override
+	public Way createWay(long id, int version, List<Long> nodes, Map<String, String> tags,
+			Changeset changeset, Instant editedAt)
+	{
+		return ImmutableElements.createWay(id, version, nodes, tags, changeset, editedAt);
+	}
+
+	@Override
+	public Relation createRelation(long id, int version, List<RelationMember> members,
+			Map<String, String> tags, Changeset changeset, Instant editedAt)
+	{
+		return ImmutableElements.createRelation(id, version, members, tags, changeset, editedAt);
+	}
+
+	@Override
+	public RelationMember createRelationMember(long ref, String role, Type type)
+	{
+		return new ImmutableRelationMember(ref, role, type);
+	}
+
+	@Override
+	public Map<String, String> createTags(int size)
+	{
+		return size <= ArrayTagMap.MAX_RECOMMENDED_SIZE ? new ArrayTagMap(size) : new HashMap<>();
+	}
+
+	@Override
+	public StringDictionary createStringDictionary()
+	{
+		return dictionary != null ? dictionary : new StringDictionary();
+	}
+}
@@ -1,15 +1,21 @@
 package de.westnordost.osmapi.map;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
+import de.westnordost.osmapi.ApiResponseReader;
 import de.westnordost.osmapi.OsmConnection;
 import de.westnordost.osmapi.common.Handler;
 import de.westnordost.osmapi.common.IdResponseReader;
+import de.westnordost.osmapi.common.ListHandler;
 import de.westnordost.osmapi.common.XmlWriter;
 import de.westnordost.osmapi.common.errors.OsmAuthorizationException;
 import de.westnordost.osmapi.common.errors.OsmBadUserInputException;
@@ -21,6 +27,7 @@ import de.westnordost.osmapi.common.errors.OsmQueryTooBigException;
 import de.westnordost.osmapi.map.changes.DiffElement;
 import de.westnordost.osmapi.map.changes.MapDataChangesWriter;
 import de.westnordost.osmapi.map.changes.MapDataDiffParser;
+import de.westnordost.osmapi.map.changes.StreamingMapDataChangesWriter;
 import de.westnordost.osmapi.map.data.BoundingBox;
 import de.westnordost.osmapi.map.data.Element;
 import de.westnordost.osmapi.map.data.Node;
@@ -29,8 +36,11 @@ import de.westnordost.osmapi.map.data.Way;
 import de.westnordost.osmapi.map.handler.ListOsmElementHandler;
 import de.westnordost.osmapi.map.handler.SingleOsmElementHandler;
 import de.westnordost.osmapi.map.handler.MapDataHandler;
+import de.westnordost.osmapi.map.handler.WrapperOsmElementHandler;
 
-/** Get and upload changes to map data */
+/** Get and upload changes to map data.<br>
+ *  The methods to get map data also come in an asynchronous variant that returns a
+ *  CompletableFuture, see {@link OsmConnection#makeRequestAsync(String, ApiResponseReader)} */
 public class MapDataApi
 {
 	private static final String NODE = "node";
@@ -39,6 +49,10 @@ public class MapDataApi
 
 	private static final String FULL = "full";
 
+	/* the length of the request line of a GET request is commonly limited to 8KB by web servers
+	   and proxies, so the comma separated list of ids must not get much longer than that */
+	private static final int MAX_ID_LIST_LENGTH = 7000;
+
 	private final OsmConnection osm;
 	private final MapDataFactory factory;
 
@@ -66,6 +80,8 @@ public class MapDataApi
 
 	/**
 	 * Opens a changeset, uploads the data, closes the changeset and subscribes the user to it.
+	 * All data is uploaded at once, use the {@link MapDataUploader} to upload more data than fits
+	 * into one changeset.
 	 *
 	 * @param tags tags of this changeset. Usually it is comment and source.
 	 *              See {@link #updateMap(String, String, Iterable, Handler)}
@@ -133,6 +149,36 @@ public class MapDataApi
 		);
 	}
 
+	/** Upload changes into an opened changeset. In contrast to
+	 *  {@link #uploadChanges(long, Iterable, Handler)}, the elements are streamed to the server
+	 *  while iterating over them, so the given iterables may produce the elements lazily.
+	 *
+	 *  @param changesetId id of the changeset to upload changes into
+	 *  @param creations elements to create, ordered nodes, ways, relations. May be null.
+	 *  @param modifications elements to modify, ordered relations, ways, nodes. May be null.
+	 *  @param deletions elements to delete, ordered relations, ways, nodes. May be null.
+	 *  @param handler handler that processes the server's diffResult response. Optional.
+	 *
+	 *  @throws IllegalArgumentException if the elements are not in the required order
+	 *  @see #uploadChanges(long, Iterable, Handler) for the other exceptions that may be thrown
+	 *  @see StreamingMapDataChangesWriter */
+	public void uploadChanges(long changesetId, Iterable<? extends Element> creations,
+			Iterable<? extends Element> modifications, Iterable<? extends Element> deletions,
+			Handler<DiffElement> handler)
+	{
+		MapDataDiffParser parser = null;
+		if(handler != null)
+		{
+			parser = new MapDataDiffParser(handler);
+		}
+
+		osm.makeAuthenticatedRequest(
+				"changeset/" + changesetId + "/upload", "POST",
+				new StreamingMapDataChangesWriter(changesetId, creations, modifications, deletions),
+				parser
+		);
+	}
+
 	/** Open a new changeset with the given tags
 	 *  @param tags tags of this changeset. Usually it is comment and source.
 	 *  @return the id of the changeset
@@ -301,35 +347,82 @@ public class MapDataApi
 
 	/** Note that if not logged in, the Changeset for each returned element will be null
 	 *
-	 *  @param nodeIds a collection of node ids to return.
+	 *  @param nodeIds a collection of node ids to return. Duplicates are ignored.
 	 *  @throws OsmNotFoundException if <b>any</b> one of the given nodes does not exist
 	 *  @return a list of nodes. */
 	public List<Node> getNodes(Collection<Long> nodeIds)
 	{
 		if(nodeIds.isEmpty()) return Collections.emptyList();
-		return getSomeElements(NODE + "s?" + NODE + "s=" + toCommaList(nodeIds), Node.class);
+		ListHandler<Node> handler = new ListHandler<>();
+		getNodes(nodeIds, 1, handler);
+		return handler.get();
 	}
 
 	/** Note that if not logged in, the Changeset for each returned element will be null
 	 *
-	 *  @param wayIds a collection of way ids to return
+	 *  @param wayIds a collection of way ids to return. Duplicates are ignored.
 	 *  @throws OsmNotFoundException if <b>any</b> one of the given ways does not exist
 	 *  @return a list of ways. */
 	public List<Way> getWays(Collection<Long> wayIds)
 	{
 		if(wayIds.isEmpty()) return Collections.emptyList();
-		return getSomeElements(WAY + "s?" + WAY + "s=" + toCommaList(wayIds), Way.class);
+		ListHandler<Way> handler = new ListHandler<>();
+		getWays(wayIds, 1, handler);
+		return handler.get();
 	}
 
 	/** Note that if not logged in, the Changeset for each returned element will be null
 	 *
-	 *  @param relationIds a collection of relation ids to return
+	 *  @param relationIds a collection of relation ids to return. Duplicates are ignored.
 	 *  @throws OsmNotFoundException if <b>any</b> one of the given relations does not exist
 	 *  @return a list of relations. */
 	public List<Relation> getRelations(Collection<Long> relationIds)
 	{
 		if(relationIds.isEmpty()) return Collections.emptyList();
-		return getSomeElements(RELATION + "s?" + RELATION + "s=" + toCommaList(relationIds), Relation.class);
+		ListHandler<Relation> handler = new ListHandler<>();
+		getRelations(relationIds, 1, handler);
+		return handler.get();
+	}
+
+	/** Feeds the nodes with the given ids to the handler as they are parsed.<br>
+	 *  Duplicate ids are ignored. If there are too many ids to fit into one request, they are
+	 *  split into several requests. Up to maxParallelRequests of these are made at the same time
+	 *  on the connection's executor (so do not call this method from that executor), but the
+	 *  handler is never called concurrently.<br>
+	 *  Note that if not logged in, the Changeset for each returned element will be null
+	 *
+	 *  @param nodeIds a collection of node ids to return
+	 *  @param maxParallelRequests maximum number of requests to make at the same time
+	 *  @param handler handler that is fed the nodes, in no particular order
+	 *  @throws OsmNotFoundException if <b>any</b> one of the given nodes does not exist */
+	public void getNodes(Collection<Long> nodeIds, int maxParallelRequests, Handler<Node> handler)
+	{
+		getSomeElements(NODE, nodeIds, maxParallelRequests, Node.class, handler);
+	}
+
+	/** Feeds the ways with the given ids to the handler as they are parsed.
+	 *  See {@link #getNodes(Collection, int, Handler)}
+	 *
+	 *  @param wayIds a collection of way ids to return
+	 *  @param maxParallelRequests maximum number of requests to make at the same time
+	 *  @param handler handler that is fed the ways, in no particular order
+	 *  @throws OsmNotFoundException if <b>any</b> one of the given ways does not exist */
+	public void getWays(Collection<Long> wayIds, int maxParallelRequests, Handler<Way> handler)
+	{
+		getSomeElements(WAY, wayIds, maxParallelRequests, Way.class, handler);
+	}
+
+	/** Feeds the relations with the given ids to the handler as they are parsed.
+	 *  See {@link #getNodes(Collection, int, Handler)}
+	 *
+	 *  @param relationIds a collection of relation ids to return
+	 *  @param maxParallelRequests maximum number of requests to make at the same time
+	 *  @param handler handler that is fed the relations, in no particular order
+	 *  @throws OsmNotFoundException if <b>any</b> one of the given relations does not exist */
+	public void getRelations(Collection<Long> relationIds, int maxParallelRequests,
+							 Handler<Relation> handler)
+	{
+		getSomeElements(RELATION, relationIds, maxParallelRequests, Relation.class, handler);
 	}
 
 	/** Note that if not logged in, the Changeset for each returned element will be null
@@ -368,19 +461,170 @@ public class MapDataApi
 		return getSomeElements(RELATION + "/" + id + "/" + RELATION + "s", Relation.class);
 	}
 
-	private static String toCommaList(Iterable<Long> vals)
+	/** Asynchronous variant of {@link #getMap(BoundingBox, MapDataHandler)}. The handler is called
+	 *  on a thread of the connection's executor.
+	 *
+	 *  @return a future that is completed once all the map data has been fed to the handler */
+	public CompletableFuture<Void> getMapAsync(BoundingBox bounds, MapDataHandler handler)
+	{
+		return supplyAsync(() -> { getMap(bounds, handler); return null; });
+	}
+
+	/** Asynchronous variant of {@link #getWayComplete(long, MapDataHandler)}. The handler is
+	 *  called on a thread of the connection's executor.
+	 *
+	 *  @return a future that is completed once all the map data has been fed to the handler */
+	public CompletableFuture<Void> getWayCompleteAsync(long id, MapDataHandler handler)
+	{
+		return supplyAsync(() -> { getWayComplete(id, handler); return null; });
+	}
+
+	/** Asynchronous variant of {@link #getRelationComplete(long, MapDataHandler)}. The handler is
+	 *  called on a thread of the connection's executor.
+	 *
+	 *  @return a future that is completed once all the map data has been fed to the handler */
+	public CompletableFuture<Void> getRelationCompleteAsync(long id, MapDataHandler handler)
+	{
+		return supplyAsync(() -> { getRelationComplete(id, handler); return null; });
+	}
+
+	/** Asynchronous variant of {@link #getNode(long)} */
+	public CompletableFuture<Node> getNodeAsync(long id)
+	{
+		return supplyAsync(() -> getNode(id));
+	}
+
+	/** Asynchronous variant of {@link #getWay(long)} */
+	public CompletableFuture<Way> getWayAsync(long id)
+	{
+		return supplyAsync(() -> getWay(id));
+	}
+
+	/** Asynchronous variant of {@link #getRelation(long)} */
+	public CompletableFuture<Relation> getRelationAsync(long id)
 	{
-		StringBuilder result = new StringBuilder();
-		boolean first = true;
-		for(Long id : vals)
+		return supplyAsync(() -> getRelation(id));
+	}
+
+	/** Asynchronous variant of {@link #getNodes(Collection)} */
+	public CompletableFuture<List<Node>> getNodesAsync(Collection<Long> nodeIds)
+	{
+		return supplyAsync(() -> getNodes(nodeIds));
+	}
+
+	/** Asynchronous variant of {@link #getWays(Collection)} */
+	public CompletableFuture<List<Way>> getWaysAsync(Collection<Long> wayIds)
+	{
+		return supplyAsync(() -> getWays(wayIds));
+	}
+
+	/** Asynchronous variant of {@link #getRelations(Collection)} */
+	public CompletableFuture<List<Relation>> getRelationsAsync(Collection<Long> relationIds)
+	{
+		return supplyAsync(() -> getRelations(relationIds));
+	}
+
+	/* Like getNodesAsync etc., but deleted elements are left out of the result, like getNode etc.
+	   return null for them */
+
+	CompletableFuture<List<Node>> getVisibleNodesAsync(Collection<Long> nodeIds)
+	{
+		return supplyAsync(() -> getVisibleElements(NODE, nodeIds, Node.class));
+	}
+
+	CompletableFuture<List<Way>> getVisibleWaysAsync(Collection<Long> wayIds)
+	{
+		return supplyAsync(() -> getVisibleElements(WAY, wayIds, Way.class));
+	}
+
+	CompletableFuture<List<Relation>> getVisibleRelationsAsync(Collection<Long> relationIds)
+	{
+		return supplyAsync(() -> getVisibleElements(RELATION, relationIds, Relation.class));
+	}
+
+	private <T extends Element> List<T> getVisibleElements(String type, Collection<Long> ids, Class<T> tClass)
+	{
+		if(ids.isEmpty()) return Collections.emptyList();
+		ListHandler<T> handler = new ListHandler<>();
+		getSomeElements(type, ids, 1, tClass, handler, true);
+		return handler.get();
+	}
+
+	private <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier)
+	{
+		return CompletableFuture.supplyAsync(supplier, osm.getExecutor());
+	}
+
+	/** @return the given ids as comma separated lists that are each not longer than the given
+	 *          maximum length. Null and duplicate ids are skipped. */
+	static List<String> toCommaLists(Collection<Long> ids, int maxLength)
+	{
+		List<String> result = new ArrayList<>();
+		StringBuilder list = new StringBuilder();
+		for(Long id : new LinkedHashSet<>(ids))
 		{
 			if(id == null) continue;
 
-			if(first) first = false;
-			else      result.append(",");
-			result.append(id);
+			String idStr = id.toString();
+			if(list.length() > 0 && list.length() + 1 + idStr.length() > maxLength)
+			{
+				result.add(list.toString());
+				list.setLength(0);
+			}
+			if(list.length() > 0) list.append(",");
+			list.append(idStr);
+		}
+		if(list.length() > 0) result.add(list.toString());
+		return result;
+	}
+
+	private <T extends Element> void getSomeElements(String type, Collection<Long> ids,
+			int maxParallelRequests, Class<T> tClass, final Handler<T> handler)
+	{
+		getSomeElements(type, ids, maxParallelRequests, tClass, handler, false);
+	}
+
+	private <T extends Element> void getSomeElements(String type, Collection<Long> ids,
+			int maxParallelRequests, Class<T> tClass, final Handler<T> handler, boolean skipDeleted)
+	{
+		final boolean authenticate = osm.getOAuthAccessToken() != null;
+		List<String> calls = new ArrayList<>();
+		for (String idList : toCommaLists(ids, MAX_ID_LIST_LENGTH))
+		{
+			calls.add(type + "s?" + type + "s=" + idList);
+		}
+
+		if(maxParallelRequests <= 1 || calls.size() <= 1)
+		{
+			MapDataHandler mapDataHandler = new WrapperOsmElementHandler<>(tClass, handler);
+			for (String call : calls)
+			{
+				osm.makeRequest(call, authenticate, createParser(mapDataHandler, skipDeleted));
+			}
+			return;
 		}
-		return result.toString();
+
+		final MapDataHandler mapDataHandler = new WrapperOsmElementHandler<>(tClass, element ->
+		{
+			synchronized (handler)
+			{
+				handler.handle(element);
+			}
+		});
+		List<Runnable> requests = new ArrayList<>();
+		for (final String call : calls)
+		{
+			requests.add(() ->
+					osm.makeRequest(call, authenticate, createParser(mapDataHandler, skipDeleted)));
+		}
+		ParallelRequests.run(osm.getExecutor(), maxParallelRequests, requests);
+	}
+
+	private MapDataParser createParser(MapDataHandler handler, boolean skipDeleted)
+	{
+		MapDataParser parser = new MapDataParser(handler, factory);
+		parser.setSkipDeleted(skipDeleted);
+		return parser;
 	}
 
 	private <T extends Element> List<T> getSomeElements(String call, Class<T> tClass)
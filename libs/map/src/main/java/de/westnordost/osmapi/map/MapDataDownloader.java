@@ -0,0 +1,172 @@
+package de.westnordost.osmapi.map;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.westnordost.osmapi.OsmConnection;
+import de.westnordost.osmapi.capabilities.CapabilitiesApi;
+import de.westnordost.osmapi.common.errors.OsmQueryTooBigException;
+import de.westnordost.osmapi.map.data.BoundingBox;
+import de.westnordost.osmapi.map.data.LongHashSet;
+import de.westnordost.osmapi.map.data.Node;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.Way;
+import de.westnordost.osmapi.map.handler.MapDataHandler;
+
+/** Downloads the map data in areas of any size.<br>
+ *  The area is split up into tiles that are each not larger than the maximum area the server
+ *  allows to query at once (see capabilities). The tiles are downloaded in parallel on the
+ *  connection's executor. A tile that still contains too much data is split up further.
+ *  <br><br>
+ *  Note that the OSM API is intended for editing the map. Please use it responsibly and consider
+ *  using the Overpass API or a planet extract for downloading large areas. */
+public class MapDataDownloader
+{
+	/* tiles are not split any further than that */
+	private static final double MIN_TILE_SIZE = 0.0001;
+
+	private final OsmConnection osm;
+	private final MapDataApi mapDataApi;
+
+	private float maxAreaInSquareDegrees;
+
+	public MapDataDownloader(OsmConnection osm, MapDataFactory factory)
+	{
+		this.osm = osm;
+		this.mapDataApi = new MapDataApi(osm, factory);
+	}
+
+	public MapDataDownloader(OsmConnection osm)
+	{
+		this(osm, new OsmMapDataFactory());
+	}
+
+	/**
+	 * Feeds the map data in the given bounds to the given handler.<br>
+	 * Each element is passed to the handler exactly once, even though it may be contained in
+	 * several tiles. The handler is never called concurrently. The bounds passed to the handler
+	 * are the given bounds.
+	 *
+	 * @param bounds rectangle in which to query map data. May be of any size and may cross the
+	 *               180th meridian.
+	 * @param maxParallelRequests maximum number of tiles to download at the same time
+	 * @param handler map data handler that is fed the map data
+	 *
+	 * @throws OsmQueryTooBigException if even the smallest tile contains too much data
+	 */
+	public void download(BoundingBox bounds, int maxParallelRequests, MapDataHandler handler)
+	{
+		final DeduplicatingMapDataHandler deduplicatingHandler = new DeduplicatingMapDataHandler(handler);
+		handler.handle(bounds);
+
+		List<Runnable> requests = new ArrayList<>();
+		for (final BoundingBox tile : getTiles(bounds, getMaxAreaInSquareDegrees()))
+		{
+			requests.add(() -> downloadTile(tile, deduplicatingHandler));
+		}
+		if(maxParallelRequests <= 1)
+		{
+			for (Runnable request : requests) request.run();
+		}
+		else
+		{
+			ParallelRequests.run(osm.getExecutor(), maxParallelRequests, requests);
+		}
+	}
+
+	private void downloadTile(BoundingBox tile, MapDataHandler handler)
+	{
+		try
+		{
+			mapDataApi.getMap(tile, handler);
+		}
+		catch(OsmQueryTooBigException e)
+		{
+			double width = tile.getMaxLongitude() - tile.getMinLongitude();
+			double height = tile.getMaxLatitude() - tile.getMinLatitude();
+			if(width < MIN_TILE_SIZE || height < MIN_TILE_SIZE) throw e;
+
+			for (BoundingBox quarter : split(tile, 2, 2))
+			{
+				downloadTile(quarter, handler);
+			}
+		}
+	}
+
+	private synchronized float getMaxAreaInSquareDegrees()
+	{
+		if(maxAreaInSquareDegrees == 0)
+		{
+			maxAreaInSquareDegrees = new CapabilitiesApi(osm).get().maxMapQueryAreaInSquareDegrees;
+		}
+		return maxAreaInSquareDegrees;
+	}
+
+	/** @return the given bounds split into tiles so that each tile is not larger than the given
+	 *          area and does not cross the 180th meridian */
+	static List<BoundingBox> getTiles(BoundingBox bounds, double maxAreaInSquareDegrees)
+	{
+		double maxTileSize = Math.sqrt(maxAreaInSquareDegrees);
+		List<BoundingBox> result = new ArrayList<>();
+		for (BoundingBox box : bounds.splitAt180thMeridian())
+		{
+			double width = box.getMaxLongitude() - box.getMinLongitude();
+			double height = box.getMaxLatitude() - box.getMinLatitude();
+			int columns = Math.max(1, (int) Math.ceil(width / maxTileSize));
+			int rows = Math.max(1, (int) Math.ceil(height / maxTileSize));
+			result.addAll(split(box, rows, columns));
+		}
+		return result;
+	}
+
+	private static List<BoundingBox> split(BoundingBox box, int rows, int columns)
+	{
+		List<BoundingBox> result = new ArrayList<>(rows * columns);
+		double minLat = box.getMinLatitude(), maxLat = box.getMaxLatitude();
+		double minLon = box.getMinLongitude(), maxLon = box.getMaxLongitude();
+		for (int row = 0; row < rows; ++row)
+		{
+			// the outer edges are taken over exactly so that no gaps occur due to rounding errors
+			double tileMinLat = row == 0 ? minLat : minLat + (maxLat - minLat) * row / rows;
+			double tileMaxLat = row == rows - 1 ? maxLat : minLat + (maxLat - minLat) * (row + 1) / rows;
+			for (int column = 0; column < columns; ++column)
+			{
+				double tileMinLon = column == 0 ? minLon : minLon + (maxLon - minLon) * column / columns;
+				double tileMaxLon = column == columns - 1 ? maxLon : minLon + (maxLon - minLon) * (column + 1) / columns;
+				result.add(new BoundingBox(tileMinLat, tileMinLon, tileMaxLat, tileMaxLon));
+			}
+		}
+		return result;
+	}
+
+	/** Passes on each element only once and never concurrently. Ignores the bounds */
+	private static class DeduplicatingMapDataHandler implements MapDataHandler
+	{
+		private final MapDataHandler handler;
+		private final LongHashSet nodeIds = new LongHashSet();
+		private final LongHashSet wayIds = new LongHashSet();
+		private final LongHashSet relationIds = new LongHashSet();
+
+		DeduplicatingMapDataHandler(MapDataHandler handler)
+		{
+			this.handler = handler;
+		}
+
+		@Override public void handle(BoundingBox bounds) { }
+
+		@Override public synchronized void handle(Node node)
+		{
+			if(nodeIds.add(node.getId())) handler.handle(node);
+		}
+
+		@Override public synchronized void handle(Way way)
+		{
+			if(wayIds.add(way.getId())) handler.handle(way);
+		}
+
+		@Override public synchronized void handle(Relation relation)
+		{
+			if(relationIds.add(relation.getId())) handler.handle(relation);
+		}
+	}
+}
@@ -1,11 +1,13 @@
 package de.westnordost.osmapi.map;
 
 import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import de.westnordost.osmapi.changesets.Changeset;
 import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.Fixed1E7;
 import de.westnordost.osmapi.map.data.Node;
 import de.westnordost.osmapi.map.data.Relation;
 import de.westnordost.osmapi.map.data.RelationMember;
@@ -25,6 +27,18 @@ public interface MapDataFactory
 	Node createNode(long id, int version, Double lat, Double lon, Map<String,String> tags,
 			Changeset changeset, Instant editedAt);
 
+	/** Create a node from the given data with the position given as fixed 1E7 ints. Override
+	 *  this if the node stores its position like that to avoid a conversion.
+	 *  @see #createNode(long, int, Double, Double, Map, Changeset, Instant)
+	 *  @param lat latitude position of the node in fixed 1E7
+	 *  @param lon longitude position of the node in fixed 1E7 */
+	default Node createNode(long id, int version, int lat, int lon, Map<String,String> tags,
+			Changeset changeset, Instant editedAt)
+	{
+		return createNode(id, version, Fixed1E7.toDouble(lat), Fixed1E7.toDouble(lon), tags,
+				changeset, editedAt);
+	}
+
 	/** Create a way from the given data
 	 * @param id id of the wy
 	 * @param version version of the way
@@ -54,4 +68,22 @@ public interface MapDataFactory
 	 * @param type element type of the member, either node, way or relation
 	 * @return the relation member */
 	RelationMember createRelationMember(long ref, String role, Element.Type type);
+
+	/** Create the map the tags of an element are put into when parsing. Override this to use a
+	 *  map implementation that takes less memory.
+	 * @param size number of tags that will be put into the map
+	 * @return an empty, modifiable map */
+	default Map<String,String> createTags(int size)
+	{
+		return new HashMap<>();
+	}
+
+	/** Called on each parse of map data. Override this to deduplicate the tag keys, tag values and
+	 *  relation member roles while parsing. Return the same dictionary each time to share it
+	 *  between parses.
+	 * @return the dictionary to deduplicate strings with or null to not deduplicate them */
+	default StringDictionary createStringDictionary()
+	{
+		return null;
+	}
 }
@@ -5,6 +5,7 @@ import de.westnordost.osmapi.changesets.Changeset;
 import de.westnordost.osmapi.common.XmlParser;
 import de.westnordost.osmapi.map.data.BoundingBox;
 import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.LongArrayList;
 import de.westnordost.osmapi.map.data.RelationMember;
 import de.westnordost.osmapi.map.handler.MapDataHandler;
 import de.westnordost.osmapi.user.User;
@@ -16,12 +17,41 @@ import java.time.Instant;
 import java.util.*;
 
 /** Parses the map data. It parses the XML naively, i.e. it does not care where in the XML the map
- *  data is. */
+ *  data is.
+ *  <br><br>
+ *  The maps for the tags are created via {@link MapDataFactory#createTags(int)} and if the factory
+ *  supplies a {@link StringDictionary}, tag keys, tag values and member roles are deduplicated
+ *  with it. */
 public class MapDataParser extends XmlParser implements ApiResponseReader<Void>
 {
-	private static final String NODE = "node",
-	                            WAY = "way",
-	                            RELATION = "relation";
+	private final int
+			NODE = symbol("node"),
+			WAY = symbol("way"),
+			RELATION = symbol("relation"),
+			TAG = symbol("tag"),
+			ND = symbol("nd"),
+			MEMBER = symbol("member"),
+			BOUNDS = symbol("bounds");
+
+	private final int
+			ID = symbol("id"),
+			VERSION = symbol("version"),
+			CHANGESET = symbol("changeset"),
+			TIMESTAMP = symbol("timestamp"),
+			VISIBLE = symbol("visible"),
+			UID = symbol("uid"),
+			USER = symbol("user"),
+			LAT = symbol("lat"),
+			LON = symbol("lon"),
+			K = symbol("k"),
+			V = symbol("v"),
+			REF = symbol("ref"),
+			ROLE = symbol("role"),
+			TYPE = symbol("type"),
+			MINLAT = symbol("minlat"),
+			MINLON = symbol("minlon"),
+			MAXLAT = symbol("maxlat"),
+			MAXLON = symbol("maxlon");
 
 	private final MapDataHandler handler;
 	private final MapDataFactory factory;
@@ -29,33 +59,54 @@ public class MapDataParser extends XmlParser implements ApiResponseReader<Void>
 	/* temporary maps so we do not parse and hold many times the same user and changeset */
 	private Map<Long, User> users;
 	private Map<Long, Changeset> changesets;
+	private StringDictionary dictionary;
 
 	private long id = -1;
 	private int version = 0;
-	private Long changesetId;
+	private Changeset changeset;
 	private Instant timestamp;
+	private boolean visible;
+	private boolean skipDeleted;
 
-	private Double lat;
-	private Double lon;
-	private Map<String, String> tags;
+	private boolean hasPosition;
+	private int lat;
+	private int lon;
+	/* tags of the current element, keys at even, values at odd indices */
+	private String[] tags = new String[16];
+	private int tagCount;
 	private List<RelationMember> members = new ArrayList<>();
-	private List<Long> nodes = new LinkedList<>();
+	private LongArrayList nodes = new LongArrayList();
 
 	public MapDataParser( MapDataHandler handler, MapDataFactory factory )
 	{
 		this.handler = handler;
 		this.factory = factory;
 	}
+
+	/** Whether to not pass elements to the handler that are marked as not visible, i.e. deleted.
+	 *  Responses to requests for several elements by id contain these with only id and version. */
+	void setSkipDeleted(boolean skipDeleted)
+	{
+		this.skipDeleted = skipDeleted;
+	}
 	
 	@Override
 	public Void parse(InputStream in) throws IOException
 	{
 		users = new HashMap<>();
 		changesets = new HashMap<>();
+		dictionary = factory.createStringDictionary();
 
-		doParse(in);
-		users = null;
-		changesets = null;
+		try
+		{
+			doParse(in);
+		}
+		finally
+		{
+			users = null;
+			changesets = null;
+			dictionary = null;
+		}
 
 		return null;
 	}
@@ -63,64 +114,97 @@ public class MapDataParser extends XmlParser implements ApiResponseReader<Void>
 	@Override
 	protected void onStartElement() throws ParseException
 	{
-		String name = getName();
+		int name = getSymbol();
 
-		if(name.equals("tag"))
+		if(name == TAG)
 		{
-			if(tags == null)
+			if(tagCount * 2 == tags.length)
 			{
-				tags = new HashMap<>();
+				tags = Arrays.copyOf(tags, tags.length * 2);
 			}
-			tags.put(getAttribute("k"), getAttribute("v"));
+			tags[tagCount * 2] = intern(getAttribute(K));
+			tags[tagCount * 2 + 1] = intern(getAttribute(V));
+			tagCount++;
 		}
-		else if(name.equals("nd"))
+		else if(name == ND)
 		{
-			nodes.add( getLongAttribute("ref") );
+			nodes.addLong( getLongAttribute(REF, -1) );
 		}
-		else if(name.equals("member"))
+		else if(name == MEMBER)
 		{
 			members.add( factory.createRelationMember(
-					getLongAttribute("ref"),
-					getAttribute("role"),
-					Element.Type.valueOf(getAttribute("type").toUpperCase(Locale.UK))
+					getLongAttribute(REF, -1),
+					intern(getAttribute(ROLE)),
+					Element.Type.valueOf(getAttribute(TYPE).toUpperCase(Locale.UK))
 			));
 		}
-		else if (name.equals("bounds"))
+		else if (name == BOUNDS)
 		{
 			BoundingBox bounds = new BoundingBox(
-					getDoubleAttribute("minlat"), getDoubleAttribute("minlon"),
-					getDoubleAttribute("maxlat"), getDoubleAttribute("maxlon"));
+					getDoubleAttribute(MINLAT, Double.NaN), getDoubleAttribute(MINLON, Double.NaN),
+					getDoubleAttribute(MAXLAT, Double.NaN), getDoubleAttribute(MAXLON, Double.NaN));
 			handler.handle(bounds);
 		}
-		else if (name.equals(NODE) || name.equals(WAY) || name.equals(RELATION))
+		else if (name == NODE || name == WAY || name == RELATION)
 		{
 			timestamp = parseTimestamp();
-			
-			changesetId = getLongAttribute("changeset");
-			if(changesetId != null && !changesets.containsKey(changesetId))
-			{
-				Changeset changeset = new Changeset();
-				changeset.id = changesetId;
-				changeset.user = parseUser();
-				
-				changesets.put( changesetId, changeset);
-			}
 
-			id = getLongAttribute("id");
-			Integer v = getIntAttribute("version");
-			version = v != null ? v : -1;
+			changeset = parseChangeset();
 
-			if(name.equals(NODE))
+			id = getLongAttribute(ID, -1);
+			version = getIntAttribute(VERSION, -1);
+			visible = !"false".equals(getAttribute(VISIBLE));
+
+			if(name == NODE)
 			{
-				lat = getDoubleAttribute("lat");
-				lon = getDoubleAttribute("lon");
+				// nodes in the history may have been deleted and thus have no position
+				hasPosition = getAttribute(LAT) != null && getAttribute(LON) != null;
+				if(hasPosition)
+				{
+					lat = getFixed1E7Attribute(LAT, 0);
+					lon = getFixed1E7Attribute(LON, 0);
+				}
 			}
 		}
 	}
 
+	private String intern(String string)
+	{
+		return dictionary != null ? dictionary.intern(string) : string;
+	}
+
+	private Map<String, String> createTags()
+	{
+		if(tagCount == 0) return null;
+
+		Map<String, String> result = factory.createTags(tagCount);
+		for (int i = 0; i < tagCount * 2; i += 2)
+		{
+			result.put(tags[i], tags[i + 1]);
+		}
+		return result;
+	}
+
+	private Changeset parseChangeset()
+	{
+		long changesetId = getLongAttribute(CHANGESET, -1);
+		if(changesetId == -1) return null;
+
+		Changeset changeset = changesets.get(changesetId);
+		if(changeset == null)
+		{
+			changeset = new Changeset();
+			changeset.id = changesetId;
+			changeset.user = parseUser();
+
+			changesets.put( changesetId, changeset);
+		}
+		return changeset;
+	}
+
 	private Instant parseTimestamp()
 	{
-		String timestamp = getAttribute("timestamp");
+		String timestamp = getAttribute(TIMESTAMP);
 		if(timestamp == null) return null;
 
 		return Instant.parse(timestamp);
@@ -128,46 +212,64 @@ public class MapDataParser extends XmlParser implements ApiResponseReader<Void>
 
 	private User parseUser()
 	{
-		Long userId = getLongAttribute("uid");
-		if(userId == null) return null;
+		long userId = getLongAttribute(UID, -1);
+		if(userId == -1) return null;
 
-		if(!users.containsKey(userId))
+		User user = users.get(userId);
+		if(user == null)
 		{
-			User user = new User(userId, getAttribute("user"));
+			user = new User(userId, getAttribute(USER));
 			users.put(userId, user);
-			return user;
 		}
-		return users.get(userId);
+		return user;
 	}
 
 	@Override
 	protected void onEndElement()
 	{
-		String name = getName();
+		int name = getSymbol();
 
-		if(name.equals(NODE))
+		Map<String, String> tags = null;
+		if (name == NODE || name == WAY || name == RELATION)
 		{
-			handler.handle(
-					factory.createNode(id, version, lat, lon, tags, changesets.get(changesetId), timestamp));
+			tags = createTags();
+			Arrays.fill(this.tags, 0, tagCount * 2, null);
+			tagCount = 0;
+
+			if(skipDeleted && !visible)
+			{
+				nodes.clear();
+				members.clear();
+				return;
+			}
 		}
-		else if(name.equals(WAY))
+
+		if(name == NODE)
+		{
+			if(hasPosition)
+			{
+				handler.handle(
+						factory.createNode(id, version, lat, lon, tags, changeset, timestamp));
+			}
+			else
+			{
+				handler.handle(
+						factory.createNode(id, version, null, null, tags, changeset, timestamp));
+			}
+		}
+		else if(name == WAY)
 		{
 			handler.handle(
-					factory.createWay(id, version, nodes, tags, changesets.get(changesetId), timestamp));
+					factory.createWay(id, version, nodes, tags, changeset, timestamp));
 			
-			nodes = new LinkedList<>();
+			nodes = new LongArrayList();
 		}
-		else if(name.equals(RELATION))
+		else if(name == RELATION)
 		{
 			handler.handle(
-					factory.createRelation(id, version, members, tags, changesets.get(changesetId), timestamp));
+					factory.createRelation(id, version, members, tags, changeset, timestamp));
 			
 			members = new ArrayList<>();
 		}
-
-		if (name.equals(NODE) || name.equals(WAY) || name.equals(RELATION))
-		{
-			tags = null;
-		}
 	}
 }
@@ -0,0 +1,350 @@
+package de.westnordost.osmapi.map;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.westnordost.osmapi.OsmConnection;
+import de.westnordost.osmapi.capabilities.CapabilitiesApi;
+import de.westnordost.osmapi.common.Handler;
+import de.westnordost.osmapi.map.changes.DiffElement;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.LongObjectMap;
+import de.westnordost.osmapi.map.data.OsmRelation;
+import de.westnordost.osmapi.map.data.OsmRelationMember;
+import de.westnordost.osmapi.map.data.OsmWay;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.RelationMember;
+import de.westnordost.osmapi.map.data.Way;
+
+/** Uploads any number of changes.<br>
+ *  The changes are uploaded in batches, one after another, so that no upload contains more
+ *  elements than a changeset may contain at most (see capabilities). When a changeset is full, it
+ *  is closed and a new one with the same tags is opened.
+ *  <br><br>
+ *  The batches are dependency-safe: Elements are created before the elements that refer to them
+ *  and deleted after them. Since placeholder ids (negative ids of new elements) are only valid
+ *  within one upload, references to elements created in a previous batch are replaced by the ids
+ *  the server assigned to them. The given elements themselves are not modified.
+ *  <br><br>
+ *  If an upload fails, the changes of the batches that have been uploaded before remain on the
+ *  server. */
+public class MapDataUploader
+{
+	/** Listens to the progress of an upload */
+	public interface ProgressListener
+	{
+		/** Called after each batch has been uploaded
+		 *
+		 * @param changesetId id of the changeset the batch was uploaded into
+		 * @param uploadedCount number of elements uploaded so far
+		 * @param totalCount number of elements to upload in total */
+		void onUploaded(long changesetId, int uploadedCount, int totalCount);
+	}
+
+	private final OsmConnection osm;
+	private final MapDataApi mapDataApi;
+
+	private int maxElementsPerChangeset;
+	private int maxElementsPerUpload = Integer.MAX_VALUE;
+
+	public MapDataUploader(OsmConnection osm)
+	{
+		this.osm = osm;
+		this.mapDataApi = new MapDataApi(osm);
+	}
+
+	/** Set the maximum number of elements per changeset. Defaults to the maximum the server
+	 *  allows (see capabilities) */
+	public synchronized void setMaxElementsPerChangeset(int maxElementsPerChangeset)
+	{
+		this.maxElementsPerChangeset = maxElementsPerChangeset;
+	}
+
+	/** Set the maximum number of elements per upload. Uploading a changeset in several smaller
+	 *  batches makes each request quicker. Defaults to the maximum number of elements per
+	 *  changeset */
+	public synchronized void setMaxElementsPerUpload(int maxElementsPerUpload)
+	{
+		this.maxElementsPerUpload = maxElementsPerUpload;
+	}
+
+	/**
+	 * Opens changesets, uploads the elements into them and closes them again.
+	 *
+	 * @param tags tags of the changesets. Usually it is comment and source.
+	 * @param elements elements to upload. No special order required
+	 * @param handler handler that processes the server's diffResult responses. Optional.
+	 * @param listener listener that is notified about the progress. Optional.
+	 *
+	 * @see MapDataApi#uploadChanges(long, Iterable, Handler) for the exceptions that may be thrown
+	 *
+	 * @return ids of the changesets that were created, in the order they were created. Empty if
+	 *         there were no changes to upload
+	 */
+	public List<Long> upload(Map<String, String> tags, Iterable<Element> elements,
+							 Handler<DiffElement> handler, ProgressListener listener)
+	{
+		Changes changes = new Changes(elements);
+		int total = changes.size();
+		if(total == 0) return Collections.emptyList();
+
+		Map<String, String> changesetTags = new HashMap<>(tags);
+		changesetTags.put("created_by", osm.getUserAgent());
+
+		int maxPerChangeset = getMaxElementsPerChangeset();
+		int maxPerUpload = Math.min(maxPerChangeset, getMaxElementsPerUpload());
+
+		PlaceholderIds placeholderIds = new PlaceholderIds(handler);
+		List<Long> changesetIds = new ArrayList<>();
+		long changesetId = -1;
+		int inChangeset = 0;
+		int uploaded = 0;
+		try
+		{
+			while(uploaded < total)
+			{
+				if(changesetId == -1 || inChangeset == maxPerChangeset)
+				{
+					if(changesetId != -1)
+					{
+						long closingChangesetId = changesetId;
+						changesetId = -1;
+						mapDataApi.closeChangeset(closingChangesetId);
+					}
+					changesetId = mapDataApi.openChangeset(changesetTags);
+					changesetIds.add(changesetId);
+					inChangeset = 0;
+				}
+
+				int count = Math.min(total - uploaded, Math.min(maxPerUpload, maxPerChangeset - inChangeset));
+				int end = uploaded + count;
+				int modificationsStart = changes.creations.size();
+				int deletionsStart = modificationsStart + changes.modifications.size();
+				mapDataApi.uploadChanges(changesetId,
+						placeholderIds.replaceIn(changes.creations, uploaded, end, 0),
+						placeholderIds.replaceIn(changes.modifications, uploaded, end, modificationsStart),
+						placeholderIds.replaceIn(changes.deletions, uploaded, end, deletionsStart),
+						placeholderIds);
+
+				uploaded = end;
+				inChangeset += count;
+				if(listener != null) listener.onUploaded(changesetId, uploaded, total);
+			}
+		}
+		catch(RuntimeException | Error e)
+		{
+			if(changesetId != -1)
+			{
+				// failing to close the changeset must not hide why the upload failed
+				try
+				{
+					mapDataApi.closeChangeset(changesetId);
+				}
+				catch(RuntimeException closeException)
+				{
+					e.addSuppressed(closeException);
+				}
+			}
+			throw e;
+		}
+		mapDataApi.closeChangeset(changesetId);
+		return changesetIds;
+	}
+
+	private synchronized int getMaxElementsPerChangeset()
+	{
+		if(maxElementsPerChangeset == 0)
+		{
+			maxElementsPerChangeset = new CapabilitiesApi(osm).get().maxElementsPerChangeset;
+		}
+		return maxElementsPerChangeset;
+	}
+
+	private synchronized int getMaxElementsPerUpload()
+	{
+		return maxElementsPerUpload;
+	}
+
+	/** The changes in the order in which they are uploaded: creations ordered nodes, ways,
+	 *  relations, then modifications and deletions ordered relations, ways, nodes */
+	private static class Changes
+	{
+		final List<Element> creations;
+		final List<Element> modifications;
+		final List<Element> deletions;
+
+		Changes(Iterable<Element> elements)
+		{
+			Map<Element.Type, List<Element>> created = createListsByType();
+			Map<Element.Type, List<Element>> modified = createListsByType();
+			Map<Element.Type, List<Element>> deleted = createListsByType();
+			for (Element element : elements)
+			{
+				// new deleted elements are ignored
+				if(element.isNew() && element.isDeleted())
+					continue;
+				else if(element.isNew())
+					created.get(element.getType()).add(element);
+				else if(element.isDeleted())
+					deleted.get(element.getType()).add(element);
+				else if(element.isModified())
+					modified.get(element.getType()).add(element);
+			}
+			sortByReferences(created.get(Element.Type.RELATION));
+
+			creations = concat(created, Element.Type.NODE, Element.Type.WAY, Element.Type.RELATION);
+			modifications = concat(modified, Element.Type.RELATION, Element.Type.WAY, Element.Type.NODE);
+			deletions = concat(deleted, Element.Type.RELATION, Element.Type.WAY, Element.Type.NODE);
+		}
+
+		int size()
+		{
+			return creations.size() + modifications.size() + deletions.size();
+		}
+
+		private static Map<Element.Type, List<Element>> createListsByType()
+		{
+			Map<Element.Type, List<Element>> result = new EnumMap<>(Element.Type.class);
+			for (Element.Type type : Element.Type.values())
+			{
+				result.put(type, new ArrayList<>());
+			}
+			return result;
+		}
+
+		private static List<Element> concat(Map<Element.Type, List<Element>> byType, Element.Type... order)
+		{
+			List<Element> result = new ArrayList<>();
+			for (Element.Type type : order)
+			{
+				result.addAll(byType.get(type));
+			}
+			return result;
+		}
+
+		/** Order the given new relations so that each comes after the new relations it refers
+		 *  to, so that they are never in a later batch. (Relations that refer to each other in a
+		 *  cycle are kept in their order, they can only be uploaded if they are in the same
+		 *  batch) */
+		private static void sortByReferences(List<Element> relations)
+		{
+			if(relations.size() < 2) return;
+
+			Map<Long, Relation> byId = new HashMap<>();
+			for (Element relation : relations)
+			{
+				byId.put(relation.getId(), (Relation) relation);
+			}
+			Set<Long> visited = new HashSet<>();
+			List<Element> result = new ArrayList<>(relations.size());
+			for (Element relation : relations)
+			{
+				addAfterReferences((Relation) relation, byId, visited, result);
+			}
+			relations.clear();
+			relations.addAll(result);
+		}
+
+		private static void addAfterReferences(Relation relation, Map<Long, Relation> byId,
+											   Set<Long> visited, List<Element> result)
+		{
+			if(!visited.add(relation.getId())) return;
+			for (RelationMember member : relation.getMembers())
+			{
+				if(member.getType() != Element.Type.RELATION) continue;
+				Relation referred = byId.get(member.getRef());
+				if(referred != null) addAfterReferences(referred, byId, visited, result);
+			}
+			result.add(relation);
+		}
+	}
+
+	/** Remembers the ids the server assigned to the elements created so far and replaces the
+	 *  placeholder ids in references to these */
+	private static class PlaceholderIds implements Handler<DiffElement>
+	{
+		private final Handler<DiffElement> handler;
+		private final Map<Element.Type, LongObjectMap<Long>> serverIds = new EnumMap<>(Element.Type.class);
+
+		PlaceholderIds(Handler<DiffElement> handler)
+		{
+			this.handler = handler;
+			for (Element.Type type : Element.Type.values())
+			{
+				serverIds.put(type, new LongObjectMap<>());
+			}
+		}
+
+		@Override public void handle(DiffElement diff)
+		{
+			if(diff.clientId < 0 && diff.serverId != null)
+			{
+				serverIds.get(diff.type).put(diff.clientId, diff.serverId);
+			}
+			if(handler != null) handler.handle(diff);
+		}
+
+		/** @return the elements of the given list that are within the given range of all changes,
+		 *          with the references to elements created in previous batches replaced */
+		List<Element> replaceIn(List<Element> elements, int from, int to, int offset)
+		{
+			int start = Math.max(0, from - offset);
+			int end = Math.min(elements.size(), to - offset);
+			if(start >= end) return Collections.emptyList();
+
+			List<Element> result = new ArrayList<>(end - start);
+			for (Element element : elements.subList(start, end))
+			{
+				result.add(replaceIn(element));
+			}
+			return result;
+		}
+
+		private Element replaceIn(Element element)
+		{
+			if(element instanceof Way)
+			{
+				Way way = (Way) element;
+				List<Long> nodeIds = way.getNodeIds();
+				List<Long> replaced = null;
+				for (int i = 0; i < nodeIds.size(); i++)
+				{
+					long nodeId = nodeIds.get(i);
+					Long serverId = nodeId < 0 ? serverIds.get(Element.Type.NODE).get(nodeId) : null;
+					if(serverId == null) continue;
+					if(replaced == null) replaced = new ArrayList<>(nodeIds);
+					replaced.set(i, serverId);
+				}
+				if(replaced != null)
+				{
+					return new OsmWay(way.getId(), way.getVersion(), replaced, way.getTags());
+				}
+			}
+			else if(element instanceof Relation)
+			{
+				Relation relation = (Relation) element;
+				List<RelationMember> members = relation.getMembers();
+				List<RelationMember> replaced = null;
+				for (int i = 0; i < members.size(); i++)
+				{
+					RelationMember member = members.get(i);
+					Long serverId = member.getRef() < 0 ? serverIds.get(member.getType()).get(member.getRef()) : null;
+					if(serverId == null) continue;
+					if(replaced == null) replaced = new ArrayList<>(members);
+					replaced.set(i, new OsmRelationMember(serverId, member.getRole(), member.getType()));
+				}
+				if(replaced != null)
+				{
+					return new OsmRelation(relation.getId(), relation.getVersion(), replaced, relation.getTags());
+				}
+			}
+			return element;
+		}
+	}
+}
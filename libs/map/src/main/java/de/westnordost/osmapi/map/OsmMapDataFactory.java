@@ -21,6 +21,8 @@ public class OsmMapDataFactory implements MapDataFactory
 	public Way createWay(long id, int version, List<Long> nodes, Map<String, String> tags,
 			Changeset changeset, Instant editedAt)
 	{
+		// the way keeps the list, so it should not be larger than necessary
+		if(nodes instanceof LongArrayList) ((LongArrayList) nodes).trimToSize();
 		return new OsmWay(id, version, nodes, tags, changeset, editedAt);
 	}
 
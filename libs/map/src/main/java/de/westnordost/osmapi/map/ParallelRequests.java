@@ -0,0 +1,63 @@
+package de.westnordost.osmapi.map;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** Makes a number of requests on an executor, but not more than the given number at the same
+ *  time. Blocks until all requests are done. */
+class ParallelRequests
+{
+	/**
+	 * @param executor the executor to make the requests on
+	 * @param maxParallelRequests maximum number of requests to make at the same time
+	 * @param requests the requests to make
+	 *
+	 * @throws RuntimeException the first exception thrown by any of the requests. No further
+	 *                          requests are made once a request failed.
+	 */
+	static void run(Executor executor, int maxParallelRequests, Iterable<? extends Runnable> requests)
+	{
+		final Semaphore permits = new Semaphore(maxParallelRequests);
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+
+		for (Runnable request : requests)
+		{
+			permits.acquireUninterruptibly();
+			if(error.get() != null)
+			{
+				permits.release();
+				break;
+			}
+			try
+			{
+				CompletableFuture.runAsync(request, executor).whenComplete((result, e) ->
+				{
+					if(e != null) error.compareAndSet(null, unwrap(e));
+					permits.release();
+				});
+			}
+			catch(RuntimeException e)
+			{
+				error.compareAndSet(null, e);
+				permits.release();
+				break;
+			}
+		}
+		// wait until all requests are done
+		permits.acquireUninterruptibly(maxParallelRequests);
+
+		Throwable e = error.get();
+		if(e instanceof RuntimeException) throw (RuntimeException) e;
+		if(e instanceof Error) throw (Error) e;
+		if(e != null) throw new RuntimeException(e);
+	}
+
+	private static Throwable unwrap(Throwable e)
+	{
+		if(e instanceof CompletionException && e.getCause() != null) return e.getCause();
+		return e;
+	}
+}
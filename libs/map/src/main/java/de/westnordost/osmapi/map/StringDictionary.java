@@ -0,0 +1,68 @@
+package de.westnordost.osmapi.map;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Deduplicates strings: Equal strings passed to {@link #intern(String)} are replaced by the same
+ *  instance, so that strings that occur very often (like the tag keys "highway" or "building" and
+ *  values like "yes") are only held in memory once.
+ *  <br><br>
+ *  The dictionary is bounded: Once it is full, strings not yet in the dictionary are returned as
+ *  they are. Long strings are never added, these are usually unique anyway (names, descriptions
+ *  etc.).
+ *  <br><br>
+ *  A StringDictionary is thread safe, so it can be shared by several parsers. */
+public class StringDictionary
+{
+	private static final int DEFAULT_MAX_SIZE = 50_000;
+	private static final int DEFAULT_MAX_STRING_LENGTH = 32;
+
+	private final int maxSize;
+	private final int maxStringLength;
+	private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+
+	/**
+	 * @param maxSize maximum number of strings in the dictionary. Defaults to 50000.
+	 * @param maxStringLength maximum length of the strings added to the dictionary. Defaults to 32.
+	 */
+	public StringDictionary(int maxSize, int maxStringLength)
+	{
+		this.maxSize = maxSize;
+		this.maxStringLength = maxStringLength;
+	}
+
+	/** @see #StringDictionary(int, int) */
+	public StringDictionary()
+	{
+		this(DEFAULT_MAX_SIZE, DEFAULT_MAX_STRING_LENGTH);
+	}
+
+	/** @return the instance of the given string in this dictionary. If there is none, the string
+	 *          is added to the dictionary if there is still space and returned. Null if the given
+	 *          string is null */
+	public String intern(String string)
+	{
+		if(string == null || string.length() > maxStringLength) return string;
+		String result = strings.get(string);
+		if(result != null) return result;
+		// the size check is not atomic with the insertion, so the max size may be exceeded slightly
+		if(strings.size() >= maxSize) return string;
+		result = strings.putIfAbsent(string, string);
+		return result != null ? result : string;
+	}
+
+	/** @return number of strings in the dictionary */
+	public int size()
+	{
+		return strings.size();
+	}
+
+	public int getMaxSize()
+	{
+		return maxSize;
+	}
+
+	public int getMaxStringLength()
+	{
+		return maxStringLength;
+	}
+}
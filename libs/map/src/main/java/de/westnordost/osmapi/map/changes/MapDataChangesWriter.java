@@ -1,182 +1,82 @@
 package de.westnordost.osmapi.map.changes;
 
-import de.westnordost.osmapi.common.XmlWriter;
 import de.westnordost.osmapi.map.data.*;
 
 import java.io.IOException;
 import java.util.*;
 
 /** Writes elements into a osmChange format */
-public class MapDataChangesWriter extends XmlWriter
+public class MapDataChangesWriter extends StreamingMapDataChangesWriter
 {
-	private final long changesetId;
-	private final List<Element> creations;
-	private final List<Element> modifications;
-	private final List<Element> deletions;
+	private static final int CREATE = 0, MODIFY = 1, DELETE = 2;
+
+	/* the elements by kind of change (3) and type (3): Bucketing them is enough to order them,
+	   no need to sort */
+	private final List<List<Element>> buckets = new ArrayList<>(9);
+	private int count;
 
 	public MapDataChangesWriter(long changesetId, Iterable<Element> elements)
 	{
-		this.changesetId = changesetId;
+		super(changesetId);
 
-		creations = new ArrayList<>();
-		modifications = new ArrayList<>();
-		deletions = new ArrayList<>();
+		for (int i = 0; i < 9; i++)
+		{
+			buckets.add(new ArrayList<>());
+		}
 		for(Element element : elements)
 		{
 			// new deleted elements are ignored
 			if(element.isNew() && element.isDeleted())
 				continue;
 			else if(element.isNew())
-				creations.add(element);
+				add(CREATE, element);
 			else if(element.isDeleted())
-				deletions.add(element);
+				add(DELETE, element);
 			else if(element.isModified())
-				modifications.add(element);
+				add(MODIFY, element);
 		}
-		/* Order changes in such a way that they can be applied to a data store while maintaining
-		   data integrity (ie. a database). For example, the ordering prevents a way being added
-		   before the underlying nodes are created.
-		   Idea taken from Osmosis.*/
-		Collections.sort(creations, new OrderByNodeWayRelation());
-		Collections.sort(modifications, new OrderByRelationWayNode());
-		Collections.sort(deletions, new OrderByRelationWayNode());
-	}
-
-	public boolean hasChanges()
-	{
-		return !creations.isEmpty() || !modifications.isEmpty() || !deletions.isEmpty();
 	}
 
-	private class OrderByRelationWayNode implements Comparator<Element>
+	private void add(int change, Element element)
 	{
-		public int compare(Element lhs, Element rhs)
-		{
-			return getTypeOrder(rhs.getType()) - getTypeOrder(lhs.getType());
-		}
+		buckets.get(change * 3 + getTypeOrder(element.getType())).add(element);
+		count++;
 	}
 
-	private class OrderByNodeWayRelation implements Comparator<Element>
+	public boolean hasChanges()
 	{
-		public int compare(Element lhs, Element rhs)
-		{
-			return getTypeOrder(lhs.getType()) - getTypeOrder(rhs.getType());
-		}
+		return count > 0;
 	}
 
-	private static int getTypeOrder(Element.Type type)
+	/** @return false: The elements are in memory anyway */
+	@Override
+	public boolean isStreaming()
 	{
-		switch(type)
-		{
-			case NODE:		return 1;
-			case WAY:		return 2;
-			case RELATION:	return 3;
-		}
-		return 0;
+		return false;
 	}
 
 	@Override
 	protected void write() throws IOException
 	{
+		/* Order changes in such a way that they can be applied to a data store while maintaining
+		   data integrity (ie. a database). For example, the ordering prevents a way being added
+		   before the underlying nodes are created.
+		   Idea taken from Osmosis.*/
 		begin("osmChange");
-
-		if(!creations.isEmpty())
-		{
-			begin("create");
-			for (Element element : creations) writeElement(element);
-			end();
-		}
-
-		if(!modifications.isEmpty())
-		{
-			begin("modify");
-			for (Element element : modifications) writeElement(element);
-			end();
-		}
-
-		if(!deletions.isEmpty())
-		{
-			begin("delete");
-			for (Element element : deletions) writeElement(element);
-			end();
-		}
-
-		end();
-	}
-
-	private void writeElement(Element element) throws IOException
-	{
-		begin(toXmlName(element.getType()));
-		writeElementAttributes(element);
-
-		if(element instanceof Node)
-		{
-			writeNodeContents((Node) element);
-		}
-		else if(element instanceof Way)
-		{
-			writeWayContents((Way) element);
-		}
-		else if(element instanceof Relation)
-		{
-			writeRelationContents((Relation) element);
-		}
-
-		writeTags(element.getTags());
+		writeSection("create", getElements(CREATE, true), true);
+		writeSection("modify", getElements(MODIFY, false), false);
+		writeSection("delete", getElements(DELETE, false), false);
 		end();
 	}
 
-	private static String toXmlName(Element.Type type)
-	{
-		return type.toString().toLowerCase(Locale.UK);
-	}
-
-	private void writeElementAttributes(Element element) throws IOException
-	{
-		attribute("id", element.getId());
-		attribute("version", element.getVersion());
-		attribute("changeset", changesetId);
-	}
-
-	private void writeNodeContents(Node node) throws IOException
-	{
-		LatLon position = node.getPosition();
-		attribute("lat", position.getLatitude());
-		attribute("lon", position.getLongitude());
-	}
-
-	private void writeWayContents(Way way) throws IOException
-	{
-		for(Long node : way.getNodeIds())
-		{
-			begin("nd");
-			attribute("ref", node);
-			end();
-		}
-	}
-
-	private void writeRelationContents(Relation relation) throws IOException
-	{
-		for(RelationMember member : relation.getMembers())
-		{
-			begin("member");
-			attribute("ref", member.getRef());
-			attribute("type", toXmlName(member.getType()));
-			attribute("role", member.getRole());
-			end();
-		}
-	}
-
-	private void writeTags(Map<String, String> tags) throws IOException
+	private Iterator<Element> getElements(int change, boolean nodesFirst)
 	{
-		if(tags != null)
+		List<List<Element>> byType = buckets.subList(change * 3, change * 3 + 3);
+		if(!nodesFirst)
 		{
-			for (Map.Entry<String, String> tag : tags.entrySet())
-			{
-				begin("tag");
-				attribute("k", tag.getKey());
-				attribute("v", tag.getValue());
-				end();
-			}
+			byType = new ArrayList<>(byType);
+			Collections.reverse(byType);
 		}
+		return byType.stream().flatMap(List::stream).iterator();
 	}
 }
@@ -0,0 +1,134 @@
+package de.westnordost.osmapi.map.changes;
+
+import java.util.List;
+
+import de.westnordost.osmapi.common.Handler;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.LongObjectMap;
+import de.westnordost.osmapi.map.data.OsmElement;
+import de.westnordost.osmapi.map.data.OsmRelationMember;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.RelationMember;
+import de.westnordost.osmapi.map.data.Way;
+
+/** Applies the result of an upload to the elements that have been uploaded: Collect the
+ *  {@link DiffElement}s sent by the server with this handler, then {@link #apply(Iterable)} them.
+ *  <br><br>
+ *  For example:
+ *  <pre>
+ *  MapDataDiffApplier diffApplier = new MapDataDiffApplier();
+ *  mapDataApi.uploadChanges(changesetId, elements, diffApplier);
+ *  diffApplier.apply(elements);
+ *  </pre> */
+public class MapDataDiffApplier implements Handler<DiffElement>
+{
+	private final Handler<DiffElement> handler;
+
+	private final LongObjectMap<DiffElement> nodes = new LongObjectMap<>();
+	private final LongObjectMap<DiffElement> ways = new LongObjectMap<>();
+	private final LongObjectMap<DiffElement> relations = new LongObjectMap<>();
+
+	public MapDataDiffApplier()
+	{
+		this(null);
+	}
+
+	/** @param handler handler the DiffElements are passed on to. Optional. */
+	public MapDataDiffApplier(Handler<DiffElement> handler)
+	{
+		this.handler = handler;
+	}
+
+	@Override
+	public void handle(DiffElement diff)
+	{
+		getDiffs(diff.type).put(diff.clientId, diff);
+		if(handler != null) handler.handle(diff);
+	}
+
+	/** Update the given elements according to the collected DiffElements in one pass:
+	 *  <ul>
+	 *      <li>uploaded elements get the ids and versions the server assigned to them and are not
+	 *          new or modified anymore. Deleted elements stay deleted.</li>
+	 *      <li>node ids of ways and member refs of relations that refer to new elements by their
+	 *          placeholder id are replaced by the ids the server assigned to them</li>
+	 *  </ul>
+	 *  Only {@link OsmElement}s are updated, other elements are skipped.
+	 *
+	 *  @param elements elements to update, usually the same that have been uploaded
+	 *  @return number of elements that have been uploaded and were updated */
+	public int apply(Iterable<? extends Element> elements)
+	{
+		int count = 0;
+		for (Element element : elements)
+		{
+			if(!(element instanceof OsmElement)) continue;
+			OsmElement osmElement = (OsmElement) element;
+
+			// references first: marks the way or relation modified...
+			if(element instanceof Way)
+			{
+				replacePlaceholderIds((Way) element);
+			}
+			else if(element instanceof Relation)
+			{
+				replacePlaceholderIds((Relation) element);
+			}
+
+			// ...which is then reset here if it has been uploaded
+			DiffElement diff = getDiffs(element.getType()).get(element.getId());
+			if(diff != null)
+			{
+				if(diff.serverId != null) osmElement.setId(diff.serverId);
+				if(diff.serverVersion != null) osmElement.setVersion(diff.serverVersion);
+				osmElement.setNew(false);
+				osmElement.setModified(false);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private void replacePlaceholderIds(Way way)
+	{
+		List<Long> nodeIds = way.getNodeIds();
+		for (int i = 0; i < nodeIds.size(); i++)
+		{
+			long nodeId = nodeIds.get(i);
+			if(nodeId >= 0) continue;
+
+			DiffElement diff = nodes.get(nodeId);
+			if(diff != null && diff.serverId != null)
+			{
+				nodeIds.set(i, diff.serverId);
+			}
+		}
+	}
+
+	private void replacePlaceholderIds(Relation relation)
+	{
+		List<RelationMember> members = relation.getMembers();
+		for (int i = 0; i < members.size(); i++)
+		{
+			RelationMember member = members.get(i);
+			if(member.getRef() >= 0) continue;
+
+			DiffElement diff = getDiffs(member.getType()).get(member.getRef());
+			if(diff != null && diff.serverId != null)
+			{
+				members.set(i, new OsmRelationMember(diff.serverId, member.getRole(), member.getType()));
+			}
+		}
+	}
+
+	private LongObjectMap<DiffElement> getDiffs(Element.Type type)
+	{
+		switch(type)
+		{
+			case NODE:     return nodes;
+			case WAY:      return ways;
+			case RELATION: return relations;
+		}
+		throw new IllegalArgumentException("Unknown element type " + type);
+	}
+}
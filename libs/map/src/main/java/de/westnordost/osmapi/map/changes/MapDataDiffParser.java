@@ -2,7 +2,6 @@ package de.westnordost.osmapi.map.changes;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Locale;
 
 import de.westnordost.osmapi.ApiResponseReader;
 import de.westnordost.osmapi.common.Handler;
@@ -12,9 +11,15 @@ import de.westnordost.osmapi.map.data.Element;
 /** Parses a &lt;diffResult&gt; sent by the server when uploading a changeset */
 public class MapDataDiffParser extends XmlParser implements ApiResponseReader<Void>
 {
-	private static final String NODE = "node",
-	                            WAY = "way",
-	                            RELATION = "relation";
+	private final int
+			NODE = symbol("node"),
+			WAY = symbol("way"),
+			RELATION = symbol("relation");
+
+	private final int
+			OLD_ID = symbol("old_id"),
+			NEW_ID = symbol("new_id"),
+			NEW_VERSION = symbol("new_version");
 
 	private final Handler<DiffElement> handler;
 
@@ -33,15 +38,17 @@ public class MapDataDiffParser extends XmlParser implements ApiResponseReader<Vo
 	@Override
 	protected void onStartElement()
 	{
-		String name = getName();
+		int name = getSymbol();
 
-		if (name.equals(NODE) || name.equals(WAY) || name.equals(RELATION))
+		if (name == NODE || name == WAY || name == RELATION)
 		{
 			DiffElement e = new DiffElement();
-			e.type = Element.Type.valueOf(name.toUpperCase(Locale.UK));
-			e.clientId = getLongAttribute("old_id");
-			e.serverId = getLongAttribute("new_id");
-			e.serverVersion = getIntAttribute("new_version");
+			e.type = name == NODE ? Element.Type.NODE : name == WAY ? Element.Type.WAY : Element.Type.RELATION;
+			e.clientId = Long.parseLong(getAttribute(OLD_ID));
+			String newId = getAttribute(NEW_ID);
+			e.serverId = newId != null ? Long.parseLong(newId) : null;
+			String newVersion = getAttribute(NEW_VERSION);
+			e.serverVersion = newVersion != null ? Integer.parseInt(newVersion) : null;
 			handler.handle(e);
 		}
 	}
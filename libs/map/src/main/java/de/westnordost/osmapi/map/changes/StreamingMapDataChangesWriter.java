@@ -0,0 +1,181 @@
+package de.westnordost.osmapi.map.changes;
+
+import de.westnordost.osmapi.common.XmlWriter;
+import de.westnordost.osmapi.map.data.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+/** Writes elements into a osmChange format while iterating over them. In contrast to the
+ *  {@link MapDataChangesWriter}, the elements must already be partitioned into creations,
+ *  modifications and deletions and be in the order in which they can be applied to a data store
+ *  while maintaining data integrity:
+ *  <ul>
+ *      <li>creations: nodes first, then ways, then relations</li>
+ *      <li>modifications and deletions: relations first, then ways, then nodes</li>
+ *  </ul>
+ *  The elements are written into the section they are passed in, regardless of their new,
+ *  modified and deleted flags. An element in the wrong order causes an IllegalArgumentException
+ *  while writing.
+ *  <br><br>
+ *  Nothing is held in memory, so with {@link #isStreaming()}, the upload of the elements overlaps
+ *  with producing them. */
+public class StreamingMapDataChangesWriter extends XmlWriter
+{
+	private final long changesetId;
+	private final Iterable<? extends Element> creations;
+	private final Iterable<? extends Element> modifications;
+	private final Iterable<? extends Element> deletions;
+
+	/**
+	 * @param changesetId id of the changeset the changes are written for
+	 * @param creations elements to create, ordered nodes, ways, relations. May be null.
+	 * @param modifications elements to modify, ordered relations, ways, nodes. May be null.
+	 * @param deletions elements to delete, ordered relations, ways, nodes. May be null.
+	 */
+	public StreamingMapDataChangesWriter(long changesetId, Iterable<? extends Element> creations,
+			Iterable<? extends Element> modifications, Iterable<? extends Element> deletions)
+	{
+		this.changesetId = changesetId;
+		this.creations = creations != null ? creations : Collections.<Element>emptyList();
+		this.modifications = modifications != null ? modifications : Collections.<Element>emptyList();
+		this.deletions = deletions != null ? deletions : Collections.<Element>emptyList();
+	}
+
+	/** For subclasses that override {@link #write()} */
+	protected StreamingMapDataChangesWriter(long changesetId)
+	{
+		this(changesetId, null, null, null);
+	}
+
+	/** @return true: the elements should be streamed to the server while they are written */
+	@Override
+	public boolean isStreaming()
+	{
+		return true;
+	}
+
+	@Override
+	protected void write() throws IOException
+	{
+		begin("osmChange");
+		writeSection("create", creations.iterator(), true);
+		writeSection("modify", modifications.iterator(), false);
+		writeSection("delete", deletions.iterator(), false);
+		end();
+	}
+
+	/** Write a create, modify or delete section, if there are any elements.
+	 *
+	 * @param name name of the section
+	 * @param elements elements of the section
+	 * @param nodesFirst whether the elements are ordered nodes, ways, relations (or the reverse)
+	 * @throws IllegalArgumentException if the elements are not in the expected order */
+	protected final void writeSection(String name, Iterator<? extends Element> elements,
+			boolean nodesFirst) throws IOException
+	{
+		if(!elements.hasNext()) return;
+
+		begin(name);
+		int previousTypeOrder = nodesFirst ? 0 : Integer.MAX_VALUE;
+		while(elements.hasNext())
+		{
+			Element element = elements.next();
+			int typeOrder = getTypeOrder(element.getType());
+			if(nodesFirst ? typeOrder < previousTypeOrder : typeOrder > previousTypeOrder)
+			{
+				throw new IllegalArgumentException(toXmlName(element.getType()) + " " +
+						element.getId() + " is out of order in the " + name + " section");
+			}
+			previousTypeOrder = typeOrder;
+			writeElement(element);
+		}
+		end();
+	}
+
+	/** @return 0 for nodes, 1 for ways, 2 for relations */
+	static int getTypeOrder(Element.Type type)
+	{
+		return type.ordinal();
+	}
+
+	private void writeElement(Element element) throws IOException
+	{
+		begin(toXmlName(element.getType()));
+		writeElementAttributes(element);
+
+		if(element instanceof Node)
+		{
+			writeNodeContents((Node) element);
+		}
+		else if(element instanceof Way)
+		{
+			writeWayContents((Way) element);
+		}
+		else if(element instanceof Relation)
+		{
+			writeRelationContents((Relation) element);
+		}
+
+		writeTags(element.getTags());
+		end();
+	}
+
+	private static String toXmlName(Element.Type type)
+	{
+		return type.toString().toLowerCase(Locale.UK);
+	}
+
+	private void writeElementAttributes(Element element) throws IOException
+	{
+		attribute("id", element.getId());
+		attribute("version", element.getVersion());
+		attribute("changeset", changesetId);
+	}
+
+	private void writeNodeContents(Node node) throws IOException
+	{
+		LatLon position = node.getPosition();
+		attribute("lat", position.getLatitude());
+		attribute("lon", position.getLongitude());
+	}
+
+	private void writeWayContents(Way way) throws IOException
+	{
+		for(Long node : way.getNodeIds())
+		{
+			begin("nd");
+			attribute("ref", node);
+			end();
+		}
+	}
+
+	private void writeRelationContents(Relation relation) throws IOException
+	{
+		for(RelationMember member : relation.getMembers())
+		{
+			begin("member");
+			attribute("ref", member.getRef());
+			attribute("type", toXmlName(member.getType()));
+			attribute("role", member.getRole());
+			end();
+		}
+	}
+
+	private void writeTags(Map<String, String> tags) throws IOException
+	{
+		if(tags != null)
+		{
+			for (Map.Entry<String, String> tag : tags.entrySet())
+			{
+				begin("tag");
+				attribute("k", tag.getKey());
+				attribute("v", tag.getValue());
+				end();
+			}
+		}
+	}
+}
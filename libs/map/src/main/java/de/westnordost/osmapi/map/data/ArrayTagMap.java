@@ -0,0 +1,198 @@
+package de.westnordost.osmapi.map.data;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/** A map of strings backed by a single array of alternating keys and values. Lookups are linear
+ *  searches, so this is only suitable for few entries, like the tags of most elements. In
+ *  exchange, it takes much less memory than a HashMap: no entry objects, no hash table.
+ *  <br><br>
+ *  Null keys are not permitted. */
+public class ArrayTagMap extends AbstractMap<String, String> implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	/** Up to this many entries, an ArrayTagMap is recommended over a HashMap. Beyond that, the
+	 *  linear lookups take too long */
+	public static final int MAX_RECOMMENDED_SIZE = 8;
+
+	private static final String[] EMPTY = new String[0];
+
+	/* keys at even, values at odd indices */
+	private String[] keysAndValues;
+	private int size;
+	private transient int modCount;
+	private transient Set<Entry<String, String>> entrySet;
+
+	public ArrayTagMap()
+	{
+		this(0);
+	}
+
+	public ArrayTagMap(int initialCapacity)
+	{
+		keysAndValues = initialCapacity == 0 ? EMPTY : new String[initialCapacity * 2];
+	}
+
+	public ArrayTagMap(Map<String, String> map)
+	{
+		this(map.size());
+		putAll(map);
+	}
+
+	@Override public int size()
+	{
+		return size;
+	}
+
+	@Override public boolean containsKey(Object key)
+	{
+		return indexOf(key) != -1;
+	}
+
+	@Override public String get(Object key)
+	{
+		int i = indexOf(key);
+		return i != -1 ? keysAndValues[i + 1] : null;
+	}
+
+	@Override public String put(String key, String value)
+	{
+		if(key == null) throw new NullPointerException("key is null");
+		int i = indexOf(key);
+		if(i != -1)
+		{
+			String result = keysAndValues[i + 1];
+			keysAndValues[i + 1] = value;
+			return result;
+		}
+		if(size * 2 == keysAndValues.length)
+		{
+			keysAndValues = Arrays.copyOf(keysAndValues, Math.max(4, size * 4));
+		}
+		keysAndValues[size * 2] = key;
+		keysAndValues[size * 2 + 1] = value;
+		size++;
+		modCount++;
+		return null;
+	}
+
+	@Override public String remove(Object key)
+	{
+		int i = indexOf(key);
+		if(i == -1) return null;
+		String result = keysAndValues[i + 1];
+		removeAt(i);
+		return result;
+	}
+
+	@Override public void clear()
+	{
+		Arrays.fill(keysAndValues, 0, size * 2, null);
+		size = 0;
+		modCount++;
+	}
+
+	@Override public Set<Entry<String, String>> entrySet()
+	{
+		if(entrySet == null) entrySet = new EntrySet();
+		return entrySet;
+	}
+
+	private int indexOf(Object key)
+	{
+		if(key == null) return -1;
+		for (int i = 0; i < size * 2; i += 2)
+		{
+			// the strings are often interned, so try the cheap comparison first
+			String k = keysAndValues[i];
+			if(k == key || k.equals(key)) return i;
+		}
+		return -1;
+	}
+
+	private void removeAt(int i)
+	{
+		int end = size * 2;
+		System.arraycopy(keysAndValues, i + 2, keysAndValues, i, end - i - 2);
+		keysAndValues[end - 2] = null;
+		keysAndValues[end - 1] = null;
+		size--;
+		modCount++;
+	}
+
+	private class EntrySet extends AbstractSet<Entry<String, String>>
+	{
+		@Override public Iterator<Entry<String, String>> iterator()
+		{
+			return new EntryIterator();
+		}
+
+		@Override public int size()
+		{
+			return size;
+		}
+
+		@Override public void clear()
+		{
+			ArrayTagMap.this.clear();
+		}
+	}
+
+	private class EntryIterator implements Iterator<Entry<String, String>>
+	{
+		private int next = 0;
+		private int last = -1;
+		private int expectedModCount = modCount;
+
+		@Override public boolean hasNext()
+		{
+			return next < size * 2;
+		}
+
+		@Override public Entry<String, String> next()
+		{
+			if(modCount != expectedModCount) throw new ConcurrentModificationException();
+			if(!hasNext()) throw new NoSuchElementException();
+			last = next;
+			next += 2;
+			return new ArrayEntry(last);
+		}
+
+		@Override public void remove()
+		{
+			if(last == -1) throw new IllegalStateException();
+			if(modCount != expectedModCount) throw new ConcurrentModificationException();
+			removeAt(last);
+			next = last;
+			last = -1;
+			expectedModCount = modCount;
+		}
+	}
+
+	private class ArrayEntry extends SimpleEntry<String, String>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int index;
+
+		ArrayEntry(int index)
+		{
+			super(keysAndValues[index], keysAndValues[index + 1]);
+			this.index = index;
+		}
+
+		@Override public String setValue(String value)
+		{
+			keysAndValues[index + 1] = value;
+			return super.setValue(value);
+		}
+	}
+}
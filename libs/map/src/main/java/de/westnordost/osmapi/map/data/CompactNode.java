@@ -0,0 +1,172 @@
+package de.westnordost.osmapi.map.data;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+
+import de.westnordost.osmapi.changesets.Changeset;
+
+/** A node that takes considerably less memory than an {@link OsmNode}: The position is stored
+ *  inline as two fixed 1E7 ints instead of in a separate object made of two doubles and all nodes
+ *  without tags share the same empty tags instead of each having an own (empty) map.
+ *  <br><br>
+ *  Since most nodes are untagged vertices of ways, this matters when holding a lot of map data in
+ *  memory. Note that the shared empty tags cannot be modified, use {@link #setTags(Map)} to add
+ *  tags to an untagged node. */
+public class CompactNode implements Node, Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final Map<String, String> NO_TAGS = Collections.emptyMap();
+	/* latitude value for "no position", i.e. a deleted node */
+	private static final int NO_POSITION = Integer.MIN_VALUE;
+
+	private final long id;
+	private final int version;
+	private int latitude;
+	private int longitude;
+	private Map<String, String> tags;
+	private final Changeset changeset;
+	private final Instant editedAt;
+
+	private boolean modified;
+	private boolean deleted;
+	private boolean created;
+
+	/** @param latitude latitude in fixed 1E7
+	 *  @param longitude longitude in fixed 1E7
+	 *  @throws IllegalArgumentException if the given latitude and longitude do not make up a valid
+	 *          position */
+	public CompactNode(long id, int version, int latitude, int longitude,
+					   Map<String, String> tags, Changeset changeset, Instant editedAt)
+	{
+		LatLons.checkValidity(Fixed1E7.toDouble(latitude), Fixed1E7.toDouble(longitude));
+		this.id = id;
+		this.version = version;
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.tags = createTags(tags);
+		this.changeset = changeset;
+		this.editedAt = editedAt;
+	}
+
+	/** @param pos position of the node. May be null for deleted nodes. */
+	public CompactNode(long id, int version, LatLon pos,
+					   Map<String, String> tags, Changeset changeset, Instant editedAt)
+	{
+		this.id = id;
+		this.version = version;
+		setPositionInternal(pos);
+		this.tags = createTags(tags);
+		this.changeset = changeset;
+		this.editedAt = editedAt;
+	}
+
+	@Override
+	public LatLon getPosition()
+	{
+		if(latitude == NO_POSITION) return null;
+		return Fixed1E7LatLon.fromFixed1E7(latitude, longitude);
+	}
+
+	public void setPosition(LatLon pos)
+	{
+		setPositionInternal(pos);
+		modified = true;
+	}
+
+	private void setPositionInternal(LatLon pos)
+	{
+		if(pos != null)
+		{
+			latitude = Fixed1E7.doubleToFixed(pos.getLatitude());
+			longitude = Fixed1E7.doubleToFixed(pos.getLongitude());
+		}
+		else
+		{
+			latitude = NO_POSITION;
+			longitude = NO_POSITION;
+		}
+	}
+
+	@Override
+	public long getId()
+	{
+		return id;
+	}
+
+	@Override
+	public int getVersion()
+	{
+		return version;
+	}
+
+	@Override
+	public Changeset getChangeset()
+	{
+		return changeset;
+	}
+
+	@Override
+	public Instant getEditedAt()
+	{
+		return editedAt;
+	}
+
+	@Override
+	public Map<String, String> getTags()
+	{
+		return tags;
+	}
+
+	public void setTags(Map<String, String> tags)
+	{
+		modified = true;
+		this.tags = createTags(tags);
+	}
+
+	private static Map<String, String> createTags(Map<String, String> tags)
+	{
+		return tags != null && !tags.isEmpty() ? new OsmTags(tags) : NO_TAGS;
+	}
+
+	@Override
+	public boolean isNew()
+	{
+		return id < 0 || created;
+	}
+
+	public void setNew(boolean isNew)
+	{
+		this.created = isNew;
+	}
+
+	@Override
+	public boolean isModified()
+	{
+		return modified || tags instanceof OsmTags && ((OsmTags) tags).isModified();
+	}
+
+	public void setModified(boolean modified)
+	{
+		this.modified = modified;
+	}
+
+	@Override
+	public boolean isDeleted()
+	{
+		return deleted;
+	}
+
+	public void setDeleted(boolean deleted)
+	{
+		this.deleted = deleted;
+	}
+
+	@Override
+	public Type getType()
+	{
+		return Type.NODE;
+	}
+}
@@ -0,0 +1,128 @@
+package de.westnordost.osmapi.map.data;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.westnordost.osmapi.changesets.Changeset;
+
+/** Base class for the immutable osm primitives. In contrast to {@link OsmElement}, these do not
+ *  track modifications and can be shared between threads without copying: All fields are final
+ *  and the collections are read-only copies of what was passed on construction (or read-only
+ *  views of it if created via {@link ImmutableElements}).
+ *  <br><br>
+ *  Two immutable elements are equal if they have the same type, id and version. */
+public abstract class ImmutableElement implements Element, Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private final long id;
+	private final int version;
+	private final Changeset changeset;
+	private final Instant editedAt;
+	private final Map<String, String> tags;
+
+	public ImmutableElement(long id, int version, Map<String, String> tags,
+							Changeset changeset, Instant editedAt)
+	{
+		this(id, version, tags, false, changeset, editedAt);
+	}
+
+	/** @param adoptTags whether to keep the given tags instead of copying them, see
+	 *                   {@link ImmutableElements} */
+	ImmutableElement(long id, int version, Map<String, String> tags, boolean adoptTags,
+					 Changeset changeset, Instant editedAt)
+	{
+		this.id = id;
+		this.version = version;
+		this.tags = adoptTags ? readOnlyTags(tags) : copyTags(tags);
+		this.changeset = changeset;
+		this.editedAt = editedAt;
+	}
+
+	private static Map<String, String> copyTags(Map<String, String> tags)
+	{
+		if(tags == null || tags.isEmpty()) return Collections.emptyMap();
+
+		Map<String, String> copy = tags.size() <= ArrayTagMap.MAX_RECOMMENDED_SIZE
+				? new ArrayTagMap(tags)
+				: new HashMap<>(tags);
+		return Collections.unmodifiableMap(copy);
+	}
+
+	private static Map<String, String> readOnlyTags(Map<String, String> tags)
+	{
+		if(tags == null || tags.isEmpty()) return Collections.emptyMap();
+		return Collections.unmodifiableMap(tags);
+	}
+
+	@Override
+	public long getId()
+	{
+		return id;
+	}
+
+	@Override
+	public int getVersion()
+	{
+		return version;
+	}
+
+	@Override
+	public Changeset getChangeset()
+	{
+		return changeset;
+	}
+
+	@Override
+	public Instant getEditedAt()
+	{
+		return editedAt;
+	}
+
+	/** @return the tags of this element. Read-only */
+	@Override
+	public Map<String, String> getTags()
+	{
+		return tags;
+	}
+
+	@Override
+	public boolean isNew()
+	{
+		return id < 0;
+	}
+
+	@Override
+	public boolean isModified()
+	{
+		return false;
+	}
+
+	@Override
+	public boolean isDeleted()
+	{
+		return false;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		if(other == this) return true;
+		if(other == null || other.getClass() != getClass()) return false;
+
+		ImmutableElement otherElement = (ImmutableElement) other;
+		return id == otherElement.id && version == otherElement.version;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int result = getType().ordinal();
+		result = 31 * result + (int) (id ^ (id >>> 32));
+		result = 31 * result + version;
+		return result;
+	}
+}
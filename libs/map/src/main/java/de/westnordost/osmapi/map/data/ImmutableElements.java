@@ -0,0 +1,49 @@
+package de.westnordost.osmapi.map.data;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import de.westnordost.osmapi.changesets.Changeset;
+
+/** Creates immutable elements that keep the tags, node ids and members they are created with
+ *  instead of copying them, like the elements created by the other map data factories do. This is
+ *  for {@link de.westnordost.osmapi.map.MapDataFactory}s that create these collections themselves
+ *  and hand them over, like the {@link de.westnordost.osmapi.map.ImmutableMapDataFactory}: The
+ *  collections must not be modified anymore afterwards. */
+public final class ImmutableElements
+{
+	private ImmutableElements() {}
+
+	/** @param pos position of the node. May be null for deleted nodes. */
+	public static ImmutableNode createNode(long id, int version, LatLon pos,
+			Map<String, String> tags, Changeset changeset, Instant editedAt)
+	{
+		return new ImmutableNode(id, version, pos, tags, true, changeset, editedAt);
+	}
+
+	/** @param latitude latitude in fixed 1E7
+	 *  @param longitude longitude in fixed 1E7 */
+	public static ImmutableNode createNode(long id, int version, int latitude, int longitude,
+			Map<String, String> tags, Changeset changeset, Instant editedAt)
+	{
+		return new ImmutableNode(id, version, latitude, longitude, tags, true, changeset, editedAt);
+	}
+
+	/** @param nodes node ids of the way. If this is a {@link LongArrayList}, the way takes over its
+	 *               array after trimming it to size */
+	public static ImmutableWay createWay(long id, int version, List<Long> nodes,
+			Map<String, String> tags, Changeset changeset, Instant editedAt)
+	{
+		long[] nodeIds = nodes instanceof LongArrayList
+				? ((LongArrayList) nodes).toTrimmedArray()
+				: ImmutableWay.toLongArray(nodes);
+		return new ImmutableWay(id, version, nodeIds, tags, true, changeset, editedAt);
+	}
+
+	public static ImmutableRelation createRelation(long id, int version, List<RelationMember> members,
+			Map<String, String> tags, Changeset changeset, Instant editedAt)
+	{
+		return new ImmutableRelation(id, version, members, tags, true, changeset, editedAt);
+	}
+}
@@ -0,0 +1,67 @@
+package de.westnordost.osmapi.map.data;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Map;
+
+import de.westnordost.osmapi.changesets.Changeset;
+
+/** An immutable node. Like the {@link CompactNode}, the position is stored inline as two fixed 1E7
+ *  ints. */
+public class ImmutableNode extends ImmutableElement implements Node, Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	/* latitude value for "no position", i.e. a deleted node */
+	private static final int NO_POSITION = Integer.MIN_VALUE;
+
+	private final int latitude;
+	private final int longitude;
+
+	/** @param latitude latitude in fixed 1E7
+	 *  @param longitude longitude in fixed 1E7
+	 *  @throws IllegalArgumentException if the given latitude and longitude do not make up a valid
+	 *          position */
+	public ImmutableNode(long id, int version, int latitude, int longitude,
+						 Map<String, String> tags, Changeset changeset, Instant editedAt)
+	{
+		this(id, version, latitude, longitude, tags, false, changeset, editedAt);
+	}
+
+	/** @param pos position of the node. May be null for deleted nodes. */
+	public ImmutableNode(long id, int version, LatLon pos,
+						 Map<String, String> tags, Changeset changeset, Instant editedAt)
+	{
+		this(id, version, pos, tags, false, changeset, editedAt);
+	}
+
+	ImmutableNode(long id, int version, int latitude, int longitude,
+				  Map<String, String> tags, boolean adoptTags, Changeset changeset, Instant editedAt)
+	{
+		super(id, version, tags, adoptTags, changeset, editedAt);
+		LatLons.checkValidity(Fixed1E7.toDouble(latitude), Fixed1E7.toDouble(longitude));
+		this.latitude = latitude;
+		this.longitude = longitude;
+	}
+
+	ImmutableNode(long id, int version, LatLon pos,
+				  Map<String, String> tags, boolean adoptTags, Changeset changeset, Instant editedAt)
+	{
+		super(id, version, tags, adoptTags, changeset, editedAt);
+		this.latitude = pos != null ? Fixed1E7.doubleToFixed(pos.getLatitude()) : NO_POSITION;
+		this.longitude = pos != null ? Fixed1E7.doubleToFixed(pos.getLongitude()) : NO_POSITION;
+	}
+
+	@Override
+	public LatLon getPosition()
+	{
+		if(latitude == NO_POSITION) return null;
+		return Fixed1E7LatLon.fromFixed1E7(latitude, longitude);
+	}
+
+	@Override
+	public Type getType()
+	{
+		return Type.NODE;
+	}
+}
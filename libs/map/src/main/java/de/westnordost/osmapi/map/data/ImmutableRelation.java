@@ -0,0 +1,53 @@
+package de.westnordost.osmapi.map.data;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import de.westnordost.osmapi.changesets.Changeset;
+
+/** An immutable relation. Its members should be {@link ImmutableRelationMember}s too. */
+public class ImmutableRelation extends ImmutableElement implements Relation, Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private final List<RelationMember> members;
+
+	public ImmutableRelation(long id, int version, List<RelationMember> members,
+							 Map<String, String> tags, Changeset changeset, Instant editedAt)
+	{
+		this(id, version, members, tags, false, changeset, editedAt);
+	}
+
+	/** @param adopt whether to keep the given members and tags instead of copying them, see
+	 *               {@link ImmutableElements} */
+	ImmutableRelation(long id, int version, List<RelationMember> members,
+					  Map<String, String> tags, boolean adopt, Changeset changeset, Instant editedAt)
+	{
+		super(id, version, tags, adopt, changeset, editedAt);
+		if(members.isEmpty())
+		{
+			this.members = Collections.emptyList();
+		}
+		else
+		{
+			this.members = Collections.unmodifiableList(adopt ? members : new ArrayList<>(members));
+		}
+	}
+
+	/** @return the members of this relation. Read-only */
+	@Override
+	public List<RelationMember> getMembers()
+	{
+		return members;
+	}
+
+	@Override
+	public Type getType()
+	{
+		return Type.RELATION;
+	}
+}
@@ -0,0 +1,73 @@
+package de.westnordost.osmapi.map.data;
+
+import java.io.Serializable;
+
+/** An immutable relation member */
+public class ImmutableRelationMember implements RelationMember, Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private final long ref;
+	private final String role;
+	private final Element.Type type;
+
+	public ImmutableRelationMember(long ref, String role, Element.Type type)
+	{
+		if(role.length() >= 256)
+		{
+			throw new IllegalArgumentException("Role \"" + role + "\": Role length is limited" +
+					"to less than 256 characters.");
+		}
+		this.ref = ref;
+		this.role = role;
+		this.type = type;
+	}
+
+	@Override
+	public long getRef()
+	{
+		return ref;
+	}
+
+	@Override
+	public String getRole()
+	{
+		return role;
+	}
+
+	@Override
+	public Element.Type getType()
+	{
+		return type;
+	}
+
+	@Override
+	public boolean isModified()
+	{
+		return false;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		if(other == this) return true;
+		if(!(other instanceof RelationMember)) return false;
+
+		RelationMember otherMember = (RelationMember) other;
+		return
+				role.equals(otherMember.getRole()) &&
+				ref == otherMember.getRef() &&
+				type == otherMember.getType();
+	}
+
+	/* same as OsmRelationMember, so that equal members of either class have equal hash codes */
+	@Override
+	public int hashCode()
+	{
+		int result = 11;
+		result = 31 * result + role.hashCode();
+		result = 31 * result + type.ordinal();
+		result = 31 * result + (int) (ref ^ (ref >>> 32));
+		return result;
+	}
+}
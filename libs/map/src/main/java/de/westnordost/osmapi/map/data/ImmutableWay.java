@@ -0,0 +1,91 @@
+package de.westnordost.osmapi.map.data;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import de.westnordost.osmapi.changesets.Changeset;
+
+/** An immutable way. Its node ids are kept in a plain long array. */
+public class ImmutableWay extends ImmutableElement implements Way, Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private final long[] nodeIds;
+	private transient List<Long> nodeIdsList;
+
+	public ImmutableWay(long id, int version, List<Long> nodes,
+						Map<String, String> tags, Changeset changeset, Instant editedAt)
+	{
+		this(id, version, toLongArray(nodes), tags, false, changeset, editedAt);
+	}
+
+	/** @param nodeIds node ids of this way. The array is kept, not copied */
+	ImmutableWay(long id, int version, long[] nodeIds,
+				 Map<String, String> tags, boolean adoptTags, Changeset changeset, Instant editedAt)
+	{
+		super(id, version, tags, adoptTags, changeset, editedAt);
+		this.nodeIds = nodeIds;
+	}
+
+	static long[] toLongArray(List<Long> nodes)
+	{
+		if(nodes instanceof LongArrayList) return ((LongArrayList) nodes).toLongArray();
+
+		long[] result = new long[nodes.size()];
+		int i = 0;
+		for (Long node : nodes)
+		{
+			result[i++] = node;
+		}
+		return result;
+	}
+
+	/** @return the node ids of this way. Read-only */
+	@Override
+	public List<Long> getNodeIds()
+	{
+		// may be created more than once if accessed concurrently, but that is harmless
+		if(nodeIdsList == null) nodeIdsList = new NodeIds();
+		return nodeIdsList;
+	}
+
+	/** @return number of nodes of this way */
+	public int getNodeCount()
+	{
+		return nodeIds.length;
+	}
+
+	/** @return the id of the node at the given position in this way without boxing it */
+	public long getNodeId(int index)
+	{
+		return nodeIds[index];
+	}
+
+	public boolean isClosed()
+	{
+		return nodeIds.length >= 3 && nodeIds[0] == nodeIds[nodeIds.length - 1];
+	}
+
+	@Override
+	public Type getType()
+	{
+		return Type.WAY;
+	}
+
+	private class NodeIds extends AbstractList<Long> implements RandomAccess
+	{
+		@Override public Long get(int index)
+		{
+			return nodeIds[index];
+		}
+
+		@Override public int size()
+		{
+			return nodeIds.length;
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package de.westnordost.osmapi.map.data;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/** A list of longs backed by a primitive long array. Each element takes 8 bytes instead of a
+ *  reference to a boxed Long (plus the Long itself), so this is much more compact than an ArrayList
+ *  or LinkedList of Longs. Elements are boxed only when they are accessed via the List interface,
+ *  use {@link #getLong(int)} and {@link #addLong(long)} to avoid that.
+ *  <br><br>
+ *  Null elements are not permitted. */
+public class LongArrayList extends AbstractList<Long> implements RandomAccess, Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final int DEFAULT_CAPACITY = 8;
+	private static final long[] EMPTY = new long[0];
+
+	private long[] elements;
+	private int size;
+
+	public LongArrayList()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	public LongArrayList(int initialCapacity)
+	{
+		if(initialCapacity < 0) throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+		elements = initialCapacity == 0 ? EMPTY : new long[initialCapacity];
+	}
+
+	public LongArrayList(Collection<Long> collection)
+	{
+		this(collection.size());
+		addAll(collection);
+	}
+
+	/** Create a list that initially contains the given elements
+	 *  @param elements the elements. The array is copied */
+	public LongArrayList(long[] elements)
+	{
+		this.elements = elements.length == 0 ? EMPTY : elements.clone();
+		this.size = elements.length;
+	}
+
+	public long getLong(int index)
+	{
+		checkIndex(index);
+		return elements[index];
+	}
+
+	public long setLong(int index, long element)
+	{
+		checkIndex(index);
+		long result = elements[index];
+		elements[index] = element;
+		return result;
+	}
+
+	public void addLong(long element)
+	{
+		modCount++;
+		ensureCapacity(size + 1);
+		elements[size++] = element;
+	}
+
+	public void addLong(int index, long element)
+	{
+		if(index < 0 || index > size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		modCount++;
+		ensureCapacity(size + 1);
+		System.arraycopy(elements, index, elements, index + 1, size - index);
+		elements[index] = element;
+		size++;
+	}
+
+	public long removeLong(int index)
+	{
+		checkIndex(index);
+		modCount++;
+		long result = elements[index];
+		System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+		size--;
+		return result;
+	}
+
+	/** @return the index of the first occurrence of the given element or -1 if it is not contained */
+	public int indexOfLong(long element)
+	{
+		for (int i = 0; i < size; i++)
+		{
+			if(elements[i] == element) return i;
+		}
+		return -1;
+	}
+
+	/** @return the index of the last occurrence of the given element or -1 if it is not contained */
+	public int lastIndexOfLong(long element)
+	{
+		for (int i = size - 1; i >= 0; i--)
+		{
+			if(elements[i] == element) return i;
+		}
+		return -1;
+	}
+
+	/** @return a copy of the elements as a long array */
+	public long[] toLongArray()
+	{
+		return Arrays.copyOf(elements, size);
+	}
+
+	/* the backing array trimmed to the size of the list, shared with whoever takes it over */
+	long[] toTrimmedArray()
+	{
+		trimToSize();
+		return elements;
+	}
+
+	/** Make sure that the list can hold at least the given number of elements without growing */
+	public void ensureCapacity(int capacity)
+	{
+		if(capacity > elements.length)
+		{
+			int newCapacity = Math.max(capacity, elements.length + (elements.length >> 1));
+			elements = Arrays.copyOf(elements, Math.max(newCapacity, DEFAULT_CAPACITY));
+		}
+	}
+
+	/** Shrink the backing array to the size of the list */
+	public void trimToSize()
+	{
+		if(size < elements.length)
+		{
+			modCount++;
+			elements = size == 0 ? EMPTY : Arrays.copyOf(elements, size);
+		}
+	}
+
+	/* Everything below this comment: implementation of the list interface */
+
+	@Override
+	public Long get(int index)
+	{
+		return getLong(index);
+	}
+
+	@Override
+	public Long set(int index, Long element)
+	{
+		return setLong(index, element);
+	}
+
+	@Override
+	public void add(int index, Long element)
+	{
+		addLong(index, element);
+	}
+
+	@Override
+	public boolean add(Long element)
+	{
+		addLong(element);
+		return true;
+	}
+
+	@Override
+	public Long remove(int index)
+	{
+		return removeLong(index);
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public void clear()
+	{
+		modCount++;
+		size = 0;
+	}
+
+	@Override
+	public int indexOf(Object object)
+	{
+		if(!(object instanceof Long)) return -1;
+		return indexOfLong((Long) object);
+	}
+
+	@Override
+	public int lastIndexOf(Object object)
+	{
+		if(!(object instanceof Long)) return -1;
+		return lastIndexOfLong((Long) object);
+	}
+
+	@Override
+	public boolean contains(Object object)
+	{
+		return indexOf(object) != -1;
+	}
+
+	@Override
+	protected void removeRange(int fromIndex, int toIndex)
+	{
+		modCount++;
+		System.arraycopy(elements, toIndex, elements, fromIndex, size - toIndex);
+		size -= toIndex - fromIndex;
+	}
+
+	private void checkIndex(int index)
+	{
+		if(index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+}
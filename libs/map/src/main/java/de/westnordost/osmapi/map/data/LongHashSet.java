@@ -0,0 +1,120 @@
+package de.westnordost.osmapi.map.data;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/** A hash set of primitive longs. The values are stored in a long array (open addressing), so
+ *  each takes 8 to 16 bytes instead of the ~50 bytes of a boxed Long in a HashSet, e.g. to
+ *  remember the ids of the elements seen so far.
+ *  <br><br>
+ *  Not thread safe. */
+public class LongHashSet implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final int DEFAULT_CAPACITY = 16;
+	/* marks a free slot. Whether the set contains this value is stored separately */
+	private static final long FREE = 0;
+
+	private long[] values;
+	private boolean containsFree;
+	private int size;
+	/* resize once the number of values in the table reaches this */
+	private int threshold;
+
+	public LongHashSet()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** @param expectedSize number of values the set should be able to hold without resizing */
+	public LongHashSet(int expectedSize)
+	{
+		if(expectedSize < 0) throw new IllegalArgumentException("Illegal size: " + expectedSize);
+		allocate(tableSizeFor(expectedSize));
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public boolean contains(long value)
+	{
+		if(value == FREE) return containsFree;
+		return values[indexOf(value)] == value;
+	}
+
+	/** @return whether the value was added, i.e. was not contained in this set before */
+	public boolean add(long value)
+	{
+		if(value == FREE)
+		{
+			if(containsFree) return false;
+			containsFree = true;
+			size++;
+			return true;
+		}
+		int i = indexOf(value);
+		if(values[i] == value) return false;
+		values[i] = value;
+		if(++size - (containsFree ? 1 : 0) >= threshold) resize(values.length * 2);
+		return true;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(values, FREE);
+		containsFree = false;
+		size = 0;
+	}
+
+	/** @return position of the given value or of the free slot where it would be inserted */
+	private int indexOf(long value)
+	{
+		int mask = values.length - 1;
+		int i = hash(value) & mask;
+		while(values[i] != FREE && values[i] != value)
+		{
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private static int hash(long value)
+	{
+		// ids are often consecutive, so spread them
+		long h = value * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static int tableSizeFor(int expectedSize)
+	{
+		// keep the load factor at most 3/4
+		long minSize = (long) expectedSize * 4 / 3 + 1;
+		int result = DEFAULT_CAPACITY;
+		while(result < minSize) result *= 2;
+		return result;
+	}
+
+	private void allocate(int capacity)
+	{
+		values = new long[capacity];
+		threshold = capacity / 4 * 3;
+	}
+
+	private void resize(int capacity)
+	{
+		long[] oldValues = values;
+		allocate(capacity);
+		for (long value : oldValues)
+		{
+			if(value != FREE) values[indexOf(value)] = value;
+		}
+	}
+}
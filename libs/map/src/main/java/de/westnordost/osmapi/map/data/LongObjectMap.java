@@ -0,0 +1,223 @@
+package de.westnordost.osmapi.map.data;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** A hash map with primitive long keys. The keys are stored in a long array and the values in a
+ *  parallel array (open addressing), so there are neither boxed Longs nor entry objects. This is
+ *  much more compact and faster than a HashMap&lt;Long, V&gt;, e.g. to index elements by id.
+ *  <br><br>
+ *  Null values are not permitted. Not thread safe. */
+public class LongObjectMap<V> implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	public interface EntryConsumer<V>
+	{
+		void accept(long key, V value);
+	}
+
+	private long[] keys;
+	private Object[] values;
+	private int size;
+	/* resize once the size reaches this */
+	private int threshold;
+
+	public LongObjectMap()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** @param expectedSize number of entries the map should be able to hold without resizing */
+	public LongObjectMap(int expectedSize)
+	{
+		if(expectedSize < 0) throw new IllegalArgumentException("Illegal size: " + expectedSize);
+		allocate(tableSizeFor(expectedSize));
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public boolean containsKey(long key)
+	{
+		return values[indexOf(key)] != null;
+	}
+
+	/** @return the value for the given key or null if there is none */
+	@SuppressWarnings("unchecked")
+	public V get(long key)
+	{
+		return (V) values[indexOf(key)];
+	}
+
+	/** @return the previous value for the given key or null if there was none */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value)
+	{
+		if(value == null) throw new NullPointerException("value is null");
+		int i = indexOf(key);
+		V result = (V) values[i];
+		if(result == null)
+		{
+			keys[i] = key;
+			values[i] = value;
+			if(++size >= threshold) resize(keys.length * 2);
+		}
+		else
+		{
+			values[i] = value;
+		}
+		return result;
+	}
+
+	/** @return the removed value for the given key or null if there was none */
+	@SuppressWarnings("unchecked")
+	public V remove(long key)
+	{
+		int i = indexOf(key);
+		V result = (V) values[i];
+		if(result == null) return null;
+
+		// shift back following entries of the same cluster so that no lookup misses them
+		int mask = keys.length - 1;
+		int j = i;
+		while(true)
+		{
+			j = (j + 1) & mask;
+			if(values[j] == null) break;
+			int home = hash(keys[j]) & mask;
+			// move entry j to i if its home position is not cyclically in (i, j]
+			if(i <= j ? (home <= i || home > j) : (home <= i && home > j))
+			{
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		values[i] = null;
+		size--;
+		return result;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	/** Call the given consumer for each entry in this map, in no particular order */
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryConsumer<? super V> consumer)
+	{
+		for (int i = 0; i < values.length; i++)
+		{
+			if(values[i] != null) consumer.accept(keys[i], (V) values[i]);
+		}
+	}
+
+	/** @return a read-only view on the values of this map */
+	public Collection<V> values()
+	{
+		return new AbstractCollection<V>()
+		{
+			@Override public Iterator<V> iterator()
+			{
+				return new ValueIterator();
+			}
+
+			@Override public int size()
+			{
+				return size;
+			}
+		};
+	}
+
+	/** @return position of the given key or of the free slot where it would be inserted */
+	private int indexOf(long key)
+	{
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while(values[i] != null && keys[i] != key)
+		{
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private static int hash(long key)
+	{
+		// ids are often consecutive, so spread them
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static int tableSizeFor(int expectedSize)
+	{
+		// keep the load factor at most 3/4
+		long minSize = (long) expectedSize * 4 / 3 + 1;
+		int result = DEFAULT_CAPACITY;
+		while(result < minSize) result *= 2;
+		return result;
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new long[capacity];
+		values = new Object[capacity];
+		threshold = capacity / 4 * 3;
+	}
+
+	private void resize(int capacity)
+	{
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldValues.length; i++)
+		{
+			if(oldValues[i] != null)
+			{
+				int j = indexOf(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	private class ValueIterator implements Iterator<V>
+	{
+		private int next = advance(0);
+
+		private int advance(int i)
+		{
+			while(i < values.length && values[i] == null) i++;
+			return i;
+		}
+
+		@Override public boolean hasNext()
+		{
+			return next < values.length;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override public V next()
+		{
+			if(!hasNext()) throw new NoSuchElementException();
+			V result = (V) values[next];
+			next = advance(next + 1);
+			return result;
+		}
+	}
+}
@@ -32,6 +32,12 @@ public class ModificationAwareList<T> implements List<T>, Serializable
 		modified = true;
 	}
 
+	/** Forget that the list has been modified */
+	void resetModified()
+	{
+		modified = false;
+	}
+
 	/* Everything below this comment: implementation of the list interface */
 
 	@Override
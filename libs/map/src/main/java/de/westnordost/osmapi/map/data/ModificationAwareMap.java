@@ -34,6 +34,12 @@ public class ModificationAwareMap<K,V> implements Map<K,V>, Serializable
 		modified = true;
 	}
 
+	/** Forget that the map has been modified */
+	void resetModified()
+	{
+		modified = false;
+	}
+
 	/* Everything below this comment: implementation of the map interface */
 
 	@Override
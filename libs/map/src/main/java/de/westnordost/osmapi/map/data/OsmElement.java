@@ -43,6 +43,12 @@ public abstract class OsmElement implements Element, Serializable
 		return id;
 	}
 
+	/** Set the id of this element, e.g. the id the server assigned to this new element */
+	public void setId(long id)
+	{
+		this.id = id;
+	}
+
 	@Override
 	public Changeset getChangeset()
 	{
@@ -54,6 +60,12 @@ public abstract class OsmElement implements Element, Serializable
 	{
 		return version;
 	}
+
+	/** Set the version of this element, e.g. the version it has after being uploaded */
+	public void setVersion(int version)
+	{
+		this.version = version;
+	}
 	
 	@Override
 	public Map<String, String> getTags()
@@ -84,9 +96,12 @@ public abstract class OsmElement implements Element, Serializable
 		return modified || tags != null && tags.isModified();
 	}
 
+	/** Set whether this element is modified. Setting it to false also forgets about any
+	 *  modifications made to its tags, position, nodes or members, e.g. after it was uploaded */
 	public void setModified(boolean modified)
 	{
 		this.modified = modified;
+		if(!modified && tags != null) tags.resetModified();
 	}
 
 	@Override
@@ -59,6 +59,13 @@ public class OsmNode extends OsmElement implements Node, Serializable
 		return modified || super.isModified();
 	}
 
+	@Override
+	public void setModified(boolean modified)
+	{
+		super.setModified(modified);
+		if(!modified) this.modified = false;
+	}
+
 	@Override
 	public Type getType()
 	{
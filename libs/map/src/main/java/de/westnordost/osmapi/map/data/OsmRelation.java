@@ -51,4 +51,21 @@ public class OsmRelation extends OsmElement implements Relation, Serializable
 		}
 		return super.isModified();
 	}
+
+	@Override
+	public void setModified(boolean modified)
+	{
+		super.setModified(modified);
+		if(!modified)
+		{
+			members.resetModified();
+			for(RelationMember member : members)
+			{
+				if(member instanceof OsmRelationMember)
+				{
+					((OsmRelationMember) member).resetModified();
+				}
+			}
+		}
+	}
 }
@@ -62,6 +62,12 @@ public class OsmRelationMember implements RelationMember, Serializable
 		return modified;
 	}
 
+	/** Forget that the member has been modified */
+	void resetModified()
+	{
+		modified = false;
+	}
+
 	@Override
 	public boolean equals(Object other)
 	{
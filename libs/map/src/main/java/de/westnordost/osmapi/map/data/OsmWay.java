@@ -7,6 +7,8 @@ import java.util.Map;
 
 import de.westnordost.osmapi.changesets.Changeset;
 
+/** A way. Its node ids are kept in the list given on construction, pass a {@link LongArrayList}
+ *  to store them compactly. */
 public class OsmWay extends OsmElement implements Way, Serializable
 {
 	private static final long serialVersionUID = 2L;
@@ -31,6 +33,13 @@ public class OsmWay extends OsmElement implements Way, Serializable
 		return nodes.isModified() || super.isModified();
 	}
 
+	@Override
+	public void setModified(boolean modified)
+	{
+		super.setModified(modified);
+		if(!modified) nodes.resetModified();
+	}
+
 	public boolean isClosed()
 	{
 		return nodes.size() >= 3 && nodes.get(0).equals(nodes.get(nodes.size() - 1));
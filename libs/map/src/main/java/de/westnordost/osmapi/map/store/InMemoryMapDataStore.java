@@ -0,0 +1,498 @@
+package de.westnordost.osmapi.map.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.westnordost.osmapi.map.data.BoundingBox;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.osmapi.map.data.LongArrayList;
+import de.westnordost.osmapi.map.data.LongObjectMap;
+import de.westnordost.osmapi.map.data.Node;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.RelationMember;
+import de.westnordost.osmapi.map.data.Way;
+
+/** Stores the map data it is fed in memory and indexes it, so that it can be queried locally:
+ *  <ul>
+ *      <li>elements by id</li>
+ *      <li>nodes and ways by bounding box, via a grid over the node positions and way bounds</li>
+ *      <li>the ways a node is part of and the relations an element is a member of</li>
+ *  </ul>
+ *  An element fed to the store a second time replaces the one stored before, e.g. a newer
+ *  version. The bounds of a way are determined from the positions of its nodes when it is fed, so
+ *  feed nodes before the ways they are part of, like they are ordered in the responses of the
+ *  API. Nodes not in the store are ignored for the bounds. If the nodes of a way are closer
+ *  together across the 180th meridian than the other way round, its bounds cross it.
+ *  <br><br>
+ *  Each way is put into a grid whose cells are at least as large as its bounds, i.e. into at most
+ *  four cells, so that large ways do not fill the grid of the nodes.
+ *  <br><br>
+ *  Not thread safe. Feeding it from a {@link de.westnordost.osmapi.map.MapDataDownloader} is fine
+ *  though, as it never calls the handler concurrently. */
+public class InMemoryMapDataStore implements MapDataStore
+{
+	private static final double DEFAULT_CELL_SIZE = 0.01;
+
+	private final double cellSize;
+
+	private final List<BoundingBox> bounds = new ArrayList<>();
+
+	private final LongObjectMap<Node> nodes = new LongObjectMap<>();
+	private final LongObjectMap<Way> ways = new LongObjectMap<>();
+	private final LongObjectMap<Relation> relations = new LongObjectMap<>();
+
+	/* bounds of each way as minLat, minLon, maxLat, maxLon. minLon > maxLon if they cross the
+	   180th meridian. Ways without any known node are not in here */
+	private final LongObjectMap<double[]> wayBounds = new LongObjectMap<>();
+
+	/* grid: cell key -> nodes / ways in or overlapping that cell. There is a grid for ways for
+	   each level, the cells of each level are twice as large as those of the level before */
+	private final LongObjectMap<List<Node>> nodeCells = new LongObjectMap<>();
+	private final List<LongObjectMap<List<Way>>> wayCells = new ArrayList<>();
+
+	/* back references: node id -> ids of ways; member id -> ids of relations */
+	private final LongObjectMap<LongArrayList> waysByNode = new LongObjectMap<>();
+	private final LongObjectMap<LongArrayList> relationsByNode = new LongObjectMap<>();
+	private final LongObjectMap<LongArrayList> relationsByWay = new LongObjectMap<>();
+	private final LongObjectMap<LongArrayList> relationsByRelation = new LongObjectMap<>();
+
+	public InMemoryMapDataStore()
+	{
+		this(DEFAULT_CELL_SIZE);
+	}
+
+	/** @param cellSize size of the cells of the spatial grid in degrees. Default is 0.01. Should
+	 *                  be about the size of the typical queried area or a bit smaller */
+	public InMemoryMapDataStore(double cellSize)
+	{
+		if(cellSize <= 0) throw new IllegalArgumentException("Cell size must be positive");
+		this.cellSize = cellSize;
+	}
+
+	/* ---------------------------------------- handler ----------------------------------------- */
+
+	@Override
+	public void handle(BoundingBox bounds)
+	{
+		this.bounds.add(bounds);
+	}
+
+	@Override
+	public void handle(Node node)
+	{
+		Node old = nodes.put(node.getId(), node);
+		if(old != null && old.getPosition() != null)
+		{
+			removeFromCell(nodeCells, getCellKey(old.getPosition()), old);
+		}
+		if(node.getPosition() != null)
+		{
+			addToCell(nodeCells, getCellKey(node.getPosition()), node);
+		}
+	}
+
+	@Override
+	public void handle(Way way)
+	{
+		long id = way.getId();
+		Way old = ways.put(id, way);
+		if(old != null)
+		{
+			for (long nodeId : old.getNodeIds())
+			{
+				removeReference(waysByNode, nodeId, id);
+			}
+			double[] oldBounds = wayBounds.remove(id);
+			if(oldBounds != null) updateWayCells(oldBounds, old, false);
+		}
+
+		double minLat = Double.POSITIVE_INFINITY, minLon = Double.POSITIVE_INFINITY;
+		double maxLat = Double.NEGATIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+		// longitudes in 0..360 instead of -180..180, to find the bounds across the 180th meridian
+		double minWrappedLon = Double.POSITIVE_INFINITY, maxWrappedLon = Double.NEGATIVE_INFINITY;
+		for (long nodeId : way.getNodeIds())
+		{
+			addReference(waysByNode, nodeId, id);
+
+			Node node = nodes.get(nodeId);
+			if(node == null || node.getPosition() == null) continue;
+			LatLon pos = node.getPosition();
+			double lon = pos.getLongitude();
+			double wrappedLon = lon < 0 ? lon + 360 : lon;
+			minLat = Math.min(minLat, pos.getLatitude());
+			minLon = Math.min(minLon, lon);
+			maxLat = Math.max(maxLat, pos.getLatitude());
+			maxLon = Math.max(maxLon, lon);
+			minWrappedLon = Math.min(minWrappedLon, wrappedLon);
+			maxWrappedLon = Math.max(maxWrappedLon, wrappedLon);
+		}
+		if(minLat <= maxLat)
+		{
+			if(maxWrappedLon - minWrappedLon < maxLon - minLon)
+			{
+				// only if there are nodes on both sides, so minWrappedLon <= 180 < maxWrappedLon
+				minLon = minWrappedLon;
+				maxLon = maxWrappedLon - 360;
+			}
+			double[] bounds = {minLat, minLon, maxLat, maxLon};
+			wayBounds.put(id, bounds);
+			updateWayCells(bounds, way, true);
+		}
+	}
+
+	@Override
+	public void handle(Relation relation)
+	{
+		long id = relation.getId();
+		Relation old = relations.put(id, relation);
+		if(old != null)
+		{
+			for (RelationMember member : old.getMembers())
+			{
+				removeReference(getRelationsByMember(member.getType()), member.getRef(), id);
+			}
+		}
+		for (RelationMember member : relation.getMembers())
+		{
+			addReference(getRelationsByMember(member.getType()), member.getRef(), id);
+		}
+	}
+
+	/* ---------------------------------------- queries ----------------------------------------- */
+
+	/** @return the bounds this store has been fed, in the order they were fed */
+	public List<BoundingBox> getBounds()
+	{
+		return Collections.unmodifiableList(bounds);
+	}
+
+	@Override
+	public Node getNode(long id)
+	{
+		return nodes.get(id);
+	}
+
+	@Override
+	public Way getWay(long id)
+	{
+		return ways.get(id);
+	}
+
+	@Override
+	public Relation getRelation(long id)
+	{
+		return relations.get(id);
+	}
+
+	public int getNodeCount()
+	{
+		return nodes.size();
+	}
+
+	public int getWayCount()
+	{
+		return ways.size();
+	}
+
+	public int getRelationCount()
+	{
+		return relations.size();
+	}
+
+	/** @return all nodes within the given bounds. The bounds may cross the 180th meridian. */
+	public List<Node> getNodes(BoundingBox bounds)
+	{
+		List<Node> result = new ArrayList<>();
+		for (BoundingBox box : bounds.splitAt180thMeridian())
+		{
+			double[] b = {box.getMinLatitude(), box.getMinLongitude(), box.getMaxLatitude(), box.getMaxLongitude()};
+			forEachEntryInCells(nodeCells, b, cellSize, cell ->
+			{
+				for (Node node : cell)
+				{
+					LatLon pos = node.getPosition();
+					if(pos.getLatitude() >= b[0] && pos.getLongitude() >= b[1]
+							&& pos.getLatitude() <= b[2] && pos.getLongitude() <= b[3])
+					{
+						result.add(node);
+					}
+				}
+			});
+		}
+		return result;
+	}
+
+	/** @return all ways whose bounds intersect with the given bounds. The bounds may cross the
+	 *          180th meridian. */
+	public List<Way> getWays(BoundingBox bounds)
+	{
+		LongObjectMap<Way> result = new LongObjectMap<>();
+		for (BoundingBox box : bounds.splitAt180thMeridian())
+		{
+			double[] b = {box.getMinLatitude(), box.getMinLongitude(), box.getMaxLatitude(), box.getMaxLongitude()};
+			for (int level = 0; level < wayCells.size(); level++)
+			{
+				forEachEntryInCells(wayCells.get(level), b, getCellSize(level), cell ->
+				{
+					for (Way way : cell)
+					{
+						if(intersect(wayBounds.get(way.getId()), b)) result.put(way.getId(), way);
+					}
+				});
+			}
+		}
+		return new ArrayList<>(result.values());
+	}
+
+	/** @return the bounds of the given way, as determined from its nodes or null if none of its
+	 *          nodes are known. The bounds may cross the 180th meridian. */
+	public BoundingBox getBounds(long wayId)
+	{
+		double[] b = wayBounds.get(wayId);
+		return b != null ? new BoundingBox(b[0], b[1], b[2], b[3]) : null;
+	}
+
+	/** @return the nodes of the given way that are in this store, in the order of the way */
+	public List<Node> getNodes(Way way)
+	{
+		List<Node> result = new ArrayList<>(way.getNodeIds().size());
+		for (long nodeId : way.getNodeIds())
+		{
+			Node node = nodes.get(nodeId);
+			if(node != null) result.add(node);
+		}
+		return result;
+	}
+
+	/** @return the members of the given relation that are in this store, in the order of the
+	 *          relation */
+	public List<Element> getMembers(Relation relation)
+	{
+		List<Element> result = new ArrayList<>(relation.getMembers().size());
+		for (RelationMember member : relation.getMembers())
+		{
+			Element element = getElement(member.getType(), member.getRef());
+			if(element != null) result.add(element);
+		}
+		return result;
+	}
+
+	/** @return the ways in this store the given node is part of */
+	public List<Way> getWaysForNode(long nodeId)
+	{
+		return resolve(waysByNode.get(nodeId), ways);
+	}
+
+	/** @return the relations in this store the given node is a member of */
+	public List<Relation> getRelationsForNode(long nodeId)
+	{
+		return resolve(relationsByNode.get(nodeId), relations);
+	}
+
+	/** @return the relations in this store the given way is a member of */
+	public List<Relation> getRelationsForWay(long wayId)
+	{
+		return resolve(relationsByWay.get(wayId), relations);
+	}
+
+	/** @return the relations in this store the given relation is a member of */
+	public List<Relation> getRelationsForRelation(long relationId)
+	{
+		return resolve(relationsByRelation.get(relationId), relations);
+	}
+
+	private Element getElement(Element.Type type, long id)
+	{
+		switch(type)
+		{
+			case NODE:     return nodes.get(id);
+			case WAY:      return ways.get(id);
+			case RELATION: return relations.get(id);
+		}
+		return null;
+	}
+
+	private LongObjectMap<LongArrayList> getRelationsByMember(Element.Type type)
+	{
+		switch(type)
+		{
+			case NODE:     return relationsByNode;
+			case WAY:      return relationsByWay;
+			case RELATION: return relationsByRelation;
+		}
+		throw new IllegalArgumentException("Unknown element type " + type);
+	}
+
+	private static <T> List<T> resolve(LongArrayList ids, LongObjectMap<T> elements)
+	{
+		if(ids == null) return Collections.emptyList();
+		List<T> result = new ArrayList<>(ids.size());
+		for (int i = 0; i < ids.size(); i++)
+		{
+			T element = elements.get(ids.getLong(i));
+			if(element != null) result.add(element);
+		}
+		return result;
+	}
+
+	/* ----------------------------------------- index ------------------------------------------ */
+
+	private static void addReference(LongObjectMap<LongArrayList> index, long from, long to)
+	{
+		LongArrayList ids = index.get(from);
+		if(ids == null)
+		{
+			ids = new LongArrayList(1);
+			index.put(from, ids);
+		}
+		// a way may contain the same node twice, i.e. if it is closed
+		if(ids.isEmpty() || ids.getLong(ids.size() - 1) != to) ids.addLong(to);
+	}
+
+	private static void removeReference(LongObjectMap<LongArrayList> index, long from, long to)
+	{
+		LongArrayList ids = index.get(from);
+		if(ids == null) return;
+		int i = ids.indexOfLong(to);
+		if(i != -1) ids.removeLong(i);
+		if(ids.isEmpty()) index.remove(from);
+	}
+
+	private static <T> void addToCell(LongObjectMap<List<T>> cells, long key, T element)
+	{
+		List<T> cell = cells.get(key);
+		if(cell == null)
+		{
+			cell = new ArrayList<>(2);
+			cells.put(key, cell);
+		}
+		cell.add(element);
+	}
+
+	private static <T> void removeFromCell(LongObjectMap<List<T>> cells, long key, T element)
+	{
+		List<T> cell = cells.get(key);
+		if(cell == null) return;
+		cell.remove(element);
+		if(cell.isEmpty()) cells.remove(key);
+	}
+
+	private interface CellKeyConsumer
+	{
+		void accept(long key);
+	}
+
+	private interface CellConsumer<T>
+	{
+		void accept(List<T> cell);
+	}
+
+	private static int getCellX(double longitude, double cellSize)
+	{
+		return (int) Math.floor((longitude + 180) / cellSize);
+	}
+
+	private static int getCellY(double latitude, double cellSize)
+	{
+		return (int) Math.floor((latitude + 90) / cellSize);
+	}
+
+	private static long getCellKey(int x, int y)
+	{
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	private long getCellKey(LatLon pos)
+	{
+		return getCellKey(getCellX(pos.getLongitude(), cellSize), getCellY(pos.getLatitude(), cellSize));
+	}
+
+	/** @return size of the cells of the grid for ways of the given level */
+	private double getCellSize(int level)
+	{
+		return Math.scalb(cellSize, level);
+	}
+
+	/** @return the lowest level whose cells are at least as large as the given bounds, so that the
+	 *          bounds overlap at most 2x2 cells */
+	private int getLevel(double[] bounds)
+	{
+		double size = Math.max(bounds[2] - bounds[0], bounds[3] - bounds[1]);
+		int level = 0;
+		while(getCellSize(level) < size) level++;
+		return level;
+	}
+
+	private void updateWayCells(double[] bounds, Way way, boolean add)
+	{
+		for (double[] part : splitAt180thMeridian(bounds))
+		{
+			int level = getLevel(part);
+			while(wayCells.size() <= level) wayCells.add(new LongObjectMap<>());
+			LongObjectMap<List<Way>> cells = wayCells.get(level);
+			forEachCell(part, getCellSize(level), key ->
+			{
+				if(add) addToCell(cells, key, way);
+				else removeFromCell(cells, key, way);
+			});
+		}
+	}
+
+	private static void forEachCell(double[] bounds, double cellSize, CellKeyConsumer consumer)
+	{
+		int minX = getCellX(bounds[1], cellSize), maxX = getCellX(bounds[3], cellSize);
+		int minY = getCellY(bounds[0], cellSize), maxY = getCellY(bounds[2], cellSize);
+		for (int x = minX; x <= maxX; x++)
+		{
+			for (int y = minY; y <= maxY; y++)
+			{
+				consumer.accept(getCellKey(x, y));
+			}
+		}
+	}
+
+	private static <T> void forEachEntryInCells(LongObjectMap<List<T>> cells, double[] bounds,
+			double cellSize, CellConsumer<T> consumer)
+	{
+		int minX = getCellX(bounds[1], cellSize), maxX = getCellX(bounds[3], cellSize);
+		int minY = getCellY(bounds[0], cellSize), maxY = getCellY(bounds[2], cellSize);
+		long cellCount = (long) (maxX - minX + 1) * (maxY - minY + 1);
+		if(cellCount > cells.size())
+		{
+			// query covers more cells than there are non-empty ones: rather go through those
+			cells.forEach((key, cell) ->
+			{
+				int x = (int) (key >> 32), y = (int) key;
+				if(x >= minX && x <= maxX && y >= minY && y <= maxY) consumer.accept(cell);
+			});
+		}
+		else
+		{
+			forEachCell(bounds, cellSize, key ->
+			{
+				List<T> cell = cells.get(key);
+				if(cell != null) consumer.accept(cell);
+			});
+		}
+	}
+
+	/** @return the given bounds or, if they cross the 180th meridian, the parts on both sides */
+	private static double[][] splitAt180thMeridian(double[] bounds)
+	{
+		if(bounds[1] <= bounds[3]) return new double[][]{bounds};
+		return new double[][]{
+				{bounds[0], bounds[1], bounds[2], 180},
+				{bounds[0], -180, bounds[2], bounds[3]}
+		};
+	}
+
+	/** @return whether the bounds a, which may cross the 180th meridian, intersect with b */
+	private static boolean intersect(double[] a, double[] b)
+	{
+		if(a[0] > b[2] || a[2] < b[0]) return false;
+		if(a[1] <= a[3]) return a[1] <= b[3] && a[3] >= b[1];
+		return a[1] <= b[3] || a[3] >= b[1];
+	}
+}
@@ -0,0 +1,20 @@
+package de.westnordost.osmapi.map.store;
+
+import de.westnordost.osmapi.map.data.Node;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.Way;
+import de.westnordost.osmapi.map.handler.MapDataHandler;
+
+/** Map data handler that stores the map data it is fed, so that the elements can then be looked
+ *  up locally by id */
+public interface MapDataStore extends MapDataHandler
+{
+	/** @return the node with the given id or null if it is not in this store */
+	Node getNode(long id);
+
+	/** @return the way with the given id or null if it is not in this store */
+	Way getWay(long id);
+
+	/** @return the relation with the given id or null if it is not in this store */
+	Relation getRelation(long id);
+}
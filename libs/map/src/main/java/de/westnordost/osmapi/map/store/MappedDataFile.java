@@ -0,0 +1,128 @@
+package de.westnordost.osmapi.map.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/** A memory-mapped file of variable-length encoded records. Records are only ever appended.
+ *  Numbers are written as varints (7 bits per byte), so small numbers take only one byte, and
+ *  strings as their UTF-8 length followed by the UTF-8 bytes. Not thread safe. */
+class MappedDataFile implements Closeable
+{
+	private final MappedFile file;
+	private long length;
+
+	/** @param length number of bytes written to the file, i.e. what {@link #getLength()}
+	 *                returned when it was last closed */
+	MappedDataFile(File file, long length) throws IOException
+	{
+		this(new MappedFile(file), length);
+	}
+
+	MappedDataFile(MappedFile file, long length)
+	{
+		this.file = file;
+		this.length = length;
+	}
+
+	/** @return number of bytes written, i.e. the position of the next record */
+	long getLength()
+	{
+		return length;
+	}
+
+	void writeUnsigned(long value)
+	{
+		while((value & ~0x7FL) != 0)
+		{
+			file.put(length++, (byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		file.put(length++, (byte) value);
+	}
+
+	void writeSigned(long value)
+	{
+		// zigzag encoding, so that small negative numbers are small too
+		writeUnsigned((value << 1) ^ (value >> 63));
+	}
+
+	void writeString(String value)
+	{
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeUnsigned(bytes.length);
+		for (byte b : bytes)
+		{
+			file.put(length++, b);
+		}
+	}
+
+	/** @return a reader that starts reading at the given position */
+	Reader read(long position)
+	{
+		return new Reader(position);
+	}
+
+	void force()
+	{
+		file.force();
+	}
+
+	@Override public void close() throws IOException
+	{
+		file.close();
+	}
+
+	class Reader
+	{
+		private long position;
+
+		private Reader(long position)
+		{
+			this.position = position;
+		}
+
+		long readUnsigned()
+		{
+			long result = 0;
+			int shift = 0;
+			byte b;
+			do
+			{
+				b = file.get(position++);
+				result |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			}
+			while((b & 0x80) != 0);
+			return result;
+		}
+
+		int readUnsignedInt()
+		{
+			return (int) readUnsigned();
+		}
+
+		long readSigned()
+		{
+			long value = readUnsigned();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		String readString()
+		{
+			byte[] bytes = new byte[readUnsignedInt()];
+			for (int i = 0; i < bytes.length; i++)
+			{
+				bytes[i] = file.get(position++);
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		void skipString()
+		{
+			long length = readUnsigned();
+			position += length;
+		}
+	}
+}
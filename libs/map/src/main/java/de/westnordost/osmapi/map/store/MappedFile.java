@@ -0,0 +1,112 @@
+package de.westnordost.osmapi.map.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/** A file that is memory-mapped in segments of a fixed size, so that it can be larger than 2 GB
+ *  (the maximum size of one mapping). Segments are mapped when they are first accessed. Writing
+ *  beyond the end of the file grows it.
+ *  <br><br>
+ *  Values of fixed width (longs, ints) must be aligned to their width so that they never span two
+ *  segments, single bytes can be accessed anywhere. Not thread safe. */
+class MappedFile implements Closeable
+{
+	static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final int segmentShift;
+	private final int segmentMask;
+
+	private MappedByteBuffer[] segments = new MappedByteBuffer[8];
+
+	MappedFile(File file) throws IOException
+	{
+		this(file, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/** @param segmentSize size of each mapped segment. Must be a power of two, at least 8 */
+	MappedFile(File file, int segmentSize) throws IOException
+	{
+		if(segmentSize < 8 || Integer.bitCount(segmentSize) != 1)
+		{
+			throw new IllegalArgumentException("Segment size must be a power of two, at least 8");
+		}
+		this.file = new RandomAccessFile(file, "rw");
+		this.channel = this.file.getChannel();
+		this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+		this.segmentMask = segmentSize - 1;
+	}
+
+	long getLong(long position)
+	{
+		return segment(position).getLong(offset(position));
+	}
+
+	void putLong(long position, long value)
+	{
+		segment(position).putLong(offset(position), value);
+	}
+
+	byte get(long position)
+	{
+		return segment(position).get(offset(position));
+	}
+
+	void put(long position, byte value)
+	{
+		segment(position).put(offset(position), value);
+	}
+
+	/** Writes all changes to the storage device */
+	void force()
+	{
+		for (MappedByteBuffer segment : segments)
+		{
+			if(segment != null) segment.force();
+		}
+	}
+
+	/** Closes the file. The mapped segments stay valid until they are garbage collected, but must
+	 *  not be used anymore */
+	@Override public void close() throws IOException
+	{
+		Arrays.fill(segments, null);
+		channel.close();
+		file.close();
+	}
+
+	private int offset(long position)
+	{
+		return (int) (position & segmentMask);
+	}
+
+	private MappedByteBuffer segment(long position)
+	{
+		int index = (int) (position >>> segmentShift);
+		if(index >= segments.length)
+		{
+			segments = Arrays.copyOf(segments, Math.max(index + 1, segments.length * 2));
+		}
+		MappedByteBuffer segment = segments[index];
+		if(segment == null)
+		{
+			try
+			{
+				segment = channel.map(FileChannel.MapMode.READ_WRITE, (long) index << segmentShift, segmentMask + 1);
+			}
+			catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+			segments[index] = segment;
+		}
+		return segment;
+	}
+}
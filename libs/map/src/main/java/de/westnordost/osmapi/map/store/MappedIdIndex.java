@@ -0,0 +1,227 @@
+package de.westnordost.osmapi.map.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/** Maps ids to long values. The entries are fixed-width (id, value) records in a memory-mapped
+ *  file, sorted by id, so a lookup is a binary search that needs no heap.
+ *  <br><br>
+ *  Entries put in ascending order of id (like elements are ordered in the responses of the API)
+ *  are simply appended. Values of ids that are already in the file are overwritten in place. Any
+ *  other entries are collected on the heap first and merged into the file once there are enough of
+ *  them or when {@link #flush()} is called. Not thread safe. */
+class MappedIdIndex implements Closeable
+{
+	/** Returned by {@link #get(long)} if there is no entry for an id */
+	static final long NONE = Long.MIN_VALUE;
+
+	private static final int RECORD_SIZE = 16;
+	private static final int MIN_PENDING_LIMIT = 1 << 16;
+	private static final int INITIAL_PENDING_CAPACITY = 16;
+
+	private final MappedFile file;
+	/* number of records in the file */
+	private long count;
+	private long lastId;
+
+	/* entries that still need to be merged into the file: a hash table (open addressing) with the
+	   ids and values in parallel arrays, so the values are not boxed. Free slots have the value
+	   NONE */
+	private long[] pendingIds;
+	private long[] pendingValues;
+	private int pendingCount;
+
+	/** @param count number of records in the file, i.e. what {@link #getFileCount()} returned
+	 *               when it was last closed */
+	MappedIdIndex(File file, long count) throws IOException
+	{
+		this(new MappedFile(file), count);
+	}
+
+	MappedIdIndex(MappedFile file, long count)
+	{
+		this.file = file;
+		this.count = count;
+		this.lastId = count > 0 ? getId(count - 1) : Long.MIN_VALUE;
+		allocatePending(INITIAL_PENDING_CAPACITY);
+	}
+
+	/** @return number of entries */
+	long size()
+	{
+		return count + pendingCount;
+	}
+
+	/** @return number of records in the file, i.e. number of entries after a {@link #flush()} */
+	long getFileCount()
+	{
+		return count;
+	}
+
+	/** @return the value for the given id or {@link #NONE} if there is none */
+	long get(long id)
+	{
+		long i = indexOf(id);
+		if(i >= 0) return getValue(i);
+		return pendingValues[indexOfPending(id)];
+	}
+
+	/** Sets the value for the given id. The value must not be {@link #NONE} */
+	void put(long id, long value)
+	{
+		if(value == NONE) throw new IllegalArgumentException("Invalid value");
+
+		if(id > lastId)
+		{
+			append(id, value);
+			return;
+		}
+		long i = indexOf(id);
+		if(i >= 0)
+		{
+			file.putLong(i * RECORD_SIZE + 8, value);
+			return;
+		}
+		putPending(id, value);
+		// merging rewrites the whole file, so it is done less often the larger the file is
+		if(pendingCount >= Math.max(MIN_PENDING_LIMIT, count / 32)) merge();
+	}
+
+	/** Merges any pending entries into the file and writes it to the storage device */
+	void flush()
+	{
+		merge();
+		file.force();
+	}
+
+	@Override public void close() throws IOException
+	{
+		flush();
+		file.close();
+	}
+
+	private void append(long id, long value)
+	{
+		long position = count * RECORD_SIZE;
+		file.putLong(position, id);
+		file.putLong(position + 8, value);
+		count++;
+		lastId = id;
+	}
+
+	/* merge the sorted pending entries into the file, starting from the back, so that no record
+	   is overwritten before it has been moved */
+	private void merge()
+	{
+		if(pendingCount == 0) return;
+
+		long[] ids = new long[pendingCount];
+		int n = 0;
+		for (int k = 0; k < pendingIds.length; k++)
+		{
+			if(pendingValues[k] != NONE) ids[n++] = pendingIds[k];
+		}
+		Arrays.sort(ids);
+
+		long i = count - 1;
+		int j = ids.length - 1;
+		long w = count + ids.length - 1;
+		while(j >= 0)
+		{
+			long id, value;
+			if(i >= 0 && getId(i) > ids[j])
+			{
+				id = getId(i);
+				value = getValue(i);
+				i--;
+			}
+			else
+			{
+				id = ids[j];
+				value = pendingValues[indexOfPending(id)];
+				j--;
+			}
+			file.putLong(w * RECORD_SIZE, id);
+			file.putLong(w * RECORD_SIZE + 8, value);
+			w--;
+		}
+		count += ids.length;
+		lastId = getId(count - 1);
+		Arrays.fill(pendingValues, NONE);
+		pendingCount = 0;
+	}
+
+	private void putPending(long id, long value)
+	{
+		int k = indexOfPending(id);
+		boolean isNew = pendingValues[k] == NONE;
+		pendingIds[k] = id;
+		pendingValues[k] = value;
+		// keep the load factor at most 1/2
+		if(isNew && ++pendingCount * 2 > pendingIds.length) resizePending(pendingIds.length * 2);
+	}
+
+	/** @return slot of the pending entry with the given id or of the free slot where it would be
+	 *          inserted */
+	private int indexOfPending(long id)
+	{
+		int mask = pendingIds.length - 1;
+		long h = id * 0x9E3779B97F4A7C15L;
+		int k = (int) (h ^ (h >>> 32)) & mask;
+		while(pendingValues[k] != NONE && pendingIds[k] != id)
+		{
+			k = (k + 1) & mask;
+		}
+		return k;
+	}
+
+	private void allocatePending(int capacity)
+	{
+		pendingIds = new long[capacity];
+		pendingValues = new long[capacity];
+		Arrays.fill(pendingValues, NONE);
+	}
+
+	private void resizePending(int capacity)
+	{
+		long[] oldIds = pendingIds;
+		long[] oldValues = pendingValues;
+		allocatePending(capacity);
+		for (int k = 0; k < oldIds.length; k++)
+		{
+			if(oldValues[k] != NONE)
+			{
+				int newK = indexOfPending(oldIds[k]);
+				pendingIds[newK] = oldIds[k];
+				pendingValues[newK] = oldValues[k];
+			}
+		}
+	}
+
+	/** @return index of the record with the given id or -1 if there is none */
+	private long indexOf(long id)
+	{
+		long low = 0, high = count - 1;
+		while(low <= high)
+		{
+			long mid = (low + high) >>> 1;
+			long midId = getId(mid);
+			if(midId < id) low = mid + 1;
+			else if(midId > id) high = mid - 1;
+			else return mid;
+		}
+		return -1;
+	}
+
+	private long getId(long index)
+	{
+		return file.getLong(index * RECORD_SIZE);
+	}
+
+	private long getValue(long index)
+	{
+		return file.getLong(index * RECORD_SIZE + 8);
+	}
+}
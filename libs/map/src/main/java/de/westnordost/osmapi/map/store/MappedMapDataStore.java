@@ -0,0 +1,490 @@
+package de.westnordost.osmapi.map.store;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import de.westnordost.osmapi.changesets.Changeset;
+import de.westnordost.osmapi.map.data.ArrayTagMap;
+import de.westnordost.osmapi.map.data.BoundingBox;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.Fixed1E7;
+import de.westnordost.osmapi.map.data.Fixed1E7LatLon;
+import de.westnordost.osmapi.map.data.ImmutableRelationMember;
+import de.westnordost.osmapi.map.data.LatLon;
+import de.westnordost.osmapi.map.data.Node;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.RelationMember;
+import de.westnordost.osmapi.map.data.Way;
+
+/** Stores the map data it is fed in memory-mapped files in a directory, so that it can hold
+ *  region-sized map data (tens of millions of elements) with only a small heap footprint:
+ *  <ul>
+ *      <li>node positions are fixed-width (id, latitude, longitude) records sorted by id</li>
+ *      <li>ways, relations and the tags of all elements are variable-length encoded records with
+ *          delta-encoded node ids and member refs, found via an index of (id, offset) records</li>
+ *  </ul>
+ *  The elements returned by the lookups are read-only flyweights that only know where their data
+ *  is stored. Their properties are decoded anew each time they are accessed, so better keep what
+ *  is needed several times. Changesets are not stored, and neither are bounds.
+ *  <br><br>
+ *  An element fed to the store a second time replaces the one stored before. Elements fed in
+ *  ascending order of id, like they are ordered in the responses of the API, are stored fastest.
+ *  The record of the replaced element stays in the data file though, i.e. the store only grows.
+ *  Start with a new store to get rid of those records, e.g. after re-downloading a region.
+ *  <br><br>
+ *  The files grow in steps of the segment size of their mapping (64 MB) and are not truncated to
+ *  their content on close, so even a store with little data takes a few hundred MB of disk space,
+ *  though on most file systems only what has been written is actually allocated.
+ *  <br><br>
+ *  The store must be closed when done so that the data written is persisted and can be read again
+ *  by opening a store on the same directory. Not thread safe. */
+public class MappedMapDataStore implements MapDataStore, Closeable
+{
+	private static final int FORMAT_VERSION = 1;
+
+	private static final String META_FILE = "store.meta";
+
+	/* value in the node positions for nodes without position, i.e. deleted nodes */
+	private static final long NO_POSITION = pack(Integer.MIN_VALUE, Integer.MIN_VALUE);
+
+	private final File directory;
+
+	private final MappedIdIndex nodePositions;
+	private final MappedIdIndex nodeOffsets;
+	private final MappedIdIndex wayOffsets;
+	private final MappedIdIndex relationOffsets;
+	private final MappedDataFile data;
+
+	/** Opens the store in the given directory. If there is no store in it yet, a new one is
+	 *  created.
+	 *
+	 *  @throws IOException if the store could not be opened */
+	public MappedMapDataStore(File directory) throws IOException
+	{
+		this(directory, MappedFile.DEFAULT_SEGMENT_SIZE);
+	}
+
+	MappedMapDataStore(File directory, int segmentSize) throws IOException
+	{
+		if(!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Could not create directory " + directory);
+		}
+		this.directory = directory;
+
+		long[] counts = new long[5];
+		File metaFile = new File(directory, META_FILE);
+		if(metaFile.exists())
+		{
+			try(DataInputStream in = new DataInputStream(new FileInputStream(metaFile)))
+			{
+				int formatVersion = in.readInt();
+				if(formatVersion != FORMAT_VERSION)
+				{
+					throw new IOException("Unsupported store format version " + formatVersion);
+				}
+				for (int i = 0; i < counts.length; i++)
+				{
+					counts[i] = in.readLong();
+				}
+			}
+		}
+		nodePositions = new MappedIdIndex(openFile("nodes.dat", segmentSize), counts[0]);
+		nodeOffsets = new MappedIdIndex(openFile("nodes.idx", segmentSize), counts[1]);
+		wayOffsets = new MappedIdIndex(openFile("ways.idx", segmentSize), counts[2]);
+		relationOffsets = new MappedIdIndex(openFile("relations.idx", segmentSize), counts[3]);
+		data = new MappedDataFile(openFile("elements.dat", segmentSize), counts[4]);
+	}
+
+	private MappedFile openFile(String name, int segmentSize) throws IOException
+	{
+		return new MappedFile(new File(directory, name), segmentSize);
+	}
+
+	/* ---------------------------------------- handler ----------------------------------------- */
+
+	@Override
+	public void handle(BoundingBox bounds)
+	{
+		// not stored
+	}
+
+	@Override
+	public void handle(Node node)
+	{
+		LatLon pos = node.getPosition();
+		nodePositions.put(node.getId(), pos != null
+				? pack(Fixed1E7.doubleToFixed(pos.getLatitude()), Fixed1E7.doubleToFixed(pos.getLongitude()))
+				: NO_POSITION);
+		nodeOffsets.put(node.getId(), data.getLength());
+		writeHeader(node);
+	}
+
+	@Override
+	public void handle(Way way)
+	{
+		wayOffsets.put(way.getId(), data.getLength());
+		writeHeader(way);
+		List<Long> nodeIds = way.getNodeIds();
+		data.writeUnsigned(nodeIds.size());
+		long previous = 0;
+		for (long nodeId : nodeIds)
+		{
+			data.writeSigned(nodeId - previous);
+			previous = nodeId;
+		}
+	}
+
+	@Override
+	public void handle(Relation relation)
+	{
+		relationOffsets.put(relation.getId(), data.getLength());
+		writeHeader(relation);
+		List<RelationMember> members = relation.getMembers();
+		data.writeUnsigned(members.size());
+		long previous = 0;
+		for (RelationMember member : members)
+		{
+			data.writeUnsigned(member.getType().ordinal());
+			data.writeSigned(member.getRef() - previous);
+			data.writeString(member.getRole());
+			previous = member.getRef();
+		}
+	}
+
+	/* the header of each record: version and whether it is deleted in the lowest bit, edited at,
+	   tags */
+	private void writeHeader(Element element)
+	{
+		data.writeSigned((long) element.getVersion() << 1 | (element.isDeleted() ? 1 : 0));
+		Instant editedAt = element.getEditedAt();
+		data.writeUnsigned(editedAt != null ? editedAt.getEpochSecond() + 1 : 0);
+		Map<String, String> tags = element.getTags();
+		int tagCount = tags != null ? tags.size() : 0;
+		data.writeUnsigned(tagCount);
+		if(tagCount == 0) return;
+		for (Map.Entry<String, String> tag : tags.entrySet())
+		{
+			data.writeString(tag.getKey());
+			data.writeString(tag.getValue());
+		}
+	}
+
+	/* ---------------------------------------- queries ----------------------------------------- */
+
+	@Override
+	public Node getNode(long id)
+	{
+		long pos = nodePositions.get(id);
+		if(pos == MappedIdIndex.NONE) return null;
+		return new MappedNode(id, nodeOffsets.get(id), pos);
+	}
+
+	@Override
+	public Way getWay(long id)
+	{
+		long offset = wayOffsets.get(id);
+		return offset != MappedIdIndex.NONE ? new MappedWay(id, offset) : null;
+	}
+
+	@Override
+	public Relation getRelation(long id)
+	{
+		long offset = relationOffsets.get(id);
+		return offset != MappedIdIndex.NONE ? new MappedRelation(id, offset) : null;
+	}
+
+	/** @return the position of the node with the given id or null if it is not in this store or
+	 *          has no position. Quicker than getting the node first */
+	public LatLon getPosition(long nodeId)
+	{
+		long pos = nodePositions.get(nodeId);
+		if(pos == MappedIdIndex.NONE || pos == NO_POSITION) return null;
+		return Fixed1E7LatLon.fromFixed1E7(unpackLatitude(pos), unpackLongitude(pos));
+	}
+
+	public long getNodeCount()
+	{
+		return nodePositions.size();
+	}
+
+	public long getWayCount()
+	{
+		return wayOffsets.size();
+	}
+
+	public long getRelationCount()
+	{
+		return relationOffsets.size();
+	}
+
+	/** Writes everything fed so far to the storage device */
+	public void flush()
+	{
+		nodePositions.flush();
+		nodeOffsets.flush();
+		wayOffsets.flush();
+		relationOffsets.flush();
+		data.force();
+		try
+		{
+			writeMeta();
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/** Flushes and closes the store. Elements returned by this store must not be used anymore
+	 *  afterwards */
+	@Override
+	public void close() throws IOException
+	{
+		flush();
+		nodePositions.close();
+		nodeOffsets.close();
+		wayOffsets.close();
+		relationOffsets.close();
+		data.close();
+	}
+
+	private void writeMeta() throws IOException
+	{
+		try(DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(directory, META_FILE))))
+		{
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(nodePositions.getFileCount());
+			out.writeLong(nodeOffsets.getFileCount());
+			out.writeLong(wayOffsets.getFileCount());
+			out.writeLong(relationOffsets.getFileCount());
+			out.writeLong(data.getLength());
+		}
+	}
+
+	private static long pack(int latitude, int longitude)
+	{
+		return (long) latitude << 32 | (longitude & 0xFFFFFFFFL);
+	}
+
+	private static int unpackLatitude(long pos)
+	{
+		return (int) (pos >> 32);
+	}
+
+	private static int unpackLongitude(long pos)
+	{
+		return (int) pos;
+	}
+
+	/* ----------------------------------------- views ------------------------------------------ */
+
+	/** Reads the record of an element, starting after the header */
+	private MappedDataFile.Reader readBody(long offset)
+	{
+		MappedDataFile.Reader reader = data.read(offset);
+		reader.readSigned();
+		reader.readUnsigned();
+		int tagCount = reader.readUnsignedInt();
+		for (int i = 0; i < tagCount * 2; i++)
+		{
+			reader.skipString();
+		}
+		return reader;
+	}
+
+	private abstract class MappedElement implements Element
+	{
+		final long id;
+		final long offset;
+
+		MappedElement(long id, long offset)
+		{
+			this.id = id;
+			this.offset = offset;
+		}
+
+		@Override public long getId()
+		{
+			return id;
+		}
+
+		@Override public int getVersion()
+		{
+			return (int) (data.read(offset).readSigned() >> 1);
+		}
+
+		@Override public Instant getEditedAt()
+		{
+			MappedDataFile.Reader reader = data.read(offset);
+			reader.readSigned();
+			long editedAt = reader.readUnsigned();
+			return editedAt != 0 ? Instant.ofEpochSecond(editedAt - 1) : null;
+		}
+
+		/** @return the tags of this element. Read-only */
+		@Override public Map<String, String> getTags()
+		{
+			MappedDataFile.Reader reader = data.read(offset);
+			reader.readSigned();
+			reader.readUnsigned();
+			int tagCount = reader.readUnsignedInt();
+			if(tagCount == 0) return Collections.emptyMap();
+
+			Map<String, String> tags = tagCount <= ArrayTagMap.MAX_RECOMMENDED_SIZE
+					? new ArrayTagMap(tagCount)
+					: new HashMap<>(tagCount * 4 / 3 + 1);
+			for (int i = 0; i < tagCount; i++)
+			{
+				tags.put(reader.readString(), reader.readString());
+			}
+			return Collections.unmodifiableMap(tags);
+		}
+
+		@Override public Changeset getChangeset()
+		{
+			return null;
+		}
+
+		@Override public boolean isNew()
+		{
+			return id < 0;
+		}
+
+		@Override public boolean isModified()
+		{
+			return false;
+		}
+
+		@Override public boolean isDeleted()
+		{
+			return (data.read(offset).readSigned() & 1) != 0;
+		}
+
+		/* two views are equal if they view the same record */
+		@Override public boolean equals(Object other)
+		{
+			if(other == this) return true;
+			if(other == null || other.getClass() != getClass()) return false;
+			MappedElement otherElement = (MappedElement) other;
+			return id == otherElement.id && offset == otherElement.offset;
+		}
+
+		@Override public int hashCode()
+		{
+			return 31 * getType().ordinal() + (int) (id ^ (id >>> 32));
+		}
+	}
+
+	private class MappedNode extends MappedElement implements Node
+	{
+		private final long pos;
+
+		MappedNode(long id, long offset, long pos)
+		{
+			super(id, offset);
+			this.pos = pos;
+		}
+
+		@Override public LatLon getPosition()
+		{
+			if(pos == NO_POSITION) return null;
+			return Fixed1E7LatLon.fromFixed1E7(unpackLatitude(pos), unpackLongitude(pos));
+		}
+
+		@Override public Type getType()
+		{
+			return Type.NODE;
+		}
+	}
+
+	private class MappedWay extends MappedElement implements Way
+	{
+		MappedWay(long id, long offset)
+		{
+			super(id, offset);
+		}
+
+		/** @return the node ids of this way. Read-only */
+		@Override public List<Long> getNodeIds()
+		{
+			MappedDataFile.Reader reader = readBody(offset);
+			long[] nodeIds = new long[reader.readUnsignedInt()];
+			long previous = 0;
+			for (int i = 0; i < nodeIds.length; i++)
+			{
+				previous += reader.readSigned();
+				nodeIds[i] = previous;
+			}
+			return new LongList(nodeIds);
+		}
+
+		@Override public Type getType()
+		{
+			return Type.WAY;
+		}
+	}
+
+	private class MappedRelation extends MappedElement implements Relation
+	{
+		MappedRelation(long id, long offset)
+		{
+			super(id, offset);
+		}
+
+		/** @return the members of this relation. Read-only */
+		@Override public List<RelationMember> getMembers()
+		{
+			MappedDataFile.Reader reader = readBody(offset);
+			RelationMember[] members = new RelationMember[reader.readUnsignedInt()];
+			Element.Type[] types = Element.Type.values();
+			long previous = 0;
+			for (int i = 0; i < members.length; i++)
+			{
+				Element.Type type = types[reader.readUnsignedInt()];
+				previous += reader.readSigned();
+				members[i] = new ImmutableRelationMember(previous, reader.readString(), type);
+			}
+			return Collections.unmodifiableList(Arrays.asList(members));
+		}
+
+		@Override public Type getType()
+		{
+			return Type.RELATION;
+		}
+	}
+
+	private static class LongList extends AbstractList<Long> implements RandomAccess
+	{
+		private final long[] values;
+
+		LongList(long[] values)
+		{
+			this.values = values;
+		}
+
+		@Override public Long get(int index)
+		{
+			return values[index];
+		}
+
+		@Override public int size()
+		{
+			return values.length;
+		}
+	}
+}
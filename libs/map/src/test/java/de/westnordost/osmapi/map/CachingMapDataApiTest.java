@@ -0,0 +1,199 @@
+package de.westnordost.osmapi.map;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.westnordost.osmapi.OsmConnection;
+import de.westnordost.osmapi.map.changes.DiffElement;
+import de.westnordost.osmapi.map.changes.MapDataChangesHandler;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+import de.westnordost.osmapi.map.data.OsmNode;
+import de.westnordost.osmapi.map.handler.ListOsmElementHandler;
+
+import static org.junit.Assert.*;
+
+public class CachingMapDataApiTest
+{
+	private HttpServer server;
+	private CachingMapDataApi api;
+	private long time;
+
+	/* state of the stub server */
+	private final AtomicInteger requests = new AtomicInteger();
+
+	@Before public void setUp() throws IOException
+	{
+		time = 0;
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/api/0.6/", this::respondElement);
+		server.start();
+
+		String url = "http://localhost:" + server.getAddress().getPort() + "/api/0.6/";
+		api = new CachingMapDataApi(new OsmConnection(url, "test", null), new ImmutableMapDataFactory(),
+				5, 1000, () -> time);
+	}
+
+	@After public void tearDown()
+	{
+		server.stop(0);
+	}
+
+	@Test public void cachesElements()
+	{
+		assertEquals(1, api.getNode(1).getId());
+		assertSame(api.getNode(1), api.getNode(1));
+		assertEquals(1, api.getWay(1).getId());
+		assertEquals(2, requests.get());
+		assertEquals(2, api.getHitCount());
+		assertEquals(2, api.getMissCount());
+		assertEquals(2, api.getSize());
+	}
+
+	@Test public void doesNotCacheUnknownElements()
+	{
+		assertNull(api.getNode(404));
+		assertNull(api.getNode(404));
+		assertEquals(2, requests.get());
+		assertEquals(0, api.getSize());
+	}
+
+	@Test public void expiresElements()
+	{
+		api.getNode(1);
+		time = 999;
+		api.getNode(1);
+		assertEquals(1, requests.get());
+		time = 1000;
+		api.getNode(1);
+		assertEquals(2, requests.get());
+	}
+
+	@Test public void evictsLeastRecentlyUsed()
+	{
+		for (long id = 1; id <= 5; id++)
+		{
+			api.getNode(id);
+		}
+		api.getNode(1);
+		api.getNode(6);
+		assertEquals(5, api.getSize());
+		assertEquals(1, api.getEvictionCount());
+
+		api.getNode(1);
+		assertEquals(6, requests.get());
+		api.getNode(2);
+		assertEquals(7, requests.get());
+	}
+
+	@Test public void cachesCompleteWays()
+	{
+		List<Element> first = getWayComplete(1);
+		List<Element> second = getWayComplete(1);
+		assertEquals(1, requests.get());
+		assertEquals(3, first.size());
+		assertEquals(first, second);
+		// in the order of the response
+		assertEquals(Element.Type.NODE, second.get(0).getType());
+		assertEquals(2, second.get(0).getId());
+		assertEquals(3, second.get(1).getId());
+		assertEquals(Element.Type.WAY, second.get(2).getType());
+		assertEquals(3, api.getSize());
+	}
+
+	@Test public void cachesWhenUsedAsMapDataApi()
+	{
+		MapDataApi mapDataApi = api;
+		assertSame(mapDataApi.getNode(1), mapDataApi.getNode(1));
+		assertEquals(1, requests.get());
+	}
+
+	@Test public void invalidatesOlderVersionsReportedByUpload()
+	{
+		api.getNode(1);
+		List<DiffElement> passedOn = new ArrayList<>();
+		DiffElement diff = new DiffElement();
+		diff.type = Element.Type.NODE;
+		diff.clientId = 1;
+		diff.serverId = 1L;
+		diff.serverVersion = 1;
+
+		api.invalidating(passedOn::add).handle(diff);
+		assertEquals(1, api.getSize());
+
+		diff.serverVersion = 2;
+		api.invalidating(passedOn::add).handle(diff);
+		assertEquals(0, api.getSize());
+		assertEquals(1, api.getInvalidationCount());
+		assertEquals(2, passedOn.size());
+	}
+
+	@Test public void invalidatesCompleteWaysContainingChangedNode()
+	{
+		getWayComplete(1);
+		api.getWay(1);
+		MapDataChangesHandler handler = api.invalidating((MapDataChangesHandler) null);
+		handler.onStartModifications();
+		handler.handle(new OsmNode(2, 2, new OsmLatLon(1, 1), null));
+
+		assertEquals(1, api.getSize());
+		getWayComplete(1);
+		assertEquals(3, requests.get());
+	}
+
+	private List<Element> getWayComplete(long id)
+	{
+		ListOsmElementHandler<Element> handler = new ListOsmElementHandler<>(Element.class);
+		api.getWayComplete(id, handler);
+		return new ArrayList<>(handler.get());
+	}
+
+	private void respondElement(HttpExchange exchange) throws IOException
+	{
+		requests.incrementAndGet();
+		String path = exchange.getRequestURI().getPath().substring("/api/0.6/".length());
+		String node = "<node id=\"%d\" version=\"1\" lat=\"1\" lon=\"1\"/>";
+		if(path.equals("node/404"))
+		{
+			respond(exchange, 404, "");
+		}
+		else if(path.startsWith("node/"))
+		{
+			long id = Long.parseLong(path.substring(5));
+			respond(exchange, 200, "<osm>" + String.format(node, id) + "</osm>");
+		}
+		else if(path.equals("way/1/full"))
+		{
+			respond(exchange, 200, "<osm>" + String.format(node, 2) + String.format(node, 3) +
+					"<way id=\"1\" version=\"1\"><nd ref=\"2\"/><nd ref=\"3\"/></way></osm>");
+		}
+		else if(path.equals("way/1"))
+		{
+			respond(exchange, 200, "<osm><way id=\"1\" version=\"1\"><nd ref=\"2\"/><nd ref=\"3\"/></way></osm>");
+		}
+		else
+		{
+			respond(exchange, 404, "");
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int code, String body) throws IOException
+	{
+		byte[] bytes = body.getBytes("UTF-8");
+		exchange.sendResponseHeaders(code, bytes.length > 0 ? bytes.length : -1);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+}
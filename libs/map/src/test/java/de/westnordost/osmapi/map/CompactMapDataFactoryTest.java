@@ -0,0 +1,110 @@
+package de.westnordost.osmapi.map;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.westnordost.osmapi.TestUtils;
+import de.westnordost.osmapi.map.data.ArrayTagMap;
+import de.westnordost.osmapi.map.data.CompactNode;
+import de.westnordost.osmapi.map.data.LongArrayList;
+import de.westnordost.osmapi.map.data.Node;
+import de.westnordost.osmapi.map.data.Way;
+import de.westnordost.osmapi.map.handler.ListOsmElementHandler;
+
+import static org.junit.Assert.*;
+
+public class CompactMapDataFactoryTest
+{
+	@Test public void parsesCompactNodes() throws IOException
+	{
+		ListOsmElementHandler<Node> handler = new ListOsmElementHandler<>(Node.class);
+		new MapDataParser(handler, new CompactMapDataFactory()).parse(TestUtils.asInputStream(
+				"<osm><node id=\"1\" version=\"2\" lat=\"51.7463194\" lon=\"-0.2428181\"/>" +
+				"<node id=\"2\" version=\"3\" visible=\"false\"/></osm>"));
+
+		Node node = handler.get().get(0);
+		assertTrue(node instanceof CompactNode);
+		assertEquals(51.7463194, node.getPosition().getLatitude(), 0);
+		assertEquals(-0.2428181, node.getPosition().getLongitude(), 0);
+		assertEquals(2, node.getVersion());
+		assertTrue(node.getTags().isEmpty());
+
+		assertNull(handler.get().get(1).getPosition());
+	}
+
+	@Test public void wayNodesAreCompact()
+	{
+		Way way = new CompactMapDataFactory().createWay(1, 1, Arrays.asList(1L, 2L, 3L), null, null, null);
+		assertEquals(Arrays.asList(1L, 2L, 3L), way.getNodeIds());
+		way.getNodeIds().add(4L);
+		assertTrue(way.isModified());
+	}
+
+	@Test public void nodeWithoutPosition()
+	{
+		Node node = new CompactMapDataFactory().createNode(1, 1, null, null, null, null, null);
+		assertNull(node.getPosition());
+	}
+
+	@Test public void nodeWithDoublePosition()
+	{
+		Node node = new CompactMapDataFactory().createNode(1, 1, 1.5, 2.5, null, null, null);
+		assertEquals(1.5, node.getPosition().getLatitude(), 0);
+		assertEquals(2.5, node.getPosition().getLongitude(), 0);
+	}
+
+	@Test public void deduplicatesTags() throws IOException
+	{
+		ListOsmElementHandler<Node> handler = new ListOsmElementHandler<>(Node.class);
+		new MapDataParser(handler, new CompactMapDataFactory()).parse(TestUtils.asInputStream(
+				"<osm><node id=\"1\" version=\"1\" lat=\"1\" lon=\"1\"><tag k=\"amenity\" v=\"bench\"/></node>" +
+				"<node id=\"2\" version=\"1\" lat=\"1\" lon=\"1\"><tag k=\"amenity\" v=\"bench\"/></node></osm>"));
+
+		Map.Entry<String, String> tag1 = handler.get().get(0).getTags().entrySet().iterator().next();
+		Map.Entry<String, String> tag2 = handler.get().get(1).getTags().entrySet().iterator().next();
+		assertSame(tag1.getKey(), tag2.getKey());
+		assertSame(tag1.getValue(), tag2.getValue());
+	}
+
+	@Test public void sharesDictionaryBetweenParses() throws IOException
+	{
+		StringDictionary dictionary = new StringDictionary();
+		CompactMapDataFactory factory = new CompactMapDataFactory(dictionary);
+		ListOsmElementHandler<Node> handler = new ListOsmElementHandler<>(Node.class);
+		String xml = "<osm><node id=\"1\" version=\"1\" lat=\"1\" lon=\"1\"><tag k=\"amenity\" v=\"bench\"/></node></osm>";
+		new MapDataParser(handler, factory).parse(TestUtils.asInputStream(xml));
+		new MapDataParser(handler, factory).parse(TestUtils.asInputStream(xml));
+
+		assertEquals(2, dictionary.size());
+		assertSame(
+				handler.get().get(0).getTags().keySet().iterator().next(),
+				handler.get().get(1).getTags().keySet().iterator().next());
+	}
+
+	@Test public void fewTagsAreInArrayTagMap()
+	{
+		MapDataFactory factory = new CompactMapDataFactory();
+		assertTrue(factory.createTags(2) instanceof ArrayTagMap);
+		assertTrue(factory.createTags(100) instanceof HashMap);
+	}
+
+	@Test public void parsesManyTags() throws IOException
+	{
+		StringBuilder xml = new StringBuilder("<osm><way id=\"1\" version=\"1\">");
+		for (int i = 0; i < 20; i++)
+		{
+			xml.append("<tag k=\"k").append(i).append("\" v=\"v").append(i).append("\"/>");
+		}
+		xml.append("</way></osm>");
+		ListOsmElementHandler<Way> handler = new ListOsmElementHandler<>(Way.class);
+		new MapDataParser(handler, new CompactMapDataFactory()).parse(TestUtils.asInputStream(xml.toString()));
+
+		Map<String, String> tags = handler.get().get(0).getTags();
+		assertEquals(20, tags.size());
+		assertEquals("v19", tags.get("k19"));
+	}
+}
@@ -0,0 +1,172 @@
+package de.westnordost.osmapi.map;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.westnordost.osmapi.OsmConnection;
+import de.westnordost.osmapi.common.errors.OsmConnectionException;
+import de.westnordost.osmapi.map.data.Node;
+
+import static org.junit.Assert.*;
+
+public class ElementRequestCoalescerTest
+{
+	/** the stub server knows only nodes with ids smaller than this */
+	private static final long MAX_KNOWN_ID = 1000;
+	/** the node with this id has been deleted */
+	private static final long DELETED_ID = 500;
+
+	private HttpServer server;
+	private AtomicInteger requests;
+	private MapDataApi api;
+
+	@Before public void setUp() throws IOException
+	{
+		requests = new AtomicInteger();
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/api/0.6/nodes", exchange ->
+		{
+			requests.incrementAndGet();
+			String query = exchange.getRequestURI().getQuery();
+			StringBuilder xml = new StringBuilder("<osm>");
+			int code = 200;
+			for (String id : query.substring("nodes=".length()).split(","))
+			{
+				if(Long.parseLong(id) >= MAX_KNOWN_ID) code = 404;
+				if(Long.parseLong(id) == DELETED_ID)
+				{
+					xml.append("<node id=\"").append(id).append("\" version=\"2\" visible=\"false\"/>");
+				}
+				else
+				{
+					xml.append("<node id=\"").append(id).append("\" version=\"1\" visible=\"true\" lat=\"1\" lon=\"2\"/>");
+				}
+			}
+			xml.append("</osm>");
+			byte[] bytes = code == 200 ? xml.toString().getBytes("UTF-8") : new byte[0];
+			exchange.sendResponseHeaders(code, bytes.length > 0 ? bytes.length : -1);
+			OutputStream out = exchange.getResponseBody();
+			out.write(bytes);
+			out.close();
+		});
+		server.createContext("/api/0.6/ways", exchange ->
+		{
+			exchange.sendResponseHeaders(500, -1);
+			exchange.close();
+		});
+		server.start();
+
+		String url = "http://localhost:" + server.getAddress().getPort() + "/api/0.6/";
+		api = new MapDataApi(new OsmConnection(url, "test", null));
+	}
+
+	@After public void tearDown()
+	{
+		server.stop(0);
+	}
+
+	@Test public void coalescesRequests() throws Exception
+	{
+		ElementRequestCoalescer coalescer = new ElementRequestCoalescer(api, 100);
+		List<CompletableFuture<Node>> futures = new ArrayList<>();
+		for (long id = 1; id <= 50; id++)
+		{
+			futures.add(coalescer.getNode(id));
+		}
+		for (int i = 0; i < 50; i++)
+		{
+			assertEquals(i + 1, futures.get(i).get().getId());
+		}
+		assertEquals(1, requests.get());
+		assertEquals(1, coalescer.getRequestsCount());
+	}
+
+	@Test public void sameIdTwice() throws Exception
+	{
+		ElementRequestCoalescer coalescer = new ElementRequestCoalescer(api, 100);
+		CompletableFuture<Node> first = coalescer.getNode(5);
+		CompletableFuture<Node> second = coalescer.getNode(5);
+		coalescer.flush();
+
+		assertSame(first.get(), second.get());
+		assertEquals(1, requests.get());
+	}
+
+	@Test public void unknownElementIsNull() throws Exception
+	{
+		ElementRequestCoalescer coalescer = new ElementRequestCoalescer(api, 100);
+		List<CompletableFuture<Node>> futures = new ArrayList<>();
+		for (long id = 1; id <= 8; id++)
+		{
+			futures.add(coalescer.getNode(id));
+		}
+		CompletableFuture<Node> unknown = coalescer.getNode(MAX_KNOWN_ID + 1);
+		coalescer.flush();
+
+		assertNull(unknown.get());
+		for (int i = 0; i < 8; i++)
+		{
+			assertEquals(i + 1, futures.get(i).get().getId());
+		}
+	}
+
+	@Test public void deletedElementIsNull() throws Exception
+	{
+		ElementRequestCoalescer coalescer = new ElementRequestCoalescer(api, 100);
+		CompletableFuture<Node> node = coalescer.getNode(1);
+		CompletableFuture<Node> deleted = coalescer.getNode(DELETED_ID);
+		coalescer.flush();
+
+		assertEquals(1, node.get().getId());
+		assertNull(deleted.get());
+		assertEquals(1, requests.get());
+	}
+
+	@Test public void flushesPendingBatchesOnClose() throws Exception
+	{
+		ElementRequestCoalescer coalescer = new ElementRequestCoalescer(api, 60 * 1000);
+		CompletableFuture<Node> node = coalescer.getNode(1);
+		CompletableFuture<Node> other = coalescer.getNode(2);
+		coalescer.close();
+
+		assertEquals(1, node.get().getId());
+		assertEquals(2, other.get().getId());
+		assertEquals(1, requests.get());
+		assertThrows(IllegalStateException.class, () -> coalescer.getNode(3));
+	}
+
+	@Test public void doesNotShutDownSchedulerOfCaller() throws Exception
+	{
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		try(ElementRequestCoalescer coalescer = new ElementRequestCoalescer(api, 10, scheduler))
+		{
+			assertEquals(1, coalescer.getNode(1).get().getId());
+		}
+		assertFalse(scheduler.isShutdown());
+		scheduler.shutdown();
+	}
+
+	@Test public void errorIsPassedOn()
+	{
+		ElementRequestCoalescer coalescer = new ElementRequestCoalescer(api, 100);
+		CompletableFuture<?> way = coalescer.getWay(1);
+		coalescer.flush();
+
+		ExecutionException e = assertThrows(ExecutionException.class, way::get);
+		assertTrue(e.getCause() instanceof OsmConnectionException);
+	}
+}
@@ -0,0 +1,155 @@
+package de.westnordost.osmapi.map;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.westnordost.osmapi.TestUtils;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.ImmutableNode;
+import de.westnordost.osmapi.map.data.ImmutableRelationMember;
+import de.westnordost.osmapi.map.data.ImmutableWay;
+import de.westnordost.osmapi.map.data.LongArrayList;
+import de.westnordost.osmapi.map.data.Node;
+import de.westnordost.osmapi.map.data.OsmRelationMember;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.RelationMember;
+import de.westnordost.osmapi.map.data.Way;
+import de.westnordost.osmapi.map.handler.ListOsmElementHandler;
+
+import static org.junit.Assert.*;
+
+public class ImmutableMapDataFactoryTest
+{
+	private final MapDataFactory factory = new ImmutableMapDataFactory();
+
+	@Test public void parsesImmutableElements() throws IOException
+	{
+		ListOsmElementHandler<Element> handler = new ListOsmElementHandler<>(Element.class);
+		new MapDataParser(handler, factory).parse(TestUtils.asInputStream(
+				"<osm>" +
+				"<node id=\"1\" version=\"2\" lat=\"51.7463194\" lon=\"-0.2428181\"><tag k=\"a\" v=\"b\"/></node>" +
+				"<way id=\"2\" version=\"1\"><nd ref=\"1\"/><nd ref=\"3\"/></way>" +
+				"<relation id=\"3\" version=\"1\"><member type=\"way\" ref=\"2\" role=\"outer\"/></relation>" +
+				"</osm>"));
+
+		Node node = (Node) handler.get().get(0);
+		assertTrue(node instanceof ImmutableNode);
+		assertEquals(51.7463194, node.getPosition().getLatitude(), 0);
+		assertEquals(-0.2428181, node.getPosition().getLongitude(), 0);
+		assertEquals("b", node.getTags().get("a"));
+		assertFalse(node.isModified());
+
+		Way way = (Way) handler.get().get(1);
+		assertEquals(Arrays.asList(1L, 3L), way.getNodeIds());
+
+		Relation relation = (Relation) handler.get().get(2);
+		assertEquals(
+				Arrays.asList(new OsmRelationMember(2, "outer", Element.Type.WAY)),
+				relation.getMembers());
+	}
+
+	@Test public void parsedElementsDoNotShareTags() throws IOException
+	{
+		ListOsmElementHandler<Element> handler = new ListOsmElementHandler<>(Element.class);
+		new MapDataParser(handler, factory).parse(TestUtils.asInputStream(
+				"<osm>" +
+				"<node id=\"1\" version=\"1\" lat=\"1\" lon=\"2\"><tag k=\"a\" v=\"b\"/></node>" +
+				"<node id=\"2\" version=\"1\" lat=\"1\" lon=\"2\"><tag k=\"c\" v=\"d\"/></node>" +
+				"<way id=\"3\" version=\"1\"><nd ref=\"1\"/><tag k=\"e\" v=\"f\"/></way>" +
+				"</osm>"));
+
+		assertEquals(Collections.singletonMap("a", "b"), handler.get().get(0).getTags());
+		assertEquals(Collections.singletonMap("c", "d"), handler.get().get(1).getTags());
+		assertEquals(Collections.singletonMap("e", "f"), handler.get().get(2).getTags());
+	}
+
+	@Test public void createsNewTags()
+	{
+		Map<String, String> tags = factory.createTags(1);
+		tags.put("a", "b");
+		Map<String, String> otherTags = factory.createTags(1);
+		assertNotSame(tags, otherTags);
+		assertTrue(otherTags.isEmpty());
+		assertEquals(Collections.singletonMap("a", "b"), tags);
+	}
+
+	@Test public void createsElementsWithTagsFromOtherFactory()
+	{
+		Map<String, String> tags = new OsmMapDataFactory().createTags(1);
+		tags.put("a", "b");
+		Node node = factory.createNode(1, 1, 0, 0, tags, null, null);
+		factory.createTags(1);
+		assertEquals(Collections.singletonMap("a", "b"), node.getTags());
+	}
+
+	@Test public void isReadOnly()
+	{
+		Map<String, String> tags = new HashMap<>();
+		tags.put("a", "b");
+		Node node = factory.createNode(1, 1, 0, 0, tags, null, null);
+		assertThrows(UnsupportedOperationException.class, () -> node.getTags().put("c", "d"));
+
+		Way way = factory.createWay(1, 1, new LongArrayList(new long[]{1, 2}), null, null, null);
+		assertThrows(UnsupportedOperationException.class, () -> way.getNodeIds().add(3L));
+		assertThrows(UnsupportedOperationException.class, () -> way.getTags().put("c", "d"));
+
+		Relation relation = factory.createRelation(1, 1, new ArrayList<>(), null, null, null);
+		assertThrows(UnsupportedOperationException.class,
+				() -> relation.getMembers().add(factory.createRelationMember(1, "", Element.Type.NODE)));
+	}
+
+	@Test public void constructorCopiesCollections()
+	{
+		Map<String, String> tags = new HashMap<>();
+		tags.put("a", "b");
+		List<Long> nodes = new ArrayList<>(Arrays.asList(1L, 2L));
+		Way way = new ImmutableWay(1, 1, nodes, tags, null, null);
+		tags.put("c", "d");
+		nodes.add(3L);
+
+		assertEquals(1, way.getTags().size());
+		assertEquals(2, way.getNodeIds().size());
+	}
+
+	@Test public void primitiveNodeIds()
+	{
+		ImmutableWay way = (ImmutableWay) factory.createWay(1, 1, Arrays.asList(5L, 6L, 7L, 5L), null, null, null);
+		assertEquals(4, way.getNodeCount());
+		assertEquals(6L, way.getNodeId(1));
+		assertTrue(way.isClosed());
+	}
+
+	@Test public void equalsByTypeIdAndVersion()
+	{
+		Node a = factory.createNode(1, 1, 0, 0, null, null, null);
+		Node b = factory.createNode(1, 1, 10, 10, null, null, null);
+		Node c = factory.createNode(1, 2, 0, 0, null, null, null);
+		Way d = factory.createWay(1, 1, Arrays.asList(1L), null, null, null);
+
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+		assertNotEquals(a, c);
+		assertNotEquals(a, d);
+	}
+
+	@Test public void memberEqualsOsmRelationMember()
+	{
+		RelationMember a = new ImmutableRelationMember(1, "outer", Element.Type.WAY);
+		RelationMember b = new OsmRelationMember(1, "outer", Element.Type.WAY);
+		assertEquals(a, b);
+		assertEquals(b, a);
+		assertEquals(a.hashCode(), b.hashCode());
+	}
+
+	@Test public void nodeWithoutPosition()
+	{
+		assertNull(factory.createNode(1, 1, null, null, null, null, null).getPosition());
+	}
+}
@@ -8,6 +8,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import de.westnordost.osmapi.ConnectionTestFactory;
 import de.westnordost.osmapi.OsmConnection;
@@ -255,6 +256,38 @@ public class MapDataApiTest
 		assertNull(anonymousApi.getRelation(Long.MAX_VALUE));
 	}
 
+	@Test public void getNodeAsync() throws Exception
+	{
+		assertNotNull(liveApi.getNodeAsync(ElementShouldExist.NODE).get());
+		assertNull(anonymousApi.getNodeAsync(Long.MAX_VALUE).get());
+	}
+
+	@Test public void getNodesAsync() throws Exception
+	{
+		List<Long> place = Arrays.asList(ElementShouldExist.NODE);
+		assertFalse(liveApi.getNodesAsync(place).get().isEmpty());
+
+		ExecutionException e = assertThrows(
+				ExecutionException.class,
+				() -> {
+					List<Long> places = Arrays.asList(ElementShouldExist.NODE, Long.MAX_VALUE);
+					liveApi.getNodesAsync(places).get();
+				}
+		);
+		assertTrue(e.getCause() instanceof OsmNotFoundException);
+	}
+
+	@Test public void getMapAsync() throws Exception
+	{
+		final BoundingBox hamburg = new BoundingBox(53.579, 9.939, 53.580, 9.940);
+
+		CountMapDataHandler counter = new CountMapDataHandler();
+		liveApi.getMapAsync(hamburg, counter).get();
+
+		assertEquals(1, counter.bounds);
+		assertTrue(counter.nodes > 0);
+	}
+
 	@Test public void getNodes()
 	{
 		// test if a non-existing element does "poison the well"
@@ -305,6 +338,14 @@ public class MapDataApiTest
 		assertFalse(liveApi.getWays(place).isEmpty());
 	}
 
+	@Test public void idListsAreDeduplicatedAndSplit()
+	{
+		List<String> lists = MapDataApi.toCommaLists(Arrays.asList(1L, 22L, 1L, null, 333L, 4444L), 8);
+		assertEquals(Arrays.asList("1,22,333", "4444"), lists);
+
+		assertTrue(MapDataApi.toCommaLists(Collections.emptyList(), 8).isEmpty());
+	}
+
 	@Test public void getElementsEmpty()
 	{
 		MapDataApi api = anonymousApi;
@@ -0,0 +1,188 @@
+package de.westnordost.osmapi.map;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import de.westnordost.osmapi.OsmConnection;
+import de.westnordost.osmapi.common.errors.OsmQueryTooBigException;
+import de.westnordost.osmapi.map.data.BoundingBox;
+import de.westnordost.osmapi.map.data.Node;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.Way;
+import de.westnordost.osmapi.map.handler.DefaultMapDataHandler;
+import de.westnordost.osmapi.map.handler.MapDataHandler;
+
+import static org.junit.Assert.*;
+
+public class MapDataDownloaderTest
+{
+	private static final double MAX_AREA = 0.25;
+	/* the stub server has one node every 0.1 degrees in the area of 0,0 to 2,2 */
+	private static final int NODES_PER_ROW = 20;
+
+	private HttpServer server;
+	private OsmConnection osm;
+	private int maxNodesPerRequest;
+
+	@Before public void setUp() throws IOException
+	{
+		maxNodesPerRequest = Integer.MAX_VALUE;
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/api/0.6/capabilities", exchange ->
+				respond(exchange, 200, "<osm><api><area maximum=\"" + MAX_AREA + "\"/></api></osm>"));
+		server.createContext("/api/0.6/map", this::respondMap);
+		server.start();
+
+		String url = "http://localhost:" + server.getAddress().getPort() + "/api/0.6/";
+		osm = new OsmConnection(url, "test", null);
+	}
+
+	@After public void tearDown()
+	{
+		server.stop(0);
+	}
+
+	@Test public void tilesAreNotTooBig()
+	{
+		List<BoundingBox> tiles = MapDataDownloader.getTiles(new BoundingBox(0, 0, 1, 2), 0.25);
+		assertEquals(8, tiles.size());
+		for (BoundingBox tile : tiles)
+		{
+			assertEquals(0.5, tile.getMaxLatitude() - tile.getMinLatitude(), 1e-9);
+			assertEquals(0.5, tile.getMaxLongitude() - tile.getMinLongitude(), 1e-9);
+		}
+	}
+
+	@Test public void tilesDoNotCross180thMeridian()
+	{
+		List<BoundingBox> tiles = MapDataDownloader.getTiles(new BoundingBox(0, 179.5, 0.5, -179.5), 0.25);
+		assertEquals(2, tiles.size());
+		for (BoundingBox tile : tiles)
+		{
+			assertFalse(tile.crosses180thMeridian());
+		}
+	}
+
+	@Test public void smallAreaIsOneTile()
+	{
+		List<BoundingBox> tiles = MapDataDownloader.getTiles(new BoundingBox(0, 0, 0.1, 0.1), 0.25);
+		assertEquals(1, tiles.size());
+		assertEquals(new BoundingBox(0, 0, 0.1, 0.1), tiles.get(0));
+	}
+
+	@Test public void downloadsEveryElementOnce()
+	{
+		CountingHandler handler = new CountingHandler();
+		BoundingBox bounds = new BoundingBox(0, 0, 2, 2);
+		new MapDataDownloader(osm).download(bounds, 4, handler);
+
+		assertEquals(bounds, handler.bounds);
+		assertEquals(NODES_PER_ROW * NODES_PER_ROW, handler.nodes.size());
+		for (int count : handler.nodes.values())
+		{
+			assertEquals(1, count);
+		}
+		assertEquals(1, handler.ways);
+	}
+
+	@Test public void splitsTilesWithTooMuchData()
+	{
+		maxNodesPerRequest = 10;
+		CountingHandler handler = new CountingHandler();
+		new MapDataDownloader(osm).download(new BoundingBox(0, 0, 2, 2), 4, handler);
+
+		assertEquals(NODES_PER_ROW * NODES_PER_ROW, handler.nodes.size());
+		assertEquals(1, handler.ways);
+	}
+
+	@Test public void givesUpOnTinyTiles()
+	{
+		maxNodesPerRequest = 0;
+		assertThrows(
+				OsmQueryTooBigException.class,
+				() -> new MapDataDownloader(osm).download(
+						new BoundingBox(0, 0, 0.5, 0.5), 1, new DefaultMapDataHandler())
+		);
+	}
+
+	private void respondMap(HttpExchange exchange) throws IOException
+	{
+		String[] bbox = exchange.getRequestURI().getQuery().substring("bbox=".length()).split(",");
+		double minLon = Double.parseDouble(bbox[0]), minLat = Double.parseDouble(bbox[1]);
+		double maxLon = Double.parseDouble(bbox[2]), maxLat = Double.parseDouble(bbox[3]);
+		if((maxLon - minLon) * (maxLat - minLat) > MAX_AREA + 1e-9)
+		{
+			respond(exchange, 400, "");
+			return;
+		}
+
+		StringBuilder xml = new StringBuilder("<osm>");
+		int nodes = 0;
+		for (int y = 0; y < NODES_PER_ROW; y++)
+		{
+			for (int x = 0; x < NODES_PER_ROW; x++)
+			{
+				double lat = 0.05 + y * 0.1, lon = 0.05 + x * 0.1;
+				if(lat < minLat || lat > maxLat || lon < minLon || lon > maxLon) continue;
+				nodes++;
+				xml.append(String.format(Locale.UK,
+						"<node id=\"%d\" version=\"1\" lat=\"%f\" lon=\"%f\"/>",
+						1 + y * NODES_PER_ROW + x, lat, lon));
+			}
+		}
+		// a big way that is contained in every tile
+		xml.append("<way id=\"1\" version=\"1\"><nd ref=\"1\"/><nd ref=\"400\"/></way>");
+		xml.append("</osm>");
+
+		if(nodes > maxNodesPerRequest) respond(exchange, 400, "");
+		else respond(exchange, 200, xml.toString());
+	}
+
+	private static void respond(HttpExchange exchange, int code, String body) throws IOException
+	{
+		byte[] bytes = body.getBytes("UTF-8");
+		exchange.sendResponseHeaders(code, bytes.length > 0 ? bytes.length : -1);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	private static class CountingHandler implements MapDataHandler
+	{
+		BoundingBox bounds;
+		Map<Long, Integer> nodes = new HashMap<>();
+		int ways;
+
+		@Override public void handle(BoundingBox bounds)
+		{
+			assertNull(this.bounds);
+			this.bounds = bounds;
+		}
+
+		@Override public void handle(Node node)
+		{
+			nodes.merge(node.getId(), 1, Integer::sum);
+		}
+
+		@Override public void handle(Way way)
+		{
+			ways++;
+		}
+
+		@Override public void handle(Relation relation) { }
+	}
+}
@@ -4,6 +4,7 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
 
 import de.westnordost.osmapi.TestUtils;
@@ -241,6 +242,26 @@ public class MapDataParserTest
 		assertTrue(relation.getMembers().isEmpty());
 	}
 
+	@Test public void skipsDeletedElements() throws IOException
+	{
+		String xml = "<osm>" +
+				"<node id=\"1\" visible=\"false\" version=\"2\"/>" +
+				"<node id=\"2\" visible=\"true\" version=\"1\" lat=\"1\" lon=\"2\"/>" +
+				"<way id=\"3\" visible=\"false\" version=\"3\"><nd ref=\"1\"/></way>" +
+				"<way id=\"4\" version=\"1\"><nd ref=\"2\"/></way>" +
+				"</osm>";
+		ListOsmElementHandler<Element> handler = new ListOsmElementHandler<>(Element.class);
+		MapDataParser parser = new MapDataParser(handler, new OsmMapDataFactory());
+		parser.setSkipDeleted(true);
+		parser.parse(TestUtils.asInputStream(xml));
+
+		List<Element> elements = handler.get();
+		assertEquals(2, elements.size());
+		assertEquals(2, elements.get(0).getId());
+		assertEquals(4, elements.get(1).getId());
+		assertEquals(Collections.singletonList(2L), ((Way) elements.get(1)).getNodeIds());
+	}
+
 	@Test public void elementWithoutVersion()
 	{
 		String xml = "<node id=\"5\"/>";
@@ -0,0 +1,255 @@
+package de.westnordost.osmapi.map;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.westnordost.osmapi.OsmConnection;
+import de.westnordost.osmapi.common.errors.OsmConflictException;
+import de.westnordost.osmapi.common.errors.OsmConnectionException;
+import de.westnordost.osmapi.map.changes.DiffElement;
+import de.westnordost.osmapi.map.changes.MapDataChanges;
+import de.westnordost.osmapi.map.changes.MapDataChangesParser;
+import de.westnordost.osmapi.map.changes.SimpleMapDataChangesHandler;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+import de.westnordost.osmapi.map.data.OsmNode;
+import de.westnordost.osmapi.map.data.OsmRelation;
+import de.westnordost.osmapi.map.data.OsmRelationMember;
+import de.westnordost.osmapi.map.data.OsmWay;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.RelationMember;
+import de.westnordost.osmapi.map.data.Way;
+
+import static org.junit.Assert.*;
+
+public class MapDataUploaderTest
+{
+	private HttpServer server;
+	private OsmConnection osm;
+
+	/* state of the stub server */
+	private long nextChangesetId;
+	private long nextElementId;
+	private final List<Long> openChangesets = new ArrayList<>();
+	private final Map<Long, List<Element>> uploads = new HashMap<>();
+	/** whether uploading and closing changesets fails */
+	private boolean failing;
+
+	@Before public void setUp() throws IOException
+	{
+		nextChangesetId = 1;
+		nextElementId = 1000;
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/api/0.6/capabilities", exchange -> respond(exchange, 200,
+				"<osm><api><changesets maximum_elements=\"3\" default_query_limit=\"100\" maximum_query_limit=\"100\"/></api></osm>"));
+		server.createContext("/api/0.6/changeset/", this::respondChangeset);
+		server.start();
+
+		String url = "http://localhost:" + server.getAddress().getPort() + "/api/0.6/";
+		osm = new OsmConnection(url, "test", "token");
+	}
+
+	@After public void tearDown()
+	{
+		server.stop(0);
+	}
+
+	@Test public void nothingToUpload()
+	{
+		List<Long> changesets = new MapDataUploader(osm).upload(
+				new HashMap<>(), Collections.singletonList(new OsmNode(1, 1, new OsmLatLon(1, 1), null)), null, null);
+		assertTrue(changesets.isEmpty());
+		assertEquals(1, nextChangesetId);
+	}
+
+	@Test public void splitsIntoSeveralChangesets()
+	{
+		List<Element> elements = new ArrayList<>();
+		for (int i = 1; i <= 7; i++)
+		{
+			elements.add(new OsmNode(-i, 1, new OsmLatLon(1, 1), null));
+		}
+		List<DiffElement> diffs = new ArrayList<>();
+		List<Integer> progress = new ArrayList<>();
+
+		List<Long> changesets = new MapDataUploader(osm).upload(new HashMap<>(), elements,
+				diffs::add, (changesetId, uploaded, total) -> progress.add(uploaded));
+
+		assertEquals(Arrays.asList(1L, 2L, 3L), changesets);
+		assertEquals(3, uploads.get(1L).size());
+		assertEquals(3, uploads.get(2L).size());
+		assertEquals(1, uploads.get(3L).size());
+		assertEquals(Arrays.asList(3, 6, 7), progress);
+		assertEquals(7, diffs.size());
+		assertTrue(openChangesets.isEmpty());
+	}
+
+	@Test public void uploadsInSeveralBatchesIntoOneChangeset()
+	{
+		List<Element> elements = new ArrayList<>();
+		for (int i = 1; i <= 3; i++)
+		{
+			elements.add(new OsmNode(-i, 1, new OsmLatLon(1, 1), null));
+		}
+		List<Long> changesetIds = new ArrayList<>();
+		MapDataUploader uploader = new MapDataUploader(osm);
+		uploader.setMaxElementsPerUpload(2);
+		List<Long> changesets = uploader.upload(new HashMap<>(), elements, null,
+				(changesetId, uploaded, total) -> changesetIds.add(changesetId));
+
+		assertEquals(Collections.singletonList(1L), changesets);
+		assertEquals(Arrays.asList(1L, 1L), changesetIds);
+		assertEquals(3, uploads.get(1L).size());
+	}
+
+	@Test public void replacesPlaceholderIdsOfPreviousBatches()
+	{
+		OsmNode node1 = new OsmNode(-1, 1, new OsmLatLon(1, 1), null);
+		OsmNode node2 = new OsmNode(-2, 1, new OsmLatLon(1, 1), null);
+		OsmWay way = new OsmWay(-1, 1, new ArrayList<>(Arrays.asList(-1L, -2L)), null);
+		OsmRelation relation1 = new OsmRelation(-1, 1, new ArrayList<>(Arrays.<RelationMember>asList(
+				new OsmRelationMember(-2, "", Element.Type.RELATION),
+				new OsmRelationMember(-1, "outer", Element.Type.WAY))), null);
+		OsmRelation relation2 = new OsmRelation(-2, 1, new ArrayList<>(Arrays.<RelationMember>asList(
+				new OsmRelationMember(-1, "", Element.Type.NODE))), null);
+
+		MapDataUploader uploader = new MapDataUploader(osm);
+		uploader.setMaxElementsPerChangeset(10);
+		uploader.setMaxElementsPerUpload(1);
+		uploader.upload(new HashMap<>(), Arrays.asList(relation1, way, relation2, node2, node1), null, null);
+
+		List<Element> uploaded = uploads.get(1L);
+		assertEquals(5, uploaded.size());
+		// dependencies first
+		assertEquals(Arrays.asList(-2L, -1L, -1L, -2L, -1L), ids(uploaded));
+
+		Way uploadedWay = (Way) uploaded.get(2);
+		assertEquals(Arrays.asList(1001L, 1000L), uploadedWay.getNodeIds());
+
+		Relation uploadedRelation2 = (Relation) uploaded.get(3);
+		assertEquals(1001L, uploadedRelation2.getMembers().get(0).getRef());
+
+		Relation uploadedRelation1 = (Relation) uploaded.get(4);
+		assertEquals(1003L, uploadedRelation1.getMembers().get(0).getRef());
+		assertEquals(1002L, uploadedRelation1.getMembers().get(1).getRef());
+		assertEquals("outer", uploadedRelation1.getMembers().get(1).getRole());
+
+		// given elements are not modified
+		assertEquals(Arrays.asList(-1L, -2L), way.getNodeIds());
+	}
+
+	@Test public void deletesAfterModifying()
+	{
+		OsmNode node = new OsmNode(1, 1, new OsmLatLon(1, 1), null);
+		node.setDeleted(true);
+		OsmWay way = new OsmWay(2, 1, new ArrayList<>(Arrays.asList(3L, 4L)), null);
+		way.getNodeIds().remove(0);
+		OsmRelation relation = new OsmRelation(3, 1, new ArrayList<>(), null);
+		relation.setDeleted(true);
+
+		MapDataUploader uploader = new MapDataUploader(osm);
+		uploader.setMaxElementsPerChangeset(10);
+		uploader.upload(new HashMap<>(), Arrays.asList(node, relation, way), null, null);
+
+		assertEquals(Arrays.asList(2L, 3L, 1L), ids(uploads.get(1L)));
+	}
+
+	@Test public void keepsUploadErrorIfClosingFails()
+	{
+		failing = true;
+		try
+		{
+			new MapDataUploader(osm).upload(new HashMap<>(),
+					Collections.singletonList(new OsmNode(-1, 1, new OsmLatLon(1, 1), null)), null, null);
+			fail();
+		}
+		catch(OsmConflictException e)
+		{
+			assertEquals(1, e.getSuppressed().length);
+			assertTrue(e.getSuppressed()[0] instanceof OsmConnectionException);
+		}
+	}
+
+	private static List<Long> ids(List<Element> elements)
+	{
+		List<Long> result = new ArrayList<>();
+		for (Element element : elements) result.add(element.getId());
+		return result;
+	}
+
+	private synchronized void respondChangeset(HttpExchange exchange) throws IOException
+	{
+		String path = exchange.getRequestURI().getPath().substring("/api/0.6/changeset/".length());
+		if(path.equals("create"))
+		{
+			long id = nextChangesetId++;
+			openChangesets.add(id);
+			respond(exchange, 200, String.valueOf(id));
+		}
+		else if(failing && (path.endsWith("/close") || path.endsWith("/upload")))
+		{
+			respond(exchange, path.endsWith("/close") ? 500 : 409, "Failing");
+		}
+		else if(path.endsWith("/close"))
+		{
+			assertTrue(openChangesets.remove(Long.valueOf(path.substring(0, path.indexOf('/')))));
+			respond(exchange, 200, "");
+		}
+		else if(path.endsWith("/upload"))
+		{
+			long changesetId = Long.parseLong(path.substring(0, path.indexOf('/')));
+			assertTrue(openChangesets.contains(changesetId));
+
+			SimpleMapDataChangesHandler handler = new SimpleMapDataChangesHandler();
+			new MapDataChangesParser(handler, new OsmMapDataFactory()).parse(exchange.getRequestBody());
+			uploads.computeIfAbsent(changesetId, id -> new ArrayList<>()).addAll(all(handler));
+
+			StringBuilder xml = new StringBuilder("<diffResult>");
+			for (Element element : all(handler))
+			{
+				String type = element.getType().name().toLowerCase();
+				long newId = element.getId() < 0 ? nextElementId++ : element.getId();
+				xml.append("<").append(type).append(" old_id=\"").append(element.getId())
+						.append("\" new_id=\"").append(newId).append("\" new_version=\"1\"/>");
+			}
+			xml.append("</diffResult>");
+			respond(exchange, 200, xml.toString());
+		}
+		else
+		{
+			respond(exchange, 404, "");
+		}
+	}
+
+	private static List<Element> all(MapDataChanges changes)
+	{
+		List<Element> result = new ArrayList<>();
+		result.addAll(changes.getCreations());
+		result.addAll(changes.getModifications());
+		result.addAll(changes.getDeletions());
+		return result;
+	}
+
+	private static void respond(HttpExchange exchange, int code, String body) throws IOException
+	{
+		byte[] bytes = body.getBytes("UTF-8");
+		exchange.sendResponseHeaders(code, bytes.length > 0 ? bytes.length : -1);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+}
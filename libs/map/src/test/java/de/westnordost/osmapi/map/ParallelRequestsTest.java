@@ -0,0 +1,74 @@
+package de.westnordost.osmapi.map;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.westnordost.osmapi.common.errors.OsmNotFoundException;
+
+import static org.junit.Assert.*;
+
+public class ParallelRequestsTest
+{
+	@Test public void runsAllRequests()
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		AtomicInteger count = new AtomicInteger();
+		List<Runnable> requests = new ArrayList<>();
+		for (int i = 0; i < 20; i++)
+		{
+			requests.add(count::incrementAndGet);
+		}
+		ParallelRequests.run(executor, 3, requests);
+		executor.shutdown();
+
+		assertEquals(20, count.get());
+	}
+
+	@Test public void limitsParallelRequests()
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		List<Runnable> requests = new ArrayList<>();
+		for (int i = 0; i < 12; i++)
+		{
+			requests.add(() ->
+			{
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				sleep(20);
+				running.decrementAndGet();
+			});
+		}
+		ParallelRequests.run(executor, 3, requests);
+		executor.shutdown();
+
+		assertTrue(maxRunning.get() <= 3);
+		assertTrue(maxRunning.get() > 1);
+	}
+
+	@Test public void rethrowsException()
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		List<Runnable> requests = new ArrayList<>();
+		requests.add(() -> sleep(10));
+		requests.add(() -> { throw new OsmNotFoundException(404, "Not found", null); });
+		requests.add(() -> sleep(10));
+
+		assertThrows(OsmNotFoundException.class, () -> ParallelRequests.run(executor, 2, requests));
+		executor.shutdown();
+	}
+
+	private static void sleep(long millis)
+	{
+		try
+		{
+			Thread.sleep(millis);
+		}
+		catch(InterruptedException ignore) { }
+	}
+}
@@ -0,0 +1,39 @@
+package de.westnordost.osmapi.map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StringDictionaryTest
+{
+	@Test public void returnsSameInstance()
+	{
+		StringDictionary dictionary = new StringDictionary();
+		String a = dictionary.intern(new String("highway"));
+		assertSame(a, dictionary.intern(new String("highway")));
+		assertEquals(1, dictionary.size());
+	}
+
+	@Test public void nullStaysNull()
+	{
+		assertNull(new StringDictionary().intern(null));
+	}
+
+	@Test public void doesNotGrowBeyondMaxSize()
+	{
+		StringDictionary dictionary = new StringDictionary(2, 32);
+		dictionary.intern("a");
+		dictionary.intern("b");
+		String c = new String("c");
+		assertSame(c, dictionary.intern(c));
+		assertEquals(2, dictionary.size());
+	}
+
+	@Test public void doesNotAddLongStrings()
+	{
+		StringDictionary dictionary = new StringDictionary(10, 3);
+		String s = new String("abcd");
+		assertSame(s, dictionary.intern(s));
+		assertEquals(0, dictionary.size());
+	}
+}
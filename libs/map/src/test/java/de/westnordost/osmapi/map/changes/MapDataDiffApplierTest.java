@@ -0,0 +1,98 @@
+package de.westnordost.osmapi.map.changes;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.westnordost.osmapi.TestUtils;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.OsmElement;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+import de.westnordost.osmapi.map.data.OsmNode;
+import de.westnordost.osmapi.map.data.OsmRelation;
+import de.westnordost.osmapi.map.data.OsmRelationMember;
+import de.westnordost.osmapi.map.data.OsmWay;
+import de.westnordost.osmapi.map.data.RelationMember;
+
+import static org.junit.Assert.*;
+
+public class MapDataDiffApplierTest
+{
+	@Test public void appliesDiff() throws IOException
+	{
+		OsmNode newNode = new OsmNode(-1, 0, new OsmLatLon(1, 2), null);
+		OsmNode modifiedNode = new OsmNode(5, 3, new OsmLatLon(1, 2), null);
+		modifiedNode.setPosition(new OsmLatLon(3, 4));
+		modifiedNode.getTags().put("a", "b");
+		OsmNode deletedNode = new OsmNode(6, 1, new OsmLatLon(1, 2), null);
+		deletedNode.setDeleted(true);
+		OsmWay newWay = new OsmWay(-1, 0, new ArrayList<>(Arrays.asList(-1L, 5L)), null);
+		OsmRelation modifiedRelation = new OsmRelation(7, 2, new ArrayList<>(Arrays.<RelationMember>asList(
+				new OsmRelationMember(-1, "outer", Element.Type.WAY),
+				new OsmRelationMember(-1, "", Element.Type.NODE))), null);
+		modifiedRelation.getTags().put("a", "b");
+		List<OsmElement> elements = Arrays.asList(newNode, modifiedNode, deletedNode, newWay, modifiedRelation);
+
+		MapDataDiffApplier applier = new MapDataDiffApplier();
+		new MapDataDiffParser(applier).parse(TestUtils.asInputStream(
+				"<diffResult>" +
+				"<node old_id=\"-1\" new_id=\"100\" new_version=\"1\"/>" +
+				"<node old_id=\"5\" new_id=\"5\" new_version=\"4\"/>" +
+				"<node old_id=\"6\"/>" +
+				"<way old_id=\"-1\" new_id=\"200\" new_version=\"1\"/>" +
+				"<relation old_id=\"7\" new_id=\"7\" new_version=\"3\"/>" +
+				"</diffResult>"));
+
+		assertEquals(5, applier.apply(elements));
+
+		assertEquals(100, newNode.getId());
+		assertEquals(1, newNode.getVersion());
+		assertEquals(4, modifiedNode.getVersion());
+		assertEquals(200, newWay.getId());
+		assertEquals(Arrays.asList(100L, 5L), newWay.getNodeIds());
+		assertEquals(200, modifiedRelation.getMembers().get(0).getRef());
+		assertEquals("outer", modifiedRelation.getMembers().get(0).getRole());
+		assertEquals(100, modifiedRelation.getMembers().get(1).getRef());
+		assertEquals(3, modifiedRelation.getVersion());
+		assertTrue(deletedNode.isDeleted());
+		assertEquals(1, deletedNode.getVersion());
+
+		for (OsmElement element : elements)
+		{
+			assertFalse(element.isNew());
+			assertFalse(element.isModified());
+		}
+	}
+
+	@Test public void leavesOtherElementsAlone()
+	{
+		OsmNode node = new OsmNode(-1, 0, new OsmLatLon(1, 2), null);
+		OsmWay way = new OsmWay(-2, 0, new ArrayList<>(Arrays.asList(-1L, -3L)), null);
+
+		MapDataDiffApplier applier = new MapDataDiffApplier();
+		DiffElement diff = new DiffElement();
+		diff.type = Element.Type.NODE;
+		diff.clientId = -1;
+		diff.serverId = 100L;
+		diff.serverVersion = 1;
+		applier.handle(diff);
+
+		assertEquals(1, applier.apply(Arrays.asList(node, way)));
+		assertEquals(-2, way.getId());
+		assertTrue(way.isNew());
+		assertEquals(Arrays.asList(100L, -3L), way.getNodeIds());
+	}
+
+	@Test public void passesDiffsOn()
+	{
+		List<DiffElement> diffs = new ArrayList<>();
+		MapDataDiffApplier applier = new MapDataDiffApplier(diffs::add);
+		DiffElement diff = new DiffElement();
+		diff.type = Element.Type.WAY;
+		applier.handle(diff);
+		assertEquals(1, diffs.size());
+	}
+}
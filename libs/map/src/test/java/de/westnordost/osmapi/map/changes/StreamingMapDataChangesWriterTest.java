@@ -0,0 +1,120 @@
+package de.westnordost.osmapi.map.changes;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.westnordost.osmapi.TestUtils;
+import de.westnordost.osmapi.map.MapDataParser;
+import de.westnordost.osmapi.map.OsmMapDataFactory;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+import de.westnordost.osmapi.map.data.OsmNode;
+import de.westnordost.osmapi.map.data.OsmRelation;
+import de.westnordost.osmapi.map.data.OsmWay;
+
+import static org.junit.Assert.*;
+
+public class StreamingMapDataChangesWriterTest
+{
+	@Test public void writesSections() throws IOException
+	{
+		MapDataChanges changes = parseXml(writeXml(new StreamingMapDataChangesWriter(1,
+				Arrays.asList(node(-1), way(-2), relation(-3)),
+				Arrays.asList(relation(4), node(5)),
+				Collections.singletonList(way(6))
+		)));
+
+		assertEquals(Arrays.asList(-1L, -2L, -3L), ids(changes.getCreations()));
+		assertEquals(Arrays.asList(4L, 5L), ids(changes.getModifications()));
+		assertEquals(Collections.singletonList(6L), ids(changes.getDeletions()));
+	}
+
+	@Test public void sectionsMayBeNullOrEmpty() throws IOException
+	{
+		MapDataChanges changes = parseXml(writeXml(new StreamingMapDataChangesWriter(1,
+				null, Collections.<Element>emptyList(), Collections.singletonList(node(1)))));
+
+		assertTrue(changes.getCreations().isEmpty());
+		assertTrue(changes.getModifications().isEmpty());
+		assertEquals(1, changes.getDeletions().size());
+	}
+
+	@Test public void createdWayBeforeNodeIsOutOfOrder()
+	{
+		assertThrows(IllegalArgumentException.class, () -> writeXml(new StreamingMapDataChangesWriter(1,
+				Arrays.asList(way(-1), node(-2)), null, null)));
+	}
+
+	@Test public void deletedNodeBeforeWayIsOutOfOrder()
+	{
+		assertThrows(IllegalArgumentException.class, () -> writeXml(new StreamingMapDataChangesWriter(1,
+				null, null, Arrays.asList(node(1), way(2)))));
+	}
+
+	@Test public void writesSameAsMapDataChangesWriter() throws IOException
+	{
+		OsmNode newNode = node(-1);
+		OsmWay modifiedWay = way(2);
+		modifiedWay.setModified(true);
+		OsmNode deletedNode = node(3);
+		deletedNode.setDeleted(true);
+
+		String expected = writeXml(new MapDataChangesWriter(1,
+				Arrays.<Element>asList(deletedNode, modifiedWay, newNode)));
+		String actual = writeXml(new StreamingMapDataChangesWriter(1,
+				Collections.singletonList(newNode),
+				Collections.singletonList(modifiedWay),
+				Collections.singletonList(deletedNode)));
+
+		assertEquals(expected, actual);
+	}
+
+	@Test public void isStreaming()
+	{
+		assertTrue(new StreamingMapDataChangesWriter(1, null, null, null).isStreaming());
+		assertFalse(new MapDataChangesWriter(1, Collections.<Element>emptyList()).isStreaming());
+	}
+
+	private static OsmNode node(long id)
+	{
+		return new OsmNode(id, 1, new OsmLatLon(1, 2), null);
+	}
+
+	private static OsmWay way(long id)
+	{
+		return new OsmWay(id, 1, new ArrayList<>(Arrays.asList(1L, 2L)), null);
+	}
+
+	private static OsmRelation relation(long id)
+	{
+		return new OsmRelation(id, 1, new ArrayList<>(), null);
+	}
+
+	private static List<Long> ids(List<Element> elements)
+	{
+		List<Long> result = new ArrayList<>();
+		for (Element element : elements) result.add(element.getId());
+		return result;
+	}
+
+	private static String writeXml(StreamingMapDataChangesWriter writer) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writer.write(out);
+		return new String(out.toByteArray(), "UTF-8");
+	}
+
+	private static MapDataChanges parseXml(String xml) throws IOException
+	{
+		SimpleMapDataChangesHandler handler = new SimpleMapDataChangesHandler();
+		MapDataParser parser = new MapDataChangesParser(handler, new OsmMapDataFactory());
+		parser.parse(TestUtils.asInputStream(xml));
+		return handler;
+	}
+}
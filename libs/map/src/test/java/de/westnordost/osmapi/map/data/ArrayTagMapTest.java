@@ -0,0 +1,83 @@
+package de.westnordost.osmapi.map.data;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ArrayTagMapTest
+{
+	@Test public void putAndGet()
+	{
+		ArrayTagMap map = new ArrayTagMap();
+		assertNull(map.put("a", "1"));
+		assertNull(map.put("b", "2"));
+		assertEquals("1", map.put("a", "3"));
+		assertEquals(2, map.size());
+		assertEquals("3", map.get("a"));
+		assertEquals("2", map.get("b"));
+		assertNull(map.get("c"));
+		assertNull(map.get(null));
+		assertTrue(map.containsKey("b"));
+	}
+
+	@Test public void grows()
+	{
+		ArrayTagMap map = new ArrayTagMap(1);
+		for (int i = 0; i < 20; i++) map.put("k" + i, "v" + i);
+		assertEquals(20, map.size());
+		assertEquals("v13", map.get("k13"));
+	}
+
+	@Test public void remove()
+	{
+		ArrayTagMap map = new ArrayTagMap();
+		map.put("a", "1");
+		map.put("b", "2");
+		map.put("c", "3");
+		assertEquals("2", map.remove("b"));
+		assertNull(map.remove("b"));
+		assertEquals(2, map.size());
+		assertEquals("3", map.get("c"));
+	}
+
+	@Test public void removeViaIterator()
+	{
+		ArrayTagMap map = new ArrayTagMap();
+		map.put("a", "1");
+		map.put("b", "2");
+		Iterator<Map.Entry<String, String>> it = map.entrySet().iterator();
+		it.next();
+		it.remove();
+		assertEquals("b", it.next().getKey());
+		assertFalse(it.hasNext());
+		assertEquals(1, map.size());
+	}
+
+	@Test public void setValueViaEntry()
+	{
+		ArrayTagMap map = new ArrayTagMap();
+		map.put("a", "1");
+		map.entrySet().iterator().next().setValue("2");
+		assertEquals("2", map.get("a"));
+	}
+
+	@Test public void equalsHashMap()
+	{
+		Map<String, String> hashMap = new HashMap<>();
+		hashMap.put("a", "1");
+		hashMap.put("b", "2");
+		ArrayTagMap map = new ArrayTagMap(hashMap);
+		assertEquals(hashMap, map);
+		assertEquals(map, hashMap);
+		assertEquals(hashMap.hashCode(), map.hashCode());
+	}
+
+	@Test public void nullKeyIsNotPermitted()
+	{
+		assertThrows(NullPointerException.class, () -> new ArrayTagMap().put(null, "a"));
+	}
+}
@@ -0,0 +1,76 @@
+package de.westnordost.osmapi.map.data;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CompactNodeTest
+{
+	@Test public void position()
+	{
+		CompactNode node = new CompactNode(1, 1, 521234567, -1234567, null, null, null);
+		assertEquals(52.1234567, node.getPosition().getLatitude(), 0);
+		assertEquals(-0.1234567, node.getPosition().getLongitude(), 0);
+	}
+
+	@Test public void invalidPosition()
+	{
+		assertThrows(IllegalArgumentException.class,
+				() -> new CompactNode(1, 1, 900000001, 0, null, null, null));
+	}
+
+	@Test public void noPosition()
+	{
+		CompactNode node = new CompactNode(1, 1, null, null, null, null);
+		assertNull(node.getPosition());
+	}
+
+	@Test public void setPosition()
+	{
+		CompactNode node = new CompactNode(1, 1, 0, 0, null, null, null);
+		node.setPosition(new OsmLatLon(1.5, -2.5));
+		assertEquals(new OsmLatLon(1.5, -2.5), node.getPosition());
+		assertTrue(node.isModified());
+	}
+
+	@Test public void untaggedNodesShareTags()
+	{
+		CompactNode node1 = new CompactNode(1, 1, 0, 0, null, null, null);
+		CompactNode node2 = new CompactNode(2, 1, 0, 0, new HashMap<>(), null, null);
+		assertTrue(node1.getTags().isEmpty());
+		assertSame(node1.getTags(), node2.getTags());
+		assertThrows(UnsupportedOperationException.class, () -> node1.getTags().put("a", "b"));
+	}
+
+	@Test public void modificationOfTags()
+	{
+		Map<String, String> tags = new HashMap<>();
+		tags.put("a", "b");
+		CompactNode node = new CompactNode(1, 1, 0, 0, tags, null, null);
+		assertFalse(node.isModified());
+		node.getTags().put("a", "c");
+		assertTrue(node.isModified());
+	}
+
+	@Test public void setTags()
+	{
+		CompactNode node = new CompactNode(1, 1, 0, 0, null, null, null);
+		Map<String, String> tags = new HashMap<>();
+		tags.put("a", "b");
+		node.setTags(tags);
+		assertEquals(tags, node.getTags());
+		assertTrue(node.isModified());
+	}
+
+	@Test public void isNew()
+	{
+		assertTrue(new CompactNode(-1, 1, 0, 0, null, null, null).isNew());
+		CompactNode node = new CompactNode(1, 1, 0, 0, null, null, null);
+		assertFalse(node.isNew());
+		node.setNew(true);
+		assertTrue(node.isNew());
+	}
+}
@@ -0,0 +1,140 @@
+package de.westnordost.osmapi.map.data;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LongArrayListTest
+{
+	@Test public void addAndGet()
+	{
+		LongArrayList list = new LongArrayList(0);
+		for (long i = 0; i < 100; i++)
+		{
+			list.addLong(i * 3);
+		}
+		assertEquals(100, list.size());
+		for (int i = 0; i < 100; i++)
+		{
+			assertEquals(i * 3, list.getLong(i));
+			assertEquals(Long.valueOf(i * 3), list.get(i));
+		}
+	}
+
+	@Test public void insertAndRemove()
+	{
+		LongArrayList list = new LongArrayList(new long[]{1, 2, 4});
+		list.add(2, 3L);
+		list.add(0, 0L);
+		assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), list);
+
+		assertEquals(0L, list.removeLong(0));
+		assertEquals(Long.valueOf(4), list.remove(3));
+		assertTrue(list.remove(Long.valueOf(2)));
+		assertEquals(Arrays.asList(1L, 3L), list);
+	}
+
+	@Test public void set()
+	{
+		LongArrayList list = new LongArrayList(new long[]{1, 2});
+		assertEquals(Long.valueOf(2), list.set(1, 5L));
+		assertEquals(Arrays.asList(1L, 5L), list);
+	}
+
+	@Test public void indexOf()
+	{
+		LongArrayList list = new LongArrayList(new long[]{1, 2, 1});
+		assertEquals(0, list.indexOf(1L));
+		assertEquals(2, list.lastIndexOf(1L));
+		assertEquals(-1, list.indexOf(3L));
+		assertEquals(-1, list.indexOf(1));
+		assertEquals(-1, list.indexOf(null));
+		assertTrue(list.contains(2L));
+		assertFalse(list.contains("2"));
+	}
+
+	@Test public void equalsOtherLists()
+	{
+		LongArrayList list = new LongArrayList(Arrays.asList(1L, 2L, 3L));
+		List<Long> other = Arrays.asList(1L, 2L, 3L);
+		assertEquals(other, list);
+		assertEquals(list, other);
+		assertEquals(other.hashCode(), list.hashCode());
+	}
+
+	@Test public void subList()
+	{
+		LongArrayList list = new LongArrayList(new long[]{1, 2, 3, 4, 5});
+		list.subList(1, 3).clear();
+		assertEquals(Arrays.asList(1L, 4L, 5L), list);
+	}
+
+	@Test public void nullIsNotPermitted()
+	{
+		LongArrayList list = new LongArrayList();
+		assertThrows(NullPointerException.class, () -> list.add(null));
+	}
+
+	@Test public void outOfBounds()
+	{
+		LongArrayList list = new LongArrayList(new long[]{1});
+		assertThrows(IndexOutOfBoundsException.class, () -> list.getLong(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> list.getLong(-1));
+		assertThrows(IndexOutOfBoundsException.class, () -> list.addLong(2, 1));
+		assertThrows(IndexOutOfBoundsException.class, () -> list.removeLong(1));
+	}
+
+	@Test public void iteratorFailsFast()
+	{
+		LongArrayList list = new LongArrayList(new long[]{1, 2});
+		Iterator<Long> it = list.iterator();
+		it.next();
+		list.addLong(3);
+		assertThrows(ConcurrentModificationException.class, it::next);
+	}
+
+	@Test public void trimToSize()
+	{
+		LongArrayList list = new LongArrayList(100);
+		list.addLong(1);
+		list.addLong(2);
+		list.trimToSize();
+		assertArrayEquals(new long[]{1, 2}, list.toLongArray());
+		list.addLong(3);
+		assertArrayEquals(new long[]{1, 2, 3}, list.toLongArray());
+	}
+
+	@Test public void serializable() throws Exception
+	{
+		LongArrayList list = new LongArrayList(new long[]{1, 2, 3});
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+		{
+			out.writeObject(list);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+		{
+			assertEquals(list, in.readObject());
+		}
+	}
+
+	@Test public void modificationAwareWay()
+	{
+		OsmWay way = new OsmWay(1, 1, new LongArrayList(new long[]{1, 2, 3}), null);
+		assertFalse(way.isModified());
+		way.getNodeIds().set(0, 1L);
+		assertFalse(way.isModified());
+		way.getNodeIds().add(1L);
+		assertTrue(way.isModified());
+		assertTrue(way.isClosed());
+	}
+}
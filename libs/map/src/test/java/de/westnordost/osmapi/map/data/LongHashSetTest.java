@@ -0,0 +1,63 @@
+package de.westnordost.osmapi.map.data;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class LongHashSetTest
+{
+	@Test public void addAndContains()
+	{
+		LongHashSet set = new LongHashSet();
+		assertTrue(set.add(1));
+		assertTrue(set.add(-1));
+		assertFalse(set.add(1));
+		assertEquals(2, set.size());
+		assertTrue(set.contains(1));
+		assertTrue(set.contains(-1));
+		assertFalse(set.contains(2));
+	}
+
+	@Test public void zero()
+	{
+		LongHashSet set = new LongHashSet();
+		assertFalse(set.contains(0));
+		assertTrue(set.add(0));
+		assertFalse(set.add(0));
+		assertTrue(set.contains(0));
+		assertEquals(1, set.size());
+		set.clear();
+		assertFalse(set.contains(0));
+		assertTrue(set.isEmpty());
+	}
+
+	@Test public void grows()
+	{
+		LongHashSet set = new LongHashSet(0);
+		for (long i = 0; i < 1000; i++) set.add(i);
+		assertEquals(1000, set.size());
+		for (long i = 0; i < 1000; i++) assertTrue(set.contains(i));
+		assertFalse(set.contains(1000));
+	}
+
+	@Test public void behavesLikeHashSet()
+	{
+		LongHashSet set = new LongHashSet();
+		Set<Long> expected = new HashSet<>();
+		Random random = new Random(1);
+		for (int i = 0; i < 100000; i++)
+		{
+			long value = random.nextInt(20000) - 10000;
+			assertEquals(expected.add(value), set.add(value));
+		}
+		assertEquals(expected.size(), set.size());
+		for (long value = -10000; value < 10000; value++)
+		{
+			assertEquals(expected.contains(value), set.contains(value));
+		}
+	}
+}
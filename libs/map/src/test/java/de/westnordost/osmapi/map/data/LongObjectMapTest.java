@@ -0,0 +1,98 @@
+package de.westnordost.osmapi.map.data;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongObjectMapTest
+{
+	@Test public void putAndGet()
+	{
+		LongObjectMap<String> map = new LongObjectMap<>();
+		assertNull(map.put(1, "a"));
+		assertNull(map.put(-1, "b"));
+		assertEquals("a", map.put(1, "c"));
+		assertEquals(2, map.size());
+		assertEquals("c", map.get(1));
+		assertEquals("b", map.get(-1));
+		assertNull(map.get(2));
+		assertTrue(map.containsKey(-1));
+		assertFalse(map.containsKey(0));
+	}
+
+	@Test public void grows()
+	{
+		LongObjectMap<Long> map = new LongObjectMap<>(0);
+		for (long i = 0; i < 1000; i++) map.put(i, i);
+		assertEquals(1000, map.size());
+		for (long i = 0; i < 1000; i++) assertEquals(Long.valueOf(i), map.get(i));
+	}
+
+	@Test public void remove()
+	{
+		LongObjectMap<String> map = new LongObjectMap<>();
+		map.put(1, "a");
+		map.put(2, "b");
+		assertEquals("a", map.remove(1));
+		assertNull(map.remove(1));
+		assertEquals(1, map.size());
+		assertEquals("b", map.get(2));
+	}
+
+	@Test public void behavesLikeHashMap()
+	{
+		LongObjectMap<Long> map = new LongObjectMap<>();
+		Map<Long, Long> expected = new HashMap<>();
+		Random random = new Random(1);
+		for (int i = 0; i < 100000; i++)
+		{
+			// small key range to get many collisions and removals within clusters
+			long key = random.nextInt(2000) - 1000;
+			if(random.nextBoolean())
+			{
+				assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+			}
+			else
+			{
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+		}
+		assertEquals(expected.size(), map.size());
+		for (Map.Entry<Long, Long> entry : expected.entrySet())
+		{
+			assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+		assertEquals(new HashSet<>(expected.values()), new HashSet<>(map.values()));
+	}
+
+	@Test public void forEach()
+	{
+		LongObjectMap<String> map = new LongObjectMap<>();
+		map.put(5, "a");
+		map.put(7, "b");
+		Map<Long, String> entries = new HashMap<>();
+		map.forEach(entries::put);
+		assertEquals(2, entries.size());
+		assertEquals("a", entries.get(5L));
+		assertEquals("b", entries.get(7L));
+	}
+
+	@Test public void clear()
+	{
+		LongObjectMap<String> map = new LongObjectMap<>();
+		map.put(5, "a");
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get(5));
+	}
+
+	@Test public void nullValueIsNotPermitted()
+	{
+		assertThrows(NullPointerException.class, () -> new LongObjectMap<String>().put(1, null));
+	}
+}
@@ -0,0 +1,164 @@
+package de.westnordost.osmapi.map.store;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.westnordost.osmapi.TestUtils;
+import de.westnordost.osmapi.map.MapDataParser;
+import de.westnordost.osmapi.map.OsmMapDataFactory;
+import de.westnordost.osmapi.map.data.BoundingBox;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.Node;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+import de.westnordost.osmapi.map.data.OsmNode;
+import de.westnordost.osmapi.map.data.OsmRelation;
+import de.westnordost.osmapi.map.data.OsmRelationMember;
+import de.westnordost.osmapi.map.data.OsmWay;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.RelationMember;
+import de.westnordost.osmapi.map.data.Way;
+
+import static org.junit.Assert.*;
+
+public class InMemoryMapDataStoreTest
+{
+	private InMemoryMapDataStore store;
+
+	@Before public void setUp() throws IOException
+	{
+		store = new InMemoryMapDataStore(0.1);
+		new MapDataParser(store, new OsmMapDataFactory()).parse(TestUtils.asInputStream(
+				"<osm>" +
+				"<bounds minlat=\"0\" minlon=\"0\" maxlat=\"1\" maxlon=\"1\"/>" +
+				"<node id=\"1\" version=\"1\" lat=\"0.05\" lon=\"0.05\"/>" +
+				"<node id=\"2\" version=\"1\" lat=\"0.05\" lon=\"0.55\"/>" +
+				"<node id=\"3\" version=\"1\" lat=\"0.95\" lon=\"0.95\"/>" +
+				"<node id=\"4\" version=\"1\" lat=\"0.5\" lon=\"179.95\"/>" +
+				"<way id=\"1\" version=\"1\"><nd ref=\"1\"/><nd ref=\"2\"/></way>" +
+				"<way id=\"2\" version=\"1\"><nd ref=\"2\"/><nd ref=\"3\"/><nd ref=\"99\"/></way>" +
+				"<relation id=\"1\" version=\"1\">" +
+				"<member type=\"way\" ref=\"1\" role=\"\"/><member type=\"node\" ref=\"3\" role=\"\"/>" +
+				"</relation>" +
+				"<relation id=\"2\" version=\"1\"><member type=\"relation\" ref=\"1\" role=\"\"/></relation>" +
+				"</osm>"));
+	}
+
+	@Test public void getById()
+	{
+		assertEquals(4, store.getNodeCount());
+		assertEquals(2, store.getWayCount());
+		assertEquals(2, store.getRelationCount());
+		assertEquals(1, store.getNode(1).getId());
+		assertEquals(2, store.getWay(2).getId());
+		assertEquals(1, store.getRelation(1).getId());
+		assertNull(store.getNode(99));
+		assertEquals(Collections.singletonList(new BoundingBox(0, 0, 1, 1)), store.getBounds());
+	}
+
+	@Test public void getNodesInBounds()
+	{
+		assertEquals(ids(1), ids(store.getNodes(new BoundingBox(0, 0, 0.1, 0.1))));
+		assertEquals(ids(1, 2), ids(store.getNodes(new BoundingBox(0, 0, 0.1, 0.6))));
+		assertEquals(ids(1, 2, 3, 4), ids(store.getNodes(new BoundingBox(-90, -180, 90, 180))));
+		assertEquals(ids(), ids(store.getNodes(new BoundingBox(0.3, 0.3, 0.4, 0.4))));
+	}
+
+	@Test public void getNodesInBoundsCrossing180thMeridian()
+	{
+		assertEquals(ids(1, 4), ids(store.getNodes(new BoundingBox(0, 179.9, 0.6, 0.1))));
+	}
+
+	@Test public void getWaysInBounds()
+	{
+		assertEquals(ids(1), ids(store.getWays(new BoundingBox(0, 0, 0.1, 0.1))));
+		// way 2 spans from 0.05,0.55 to 0.95,0.95: its bounds intersect even though no node is inside
+		assertEquals(ids(2), ids(store.getWays(new BoundingBox(0.3, 0.5, 0.4, 0.6))));
+		assertEquals(ids(2), ids(store.getWays(new BoundingBox(0.3, 0.8, 0.4, 0.9))));
+		assertEquals(new BoundingBox(0.05, 0.55, 0.95, 0.95), store.getBounds(2));
+	}
+
+	@Test public void getLargeWaysInBounds()
+	{
+		store.handle(new OsmNode(10, 1, new OsmLatLon(-40, -50), null));
+		store.handle(new OsmNode(11, 1, new OsmLatLon(30, 60), null));
+		store.handle(new OsmWay(10, 1, new ArrayList<>(Arrays.asList(10L, 11L)), null));
+
+		assertEquals(ids(10), ids(store.getWays(new BoundingBox(-5, -5, -4.9, -4.9))));
+		assertEquals(ids(10), ids(store.getWays(new BoundingBox(29.9, 59.9, 30, 60))));
+		assertEquals(ids(), ids(store.getWays(new BoundingBox(30.1, 60.1, 31, 61))));
+		assertEquals(ids(1, 2, 10), ids(store.getWays(new BoundingBox(0, 0, 1, 1))));
+	}
+
+	@Test public void getWaysCrossing180thMeridian()
+	{
+		store.handle(new OsmNode(10, 1, new OsmLatLon(10, 179.5), null));
+		store.handle(new OsmNode(11, 1, new OsmLatLon(11, -179.5), null));
+		store.handle(new OsmWay(10, 1, new ArrayList<>(Arrays.asList(10L, 11L)), null));
+
+		assertEquals(new BoundingBox(10, 179.5, 11, -179.5), store.getBounds(10));
+		assertEquals(ids(10), ids(store.getWays(new BoundingBox(10, 179.9, 10.1, 180))));
+		assertEquals(ids(10), ids(store.getWays(new BoundingBox(10, -180, 10.1, -179.9))));
+		assertEquals(ids(10), ids(store.getWays(new BoundingBox(10, 179.9, 10.1, -179.9))));
+		assertEquals(ids(), ids(store.getWays(new BoundingBox(10, 0, 11, 1))));
+		assertEquals(ids(), ids(store.getWays(new BoundingBox(10, 179, 11, 179.4))));
+	}
+
+	@Test public void backReferences()
+	{
+		assertEquals(ids(1, 2), ids(store.getWaysForNode(2)));
+		assertEquals(ids(2), ids(store.getWaysForNode(99)));
+		assertEquals(ids(), ids(store.getWaysForNode(4)));
+		assertEquals(ids(1), ids(store.getRelationsForWay(1)));
+		assertEquals(ids(1), ids(store.getRelationsForNode(3)));
+		assertEquals(ids(2), ids(store.getRelationsForRelation(1)));
+	}
+
+	@Test public void resolvesMembers()
+	{
+		assertEquals(ids(2, 3), ids(store.getNodes(store.getWay(2))));
+		List<Element> members = store.getMembers(store.getRelation(1));
+		assertEquals(2, members.size());
+		assertTrue(members.get(0) instanceof Way);
+		assertTrue(members.get(1) instanceof Node);
+	}
+
+	@Test public void replacesElements()
+	{
+		store.handle(new OsmNode(1, 2, new OsmLatLon(0.55, 0.55), null));
+		assertEquals(ids(), ids(store.getNodes(new BoundingBox(0, 0, 0.1, 0.1))));
+		assertEquals(ids(1), ids(store.getNodes(new BoundingBox(0.5, 0.5, 0.6, 0.6))));
+
+		store.handle(new OsmWay(1, 2, new ArrayList<>(Arrays.asList(3L, 4L)), null));
+		assertEquals(ids(2), ids(store.getWaysForNode(2)));
+		assertEquals(ids(1), ids(store.getWaysForNode(4)));
+		assertEquals(ids(), ids(store.getWays(new BoundingBox(0, 0, 0.1, 0.1))));
+
+		store.handle(new OsmRelation(1, 2, new ArrayList<>(Arrays.<RelationMember>asList(
+				new OsmRelationMember(1, "", Element.Type.NODE))), null));
+		assertEquals(ids(), ids(store.getRelationsForWay(1)));
+		assertEquals(ids(1), ids(store.getRelationsForNode(1)));
+		assertEquals(2, store.getRelationCount());
+	}
+
+	private static Set<Long> ids(long... ids)
+	{
+		Set<Long> result = new HashSet<>();
+		for (long id : ids) result.add(id);
+		return result;
+	}
+
+	private static Set<Long> ids(List<? extends Element> elements)
+	{
+		Set<Long> result = new HashSet<>();
+		for (Element element : elements) result.add(element.getId());
+		return result;
+	}
+}
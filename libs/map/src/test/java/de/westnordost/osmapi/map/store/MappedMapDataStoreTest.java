@@ -0,0 +1,182 @@
+package de.westnordost.osmapi.map.store;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.westnordost.osmapi.TestUtils;
+import de.westnordost.osmapi.map.MapDataParser;
+import de.westnordost.osmapi.map.OsmMapDataFactory;
+import de.westnordost.osmapi.map.data.Element;
+import de.westnordost.osmapi.map.data.Node;
+import de.westnordost.osmapi.map.data.OsmLatLon;
+import de.westnordost.osmapi.map.data.OsmNode;
+import de.westnordost.osmapi.map.data.OsmRelationMember;
+import de.westnordost.osmapi.map.data.OsmWay;
+import de.westnordost.osmapi.map.data.Relation;
+import de.westnordost.osmapi.map.data.RelationMember;
+import de.westnordost.osmapi.map.data.Way;
+
+import static org.junit.Assert.*;
+
+public class MappedMapDataStoreTest
+{
+	// small segments so that records span several segments
+	private static final int SEGMENT_SIZE = 64;
+
+	private File directory;
+	private MappedMapDataStore store;
+
+	@Before public void setUp() throws IOException
+	{
+		directory = Files.createTempDirectory("osmapi").toFile();
+		store = new MappedMapDataStore(directory, SEGMENT_SIZE);
+	}
+
+	@After public void tearDown() throws IOException
+	{
+		store.close();
+		TestUtils.deleteDirectory(directory);
+	}
+
+	@Test public void storesParsedMapData() throws IOException
+	{
+		new MapDataParser(store, new OsmMapDataFactory()).parse(TestUtils.asInputStream(
+				"<osm>" +
+				"<node id=\"1\" version=\"3\" lat=\"52.5\" lon=\"-13.25\" timestamp=\"2020-01-01T12:00:00Z\"/>" +
+				"<node id=\"2\" version=\"1\" lat=\"-0.0000001\" lon=\"179.9999999\">" +
+				"<tag k=\"amenity\" v=\"bench\"/><tag k=\"name\" v=\"Bänkchen\"/>" +
+				"</node>" +
+				"<way id=\"5\" version=\"2\"><nd ref=\"2\"/><nd ref=\"1\"/><nd ref=\"123456789012\"/>" +
+				"<tag k=\"highway\" v=\"residential\"/></way>" +
+				"<relation id=\"7\" version=\"4\">" +
+				"<member type=\"way\" ref=\"5\" role=\"outer\"/><member type=\"node\" ref=\"1\" role=\"\"/>" +
+				"</relation>" +
+				"</osm>"));
+
+		assertEquals(2, store.getNodeCount());
+		assertEquals(1, store.getWayCount());
+		assertEquals(1, store.getRelationCount());
+		assertStored();
+	}
+
+	@Test public void reopensStore() throws IOException
+	{
+		storesParsedMapData();
+		store.close();
+		store = new MappedMapDataStore(directory, SEGMENT_SIZE);
+		assertStored();
+	}
+
+	@Test public void storesElementsInAnyOrder()
+	{
+		for (long id = 1000; id > 0; id -= 3)
+		{
+			store.handle(node(id, id));
+		}
+		for (long id = 1; id <= 1000; id += 2)
+		{
+			store.handle(node(id, -id));
+		}
+		store.flush();
+		for (long id = 1; id <= 1000; id++)
+		{
+			Node node = store.getNode(id);
+			if(id % 2 == 1) assertEquals(-id * 0.001, node.getPosition().getLatitude(), 1e-7);
+			else if(id % 3 == 1) assertEquals(id * 0.001, node.getPosition().getLatitude(), 1e-7);
+			else assertNull(node);
+		}
+	}
+
+	@Test public void replacesElements()
+	{
+		store.handle(node(1, 1));
+		store.handle(new OsmWay(1, 1, new ArrayList<>(Arrays.asList(1L, 2L)), null));
+		store.handle(node(1, 2));
+		store.handle(new OsmWay(1, 2, new ArrayList<>(Arrays.asList(3L)), null));
+
+		assertEquals(1, store.getNodeCount());
+		assertEquals(0.002, store.getNode(1).getPosition().getLatitude(), 1e-7);
+		assertEquals(2, store.getWay(1).getVersion());
+		assertEquals(Arrays.asList(3L), store.getWay(1).getNodeIds());
+	}
+
+	@Test public void storesDeletedNodes()
+	{
+		store.handle(new OsmNode(1, 2, null, null));
+		assertNull(store.getNode(1).getPosition());
+		assertNull(store.getPosition(1));
+		assertNotNull(store.getNode(1));
+	}
+
+	@Test public void storesDeletedFlag()
+	{
+		OsmWay way = new OsmWay(1, 3, new ArrayList<>(Arrays.asList(1L, 2L)), null);
+		way.setDeleted(true);
+		store.handle(way);
+		store.handle(new OsmWay(2, 3, new ArrayList<>(Arrays.asList(1L, 2L)), null));
+
+		assertTrue(store.getWay(1).isDeleted());
+		assertEquals(3, store.getWay(1).getVersion());
+		assertFalse(store.getWay(2).isDeleted());
+		assertEquals(3, store.getWay(2).getVersion());
+	}
+
+	@Test public void unknownElements()
+	{
+		assertNull(store.getNode(1));
+		assertNull(store.getWay(1));
+		assertNull(store.getRelation(1));
+		assertNull(store.getPosition(1));
+	}
+
+	private void assertStored()
+	{
+		Node node1 = store.getNode(1);
+		assertEquals(3, node1.getVersion());
+		assertEquals(52.5, node1.getPosition().getLatitude(), 1e-7);
+		assertEquals(-13.25, node1.getPosition().getLongitude(), 1e-7);
+		assertEquals(Instant.parse("2020-01-01T12:00:00Z"), node1.getEditedAt());
+		assertTrue(node1.getTags().isEmpty());
+		assertNull(node1.getChangeset());
+
+		Node node2 = store.getNode(2);
+		assertEquals(-0.0000001, node2.getPosition().getLatitude(), 1e-9);
+		assertEquals(179.9999999, node2.getPosition().getLongitude(), 1e-9);
+		Map<String, String> tags = new HashMap<>();
+		tags.put("amenity", "bench");
+		tags.put("name", "Bänkchen");
+		assertEquals(tags, node2.getTags());
+		assertNull(node2.getEditedAt());
+		assertEquals(node2.getPosition(), store.getPosition(2));
+
+		Way way = store.getWay(5);
+		assertEquals(5, way.getId());
+		assertEquals(2, way.getVersion());
+		assertEquals(Arrays.asList(2L, 1L, 123456789012L), way.getNodeIds());
+		assertEquals("residential", way.getTags().get("highway"));
+		assertEquals(way, store.getWay(5));
+
+		Relation relation = store.getRelation(7);
+		List<RelationMember> members = relation.getMembers();
+		assertEquals(Arrays.<RelationMember>asList(
+				new OsmRelationMember(5, "outer", Element.Type.WAY),
+				new OsmRelationMember(1, "", Element.Type.NODE)), members);
+		assertEquals(4, relation.getVersion());
+	}
+
+	private static Node node(long id, long lat)
+	{
+		return new OsmNode(id, 1, new OsmLatLon(lat * 0.001, 0), null);
+	}
+}
@@ -17,9 +17,22 @@ import de.westnordost.osmapi.user.User;
  *  does not care where in the XML the notes nodes are. */
 public class NotesParser extends XmlParser implements ApiResponseReader<Void>
 {
-	private static final String
-			NOTE = "note",
-			COMMENT = "comment";
+	private final int
+			NOTE = symbol("note"),
+			COMMENT = symbol("comment"),
+			ID = symbol("id"),
+			STATUS = symbol("status"),
+			DATE_CREATED = symbol("date_created"),
+			DATE_CLOSED = symbol("date_closed"),
+			DATE = symbol("date"),
+			USER = symbol("user"),
+			UID = symbol("uid"),
+			TEXT = symbol("text"),
+			ACTION = symbol("action");
+
+	private final int
+			LAT = symbol("lat"),
+			LON = symbol("lon");
 
 	private static final NotesDateFormat FORMATTER = new NotesDateFormat();
 
@@ -50,14 +63,14 @@ public class NotesParser extends XmlParser implements ApiResponseReader<Void>
 	@Override
 	protected void onStartElement()
 	{
-		String name = getName();
+		int name = getSymbol();
 
-		if (name.equals(NOTE))
+		if (name == NOTE)
 		{
 			currentNote = new Note();
-			currentNote.position = OsmLatLon.parseLatLon(getAttribute("lat"), getAttribute("lon"));
+			currentNote.position = OsmLatLon.parseLatLon(getAttribute(LAT), getAttribute(LON));
 		}
-		else if(name.equals(COMMENT))
+		else if(name == COMMENT)
 		{
 			currentComment = new NoteComment();
 		}
@@ -66,16 +79,16 @@ public class NotesParser extends XmlParser implements ApiResponseReader<Void>
 	@Override
 	protected void onEndElement() throws ParseException
 	{
-		String name = getName();
-		String parentName = getParentName();
+		int name = getSymbol();
+		int parentName = getParentSymbol();
 		String txt = getText();
 
-		if(NOTE.equals(name))
+		if(name == NOTE)
 		{
 			handler.handle( currentNote );
 			currentNote = null;
 		}
-		else if(COMMENT.equals(name))
+		else if(name == COMMENT)
 		{
 			if(userId != -1 || userName != null)
 			{
@@ -92,54 +105,57 @@ public class NotesParser extends XmlParser implements ApiResponseReader<Void>
 			currentNote.comments.add(currentComment);
 			currentComment = null;
 		}
-		else if(NOTE.equals(parentName))
+		else if(parentName == NOTE)
 		{
 			parseNoteTextNode(name,txt);
 		}
-		else if(COMMENT.equals(parentName))
+		else if(parentName == COMMENT)
 		{
 			parseCommentTextNode(name,txt);
 		}
 	}
 
-	private void parseNoteTextNode(String name, String txt) throws ParseException
+	private void parseNoteTextNode(int name, String txt) throws ParseException
 	{
-		switch (name)
+		if(name == ID)
 		{
-			case "id":
-				currentNote.id = Long.parseLong(txt);
-				break;
-			case "status":
-				currentNote.status = Note.Status.valueOf(txt.toUpperCase(Locale.UK));
-				break;
-			case "date_created":
-				currentNote.createdAt = FORMATTER.parse(txt);
-				break;
-			case "date_closed":
-				currentNote.closedAt = FORMATTER.parse(txt);
-				break;
+			currentNote.id = Long.parseLong(txt);
+		}
+		else if(name == STATUS)
+		{
+			currentNote.status = Note.Status.valueOf(txt.toUpperCase(Locale.UK));
+		}
+		else if(name == DATE_CREATED)
+		{
+			currentNote.createdAt = FORMATTER.parse(txt);
+		}
+		else if(name == DATE_CLOSED)
+		{
+			currentNote.closedAt = FORMATTER.parse(txt);
 		}
 	}
 
-	private void parseCommentTextNode(String name, String txt) throws ParseException
+	private void parseCommentTextNode(int name, String txt) throws ParseException
 	{
-		switch (name)
+		if(name == DATE)
+		{
+			currentComment.date = FORMATTER.parse(txt);
+		}
+		else if(name == USER)
+		{
+			userName = txt;
+		}
+		else if(name == UID)
+		{
+			userId = Long.parseLong(txt);
+		}
+		else if(name == TEXT)
+		{
+			currentComment.text = txt;
+		}
+		else if(name == ACTION)
 		{
-			case "date":
-				currentComment.date = FORMATTER.parse(txt);
-				break;
-			case "user":
-				userName = txt;
-				break;
-			case "uid":
-				userId = Long.parseLong(txt);
-				break;
-			case "text":
-				currentComment.text = txt;
-				break;
-			case "action":
-				currentComment.action = NoteComment.Action.valueOf(txt.toUpperCase(Locale.UK));
-				break;
+			currentComment.action = NoteComment.Action.valueOf(txt.toUpperCase(Locale.UK));
 		}
 	}
 }
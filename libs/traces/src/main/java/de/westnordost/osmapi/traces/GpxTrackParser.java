@@ -16,9 +16,16 @@ import de.westnordost.osmapi.map.data.OsmLatLon;
  *  for the trackpoints. Hence the name "GpxTrackParser" and not "GPXParser". */
 public class GpxTrackParser extends XmlParser implements ApiResponseReader<Void>
 {
-	private static final String
-	  TRACKPOINT = "trkpt",
-	  TRACKSEGMENT = "trkseg";
+	private final int
+	  TRACKPOINT = symbol("trkpt"),
+	  TRACKSEGMENT = symbol("trkseg"),
+	  TIME = symbol("time"),
+	  ELEVATION = symbol("ele"),
+	  HDOP = symbol("hdop");
+
+	private final int
+	  LAT = symbol("lat"),
+	  LON = symbol("lon");
 
 	private final Handler<GpsTrackpoint> handler;
 	
@@ -45,24 +52,24 @@ public class GpxTrackParser extends XmlParser implements ApiResponseReader<Void>
 	@Override
 	protected void onStartElement() throws ParseException
 	{
-		String name = getName();
+		int name = getSymbol();
 		
-		if(name.equals(TRACKSEGMENT))
+		if(name == TRACKSEGMENT)
 		{
 			isFirstPointInTrackSegment = true;
 		}
-		else if(name.equals(TRACKPOINT))
+		else if(name == TRACKPOINT)
 		{
-			position = OsmLatLon.parseLatLon(getAttribute("lat"), getAttribute("lon"));
+			position = OsmLatLon.parseLatLon(getAttribute(LAT), getAttribute(LON));
 		}
 	}
 
 	@Override
 	protected void onEndElement() throws ParseException
 	{
-		String name = getName();
+		int name = getSymbol();
 		
-		if(TRACKPOINT.equals(name))
+		if(name == TRACKPOINT)
 		{
 			handler.handle(new GpsTrackpoint(
 				position, time, isFirstPointInTrackSegment, horizontalDilutionOfPrecision, elevation
@@ -73,11 +80,11 @@ public class GpxTrackParser extends XmlParser implements ApiResponseReader<Void>
 			horizontalDilutionOfPrecision = null;
 			elevation = null;
 		}
-		else if(TRACKPOINT.equals(getParentName()))
+		else if(getParentSymbol() == TRACKPOINT)
 		{
-			if(name.equals("time"))	time = Instant.parse(getText());
-			if(name.equals("ele")) elevation = Float.valueOf(getText());
-			if(name.equals("hdop"))	horizontalDilutionOfPrecision = Float.valueOf(getText());
+			if(name == TIME) time = Instant.parse(getText());
+			if(name == ELEVATION) elevation = Float.valueOf(getText());
+			if(name == HDOP) horizontalDilutionOfPrecision = Float.valueOf(getText());
 		}
 	}
 }
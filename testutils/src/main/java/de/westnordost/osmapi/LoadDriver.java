@@ -0,0 +1,178 @@
+package de.westnordost.osmapi;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Calls an operation, usually a call of one of the API classes, a given number of times from
+ *  several threads at once and measures the throughput and the latency of each call.
+ *  <br><br>
+ *  Before measuring, the operation is called a number of times to warm up the JIT compiler and the
+ *  connections. Calls that throw an exception are counted as failed but are still measured. */
+public class LoadDriver
+{
+	private final int threads;
+	private final int warmupCalls;
+
+	/**
+	 * @param threads number of threads that call the operation at the same time
+	 * @param warmupCalls number of calls before measuring
+	 */
+	public LoadDriver(int threads, int warmupCalls)
+	{
+		if(threads <= 0) throw new IllegalArgumentException("threads must be positive");
+		if(warmupCalls < 0) throw new IllegalArgumentException("warmupCalls must not be negative");
+		this.threads = threads;
+		this.warmupCalls = warmupCalls;
+	}
+
+	/** Call the given operation the given number of times and return the measurements */
+	public Result run(int calls, Runnable operation) throws InterruptedException
+	{
+		if(calls <= 0) throw new IllegalArgumentException("calls must be positive");
+		execute(warmupCalls, operation, new long[warmupCalls], new String[warmupCalls]);
+
+		long[] latencies = new long[calls];
+		String[] failures = new String[calls];
+		long start = System.nanoTime();
+		execute(calls, operation, latencies, failures);
+		long duration = System.nanoTime() - start;
+
+		Map<String, Integer> failuresByType = new TreeMap<>();
+		for (String failure : failures)
+		{
+			if(failure != null) failuresByType.merge(failure, 1, Integer::sum);
+		}
+		Arrays.sort(latencies);
+		return new Result(latencies, duration, failuresByType);
+	}
+
+	private void execute(int calls, Runnable operation, long[] latencies, String[] failures)
+			throws InterruptedException
+	{
+		if(calls == 0) return;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		AtomicInteger nextCall = new AtomicInteger();
+		// so that all threads begin at the same time
+		CountDownLatch ready = new CountDownLatch(1);
+		Future<?>[] futures = new Future<?>[threads];
+		for (int i = 0; i < threads; i++)
+		{
+			futures[i] = executor.submit(() ->
+			{
+				ready.await();
+				int call;
+				while((call = nextCall.getAndIncrement()) < calls)
+				{
+					long start = System.nanoTime();
+					try
+					{
+						operation.run();
+					}
+					catch(RuntimeException e)
+					{
+						failures[call] = e.getClass().getSimpleName();
+					}
+					latencies[call] = System.nanoTime() - start;
+				}
+				return null;
+			});
+		}
+		ready.countDown();
+		try
+		{
+			for (Future<?> future : futures)
+			{
+				future.get();
+			}
+		}
+		catch(ExecutionException e)
+		{
+			// errors other than runtime exceptions are not expected from an API call
+			throw new RuntimeException(e.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/** Measurements of one {@link #run(int, Runnable)} */
+	public static class Result
+	{
+		private final long[] latencies;
+		private final long duration;
+		private final Map<String, Integer> failuresByType;
+
+		Result(long[] sortedLatencies, long duration, Map<String, Integer> failuresByType)
+		{
+			this.latencies = sortedLatencies;
+			this.duration = duration;
+			this.failuresByType = failuresByType;
+		}
+
+		/** @return number of calls measured */
+		public int getCalls()
+		{
+			return latencies.length;
+		}
+
+		/** @return number of calls that threw an exception */
+		public int getFailures()
+		{
+			int result = 0;
+			for (int count : failuresByType.values())
+			{
+				result += count;
+			}
+			return result;
+		}
+
+		/** @return number of calls that threw an exception by simple class name of the exception */
+		public Map<String, Integer> getFailuresByType()
+		{
+			return failuresByType;
+		}
+
+		/** @return time in milliseconds all calls took together */
+		public double getDuration()
+		{
+			return duration / 1e6;
+		}
+
+		/** @return calls per second */
+		public double getThroughput()
+		{
+			return latencies.length / (duration / 1e9);
+		}
+
+		/** @return latency in milliseconds that the given share (0..1) of calls did not exceed,
+		 *          e.g. 0.99 for the 99th percentile */
+		public double getLatency(double percentile)
+		{
+			if(percentile < 0 || percentile > 1) throw new IllegalArgumentException("percentile must be within 0..1");
+			int index = (int) Math.ceil(percentile * latencies.length) - 1;
+			return latencies[Math.max(0, index)] / 1e6;
+		}
+
+		@Override public String toString()
+		{
+			StringBuilder result = new StringBuilder(String.format(Locale.US,
+					"%d calls in %.0fms: %.1f/s, latency p50 %.2fms, p90 %.2fms, p99 %.2fms, max %.2fms",
+					getCalls(), getDuration(), getThroughput(),
+					getLatency(0.5), getLatency(0.9), getLatency(0.99), getLatency(1)));
+			if(!failuresByType.isEmpty())
+			{
+				result.append(", ").append(getFailures()).append(" failed ").append(failuresByType);
+			}
+			return result.toString();
+		}
+	}
+}
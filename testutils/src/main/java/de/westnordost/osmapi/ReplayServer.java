@@ -0,0 +1,442 @@
+package de.westnordost.osmapi;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/** A local HTTP server that plays back recorded responses of the OSM API 0.6, so that the API
+ *  classes can be tested and load tested without the network and without the test API.
+ *  <br><br>
+ *  Responses are recorded per method and call, the call being what is passed to
+ *  {@link OsmConnection}, e.g. "map?bbox=13.3,52.5,13.32,52.52". A request is answered with the
+ *  response recorded for exactly its call or else for its call without the query, e.g. "map". If
+ *  none is recorded, it is answered with 404.
+ *  <br><br>
+ *  It can simulate what makes the real API slow or unreliable: latency, limited bandwidth,
+ *  429 (too many requests) and 509 (bandwidth limit exceeded) errors and connections that break
+ *  off. Responses are sent gzip compressed when the client accepts it. Requests for a range of a
+ *  response can be answered, to test resuming downloads.
+ *  <br><br>
+ *  Recordings can also be loaded from files, one response per file, see
+ *  {@link #loadRecordings(File)}. */
+public class ReplayServer implements Closeable
+{
+	private static final String API_PATH = "/api/0.6/";
+	private static final int CHUNK_SIZE = 8192;
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Map<String, Recording> recordings = new ConcurrentHashMap<>();
+	private final Random random = new Random();
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private volatile long latency;
+	private volatile long bytesPerSecond;
+	private volatile double tooManyRequestsRate;
+	private volatile double bandwidthExceededRate;
+	private volatile int retryAfter = 1;
+	private volatile boolean compressionEnabled = true;
+	private volatile boolean rangesEnabled;
+	private final AtomicInteger brokenResponses = new AtomicInteger();
+	private volatile RequestListener requestListener;
+
+	/** Is notified of each request the server receives */
+	public interface RequestListener
+	{
+		/** Called before the request is answered, so the recorded responses may still be changed
+		 *  for it
+		 *
+		 *  @param method the request method
+		 *  @param call the call, i.e. the path below the API url plus the query
+		 *  @param headers the request headers */
+		void onRequest(String method, String call, Headers headers);
+	}
+
+	/** Start a server on a free port of localhost that handles up to 16 requests in parallel */
+	public ReplayServer() throws IOException
+	{
+		this(16);
+	}
+
+	/** Start a server on a free port of localhost that handles up to the given number of requests
+	 *  in parallel */
+	public ReplayServer(int threads) throws IOException
+	{
+		executor = Executors.newFixedThreadPool(threads);
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext(API_PATH, this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/** @return the API url to pass to {@link OsmConnection} */
+	public String getApiUrl()
+	{
+		return "http://localhost:" + server.getAddress().getPort() + API_PATH;
+	}
+
+	/** Record the given response for the given method and call */
+	public void record(String method, String call, int status, Map<String, String> headers, byte[] body)
+	{
+		recordings.put(getKey(method, call), new Recording(status, headers, body));
+	}
+
+	/** Record a 200 response with the given XML for GET requests of the given call */
+	public void record(String call, byte[] xml)
+	{
+		record("GET", call, 200, Collections.singletonMap("Content-Type", "text/xml; charset=utf-8"), xml);
+	}
+
+	/** Record a 200 response with the given XML for GET requests of the given call */
+	public void record(String call, String xml)
+	{
+		record(call, xml.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/** Record the responses in all files in the given directory that end with ".http". The files
+	 *  look like this: The first line is the method and the call, the second the status code,
+	 *  followed by the headers up to an empty line and then the body.
+	 *  <pre>
+	 *  GET map?bbox=13.3,52.5,13.32,52.52
+	 *  200
+	 *  Content-Type: text/xml; charset=utf-8
+	 *
+	 *  &lt;osm version="0.6"&gt;...
+	 *  </pre>
+	 *
+	 *  @throws IOException if a file could not be read or is not in the expected format */
+	public void loadRecordings(File directory) throws IOException
+	{
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(".http"));
+		if(files == null) throw new IOException(directory + " is not a directory");
+		for (File file : files)
+		{
+			loadRecording(file);
+		}
+	}
+
+	private void loadRecording(File file) throws IOException
+	{
+		byte[] content = Files.readAllBytes(file.toPath());
+		int position = 0;
+		String[] request = null;
+		Integer status = null;
+		Map<String, String> headers = new LinkedHashMap<>();
+		while(position < content.length)
+		{
+			int end = position;
+			while(end < content.length && content[end] != '\n') end++;
+			String line = new String(content, position, end - position, StandardCharsets.UTF_8).trim();
+			position = Math.min(end + 1, content.length);
+
+			if(request == null)
+			{
+				request = line.split(" ", 2);
+				if(request.length != 2) throw new IOException(file + ": Expected method and call in first line");
+			}
+			else if(status == null)
+			{
+				try
+				{
+					status = Integer.parseInt(line);
+				}
+				catch(NumberFormatException e)
+				{
+					throw new IOException(file + ": Expected status code in second line");
+				}
+			}
+			else if(line.isEmpty())
+			{
+				break;
+			}
+			else
+			{
+				int colon = line.indexOf(':');
+				if(colon == -1) throw new IOException(file + ": Expected header, got \"" + line + "\"");
+				headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+			}
+		}
+		if(status == null) throw new IOException(file + ": Expected method, call and status code");
+		record(request[0], request[1], status, headers, Arrays.copyOfRange(content, position, content.length));
+	}
+
+	/** Wait the given time before answering each request. Default is 0 */
+	public void setLatency(long millis)
+	{
+		this.latency = millis;
+	}
+
+	/** Send responses with at most the given number of bytes per second per request, or 0 for as
+	 *  fast as possible. Default is 0 */
+	public void setBandwidth(long bytesPerSecond)
+	{
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+	/** Answer the given share (0..1) of requests with 429 (too many requests). Default is 0 */
+	public void setTooManyRequestsRate(double rate)
+	{
+		this.tooManyRequestsRate = rate;
+	}
+
+	/** Answer the given share (0..1) of requests with 509 (bandwidth limit exceeded). Default
+	 *  is 0 */
+	public void setBandwidthExceededRate(double rate)
+	{
+		this.bandwidthExceededRate = rate;
+	}
+
+	/** Value in seconds of the Retry-After header sent with 429 and 509 responses. Default is 1 */
+	public void setRetryAfter(int seconds)
+	{
+		this.retryAfter = seconds;
+	}
+
+	/** Set whether responses are sent gzip compressed if the client accepts it. Default is true */
+	public void setCompressionEnabled(boolean enabled)
+	{
+		this.compressionEnabled = enabled;
+	}
+
+	/** Set whether requests for a range of a recorded 200 response (Range header, optionally with
+	 *  If-Range) are answered with only that range if the response has an ETag. The range refers
+	 *  to the body as it is sent, i.e. compressed if it is sent compressed. Default is false, like
+	 *  the API */
+	public void setRangesEnabled(boolean enabled)
+	{
+		this.rangesEnabled = enabled;
+	}
+
+	/** Break off the next given number of recorded responses after half of their body, as if the
+	 *  connection was lost. Default is 0 */
+	public void setBrokenResponses(int count)
+	{
+		brokenResponses.set(count);
+	}
+
+	/** Set the listener that is notified of each request. Null for none */
+	public void setRequestListener(RequestListener listener)
+	{
+		this.requestListener = listener;
+	}
+
+	/** @return number of requests received so far, including those answered with an error */
+	public long getRequestCount()
+	{
+		return requestCount.get();
+	}
+
+	@Override public void close()
+	{
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException
+	{
+		try
+		{
+			requestCount.incrementAndGet();
+			// uploads are read fully before answering, like the API does
+			drain(exchange.getRequestBody());
+
+			String path = exchange.getRequestURI().getRawPath().substring(API_PATH.length());
+			String query = exchange.getRequestURI().getRawQuery();
+			String method = exchange.getRequestMethod();
+			RequestListener listener = requestListener;
+			if(listener != null)
+			{
+				listener.onRequest(method, query != null ? path + "?" + query : path, exchange.getRequestHeaders());
+			}
+
+			if(latency > 0) Thread.sleep(latency);
+
+			double dice = random.nextDouble();
+			if(dice < tooManyRequestsRate)
+			{
+				respondError(exchange, 429, "Too many requests. Please try again later.");
+				return;
+			}
+			if(dice < tooManyRequestsRate + bandwidthExceededRate)
+			{
+				respondError(exchange, 509, "You have downloaded too much data. Please try again later.");
+				return;
+			}
+
+			Recording recording = query != null ? recordings.get(getKey(method, path + "?" + query)) : null;
+			if(recording == null) recording = recordings.get(getKey(method, path));
+			if(recording == null)
+			{
+				respondError(exchange, 404, "No response recorded for " + method + " " + path);
+				return;
+			}
+			boolean breakOff = brokenResponses.getAndUpdate(n -> Math.max(0, n - 1)) > 0;
+			respond(exchange, recording, breakOff);
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	private void respondError(HttpExchange exchange, int status, String text)
+			throws IOException, InterruptedException
+	{
+		Map<String, String> headers = new LinkedHashMap<>();
+		headers.put("Content-Type", "text/plain; charset=utf-8");
+		if(status == 429 || status == 509) headers.put("Retry-After", String.valueOf(retryAfter));
+		respond(exchange, new Recording(status, headers, text.getBytes(StandardCharsets.UTF_8)), false);
+	}
+
+	private void respond(HttpExchange exchange, Recording recording, boolean breakOff)
+			throws IOException, InterruptedException
+	{
+		Headers headers = exchange.getResponseHeaders();
+		for (Map.Entry<String, String> header : recording.headers.entrySet())
+		{
+			headers.set(header.getKey(), header.getValue());
+		}
+		byte[] body = recording.body;
+		String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		if(compressionEnabled && body.length > 0 && acceptEncoding != null
+				&& acceptEncoding.toLowerCase(Locale.UK).contains("gzip")
+				&& !headers.containsKey("Content-Encoding"))
+		{
+			body = recording.getGzippedBody();
+			headers.set("Content-Encoding", "gzip");
+		}
+
+		int status = recording.status;
+		int start = 0;
+		String eTag = recording.headers.get("ETag");
+		if(rangesEnabled && status == 200 && eTag != null)
+		{
+			headers.set("Accept-Ranges", "bytes");
+			String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+			int rangeStart = parseRangeStart(exchange.getRequestHeaders().getFirst("Range"));
+			if(rangeStart >= 0 && rangeStart < body.length && (ifRange == null || ifRange.equals(eTag)))
+			{
+				status = 206;
+				start = rangeStart;
+				headers.set("Content-Range", "bytes " + start + "-" + (body.length - 1) + "/" + body.length);
+			}
+		}
+		int length = body.length - start;
+		exchange.sendResponseHeaders(status, length > 0 ? length : -1);
+		if(length == 0) return;
+
+		OutputStream out = exchange.getResponseBody();
+		if(breakOff)
+		{
+			write(out, body, start, start + length / 2);
+			out.flush();
+			// not closing the stream, so the connection is closed before the whole body was sent
+			throw new IOException("Connection broken off");
+		}
+		write(out, body, start, body.length);
+		out.close();
+	}
+
+	/* write the given part of the body in chunks, waiting in between so as not to exceed the
+	   bandwidth */
+	private void write(OutputStream out, byte[] body, int from, int to)
+			throws IOException, InterruptedException
+	{
+		long start = System.nanoTime();
+		for (int offset = from; offset < to; offset += CHUNK_SIZE)
+		{
+			int length = Math.min(CHUNK_SIZE, to - offset);
+			out.write(body, offset, length);
+			long bytesPerSecond = this.bytesPerSecond;
+			if(bytesPerSecond > 0)
+			{
+				long due = start + (offset - from + length) * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+				long wait = due - System.nanoTime();
+				if(wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+			}
+		}
+	}
+
+	/** @return the start of a range "bytes=start-" or -1 if the value is null or not such a range */
+	private static int parseRangeStart(String range)
+	{
+		if(range == null || !range.startsWith("bytes=") || !range.endsWith("-")) return -1;
+		try
+		{
+			return Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+		}
+		catch(NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+
+	private static void drain(InputStream in) throws IOException
+	{
+		byte[] buffer = new byte[CHUNK_SIZE];
+		while(in.read(buffer) != -1) { }
+		in.close();
+	}
+
+	private static String getKey(String method, String call)
+	{
+		return method.toUpperCase(Locale.UK) + " " + call;
+	}
+
+	private static class Recording
+	{
+		final int status;
+		final Map<String, String> headers;
+		final byte[] body;
+		private byte[] gzippedBody;
+
+		Recording(int status, Map<String, String> headers, byte[] body)
+		{
+			this.status = status;
+			this.headers = headers;
+			this.body = body;
+		}
+
+		/* compressed only once, so that compressing does not count against the response time */
+		synchronized byte[] getGzippedBody() throws IOException
+		{
+			if(gzippedBody == null)
+			{
+				ByteArrayOutputStream result = new ByteArrayOutputStream();
+				try(GZIPOutputStream out = new GZIPOutputStream(result))
+				{
+					out.write(body);
+				}
+				gzippedBody = result.toByteArray();
+			}
+			return gzippedBody;
+		}
+	}
+}
@@ -2,6 +2,7 @@ package de.westnordost.osmapi;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 
@@ -22,6 +23,14 @@ public class TestUtils
 		}
 	}
 	
+	/** Deletes the given directory and the files in it */
+	public static void deleteDirectory(File directory)
+	{
+		File[] files = directory.listFiles();
+		if(files != null) for (File file : files) file.delete();
+		directory.delete();
+	}
+
 	public static String asString(ByteArrayOutputStream out)
 	{
 		try